@@ -15,14 +15,23 @@
  */
 package com.impetus.client.cassandra.common;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.regex.Pattern;
+
 import org.apache.cassandra.thrift.Column;
 
 import com.impetus.client.cassandra.config.CassandraPropertyReader;
+import com.impetus.client.cassandra.config.CassandraPropertyReader.CassandraSchemaMetadata;
 import com.impetus.kundera.Constants;
 import com.impetus.kundera.metadata.MetadataUtils;
 import com.impetus.kundera.metadata.model.EntityMetadata;
 import com.impetus.kundera.property.PropertyAccessException;
 import com.impetus.kundera.property.PropertyAccessorFactory;
+import com.impetus.kundera.query.KunderaQuery.FilterClause;
+import com.impetus.kundera.query.QueryHandlerException;
 
 /**
  * Provides functionalities related to indexing in cassandra
@@ -58,6 +67,236 @@ public class CassandraIndexHelper
         return tableName + Constants.INDEX_TABLE_SUFFIX;
     }
 
+    /**
+     * Generates key of inverted index row holding values of a column of an
+     * embedded object, as written before inverted index rows were split into
+     * buckets.
+     * 
+     * @param embeddedFieldName
+     *            name of embedded field of entity
+     * @param columnFieldName
+     *            name of field of embedded object
+     * @return the row key
+     */
+    public static String getInvertedIndexRowKey(String embeddedFieldName, String columnFieldName)
+    {
+        return embeddedFieldName + Constants.INDEX_TABLE_ROW_KEY_DELIMITER + columnFieldName;
+    }
+
+    /**
+     * Generates key of inverted index bucket row an indexed value is written
+     * to. With more than one bucket configured, index row key is suffixed by
+     * bucket number, derived from hash of indexed value, so that entries of a
+     * column are spread evenly across rows (and thus nodes) instead of piling
+     * up into a single wide row. With a single bucket, key is unchanged.
+     * 
+     * @param rowKey
+     *            inverted index row key, as returned by
+     *            {@link #getInvertedIndexRowKey(String, String)}
+     * @param indexedValue
+     *            indexed value, i.e. name of inverted index column
+     * @return the bucket row key
+     */
+    public static String getInvertedIndexBucketRowKey(String rowKey, byte[] indexedValue)
+    {
+        int buckets = getInvertedIndexBuckets();
+        if (buckets == 1)
+        {
+            return rowKey;
+        }
+        return getBucketRowKey(rowKey, (Arrays.hashCode(indexedValue) & Integer.MAX_VALUE) % buckets);
+    }
+
+    /**
+     * Returns keys of inverted index rows an indexed value may be found in: its
+     * bucket row, and also the row written before sharding while
+     * {@link Constants#INVERTED_INDEX_READ_UNSHARDED} is set.
+     * 
+     * @param rowKey
+     *            inverted index row key
+     * @param indexedValue
+     *            indexed value
+     * @return the row keys
+     */
+    public static List<String> getInvertedIndexRowKeys(String rowKey, byte[] indexedValue)
+    {
+        List<String> rowKeys = new ArrayList<String>(2);
+        rowKeys.add(getInvertedIndexBucketRowKey(rowKey, indexedValue));
+        addUnshardedRowKey(rowKeys, rowKey);
+        return rowKeys;
+    }
+
+    /**
+     * Returns keys of all inverted index rows values of a column may be found
+     * in, to be read for range and LIKE searches: all bucket rows, and also
+     * the row written before sharding while
+     * {@link Constants#INVERTED_INDEX_READ_UNSHARDED} is set.
+     * 
+     * @param rowKey
+     *            inverted index row key
+     * @return the row keys
+     */
+    public static List<String> getInvertedIndexRowKeys(String rowKey)
+    {
+        int buckets = getInvertedIndexBuckets();
+        if (buckets == 1)
+        {
+            List<String> rowKeys = new ArrayList<String>(1);
+            rowKeys.add(rowKey);
+            return rowKeys;
+        }
+        List<String> rowKeys = new ArrayList<String>(buckets + 1);
+        for (int bucket = 0; bucket < buckets; bucket++)
+        {
+            rowKeys.add(getBucketRowKey(rowKey, bucket));
+        }
+        addUnshardedRowKey(rowKeys, rowKey);
+        return rowKeys;
+    }
+
+    /**
+     * Checks whether inverted index rows written before sharding are to be
+     * read and maintained along with bucket rows.
+     * 
+     * @return true, if unsharded rows are in use
+     */
+    public static boolean isUnshardedInvertedIndexInUse()
+    {
+        return getInvertedIndexBuckets() > 1 && CassandraPropertyReader.csmd != null
+                && CassandraPropertyReader.csmd.isReadUnshardedInvertedIndex();
+    }
+
+    /**
+     * Adds unsharded row key to given keys, if unsharded rows are in use.
+     * 
+     * @param rowKeys
+     *            the row keys
+     * @param rowKey
+     *            the unsharded row key
+     */
+    private static void addUnshardedRowKey(List<String> rowKeys, String rowKey)
+    {
+        if (isUnshardedInvertedIndexInUse())
+        {
+            rowKeys.add(rowKey);
+        }
+    }
+
+    /**
+     * Generates key of given bucket of an inverted index row.
+     * 
+     * @param rowKey
+     *            inverted index row key
+     * @param bucket
+     *            the bucket
+     * @return the bucket row key
+     */
+    private static String getBucketRowKey(String rowKey, int bucket)
+    {
+        return rowKey + Constants.INDEX_TABLE_BUCKET_DELIMITER + bucket;
+    }
+
+    /**
+     * Returns configured number of inverted index buckets.
+     * 
+     * @return the number of buckets
+     */
+    private static int getInvertedIndexBuckets()
+    {
+        return CassandraPropertyReader.csmd != null ? CassandraPropertyReader.csmd.getInvertedIndexBuckets()
+                : CassandraSchemaMetadata.DEFAULT_INVERTED_INDEX_BUCKETS;
+    }
+
+    /**
+     * Returns LIKE pattern given value of a LIKE clause stands for. A value
+     * without wildcards matches values starting with it, as it always has for
+     * inverted index.
+     * 
+     * @param value
+     *            value of LIKE clause
+     * @return the pattern, with <code>%</code> matching any sequence of
+     *         characters and <code>_</code> any single character
+     */
+    public static String getLikePattern(String value)
+    {
+        return getLikePrefix(value).length() == value.length() ? value + "%" : value;
+    }
+
+    /**
+     * Returns literal prefix of a LIKE pattern, i.e. characters before its
+     * first wildcard. Only values starting with it can match pattern.
+     * 
+     * @param pattern
+     *            the LIKE pattern
+     * @return the prefix, empty if pattern starts with a wildcard
+     */
+    public static String getLikePrefix(String pattern)
+    {
+        for (int i = 0; i < pattern.length(); i++)
+        {
+            char c = pattern.charAt(i);
+            if (c == '%' || c == '_')
+            {
+                return pattern.substring(0, i);
+            }
+        }
+        return pattern;
+    }
+
+    /**
+     * Compiles a LIKE pattern into a regular expression.
+     * 
+     * @param pattern
+     *            the LIKE pattern
+     * @return the regular expression
+     */
+    public static Pattern toRegex(String pattern)
+    {
+        StringBuilder regex = new StringBuilder();
+        int literalStart = 0;
+        for (int i = 0; i < pattern.length(); i++)
+        {
+            char c = pattern.charAt(i);
+            if (c == '%' || c == '_')
+            {
+                if (i > literalStart)
+                {
+                    regex.append(Pattern.quote(pattern.substring(literalStart, i)));
+                }
+                regex.append(c == '%' ? ".*" : ".");
+                literalStart = i + 1;
+            }
+        }
+        if (literalStart < pattern.length())
+        {
+            regex.append(Pattern.quote(pattern.substring(literalStart)));
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    /**
+     * Returns smallest byte string greater than all byte strings starting with
+     * given prefix, i.e. a finish bound for a column slice holding exactly
+     * those columns whose name starts with prefix, but for bound itself.
+     * 
+     * @param prefix
+     *            the prefix
+     * @return the bound, empty (i.e. unbounded) if there is none
+     */
+    public static byte[] getPrefixEnd(byte[] prefix)
+    {
+        for (int i = prefix.length - 1; i >= 0; i--)
+        {
+            if (prefix[i] != (byte) 0xff)
+            {
+                byte[] end = Arrays.copyOf(prefix, i + 1);
+                end[i]++;
+                return end;
+            }
+        }
+        return new byte[0];
+    }
+
     /**
      * Checks whether Inverted indexing is applicable for a given entity whose
      * metadata is passed as parameter
@@ -74,4 +313,48 @@ public class CassandraIndexHelper
         return invertedIndexingApplicable;
     }
 
+    /**
+     * Splits filter clauses of a query into groups separated by OR, clauses
+     * within a group being connected by AND, AND binding tighter than OR. A
+     * row matches the query if it matches all clauses of any group.
+     * 
+     * @param filterClauseQueue
+     *            filter clauses and AND/OR operators, as parsed
+     * @return groups of clauses
+     */
+    public static List<List<FilterClause>> getDisjunctiveGroups(Queue<?> filterClauseQueue)
+    {
+        List<List<FilterClause>> groups = new ArrayList<List<FilterClause>>();
+        if (filterClauseQueue.isEmpty())
+        {
+            return groups;
+        }
+        List<FilterClause> group = new ArrayList<FilterClause>();
+        for (Object o : filterClauseQueue)
+        {
+            if (o instanceof FilterClause)
+            {
+                group.add((FilterClause) o);
+            }
+            else if ("OR".equalsIgnoreCase(o.toString()))
+            {
+                groups.add(group);
+                group = new ArrayList<FilterClause>();
+            }
+            else if (!"AND".equalsIgnoreCase(o.toString()))
+            {
+                throw new QueryHandlerException("unsupported clause " + o + " for cassandra");
+            }
+        }
+        groups.add(group);
+        for (List<FilterClause> g : groups)
+        {
+            if (g.isEmpty())
+            {
+                throw new QueryHandlerException("OR without a condition on either side in query");
+            }
+        }
+        return groups;
+    }
+
 }
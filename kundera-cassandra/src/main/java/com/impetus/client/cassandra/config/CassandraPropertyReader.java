@@ -139,6 +139,60 @@ public class CassandraPropertyReader implements PropertyReader
                 csmd.setInvertedIndexingEnabled(true);
             }
         }
+
+        csmd.setMultigetBatchSize(readIntProperty(properties, Constants.MULTIGET_BATCH_SIZE,
+                csmd.getMultigetBatchSize()));
+        csmd.setRangeSlicePageSize(readIntProperty(properties, Constants.RANGE_SLICE_PAGE_SIZE,
+                csmd.getRangeSlicePageSize()));
+        csmd.setIndexQueryThreads(readIntProperty(properties, Constants.INDEX_QUERY_THREADS,
+                csmd.getIndexQueryThreads()));
+        csmd.setInvertedIndexBuckets(readIntProperty(properties, Constants.INVERTED_INDEX_BUCKETS,
+                csmd.getInvertedIndexBuckets()));
+        csmd.setInvertedIndexPageSize(readIntProperty(properties, Constants.INVERTED_INDEX_PAGE_SIZE,
+                csmd.getInvertedIndexPageSize()));
+        csmd.setCqlPreparedCacheSize(readIntProperty(properties, Constants.CQL_PREPARED_CACHE_SIZE,
+                csmd.getCqlPreparedCacheSize()));
+        csmd.setCqlCompressionThreshold(readIntProperty(properties, Constants.CQL_COMPRESSION_THRESHOLD,
+                csmd.getCqlCompressionThreshold()));
+        csmd.setKeyspaceMetadataRefreshInterval(readIntProperty(properties,
+                Constants.KEYSPACE_METADATA_REFRESH_INTERVAL, csmd.getKeyspaceMetadataRefreshInterval()));
+        csmd.setReadUnshardedInvertedIndex("true".equalsIgnoreCase(properties
+                .getProperty(Constants.INVERTED_INDEX_READ_UNSHARDED)));
+    }
+
+    /**
+     * Reads a positive integer property, falls back to default value if it is
+     * missing or invalid.
+     * 
+     * @param properties
+     *            the properties
+     * @param propertyName
+     *            name of property
+     * @param defaultValue
+     *            default value
+     * @return property value
+     */
+    private int readIntProperty(Properties properties, String propertyName, int defaultValue)
+    {
+        String value = properties.getProperty(propertyName);
+        if (value != null)
+        {
+            try
+            {
+                int intValue = Integer.parseInt(value.trim());
+                if (intValue > 0)
+                {
+                    return intValue;
+                }
+            }
+            catch (NumberFormatException nfe)
+            {
+                // fall through to warning below.
+            }
+            log.warn("Invalid value " + value + " for property " + propertyName + ", kundera will use default value "
+                    + defaultValue);
+        }
+        return defaultValue;
     }
 
     /**
@@ -167,6 +221,60 @@ public class CassandraPropertyReader implements PropertyReader
         /** Whether Inverted Indexing is enabled */
         private boolean invertedIndexingEnabled;
 
+        /** Default number of rows fetched in a single multiget. */
+        public static final int DEFAULT_MULTIGET_BATCH_SIZE = 100;
+
+        /** Number of rows fetched in a single multiget round trip. */
+        private int multigetBatchSize = DEFAULT_MULTIGET_BATCH_SIZE;
+
+        /** Default number of rows fetched in a single range slice. */
+        public static final int DEFAULT_RANGE_SLICE_PAGE_SIZE = 1000;
+
+        /** Number of rows fetched in a single range slice round trip. */
+        private int rangeSlicePageSize = DEFAULT_RANGE_SLICE_PAGE_SIZE;
+
+        /** Default number of threads running index lookups concurrently. */
+        public static final int DEFAULT_INDEX_QUERY_THREADS = 8;
+
+        /** Number of threads running index lookups of a query concurrently. */
+        private int indexQueryThreads = DEFAULT_INDEX_QUERY_THREADS;
+
+        /**
+         * Default number of inverted index buckets, 1 keeping all entries of
+         * an inverted index row in that single row.
+         */
+        public static final int DEFAULT_INVERTED_INDEX_BUCKETS = 1;
+
+        /** Number of rows entries of each inverted index row are spread across. */
+        private int invertedIndexBuckets = DEFAULT_INVERTED_INDEX_BUCKETS;
+
+        /** Whether inverted index reads include rows written before sharding. */
+        private boolean readUnshardedInvertedIndex;
+
+        /** Default number of inverted index columns fetched in a single slice. */
+        public static final int DEFAULT_INVERTED_INDEX_PAGE_SIZE = 1000;
+
+        /** Number of inverted index columns fetched in a single round trip. */
+        private int invertedIndexPageSize = DEFAULT_INVERTED_INDEX_PAGE_SIZE;
+
+        /** Default number of prepared CQL statements cached per connection. */
+        public static final int DEFAULT_CQL_PREPARED_CACHE_SIZE = 500;
+
+        /** Number of prepared CQL statements cached per connection. */
+        private int cqlPreparedCacheSize = DEFAULT_CQL_PREPARED_CACHE_SIZE;
+
+        /** CQL statements are not compressed by default. */
+        public static final int DEFAULT_CQL_COMPRESSION_THRESHOLD = 0;
+
+        /** Length of CQL statements from which they are sent compressed. */
+        private int cqlCompressionThreshold = DEFAULT_CQL_COMPRESSION_THRESHOLD;
+
+        /** Default age (in seconds) after which keyspace metadata is reloaded. */
+        public static final int DEFAULT_KEYSPACE_METADATA_REFRESH_INTERVAL = 60;
+
+        /** Age (in seconds) after which cached keyspace metadata is reloaded. */
+        private int keyspaceMetadataRefreshInterval = DEFAULT_KEYSPACE_METADATA_REFRESH_INTERVAL;
+
         /**
          * dataCenterToNode map holds information about no of node per data
          * center.
@@ -279,6 +387,183 @@ public class CassandraPropertyReader implements PropertyReader
             this.invertedIndexingEnabled = invertedIndexingEnabled;
         }
 
+        /**
+         * @return the multigetBatchSize
+         */
+        public int getMultigetBatchSize()
+        {
+            return multigetBatchSize;
+        }
+
+        /**
+         * @param multigetBatchSize
+         *            the multigetBatchSize to set
+         */
+        public void setMultigetBatchSize(int multigetBatchSize)
+        {
+            if (multigetBatchSize > 0)
+            {
+                this.multigetBatchSize = multigetBatchSize;
+            }
+        }
+
+        /**
+         * @return the rangeSlicePageSize
+         */
+        public int getRangeSlicePageSize()
+        {
+            return rangeSlicePageSize;
+        }
+
+        /**
+         * @param rangeSlicePageSize
+         *            the rangeSlicePageSize to set
+         */
+        public void setRangeSlicePageSize(int rangeSlicePageSize)
+        {
+            if (rangeSlicePageSize > 0)
+            {
+                this.rangeSlicePageSize = rangeSlicePageSize;
+            }
+        }
+
+        /**
+         * @return the indexQueryThreads
+         */
+        public int getIndexQueryThreads()
+        {
+            return indexQueryThreads;
+        }
+
+        /**
+         * @param indexQueryThreads
+         *            the indexQueryThreads to set
+         */
+        public void setIndexQueryThreads(int indexQueryThreads)
+        {
+            if (indexQueryThreads > 0)
+            {
+                this.indexQueryThreads = indexQueryThreads;
+            }
+        }
+
+        /**
+         * @return the invertedIndexBuckets
+         */
+        public int getInvertedIndexBuckets()
+        {
+            return invertedIndexBuckets;
+        }
+
+        /**
+         * @param invertedIndexBuckets
+         *            the invertedIndexBuckets to set
+         */
+        public void setInvertedIndexBuckets(int invertedIndexBuckets)
+        {
+            if (invertedIndexBuckets > 0)
+            {
+                this.invertedIndexBuckets = invertedIndexBuckets;
+            }
+        }
+
+        /**
+         * @return the invertedIndexPageSize
+         */
+        public int getInvertedIndexPageSize()
+        {
+            return invertedIndexPageSize;
+        }
+
+        /**
+         * @param invertedIndexPageSize
+         *            the invertedIndexPageSize to set
+         */
+        public void setInvertedIndexPageSize(int invertedIndexPageSize)
+        {
+            if (invertedIndexPageSize > 0)
+            {
+                this.invertedIndexPageSize = invertedIndexPageSize;
+            }
+        }
+
+        /**
+         * @return the cqlPreparedCacheSize
+         */
+        public int getCqlPreparedCacheSize()
+        {
+            return cqlPreparedCacheSize;
+        }
+
+        /**
+         * @param cqlPreparedCacheSize
+         *            the cqlPreparedCacheSize to set
+         */
+        public void setCqlPreparedCacheSize(int cqlPreparedCacheSize)
+        {
+            if (cqlPreparedCacheSize > 0)
+            {
+                this.cqlPreparedCacheSize = cqlPreparedCacheSize;
+            }
+        }
+
+        /**
+         * @return the cqlCompressionThreshold
+         */
+        public int getCqlCompressionThreshold()
+        {
+            return cqlCompressionThreshold;
+        }
+
+        /**
+         * @param cqlCompressionThreshold
+         *            the cqlCompressionThreshold to set
+         */
+        public void setCqlCompressionThreshold(int cqlCompressionThreshold)
+        {
+            if (cqlCompressionThreshold > 0)
+            {
+                this.cqlCompressionThreshold = cqlCompressionThreshold;
+            }
+        }
+
+        /**
+         * @return the keyspaceMetadataRefreshInterval
+         */
+        public int getKeyspaceMetadataRefreshInterval()
+        {
+            return keyspaceMetadataRefreshInterval;
+        }
+
+        /**
+         * @param keyspaceMetadataRefreshInterval
+         *            the keyspaceMetadataRefreshInterval to set
+         */
+        public void setKeyspaceMetadataRefreshInterval(int keyspaceMetadataRefreshInterval)
+        {
+            if (keyspaceMetadataRefreshInterval > 0)
+            {
+                this.keyspaceMetadataRefreshInterval = keyspaceMetadataRefreshInterval;
+            }
+        }
+
+        /**
+         * @return the readUnshardedInvertedIndex
+         */
+        public boolean isReadUnshardedInvertedIndex()
+        {
+            return readUnshardedInvertedIndex;
+        }
+
+        /**
+         * @param readUnshardedInvertedIndex
+         *            the readUnshardedInvertedIndex to set
+         */
+        public void setReadUnshardedInvertedIndex(boolean readUnshardedInvertedIndex)
+        {
+            this.readUnshardedInvertedIndex = readUnshardedInvertedIndex;
+        }
+
         /**
          * @param placement_strategy
          *            the placement_strategy to set
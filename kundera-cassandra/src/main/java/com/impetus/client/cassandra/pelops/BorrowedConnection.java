@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.client.cassandra.pelops;
+
+import org.apache.cassandra.thrift.Cassandra;
+import org.scale7.cassandra.pelops.Pelops;
+import org.scale7.cassandra.pelops.pool.IThriftPool.IPooledConnection;
+
+/**
+ * A connection borrowed from pool for a request made directly over thrift,
+ * recording time taken to borrow it and time taken by request into metrics of
+ * pool. To be released in a finally block once request is done.
+ *
+ * @author impetus
+ */
+final class BorrowedConnection
+{
+
+    /** Metrics of pool. */
+    private final PoolMetrics metrics;
+
+    /** The connection. */
+    private final IPooledConnection connection;
+
+    /** When connection was borrowed, in nanoseconds. */
+    private final long borrowed;
+
+    /** Whether request failed for a reason of node. */
+    private boolean failed;
+
+    /**
+     * Borrows a connection.
+     *
+     * @param poolName
+     *            the pool name
+     */
+    BorrowedConnection(String poolName)
+    {
+        metrics = PoolMetrics.getInstance(poolName);
+        long start = System.nanoTime();
+        connection = Pelops.getDbConnPool(poolName).getConnection();
+        borrowed = System.nanoTime();
+        metrics.recordBorrow(borrowed - start);
+    }
+
+    /**
+     * Gets thrift client of connection.
+     *
+     * @return the thrift client
+     */
+    Cassandra.Client getAPI()
+    {
+        return connection.getAPI();
+    }
+
+    /**
+     * Marks request as failed, if failure is due to node, e.g. it timed out
+     * or was unavailable.
+     *
+     * @param failure
+     *            the failure
+     */
+    void failed(Throwable failure)
+    {
+        failed = SpeculativeRetry.isTransient(failure);
+    }
+
+    /**
+     * Returns connection to pool.
+     */
+    void release()
+    {
+        try
+        {
+            metrics.recordRequest(connection.getNode().getAddress(), System.nanoTime() - borrowed, failed);
+        }
+        finally
+        {
+            connection.release();
+        }
+    }
+}
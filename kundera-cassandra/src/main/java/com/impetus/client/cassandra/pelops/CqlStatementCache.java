@@ -0,0 +1,205 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.client.cassandra.pelops;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.zip.Deflater;
+
+import org.apache.cassandra.thrift.Cassandra;
+import org.apache.cassandra.thrift.Compression;
+import org.apache.cassandra.thrift.CqlPreparedResult;
+import org.apache.cassandra.thrift.CqlResult;
+import org.apache.cassandra.thrift.InvalidRequestException;
+import org.apache.cassandra.thrift.SchemaDisagreementException;
+import org.apache.cassandra.thrift.TimedOutException;
+import org.apache.cassandra.thrift.UnavailableException;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.thrift.TException;
+
+import com.impetus.client.cassandra.config.CassandraPropertyReader;
+import com.impetus.client.cassandra.config.CassandraPropertyReader.CassandraSchemaMetadata;
+import com.impetus.kundera.query.QueryHandlerException;
+
+/**
+ * Executes CQL statements over a thrift connection. Statements executed with
+ * bound values are prepared once per connection, as server keeps prepared
+ * statements per connection, and looked up by their text afterwards. Least
+ * recently used ones are forgotten beyond
+ * {@link com.impetus.kundera.Constants#CQL_PREPARED_CACHE_SIZE} statements per
+ * connection. Statements longer than
+ * {@link com.impetus.kundera.Constants#CQL_COMPRESSION_THRESHOLD} are sent
+ * compressed.
+ *
+ * @author impetus
+ */
+final class CqlStatementCache
+{
+
+    /** Prepared statements by text, per connection. */
+    private static final Map<Cassandra.Client, Map<String, CqlPreparedResult>> statements = Collections
+            .synchronizedMap(new WeakHashMap<Cassandra.Client, Map<String, CqlPreparedResult>>());
+
+    /**
+     * Instantiates a new cql statement cache.
+     */
+    private CqlStatementCache()
+    {
+    }
+
+    /**
+     * Executes a statement as such.
+     *
+     * @param client
+     *            the connection
+     * @param cql
+     *            the statement
+     * @return the result
+     */
+    static CqlResult execute(Cassandra.Client client, String cql) throws InvalidRequestException,
+            UnavailableException, TimedOutException, SchemaDisagreementException, TException
+    {
+        return isCompressed(cql) ? client.execute_cql_query(compress(cql), Compression.GZIP) : client
+                .execute_cql_query(ByteBufferUtil.bytes(cql), Compression.NONE);
+    }
+
+    /**
+     * Executes a statement with values bound to its markers, preparing it if
+     * not yet prepared on given connection.
+     *
+     * @param client
+     *            the connection
+     * @param cql
+     *            the statement, having a <code>?</code> marker per value
+     * @param values
+     *            the values
+     * @return the result
+     */
+    static CqlResult execute(Cassandra.Client client, String cql, List<ByteBuffer> values)
+            throws InvalidRequestException, UnavailableException, TimedOutException, SchemaDisagreementException,
+            TException
+    {
+        Map<String, CqlPreparedResult> prepared = getStatements(client);
+        CqlPreparedResult statement = prepared.get(cql);
+        if (statement == null)
+        {
+            statement = isCompressed(cql) ? client.prepare_cql_query(compress(cql), Compression.GZIP) : client
+                    .prepare_cql_query(ByteBufferUtil.bytes(cql), Compression.NONE);
+            prepared.put(cql, statement);
+        }
+        if (statement.getCount() != values.size())
+        {
+            throw new QueryHandlerException("Query " + cql + " has " + statement.getCount() + " parameters, "
+                    + values.size() + " are set");
+        }
+        try
+        {
+            return client.execute_prepared_cql_query(statement.getItemId(), values);
+        }
+        catch (InvalidRequestException e)
+        {
+            // statement may no longer be known by server, prepared again on
+            // next execution.
+            prepared.remove(cql);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns statements prepared on given connection.
+     *
+     * @param client
+     *            the connection
+     * @return prepared statements by text, to be used by thread holding
+     *         connection only
+     */
+    private static Map<String, CqlPreparedResult> getStatements(Cassandra.Client client)
+    {
+        synchronized (statements)
+        {
+            Map<String, CqlPreparedResult> prepared = statements.get(client);
+            if (prepared == null)
+            {
+                final int maxSize = CassandraPropertyReader.csmd != null ? CassandraPropertyReader.csmd
+                        .getCqlPreparedCacheSize() : CassandraSchemaMetadata.DEFAULT_CQL_PREPARED_CACHE_SIZE;
+                prepared = new LinkedHashMap<String, CqlPreparedResult>(16, 0.75f, true)
+                {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, CqlPreparedResult> eldest)
+                    {
+                        return size() > maxSize;
+                    }
+                };
+                statements.put(client, prepared);
+            }
+            return prepared;
+        }
+    }
+
+    /**
+     * Whether statement is to be sent compressed.
+     *
+     * @param cql
+     *            the statement
+     * @return true, if it is long enough
+     */
+    private static boolean isCompressed(String cql)
+    {
+        int threshold = CassandraPropertyReader.csmd != null ? CassandraPropertyReader.csmd
+                .getCqlCompressionThreshold() : CassandraSchemaMetadata.DEFAULT_CQL_COMPRESSION_THRESHOLD;
+        return threshold > 0 && cql.length() >= threshold;
+    }
+
+    /**
+     * Compresses a statement the way server inflates {@link Compression#GZIP}
+     * ones, i.e. zlib format.
+     *
+     * @param cql
+     *            the statement
+     * @return the compressed statement, backed by an array of its exact size
+     */
+    private static ByteBuffer compress(String cql)
+    {
+        byte[] input = ByteBufferUtil.getArray(ByteBufferUtil.bytes(cql));
+        Deflater deflater = new Deflater();
+        try
+        {
+            deflater.setInput(input);
+            deflater.finish();
+            byte[] output = new byte[input.length + 64];
+            int length = 0;
+            while (!deflater.finished())
+            {
+                if (length == output.length)
+                {
+                    output = Arrays.copyOf(output, output.length * 2);
+                }
+                length += deflater.deflate(output, length, output.length - length);
+            }
+            // server inflates whole backing array.
+            return ByteBuffer.wrap(Arrays.copyOf(output, length));
+        }
+        finally
+        {
+            deflater.end();
+        }
+    }
+}
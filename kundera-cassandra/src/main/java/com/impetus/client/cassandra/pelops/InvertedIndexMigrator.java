@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.client.cassandra.pelops;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.cassandra.thrift.CfDef;
+import org.apache.cassandra.thrift.Column;
+import org.apache.cassandra.thrift.ColumnOrSuperColumn;
+import org.apache.cassandra.thrift.ConsistencyLevel;
+import org.apache.cassandra.thrift.KeySlice;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.scale7.cassandra.pelops.Bytes;
+import org.scale7.cassandra.pelops.Mutator;
+import org.scale7.cassandra.pelops.Pelops;
+import org.scale7.cassandra.pelops.Selector;
+
+import com.impetus.client.cassandra.common.CassandraIndexHelper;
+import com.impetus.kundera.KunderaException;
+import com.impetus.kundera.metadata.KunderaMetadataManager;
+import com.impetus.kundera.metadata.model.EmbeddedColumn;
+import com.impetus.kundera.metadata.model.EntityMetadata;
+
+/**
+ * Moves inverted index entries of an entity from rows written before sharding
+ * into their bucket rows, as configured by
+ * {@link com.impetus.kundera.Constants#INVERTED_INDEX_BUCKETS}.
+ *
+ * Migration runs against a live cluster as follows:
+ * <ol>
+ * <li>Set <code>inverted.index.buckets</code> to number of buckets, and
+ * <code>inverted.index.read.unsharded</code> to true, so that new entries are
+ * written to bucket rows while queries and deletes still see old rows.</li>
+ * <li>Run {@link #migrate(Class, ConsistencyLevel)} for each entity using
+ * inverted index.</li>
+ * <li>Set <code>inverted.index.read.unsharded</code> back to false.</li>
+ * </ol>
+ * Entries keep their original timestamps, so that ones written or deleted
+ * since are not overwritten. Each page of entries is deleted from old row once
+ * written to bucket rows, so migration can be rerun if interrupted.
+ *
+ * Join tables written before their inverse index table existed are backfilled
+ * with {@link #migrateJoinTable(String, String, ConsistencyLevel)}. Until then
+ * reverse lookups also query secondary indexes of join table, so no flag is
+ * needed: run it once per join table, it drops those indexes when done.
+ *
+ * @author impetus
+ */
+public final class InvertedIndexMigrator
+{
+
+    /** The log. */
+    private static Log log = LogFactory.getLog(InvertedIndexMigrator.class);
+
+    /** Number of entries moved in a single round trip. */
+    private static final int PAGE_SIZE = 1000;
+
+    /**
+     * Instantiates a new inverted index migrator.
+     */
+    private InvertedIndexMigrator()
+    {
+    }
+
+    /**
+     * Moves inverted index entries of given entity into bucket rows.
+     *
+     * @param entityClass
+     *            the entity class
+     * @param consistencyLevel
+     *            consistency level of reads and writes
+     * @return number of entries moved
+     */
+    public static long migrate(Class<?> entityClass, ConsistencyLevel consistencyLevel)
+    {
+        EntityMetadata m = KunderaMetadataManager.getEntityMetadata(entityClass);
+        if (m == null)
+        {
+            throw new KunderaException(entityClass + " is not a managed entity");
+        }
+        if (!CassandraIndexHelper.isUnshardedInvertedIndexInUse())
+        {
+            throw new KunderaException(
+                    "Inverted index buckets must be more than 1 and unsharded rows read while migrating");
+        }
+
+        String poolName = PelopsUtils.generatePoolName(m.getPersistenceUnit());
+        String indexColumnFamily = CassandraIndexHelper.getInvertedIndexTableName(m.getTableName());
+        long moved = 0;
+        for (EmbeddedColumn embeddedColumn : m.getEmbeddedColumnsAsList())
+        {
+            for (com.impetus.kundera.metadata.model.Column column : embeddedColumn.getColumns())
+            {
+                String rowKey = CassandraIndexHelper.getInvertedIndexRowKey(embeddedColumn.getField().getName(),
+                        column.getField().getName());
+                moved += migrateRow(poolName, indexColumnFamily, rowKey, consistencyLevel);
+            }
+        }
+        log.info("Moved " + moved + " inverted index entries of " + entityClass.getName() + " into bucket rows");
+        return moved;
+    }
+
+    /**
+     * Writes parent keys of each row of given join table into its inverse
+     * index table (created if missing), against child keys. Once every row is
+     * copied, secondary indexes on join table are dropped, as reverse lookups
+     * no longer need them. Inverse columns keep timestamps of join table
+     * columns, so that ones deleted since are not resurrected, and migration
+     * can be rerun if interrupted.
+     *
+     * @param persistenceUnit
+     *            persistence unit of join table
+     * @param joinTableName
+     *            the join table name
+     * @param consistencyLevel
+     *            consistency level of reads and writes
+     * @return number of entries written
+     */
+    public static long migrateJoinTable(String persistenceUnit, String joinTableName,
+            ConsistencyLevel consistencyLevel)
+    {
+        KeyspaceMetadataCache keyspaceMetadata = new KeyspaceMetadataCache(persistenceUnit);
+        if (!keyspaceMetadata.isColumnFamilyPresent(joinTableName))
+        {
+            throw new KunderaException("No join table " + joinTableName + " in keyspace");
+        }
+
+        String inverseIndexTableName = CassandraIndexHelper.getInvertedIndexTableName(joinTableName);
+        CfDef cfDef = new CfDef();
+        cfDef.setKeyspace(keyspaceMetadata.getKeyspaceDefinition().getName());
+        cfDef.setName(inverseIndexTableName);
+        cfDef.setKey_validation_class(UTF8Type.class.getSimpleName());
+        keyspaceMetadata.addColumnFamily(cfDef);
+
+        String poolName = PelopsUtils.generatePoolName(persistenceUnit);
+        RangeSliceIterator pages = new RangeSliceIterator(Pelops.createSelector(poolName), joinTableName,
+                Selector.newColumnsPredicateAll(false, Integer.MAX_VALUE), consistencyLevel, null, null, PAGE_SIZE, 0,
+                Integer.MAX_VALUE);
+        long written = 0;
+        while (pages.hasNext())
+        {
+            Mutator mutator = Pelops.createMutator(poolName);
+            int columns = 0;
+            for (KeySlice slice : pages.next())
+            {
+                byte[] parentKey = slice.getKey();
+                for (ColumnOrSuperColumn cosc : slice.getColumns())
+                {
+                    Column column = cosc.getColumn();
+                    Column inverseColumn = new Column();
+                    inverseColumn.setName(parentKey);
+                    inverseColumn.setValue(parentKey);
+                    inverseColumn.setTimestamp(column.getTimestamp());
+                    mutator.writeColumn(inverseIndexTableName, Bytes.fromByteArray(column.getValue()), inverseColumn);
+                    columns++;
+                }
+            }
+            if (columns > 0)
+            {
+                mutator.execute(consistencyLevel);
+                written += columns;
+            }
+        }
+
+        keyspaceMetadata.dropIndexes(joinTableName);
+        log.info("Wrote " + written + " entries of join table " + joinTableName + " into " + inverseIndexTableName);
+        return written;
+    }
+
+    /**
+     * Moves entries of an unsharded inverted index row into bucket rows, a
+     * page at a time.
+     *
+     * @param poolName
+     *            the pool name
+     * @param indexColumnFamily
+     *            inverted index column family
+     * @param rowKey
+     *            the unsharded row key
+     * @param consistencyLevel
+     *            the consistency level
+     * @return number of entries moved
+     */
+    private static long migrateRow(String poolName, String indexColumnFamily, String rowKey,
+            ConsistencyLevel consistencyLevel)
+    {
+        Selector selector = Pelops.createSelector(poolName);
+        long moved = 0;
+        Bytes start = Bytes.EMPTY;
+        while (true)
+        {
+            List<Column> columns = selector.getColumnsFromRow(indexColumnFamily, rowKey,
+                    Selector.newColumnsPredicate(start, Bytes.EMPTY, false, PAGE_SIZE), consistencyLevel);
+            // start is inclusive, returned again if its deletion is not yet
+            // visible.
+            if (!columns.isEmpty() && moved > 0 && start.equals(Bytes.fromByteArray(columns.get(0).getName())))
+            {
+                columns = columns.subList(1, columns.size());
+            }
+            if (columns.isEmpty())
+            {
+                return moved;
+            }
+
+            Mutator mutator = Pelops.createMutator(poolName);
+            List<Bytes> names = new ArrayList<Bytes>(columns.size());
+            for (Column column : columns)
+            {
+                String bucketRowKey = CassandraIndexHelper.getInvertedIndexBucketRowKey(rowKey, column.getName());
+                mutator.writeColumn(indexColumnFamily, Bytes.fromUTF8(bucketRowKey), column);
+                names.add(Bytes.fromByteArray(column.getName()));
+            }
+            mutator.deleteColumns(indexColumnFamily, rowKey, names);
+            mutator.execute(consistencyLevel);
+
+            moved += columns.size();
+            start = names.get(names.size() - 1);
+        }
+    }
+}
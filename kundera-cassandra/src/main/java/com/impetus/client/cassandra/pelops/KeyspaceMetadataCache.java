@@ -0,0 +1,339 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.client.cassandra.pelops;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.cassandra.thrift.CfDef;
+import org.apache.cassandra.thrift.ColumnDef;
+import org.apache.cassandra.thrift.InvalidRequestException;
+import org.apache.cassandra.thrift.KsDef;
+import org.apache.cassandra.thrift.NotFoundException;
+import org.apache.cassandra.thrift.SchemaDisagreementException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.thrift.TException;
+import org.scale7.cassandra.pelops.Bytes;
+import org.scale7.cassandra.pelops.Pelops;
+import org.scale7.cassandra.pelops.pool.IThriftPool;
+import org.scale7.cassandra.pelops.pool.IThriftPool.IPooledConnection;
+
+import com.impetus.client.cassandra.config.CassandraPropertyReader;
+import com.impetus.client.cassandra.config.CassandraPropertyReader.CassandraSchemaMetadata;
+import com.impetus.kundera.KunderaException;
+
+/**
+ * Holds keyspace definition of a persistence unit, so that schema metadata
+ * required while reading or writing data is looked up in memory rather than
+ * with a describe_keyspace call per operation. Definition is loaded on first
+ * use and reloaded once it is older than
+ * {@link com.impetus.kundera.Constants#KEYSPACE_METADATA_REFRESH_INTERVAL}, so
+ * that schema changed by other processes is seen, or right after schema is
+ * changed through this cache (or after {@link #refresh()}).
+ * 
+ * @author impetus
+ */
+final class KeyspaceMetadataCache
+{
+    /** The log. */
+    private static Log log = LogFactory.getLog(KeyspaceMetadataCache.class);
+
+    /** Name of connection pool of persistence unit. */
+    private final String poolName;
+
+    /** Cached keyspace definition, null until loaded. */
+    private volatile KsDef ksDef;
+
+    /** Time (in millis) at which cached definition was loaded. */
+    private volatile long loadedAt;
+
+    /**
+     * Instantiates a new keyspace metadata cache.
+     * 
+     * @param persistenceUnit
+     *            the persistence unit
+     */
+    KeyspaceMetadataCache(String persistenceUnit)
+    {
+        this.poolName = PelopsUtils.generatePoolName(persistenceUnit);
+    }
+
+    /**
+     * Returns keyspace definition, loads it if not already cached.
+     * 
+     * @return keyspace definition
+     */
+    KsDef getKeyspaceDefinition()
+    {
+        KsDef def = ksDef;
+        if (def == null || isExpired())
+        {
+            synchronized (this)
+            {
+                if (ksDef == null || isExpired())
+                {
+                    ksDef = describeKeyspace();
+                    loadedAt = System.currentTimeMillis();
+                }
+                def = ksDef;
+            }
+        }
+        return def;
+    }
+
+    /**
+     * Returns definition of given column family, null if there is no such
+     * column family in keyspace.
+     * 
+     * @param columnFamily
+     *            column family name
+     * @return column family definition
+     */
+    CfDef getColumnFamilyDefinition(String columnFamily)
+    {
+        List<CfDef> cfDefs = getKeyspaceDefinition().getCf_defs();
+        if (cfDefs != null)
+        {
+            for (CfDef cfDef : cfDefs)
+            {
+                if (cfDef.getName().equals(columnFamily))
+                {
+                    return cfDef;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether given column family exists in keyspace.
+     * 
+     * @param columnFamily
+     *            column family name
+     * @return true, if column family exists
+     */
+    boolean isColumnFamilyPresent(String columnFamily)
+    {
+        return getColumnFamilyDefinition(columnFamily) != null;
+    }
+
+    /**
+     * Checks whether cached definition is older than refresh interval.
+     * 
+     * @return true, if definition should be reloaded
+     */
+    private boolean isExpired()
+    {
+        CassandraSchemaMetadata csmd = CassandraPropertyReader.csmd;
+        long refreshInterval = (csmd != null ? csmd.getKeyspaceMetadataRefreshInterval()
+                : CassandraSchemaMetadata.DEFAULT_KEYSPACE_METADATA_REFRESH_INTERVAL) * 1000L;
+        return System.currentTimeMillis() - loadedAt > refreshInterval;
+    }
+
+    /**
+     * Discards cached definition, it is reloaded on next access.
+     */
+    void refresh()
+    {
+        ksDef = null;
+    }
+
+    /**
+     * Checks whether a secondary index exists on given column of a column
+     * family.
+     * 
+     * @param columnFamily
+     *            column family name
+     * @param columnName
+     *            column name
+     * @return true, if column is indexed
+     */
+    boolean isColumnIndexed(String columnFamily, String columnName)
+    {
+        CfDef cfDef = getColumnFamilyDefinition(columnFamily);
+        if (cfDef != null && cfDef.getColumn_metadata() != null)
+        {
+            for (ColumnDef columnDef : cfDef.getColumn_metadata())
+            {
+                if (columnDef.getIndex_type() != null && columnName.equals(Bytes.toUTF8(columnDef.getName())))
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds given column family to keyspace, unless already present. Meant for
+     * administrative tasks such as migrations, data path never changes
+     * schema.
+     * 
+     * @param cfDef
+     *            column family definition
+     */
+    void addColumnFamily(CfDef cfDef)
+    {
+        synchronized (this)
+        {
+            refresh();
+            if (isColumnFamilyPresent(cfDef.getName()))
+            {
+                return;
+            }
+            IPooledConnection connection = getPool().getConnection();
+            try
+            {
+                connection.getAPI().system_add_column_family(cfDef);
+            }
+            catch (InvalidRequestException e)
+            {
+                log.error("Error while adding column family " + cfDef.getName() + ", Caused by:" + e.getMessage());
+                throw new KunderaException(e);
+            }
+            catch (SchemaDisagreementException e)
+            {
+                log.error("Error while adding column family " + cfDef.getName() + ", Caused by:" + e.getMessage());
+                throw new KunderaException(e);
+            }
+            catch (TException e)
+            {
+                log.error("Error while adding column family " + cfDef.getName() + ", Caused by:" + e.getMessage());
+                throw new KunderaException(e);
+            }
+            finally
+            {
+                connection.release();
+                refresh();
+            }
+        }
+    }
+
+    /**
+     * Drops all secondary indexes of given column family. Meant for
+     * administrative tasks such as migrations, data path never changes
+     * schema.
+     * 
+     * @param columnFamily
+     *            column family name
+     */
+    void dropIndexes(String columnFamily)
+    {
+        synchronized (this)
+        {
+            refresh();
+            CfDef cfDef = getColumnFamilyDefinition(columnFamily);
+            if (cfDef == null || cfDef.getColumn_metadata() == null)
+            {
+                return;
+            }
+
+            CfDef columnFamilyDefToUpdate = cfDef.deepCopy();
+            List<ColumnDef> columnDefs = new ArrayList<ColumnDef>();
+            boolean indexed = false;
+            for (ColumnDef columnDef : columnFamilyDefToUpdate.getColumn_metadata())
+            {
+                if (columnDef.getIndex_type() != null)
+                {
+                    indexed = true;
+                }
+                else
+                {
+                    columnDefs.add(columnDef);
+                }
+            }
+            if (!indexed)
+            {
+                return;
+            }
+            columnFamilyDefToUpdate.setColumn_metadata(columnDefs);
+
+            IPooledConnection connection = getPool().getConnection();
+            try
+            {
+                connection.getAPI().system_update_column_family(columnFamilyDefToUpdate);
+            }
+            catch (InvalidRequestException e)
+            {
+                log.error("Error while dropping indexes of column family " + columnFamily + ", Caused by:"
+                        + e.getMessage());
+                throw new KunderaException(e);
+            }
+            catch (SchemaDisagreementException e)
+            {
+                log.error("Error while dropping indexes of column family " + columnFamily + ", Caused by:"
+                        + e.getMessage());
+                throw new KunderaException(e);
+            }
+            catch (TException e)
+            {
+                log.error("Error while dropping indexes of column family " + columnFamily + ", Caused by:"
+                        + e.getMessage());
+                throw new KunderaException(e);
+            }
+            finally
+            {
+                connection.release();
+                refresh();
+            }
+        }
+    }
+
+    /**
+     * Reads keyspace definition from database.
+     * 
+     * @return keyspace definition
+     */
+    private KsDef describeKeyspace()
+    {
+        IThriftPool pool = getPool();
+        IPooledConnection connection = pool.getConnection();
+        try
+        {
+            return connection.getAPI().describe_keyspace(pool.getKeyspace());
+        }
+        catch (NotFoundException e)
+        {
+            log.error("Error while reading keyspace definition, Caused by:" + e.getMessage());
+            throw new KunderaException(e);
+        }
+        catch (InvalidRequestException e)
+        {
+            log.error("Error while reading keyspace definition, Caused by:" + e.getMessage());
+            throw new KunderaException(e);
+        }
+        catch (TException e)
+        {
+            log.error("Error while reading keyspace definition, Caused by:" + e.getMessage());
+            throw new KunderaException(e);
+        }
+        finally
+        {
+            connection.release();
+        }
+    }
+
+    /**
+     * Gets the pool.
+     * 
+     * @return the pool
+     */
+    private IThriftPool getPool()
+    {
+        return Pelops.getDbConnPool(poolName);
+    }
+}
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.client.cassandra.pelops;
+
+import java.util.Set;
+
+import org.scale7.cassandra.pelops.pool.CommonsBackedPool;
+import org.scale7.cassandra.pelops.pool.CommonsBackedPool.INodeSelectionStrategy;
+import org.scale7.cassandra.pelops.pool.CommonsBackedPool.PooledNode;
+
+/**
+ * Selects node a connection is borrowed from by latency and load, rather than
+ * load alone. A node scores its average latency times one more than its
+ * borrowed connections, raised by its recent error rate, and lowest score
+ * wins. Nodes without latency recorded yet score by load alone, so that they
+ * are tried. Suspended nodes, and node hinted to be avoided while others are
+ * left, are not selected.
+ *
+ * @author impetus
+ */
+final class LatencyAwareNodeSelectionStrategy implements INodeSelectionStrategy
+{
+
+    /** Milliseconds added to latency of each node, weighing load of idle fast nodes. */
+    private static final double LATENCY_FLOOR_MILLIS = 1;
+
+    /** Highest error rate accounted for, so that no score is infinite. */
+    private static final double MAX_ERROR_RATE = 0.9;
+
+    /** Metrics of pool. */
+    private final PoolMetrics metrics;
+
+    /**
+     * Instantiates a new latency aware node selection strategy.
+     *
+     * @param metrics
+     *            metrics of pool
+     */
+    LatencyAwareNodeSelectionStrategy(PoolMetrics metrics)
+    {
+        this.metrics = metrics;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.scale7.cassandra.pelops.pool.CommonsBackedPool.INodeSelectionStrategy
+     * #select(org.scale7.cassandra.pelops.pool.CommonsBackedPool,
+     * java.util.Set, java.lang.String)
+     */
+    @Override
+    public PooledNode select(CommonsBackedPool pool, Set<String> nodeAddresses, String notNodeHint)
+    {
+        PooledNode selected = null;
+        double selectedScore = Double.MAX_VALUE;
+        PooledNode hinted = null;
+        for (String address : nodeAddresses)
+        {
+            metrics.addHost(address);
+            PooledNode node = pool.getPooledNode(address);
+            if (node == null || node.isSuspended())
+            {
+                continue;
+            }
+            if (address.equals(notNodeHint))
+            {
+                hinted = node;
+                continue;
+            }
+            double score = score(address, node.getNumActive());
+            if (score < selectedScore)
+            {
+                selected = node;
+                selectedScore = score;
+            }
+        }
+        return selected != null ? selected : hinted;
+    }
+
+    /**
+     * Scores a node, lower being better.
+     *
+     * @param address
+     *            node address
+     * @param active
+     *            connections borrowed from node
+     * @return the score
+     */
+    double score(String address, int active)
+    {
+        double errorRate = Math.min(metrics.getErrorRate(address), MAX_ERROR_RATE);
+        return (metrics.getLatencyMillis(address) + LATENCY_FLOOR_MILLIS) * (1 + active) / (1 - errorRate);
+    }
+}
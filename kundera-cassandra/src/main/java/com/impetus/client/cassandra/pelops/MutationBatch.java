@@ -0,0 +1,197 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.client.cassandra.pelops;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.cassandra.thrift.Column;
+import org.apache.cassandra.thrift.ColumnOrSuperColumn;
+import org.apache.cassandra.thrift.CounterColumn;
+import org.apache.cassandra.thrift.CounterSuperColumn;
+import org.apache.cassandra.thrift.Mutation;
+import org.apache.cassandra.thrift.SuperColumn;
+import org.apache.cassandra.utils.ByteBufferUtil;
+
+/**
+ * Mutations buffered to be written in a single batch_mutate call. Batch is
+ * kept as such until it is written, each attempt to write it sending a fresh
+ * copy of its mutations, so that a failed attempt may be retried and
+ * concurrent attempts share no state.
+ *
+ * @author impetus
+ */
+final class MutationBatch
+{
+
+    /** Mutations by row key and column family. */
+    private final Map<ByteBuffer, Map<String, List<Mutation>>> mutations = new LinkedHashMap<ByteBuffer, Map<String, List<Mutation>>>();
+
+    /** Whether batch holds counter updates. */
+    private boolean counters;
+
+    /**
+     * Adds columns of a row.
+     *
+     * @param columnFamily
+     *            the column family
+     * @param rowKey
+     *            the row key
+     * @param columns
+     *            the columns, carrying their timestamps
+     */
+    void writeColumns(String columnFamily, String rowKey, List<Column> columns)
+    {
+        List<Mutation> rowMutations = getMutations(columnFamily, rowKey);
+        for (Column column : columns)
+        {
+            rowMutations.add(new Mutation().setColumn_or_supercolumn(new ColumnOrSuperColumn().setColumn(column)));
+        }
+    }
+
+    /**
+     * Adds a super column of a row.
+     *
+     * @param columnFamily
+     *            the column family
+     * @param rowKey
+     *            the row key
+     * @param superColumn
+     *            the super column
+     */
+    void writeSuperColumn(String columnFamily, String rowKey, SuperColumn superColumn)
+    {
+        getMutations(columnFamily, rowKey).add(
+                new Mutation().setColumn_or_supercolumn(new ColumnOrSuperColumn().setSuper_column(superColumn)));
+    }
+
+    /**
+     * Adds counter columns of a row.
+     *
+     * @param columnFamily
+     *            the column family
+     * @param rowKey
+     *            the row key
+     * @param columns
+     *            the counter columns
+     */
+    void writeCounterColumns(String columnFamily, String rowKey, List<CounterColumn> columns)
+    {
+        List<Mutation> rowMutations = getMutations(columnFamily, rowKey);
+        for (CounterColumn column : columns)
+        {
+            rowMutations.add(new Mutation().setColumn_or_supercolumn(new ColumnOrSuperColumn()
+                    .setCounter_column(column)));
+        }
+        counters = true;
+    }
+
+    /**
+     * Adds a counter super column of a row.
+     *
+     * @param columnFamily
+     *            the column family
+     * @param rowKey
+     *            the row key
+     * @param superColumn
+     *            the counter super column
+     */
+    void writeCounterSuperColumn(String columnFamily, String rowKey, CounterSuperColumn superColumn)
+    {
+        getMutations(columnFamily, rowKey).add(
+                new Mutation().setColumn_or_supercolumn(new ColumnOrSuperColumn()
+                        .setCounter_super_column(superColumn)));
+        counters = true;
+    }
+
+    /**
+     * Whether batch holds counter updates, which are not idempotent.
+     *
+     * @return true, if it does
+     */
+    boolean hasCounters()
+    {
+        return counters;
+    }
+
+    /**
+     * Whether batch holds no mutation.
+     *
+     * @return true, if empty
+     */
+    boolean isEmpty()
+    {
+        return mutations.isEmpty();
+    }
+
+    /**
+     * Returns a copy of mutations, to be sent by a single attempt.
+     *
+     * @return unmodifiable mutations by row key and column family
+     */
+    Map<ByteBuffer, Map<String, List<Mutation>>> toMutationMap()
+    {
+        Map<ByteBuffer, Map<String, List<Mutation>>> copy = new HashMap<ByteBuffer, Map<String, List<Mutation>>>(
+                mutations.size());
+        for (Map.Entry<ByteBuffer, Map<String, List<Mutation>>> row : mutations.entrySet())
+        {
+            Map<String, List<Mutation>> rowCopy = new HashMap<String, List<Mutation>>(row.getValue().size());
+            for (Map.Entry<String, List<Mutation>> columnFamily : row.getValue().entrySet())
+            {
+                List<Mutation> columnFamilyCopy = new ArrayList<Mutation>(columnFamily.getValue().size());
+                for (Mutation mutation : columnFamily.getValue())
+                {
+                    columnFamilyCopy.add(new Mutation(mutation));
+                }
+                rowCopy.put(columnFamily.getKey(), Collections.unmodifiableList(columnFamilyCopy));
+            }
+            copy.put(row.getKey().duplicate(), Collections.unmodifiableMap(rowCopy));
+        }
+        return Collections.unmodifiableMap(copy);
+    }
+
+    /**
+     * Returns mutations of a row of a column family, created on first use.
+     *
+     * @param columnFamily
+     *            the column family
+     * @param rowKey
+     *            the row key
+     * @return the mutations
+     */
+    private List<Mutation> getMutations(String columnFamily, String rowKey)
+    {
+        ByteBuffer key = ByteBufferUtil.bytes(rowKey);
+        Map<String, List<Mutation>> row = mutations.get(key);
+        if (row == null)
+        {
+            row = new HashMap<String, List<Mutation>>();
+            mutations.put(key, row);
+        }
+        List<Mutation> rowMutations = row.get(columnFamily);
+        if (rowMutations == null)
+        {
+            rowMutations = new ArrayList<Mutation>();
+            row.put(columnFamily, rowMutations);
+        }
+        return rowMutations;
+    }
+}
@@ -19,18 +19,23 @@ package com.impetus.client.cassandra.pelops;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.persistence.PersistenceException;
 
 import org.apache.cassandra.thrift.Cassandra;
-import org.apache.cassandra.thrift.CfDef;
 import org.apache.cassandra.thrift.Column;
-import org.apache.cassandra.thrift.ColumnDef;
 import org.apache.cassandra.thrift.ColumnOrSuperColumn;
 import org.apache.cassandra.thrift.ColumnParent;
 import org.apache.cassandra.thrift.ColumnPath;
@@ -41,17 +46,13 @@ import org.apache.cassandra.thrift.CqlResult;
 import org.apache.cassandra.thrift.CqlRow;
 import org.apache.cassandra.thrift.IndexClause;
 import org.apache.cassandra.thrift.IndexOperator;
-import org.apache.cassandra.thrift.IndexType;
 import org.apache.cassandra.thrift.InvalidRequestException;
 import org.apache.cassandra.thrift.KeySlice;
-import org.apache.cassandra.thrift.KsDef;
-import org.apache.cassandra.thrift.NotFoundException;
 import org.apache.cassandra.thrift.SchemaDisagreementException;
 import org.apache.cassandra.thrift.SlicePredicate;
 import org.apache.cassandra.thrift.SuperColumn;
 import org.apache.cassandra.thrift.TimedOutException;
 import org.apache.cassandra.thrift.UnavailableException;
-import org.apache.cassandra.utils.ByteBufferUtil;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.thrift.TException;
@@ -62,16 +63,17 @@ import org.scale7.cassandra.pelops.Pelops;
 import org.scale7.cassandra.pelops.RowDeletor;
 import org.scale7.cassandra.pelops.Selector;
 import org.scale7.cassandra.pelops.exceptions.PelopsException;
-import org.scale7.cassandra.pelops.pool.IThriftPool;
-import org.scale7.cassandra.pelops.pool.IThriftPool.IPooledConnection;
 
 import com.impetus.client.cassandra.common.CassandraIndexHelper;
 import com.impetus.client.cassandra.pelops.PelopsDataHandler.ThriftRow;
 import com.impetus.client.cassandra.query.CassQuery;
 import com.impetus.kundera.KunderaException;
+import com.impetus.kundera.PersistenceProperties;
+import com.impetus.kundera.client.Batcher;
 import com.impetus.kundera.client.Client;
 import com.impetus.kundera.client.ClientBase;
 import com.impetus.kundera.client.EnhanceEntity;
+import com.impetus.kundera.client.HintsAware;
 import com.impetus.kundera.db.DataRow;
 import com.impetus.kundera.db.RelationHolder;
 import com.impetus.kundera.db.SearchResult;
@@ -79,6 +81,7 @@ import com.impetus.kundera.graph.Node;
 import com.impetus.kundera.index.IndexManager;
 import com.impetus.kundera.metadata.KunderaMetadataManager;
 import com.impetus.kundera.metadata.model.EntityMetadata;
+import com.impetus.kundera.metadata.model.PersistenceUnitMetadata;
 import com.impetus.kundera.persistence.EntityReader;
 import com.impetus.kundera.persistence.context.jointable.JoinTableData;
 import com.impetus.kundera.property.PropertyAccessException;
@@ -92,11 +95,32 @@ import com.impetus.kundera.query.KunderaQuery.FilterClause;
  * @author animesh.kumar
  * @since 0.1
  */
-public class PelopsClient extends ClientBase implements Client<CassQuery>
+public class PelopsClient extends ClientBase implements Client<CassQuery>, Batcher, HintsAware
 {
 
+    /** Hints understood by this client. */
+    private static final String[] HINT_NAMES = { PersistenceProperties.KUNDERA_CONSISTENCY_LEVEL,
+            PersistenceProperties.KUNDERA_QUERY_TIMEOUT, PersistenceProperties.KUNDERA_PAGE_SIZE,
+            PersistenceProperties.KUNDERA_RETRY_ATTEMPTS };
+
+    /** Consistency level of current operations, as hinted. */
     private ConsistencyLevel consistencyLevel = ConsistencyLevel.ONE;
 
+    /** Hints applied unless overridden, from persistence unit properties. */
+    private final Map<String, Object> defaultHints = new HashMap<String, Object>();
+
+    /** Hints applied to current operations, over default ones. */
+    private Map<String, Object> hints = Collections.emptyMap();
+
+    /** Milliseconds an operation may take before it is retried, 0 for none. */
+    private long timeout;
+
+    /** Rows read per round trip while paging, 0 for configured default. */
+    private int pageSize;
+
+    /** Number of times an operation is retried. */
+    private int retryAttempts;
+
     /** log for this class. */
     private static Log log = LogFactory.getLog(PelopsClient.class);
 
@@ -112,6 +136,28 @@ public class PelopsClient extends ClientBase implements Client<CassQuery>
     /** The timestamp. */
     private long timestamp;
 
+    /** Default maximum number of rows written in a single batch_mutate. */
+    private static final int DEFAULT_BATCH_SIZE = 100;
+
+    /** Maximum number of rows written in a single batch_mutate. */
+    private int maxBatchSize = DEFAULT_BATCH_SIZE;
+
+    /** Rows to be written at the end of flush, null if there is none. */
+    private MutationBatch batch;
+
+    /** Number of rows buffered in batch. */
+    private int batchedRows;
+
+    /** Join tables warned about missing their inverse index table. */
+    private static final Set<String> joinTablesWithoutInverseIndex = Collections
+            .newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /** Cached keyspace definition, shared by all clients of this factory. */
+    private KeyspaceMetadataCache keyspaceMetadata;
+
+    /** Name of connection pool of persistence unit. */
+    private final String poolName;
+
     /**
      * default constructor.
      * 
@@ -121,13 +167,203 @@ public class PelopsClient extends ClientBase implements Client<CassQuery>
      *            the reader
      * @param persistenceUnit
      *            the persistence unit
+     * @param keyspaceMetadata
+     *            cached keyspace definition
      */
-    public PelopsClient(IndexManager indexManager, EntityReader reader, String persistenceUnit)
+    public PelopsClient(IndexManager indexManager, EntityReader reader, String persistenceUnit,
+            KeyspaceMetadataCache keyspaceMetadata)
     {
         this.persistenceUnit = persistenceUnit;
+        this.poolName = PelopsUtils.generatePoolName(persistenceUnit);
+        this.keyspaceMetadata = keyspaceMetadata;
         this.indexManager = indexManager;
         this.handler = new PelopsDataHandler();
         this.reader = reader;
+        setBatchSize(persistenceUnit);
+        setDefaultHints(persistenceUnit);
+    }
+
+    /**
+     * Sets default hints from persistence unit properties, if provided.
+     * 
+     * @param persistenceUnit
+     *            the persistence unit
+     */
+    private void setDefaultHints(String persistenceUnit)
+    {
+        PersistenceUnitMetadata puMetadata = KunderaMetadataManager.getPersistenceUnitMetadata(persistenceUnit);
+        if (puMetadata != null)
+        {
+            for (String name : HINT_NAMES)
+            {
+                String value = puMetadata.getProperty(name);
+                if (value != null)
+                {
+                    defaultHints.put(name, value);
+                }
+            }
+        }
+        setHints(hints);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.impetus.kundera.client.HintsAware#getHints()
+     */
+    @Override
+    public Map<String, Object> getHints()
+    {
+        return hints;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.impetus.kundera.client.HintsAware#setHints(java.util.Map)
+     */
+    @Override
+    public void setHints(Map<String, Object> hints)
+    {
+        Map<String, Object> applied = new HashMap<String, Object>(defaultHints);
+        applied.putAll(hints);
+
+        Object level = applied.get(PersistenceProperties.KUNDERA_CONSISTENCY_LEVEL);
+        ConsistencyLevel hintedLevel = ConsistencyLevel.ONE;
+        if (level instanceof ConsistencyLevel)
+        {
+            hintedLevel = (ConsistencyLevel) level;
+        }
+        else if (level != null)
+        {
+            try
+            {
+                hintedLevel = ConsistencyLevel.valueOf(level.toString().trim().toUpperCase());
+            }
+            catch (IllegalArgumentException e)
+            {
+                throw new IllegalArgumentException("Invalid value " + level + " for "
+                        + PersistenceProperties.KUNDERA_CONSISTENCY_LEVEL, e);
+            }
+        }
+        int hintedTimeout = getIntHint(applied, PersistenceProperties.KUNDERA_QUERY_TIMEOUT);
+        int hintedPageSize = getIntHint(applied, PersistenceProperties.KUNDERA_PAGE_SIZE);
+        int hintedRetryAttempts = getIntHint(applied, PersistenceProperties.KUNDERA_RETRY_ATTEMPTS);
+
+        this.consistencyLevel = hintedLevel;
+        this.timeout = hintedTimeout;
+        this.pageSize = hintedPageSize;
+        this.retryAttempts = hintedRetryAttempts;
+        this.hints = Collections.unmodifiableMap(new HashMap<String, Object>(hints));
+    }
+
+    /**
+     * Returns consistency level of current operations.
+     * 
+     * @return the consistency level
+     */
+    ConsistencyLevel getConsistencyLevel()
+    {
+        return consistencyLevel;
+    }
+
+    /**
+     * Returns value of a numeric hint.
+     * 
+     * @param hints
+     *            the hints
+     * @param name
+     *            hint name
+     * @return the value, 0 if not given
+     */
+    private static int getIntHint(Map<String, Object> hints, String name)
+    {
+        Object value = hints.get(name);
+        if (value == null)
+        {
+            return 0;
+        }
+        try
+        {
+            int intValue = value instanceof Number ? ((Number) value).intValue() : Integer.parseInt(value
+                    .toString().trim());
+            if (intValue < 0)
+            {
+                throw new IllegalArgumentException("Invalid value " + value + " for " + name);
+            }
+            return intValue;
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException("Invalid value " + value + " for " + name, e);
+        }
+    }
+
+    /**
+     * Returns number of rows read per round trip while paging.
+     * 
+     * @return the page size
+     */
+    private int getPageSize()
+    {
+        return pageSize > 0 ? pageSize : handler.getRangeSlicePageSize();
+    }
+
+    /**
+     * Runs a read with hinted timeout and retries.
+     * 
+     * @param <T>
+     *            result type
+     * @param operation
+     *            the operation, reading only
+     * @return the result
+     */
+    private <T> T execute(Callable<T> operation)
+    {
+        return SpeculativeRetry.run(operation, timeout, retryAttempts);
+    }
+
+    /**
+     * Runs an idempotent write with hinted retries, one attempt after another.
+     * 
+     * @param <T>
+     *            result type
+     * @param operation
+     *            the operation, safe to run more than once
+     * @return the result
+     */
+    private <T> T executeWrite(Callable<T> operation)
+    {
+        return SpeculativeRetry.retry(operation, retryAttempts);
+    }
+
+    /**
+     * Sets maximum batch size from persistence unit property, if provided.
+     * 
+     * @param persistenceUnit
+     *            the persistence unit
+     */
+    private void setBatchSize(String persistenceUnit)
+    {
+        PersistenceUnitMetadata puMetadata = KunderaMetadataManager.getPersistenceUnitMetadata(persistenceUnit);
+        String batchSize = puMetadata != null ? puMetadata.getProperty(PersistenceProperties.KUNDERA_BATCH_SIZE)
+                : null;
+        if (batchSize != null)
+        {
+            try
+            {
+                int size = Integer.parseInt(batchSize.trim());
+                if (size > 0)
+                {
+                    maxBatchSize = size;
+                }
+            }
+            catch (NumberFormatException nfe)
+            {
+                log.warn("Invalid value " + batchSize + " for " + PersistenceProperties.KUNDERA_BATCH_SIZE
+                        + ", using default batch size " + DEFAULT_BATCH_SIZE);
+            }
+        }
     }
 
     /*
@@ -183,24 +419,32 @@ public class PelopsClient extends ClientBase implements Client<CassQuery>
             throw new PersistenceException("PelopsClient is closed.");
         }
 
-        Selector selector = Pelops.createSelector(PelopsUtils.generatePoolName(getPersistenceUnit()));
+        final Selector selector = Pelops.createSelector(poolName);
         // selector.
 
         // PelopsDataHandler handler = new PelopsDataHandler(this);
 
-        List entities = null;
-        try
-        {
-            // TODO
-            entities = handler.fromThriftRow(selector, entityClass, metadata, relationNames, isWrapReq,
-                    consistencyLevel, rowIds);
-        }
-        catch (Exception e)
+        final Class clazz = entityClass;
+        final List<String> relations = relationNames;
+        final boolean wrap = isWrapReq;
+        final EntityMetadata m = metadata;
+        final Object[] keys = rowIds;
+        final ConsistencyLevel level = consistencyLevel;
+        return execute(new Callable<List>()
         {
-            throw new KunderaException(e);
-        }
-
-        return entities;
+            @Override
+            public List call()
+            {
+                try
+                {
+                    return handler.fromThriftRow(selector, clazz, m, relations, wrap, level, keys);
+                }
+                catch (Exception e)
+                {
+                    throw new KunderaException(e);
+                }
+            }
+        });
     }
 
     /*
@@ -251,14 +495,18 @@ public class PelopsClient extends ClientBase implements Client<CassQuery>
         {
             throw new PersistenceException("PelopsClient is closed.");
         }
+
+        // Buffered writes go first, so that this delete is applied after them.
+        executeBatch();
+
         EntityMetadata metadata = KunderaMetadataManager.getEntityMetadata(entity.getClass());
         if (metadata.isCounterColumnType())
         {
             ColumnPath path = new ColumnPath(metadata.getTableName());
-            Cassandra.Client cassandra_client = Pelops
-                    .getDbConnPool(PelopsUtils.generatePoolName(getPersistenceUnit())).getConnection().getAPI();
+            BorrowedConnection connection = new BorrowedConnection(poolName);
             try
             {
+                Cassandra.Client cassandra_client = connection.getAPI();
                 cassandra_client.remove_counter(ByteBuffer.wrap(pKey.toString().getBytes()), path, consistencyLevel);
             }
             catch (InvalidRequestException ire)
@@ -268,25 +516,43 @@ public class PelopsClient extends ClientBase implements Client<CassQuery>
             }
             catch (UnavailableException ue)
             {
+                connection.failed(ue);
                 log.error("Error during executing delete, Caused by :" + ue.getMessage());
                 throw new PersistenceException(ue);
             }
             catch (TimedOutException toe)
             {
+                connection.failed(toe);
                 log.error("Error during executing delete, Caused by :" + toe.getMessage());
                 throw new PersistenceException(toe);
             }
             catch (TException te)
             {
+                connection.failed(te);
                 log.error("Error during executing delete, Caused by :" + te.getMessage());
                 throw new PersistenceException(te);
             }
+            finally
+            {
+                connection.release();
+            }
         }
         else
         {
-            RowDeletor rowDeletor = Pelops.createRowDeletor(PelopsUtils.generatePoolName(getPersistenceUnit()));
-            rowDeletor.deleteRow(metadata.getTableName(), pKey.toString(), consistencyLevel);
-
+            final RowDeletor rowDeletor = Pelops.createRowDeletor(poolName);
+            final String tableName = metadata.getTableName();
+            final String rowKey = pKey.toString();
+            final ConsistencyLevel level = consistencyLevel;
+            // deletor keeps timestamp it is created with, for every attempt.
+            executeWrite(new Callable<Void>()
+            {
+                @Override
+                public Void call()
+                {
+                    rowDeletor.deleteRow(tableName, rowKey, level);
+                    return null;
+                }
+            });
         }
 
         // Delete from Lucene if applicable
@@ -307,6 +573,7 @@ public class PelopsClient extends ClientBase implements Client<CassQuery>
     @Override
     public final void close()
     {
+        executeBatch();
         this.indexManager.flush();
         this.handler = null;
         closed = true;
@@ -314,21 +581,25 @@ public class PelopsClient extends ClientBase implements Client<CassQuery>
     }
 
     /**
-     * Persists records into Join Table
+     * Persists records into Join Table. If inverse index table for join table
+     * exists (created by schema manager or by
+     * {@link InvertedIndexMigrator#migrateJoinTable(String, String, ConsistencyLevel)}),
+     * parent keys are also written to it against each child key. Schema is
+     * never changed here.
      */
     public void persistJoinTable(JoinTableData joinTableData)
     {
-
-        String poolName = PelopsUtils.generatePoolName(getPersistenceUnit());
-        Mutator mutator = Pelops.createMutator(poolName);
-
         String joinTableName = joinTableData.getJoinTableName();
         String invJoinColumnName = joinTableData.getInverseJoinColumnName();
         Map<Object, Set<Object>> joinTableRecords = joinTableData.getJoinTableRecords();
 
+        String inverseIndexTableName = CassandraIndexHelper.getInvertedIndexTableName(joinTableName);
+        boolean isInverseIndexed = isInverseIndexed(joinTableName);
+
         for (Object key : joinTableRecords.keySet())
         {
             Set<Object> values = joinTableRecords.get(key);
+            String pk = (String) key;
 
             List<Column> columns = new ArrayList<Column>();
 
@@ -340,13 +611,21 @@ public class PelopsClient extends ClientBase implements Client<CassQuery>
                 column.setTimestamp(System.currentTimeMillis());
 
                 columns.add(column);
-            }
 
-            createIndexesOnColumns(joinTableName, poolName, columns);
-            String pk = (String) key;
+                if (isInverseIndexed)
+                {
+                    Column inverseColumn = new Column();
+                    inverseColumn.setName(PropertyAccessorFactory.STRING.toBytes(pk));
+                    inverseColumn.setValue(PropertyAccessorFactory.STRING.toBytes(pk));
+                    inverseColumn.setTimestamp(column.getTimestamp());
 
-            mutator.writeColumns(joinTableName, Bytes.fromUTF8(pk), Arrays.asList(columns.toArray(new Column[0])));
-            mutator.execute(consistencyLevel);
+                    getBatch().writeColumns(inverseIndexTableName, (String) value, Arrays.asList(inverseColumn));
+                    onRowsBatched(1);
+                }
+            }
+
+            getBatch().writeColumns(joinTableName, pk, columns);
+            onRowsBatched(1);
         }
 
     }
@@ -364,7 +643,7 @@ public class PelopsClient extends ClientBase implements Client<CassQuery>
     public <E> List<E> getColumnsById(String joinTableName, String joinColumnName, String inverseJoinColumnName,
             String parentId)
     {
-        Selector selector = Pelops.createSelector(PelopsUtils.generatePoolName(getPersistenceUnit()));
+        Selector selector = Pelops.createSelector(poolName);
         List<Column> columns = selector.getColumnsFromRow(joinTableName, Bytes.fromUTF8(parentId),
                 Selector.newColumnsPredicateAll(true, 10), consistencyLevel);
 
@@ -373,6 +652,48 @@ public class PelopsClient extends ClientBase implements Client<CassQuery>
         return foreignKeys;
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.impetus.kundera.client.Client#getColumnsByIds(java.lang.String,
+     * java.lang.String, java.lang.String, java.util.List)
+     */
+    @Override
+    public <E> Map<String, List<E>> getColumnsByIds(String joinTableName, String joinColumnName,
+            String inverseJoinColumnName, List<String> parentIds)
+    {
+        Map<String, List<E>> foreignKeys = new LinkedHashMap<String, List<E>>();
+        if (parentIds == null || parentIds.isEmpty())
+        {
+            return foreignKeys;
+        }
+
+        Selector selector = Pelops.createSelector(poolName);
+        SlicePredicate slicePredicate = Selector.newColumnsPredicateAll(true, 10000);
+        int batchSize = handler.getMultigetBatchSize();
+
+        List<String> ids = new ArrayList<String>(new LinkedHashSet<String>(parentIds));
+        for (int start = 0; start < ids.size(); start += batchSize)
+        {
+            List<String> chunk = ids.subList(start, Math.min(start + batchSize, ids.size()));
+            List<Bytes> rowKeys = new ArrayList<Bytes>(chunk.size());
+            for (String parentId : chunk)
+            {
+                rowKeys.add(Bytes.fromUTF8(parentId));
+            }
+
+            Map<Bytes, List<Column>> rows = selector.getColumnsFromRows(joinTableName, rowKeys, slicePredicate,
+                    consistencyLevel);
+            for (String parentId : chunk)
+            {
+                List<E> values = handler.getForeignKeysFromJoinTable(inverseJoinColumnName,
+                        rows.get(Bytes.fromUTF8(parentId)));
+                foreignKeys.put(parentId, values);
+            }
+        }
+        return foreignKeys;
+    }
+
     public List<SearchResult> searchInInvertedIndex(String columnFamilyName, EntityMetadata m,
             Queue<FilterClause> filterClauseQueue)
     {
@@ -391,18 +712,117 @@ public class PelopsClient extends ClientBase implements Client<CassQuery>
     public Object[] findIdsByColumn(String tableName, String pKeyName, String columnName, Object columnValue,
             Class entityClazz)
     {
-        Selector selector = Pelops.createSelector(PelopsUtils.generatePoolName(getPersistenceUnit()));
+        List<Object> rowKeys = findIdsByColumnValues(tableName, pKeyName, columnName,
+                Collections.singletonList((String) columnValue), entityClazz).get(columnValue);
+        return rowKeys.isEmpty() ? null : rowKeys.toArray();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.impetus.kundera.client.Client#findIdsByColumnValues(java.lang.String,
+     * java.lang.String, java.lang.String, java.util.List, java.lang.Class)
+     */
+    @Override
+    public Map<String, List<Object>> findIdsByColumnValues(String tableName, String pKeyName, String columnName,
+            List<String> columnValues, Class entityClazz)
+    {
+        Map<String, Set<Object>> rowKeys = new LinkedHashMap<String, Set<Object>>();
+        for (String columnValue : columnValues)
+        {
+            rowKeys.put(columnValue, new LinkedHashSet<Object>());
+        }
+
+        if (!rowKeys.isEmpty() && isInverseIndexed(tableName))
+        {
+            String inverseIndexTableName = CassandraIndexHelper.getInvertedIndexTableName(tableName);
+            Selector selector = Pelops.createSelector(poolName);
+            SlicePredicate slicePredicate = Selector.newColumnsPredicateAll(false, 10000);
+            int batchSize = handler.getMultigetBatchSize();
+
+            List<String> values = new ArrayList<String>(rowKeys.keySet());
+            for (int start = 0; start < values.size(); start += batchSize)
+            {
+                List<String> chunk = values.subList(start, Math.min(start + batchSize, values.size()));
+                List<Bytes> inverseRowKeys = new ArrayList<Bytes>(chunk.size());
+                for (String columnValue : chunk)
+                {
+                    inverseRowKeys.add(Bytes.fromUTF8(columnValue));
+                }
+
+                Map<Bytes, List<Column>> rows = selector.getColumnsFromRows(inverseIndexTableName, inverseRowKeys,
+                        slicePredicate, consistencyLevel);
+                for (String columnValue : chunk)
+                {
+                    List<Column> columns = rows.get(Bytes.fromUTF8(columnValue));
+                    if (columns != null)
+                    {
+                        for (Column column : columns)
+                        {
+                            rowKeys.get(columnValue).add(Bytes.toUTF8(column.getValue()));
+                        }
+                    }
+                }
+            }
+        }
+
+        // Rows written before inverse index table existed are found through
+        // secondary index on join table, one value at a time, until migration
+        // has dropped it.
+        Map<String, List<Object>> result = new LinkedHashMap<String, List<Object>>();
+        for (Map.Entry<String, Set<Object>> entry : rowKeys.entrySet())
+        {
+            String indexedColumnName = columnName + "_" + entry.getKey();
+            if (keyspaceMetadata.isColumnIndexed(tableName, indexedColumnName))
+            {
+                entry.getValue().addAll(
+                        findIdsFromSecondaryIndex(tableName, indexedColumnName, entry.getKey(), entityClazz));
+            }
+            result.put(entry.getKey(), new ArrayList<Object>(entry.getValue()));
+        }
+        return result;
+    }
+
+    /**
+     * Finds parent keys through secondary index on given join table column.
+     * 
+     * @param tableName
+     *            join table name
+     * @param indexedColumnName
+     *            indexed column name
+     * @param childIdStr
+     *            child key
+     * @param entityClazz
+     *            the entity class
+     * @return parent keys
+     */
+    private List<Object> findIdsFromSecondaryIndex(String tableName, String indexedColumnName, String childIdStr,
+            Class entityClazz)
+    {
+        Selector selector = Pelops.createSelector(poolName);
         SlicePredicate slicePredicate = Selector.newColumnsPredicateAll(false, 10000);
         EntityMetadata metadata = KunderaMetadataManager.getEntityMetadata(entityClazz);
-        String childIdStr = (String) columnValue;
 
         IndexClause ix = Selector.newIndexClause(
                 Bytes.EMPTY,
                 10000,
-                Selector.newIndexExpression(columnName + "_" + childIdStr, IndexOperator.EQ,
+                Selector.newIndexExpression(indexedColumnName, IndexOperator.EQ,
                         Bytes.fromByteArray(childIdStr.getBytes())));
 
-        Map<Bytes, List<Column>> qResults = selector.getIndexedColumns(tableName, ix, slicePredicate, consistencyLevel);
+        Map<Bytes, List<Column>> qResults;
+        try
+        {
+            qResults = selector.getIndexedColumns(tableName, ix, slicePredicate, consistencyLevel);
+        }
+        catch (PelopsException e)
+        {
+            // Index might have been dropped by migration in some other
+            // process, reload schema.
+            log.warn("Could not query secondary index on " + tableName + ", Caused by:" + e.getMessage());
+            keyspaceMetadata.refresh();
+            return new ArrayList<Object>();
+        }
 
         List<Object> rowKeys = new ArrayList<Object>();
 
@@ -418,12 +838,7 @@ public class PelopsClient extends ClientBase implements Client<CassQuery>
 
             rowKeys.add(value);
         }
-
-        if (rowKeys != null && !rowKeys.isEmpty())
-        {
-            return rowKeys.toArray(new Object[0]);
-        }
-        return null;
+        return rowKeys;
     }
 
     /*
@@ -441,10 +856,71 @@ public class PelopsClient extends ClientBase implements Client<CassQuery>
             throw new PersistenceException("PelopsClient is closed.");
         }
 
-        RowDeletor rowDeletor = Pelops.createRowDeletor(PelopsUtils.generatePoolName(getPersistenceUnit()));
+        executeBatch();
+
+        String inverseIndexTableName = CassandraIndexHelper.getInvertedIndexTableName(tableName);
+        if (keyspaceMetadata.isColumnFamilyPresent(inverseIndexTableName))
+        {
+            deleteFromInverseIndex(tableName, inverseIndexTableName, columnValue.toString());
+        }
+
+        RowDeletor rowDeletor = Pelops.createRowDeletor(poolName);
         rowDeletor.deleteRow(tableName, columnValue.toString(), consistencyLevel);
     }
 
+    /**
+     * Checks whether inverse index table of a join table exists. If not,
+     * warns once per join table, as parents of its rows can then be found
+     * only through secondary indexes of an older schema.
+     * 
+     * @param joinTableName
+     *            join table name
+     * @return true, if inverse index table exists
+     */
+    private boolean isInverseIndexed(String joinTableName)
+    {
+        if (keyspaceMetadata.isColumnFamilyPresent(CassandraIndexHelper.getInvertedIndexTableName(joinTableName)))
+        {
+            return true;
+        }
+        if (joinTablesWithoutInverseIndex.add(poolName + ":" + joinTableName))
+        {
+            log.warn("Inverse index table of join table " + joinTableName + " does not exist, parents of its rows"
+                    + " are not indexed and can be found only through secondary indexes of an older schema. Create"
+                    + " it with schema manager, or with InvertedIndexMigrator.migrateJoinTable for existing data.");
+        }
+        return false;
+    }
+
+    /**
+     * Removes given parent key from inverse index rows of all children it is
+     * joined with.
+     * 
+     * @param joinTableName
+     *            join table name
+     * @param inverseIndexTableName
+     *            inverse index table name
+     * @param parentKey
+     *            parent key
+     */
+    private void deleteFromInverseIndex(String joinTableName, String inverseIndexTableName, String parentKey)
+    {
+        Selector selector = Pelops.createSelector(poolName);
+        List<Column> columns = selector.getColumnsFromRow(joinTableName, Bytes.fromUTF8(parentKey),
+                Selector.newColumnsPredicateAll(false, 10000), consistencyLevel);
+
+        if (columns != null && !columns.isEmpty())
+        {
+            Mutator mutator = Pelops.createMutator(poolName);
+            for (Column column : columns)
+            {
+                mutator.deleteColumn(inverseIndexTableName, Bytes.fromByteArray(column.getValue()),
+                        Bytes.fromUTF8(parentKey));
+            }
+            mutator.execute(consistencyLevel);
+        }
+    }
+
     /**
      * Find.
      * 
@@ -458,98 +934,156 @@ public class PelopsClient extends ClientBase implements Client<CassQuery>
      *            the relations
      * @return the list
      */
-    public List find(List<IndexClause> ixClause, EntityMetadata m, boolean isRelation, List<String> relations,
-            int maxResult)
+    public List find(final List<IndexClause> ixClause, final EntityMetadata m, final boolean isRelation,
+            final List<String> relations, final int maxResult)
+    {
+        return execute(new Callable<List>()
+        {
+            @Override
+            public List call()
+            {
+                return findByIndexClauses(ixClause, m, isRelation, relations, maxResult);
+            }
+        });
+    }
+
+    /**
+     * Finds entities matching any of given index clauses, all of them if
+     * there are none.
+     * 
+     * @param ixClause
+     *            the ix clause
+     * @param m
+     *            the m
+     * @param isRelation
+     *            the is relation
+     * @param relations
+     *            the relations
+     * @param maxResult
+     *            maximum number of rows to read
+     * @return the list
+     */
+    private List findByIndexClauses(List<IndexClause> ixClause, final EntityMetadata m, boolean isRelation,
+            List<String> relations, int maxResult)
     {
         // ixClause can be 0,1 or more!
-        Selector selector = Pelops.createSelector(PelopsUtils.generatePoolName(getPersistenceUnit()));
+        Selector selector = Pelops.createSelector(poolName);
 
-        SlicePredicate slicePredicate = Selector.newColumnsPredicateAll(false, Integer.MAX_VALUE);
+        final SlicePredicate slicePredicate = Selector.newColumnsPredicateAll(false, Integer.MAX_VALUE);
 
         List<Object> entities = null;
         if (ixClause.isEmpty())
         {
-            if (m.isCounterColumnType())
+            // Key range is read page by page, rather than asking coordinator
+            // for all rows in a single round trip.
+            RangeSliceIterator pages = new RangeSliceIterator(selector, m.getTableName(), slicePredicate,
+                    consistencyLevel, null, null, getPageSize(), 0, maxResult);
+            entities = new ArrayList<Object>();
+            while (pages.hasNext())
             {
-                IThriftPool thrift = Pelops.getDbConnPool(PelopsUtils.generatePoolName(getPersistenceUnit()));
-                // thrift.get
-                IPooledConnection connection = thrift.getConnection();
-                org.apache.cassandra.thrift.Cassandra.Client thriftClient = connection.getAPI();
-                try
+                List<KeySlice> ks = pages.next();
+                if (m.isCounterColumnType())
                 {
-                    List<KeySlice> ks = thriftClient.get_range_slices(new ColumnParent(m.getTableName()),
-                            slicePredicate, selector.newKeyRange("", "", maxResult), consistencyLevel);
                     if (m.getType().isSuperColumnFamilyMetadata())
                     {
                         Map<Bytes, List<CounterSuperColumn>> qCounterSuperColumnResults = ColumnOrSuperColumnHelper
                                 .transformKeySlices(ks, ColumnOrSuperColumnHelper.COUNTER_SUPER_COLUMN);
-                        entities = new ArrayList<Object>(qCounterSuperColumnResults.size());
-
                         populateDataForSuperCounter(m, qCounterSuperColumnResults, entities, isRelation, relations);
                     }
                     else
                     {
-
                         Map<Bytes, List<CounterColumn>> qCounterColumnResults = ColumnOrSuperColumnHelper
                                 .transformKeySlices(ks, ColumnOrSuperColumnHelper.COUNTER_COLUMN);
-                        entities = new ArrayList<Object>(qCounterColumnResults.size());
-
                         populateDataForCounter(m, qCounterColumnResults, entities, isRelation, relations);
                     }
-
-                }
-                catch (InvalidRequestException irex)
-                {
-                    log.error("Error during executing find, Caused by :" + irex.getMessage());
-                    throw new PersistenceException(irex);
-                }
-                catch (UnavailableException uex)
-                {
-                    log.error("Error during executing find, Caused by :" + uex.getMessage());
-                    throw new PersistenceException(uex);
-                }
-                catch (TimedOutException tex)
-                {
-                    log.error("Error during executing find, Caused by :" + tex.getMessage());
-                    throw new PersistenceException(tex);
                 }
-                catch (TException tex)
+                else
                 {
-                    log.error("Error during executing find, Caused by :" + tex.getMessage());
-                    throw new PersistenceException(tex);
+                    Map<Bytes, List<Column>> qResults = ColumnOrSuperColumnHelper.transformKeySlices(ks,
+                            ColumnOrSuperColumnHelper.COLUMN);
+                    populateData(m, qResults, entities, isRelation, relations);
                 }
             }
-            else
-            {
-
-                Map<Bytes, List<Column>> qResults = selector.getColumnsFromRows(m.getTableName(),
-                        selector.newKeyRange("", "", maxResult), slicePredicate, consistencyLevel);
-
-                // selector.getCounterColumnsFromRows(m.getTableName(),
-                // selector.newKeyRange("", "", maxResult), slicePredicate,
-                // consistencyLevel);
-                // selector.getCounterColumnsFromRows
-                entities = new ArrayList<Object>(qResults.size());
-
-                populateData(m, qResults, entities, isRelation, relations);
-            }
         }
-        else
+        else if (ixClause.size() == 1)
         {
             entities = new ArrayList<Object>();
-            for (IndexClause ix : ixClause)
+            Map<Bytes, List<Column>> qResults = selector.getIndexedColumns(m.getTableName(), ixClause.get(0),
+                    slicePredicate, consistencyLevel);
+            // iterate through complete map and
+            populateData(m, qResults, entities, isRelation, relations);
+        }
+        else
+        {
+            // Index clauses are alternatives (OR), looked up concurrently and
+            // merged by row key, so that a row matching several of them is
+            // populated once.
+            List<Callable<Map<Bytes, List<Column>>>> lookups = new ArrayList<Callable<Map<Bytes, List<Column>>>>(
+                    ixClause.size());
+            for (final IndexClause ix : ixClause)
             {
-                Map<Bytes, List<Column>> qResults = selector.getIndexedColumns(m.getTableName(), ix, slicePredicate,
-                        consistencyLevel);
-                // iterate through complete map and
-                populateData(m, qResults, entities, isRelation, relations);
+                lookups.add(new Callable<Map<Bytes, List<Column>>>()
+                {
+                    @Override
+                    public Map<Bytes, List<Column>> call()
+                    {
+                        Selector lookupSelector = Pelops.createSelector(poolName);
+                        return lookupSelector.getIndexedColumns(m.getTableName(), ix, slicePredicate,
+                                consistencyLevel);
+                    }
+                });
             }
+            Map<Bytes, List<Column>> qResults = new LinkedHashMap<Bytes, List<Column>>();
+            for (Map<Bytes, List<Column>> lookupResults : ScatterGatherExecutor.invokeAll(lookups))
+            {
+                for (Map.Entry<Bytes, List<Column>> row : lookupResults.entrySet())
+                {
+                    if (maxResult > 0 && qResults.size() >= maxResult)
+                    {
+                        break;
+                    }
+                    if (!qResults.containsKey(row.getKey()))
+                    {
+                        qResults.put(row.getKey(), row.getValue());
+                    }
+                }
+            }
+            entities = new ArrayList<Object>();
+            populateData(m, qResults, entities, isRelation, relations);
         }
         return entities;
     }
 
     /**
-     * Find by range.
+     * Find by range. Rows are fetched in pages of configured range slice page
+     * size, until either range is exhausted or max results are read.
+     * 
+     * @param minVal
+     *            the min val
+     * @param maxVal
+     *            the max val
+     * @param m
+     *            the m
+     * @param isWrapReq
+     *            the is wrap req
+     * @param relations
+     *            the relations
+     * @param maxResult
+     *            maximum number of rows to read
+     * @return the list
+     * @throws Exception
+     *             the exception
+     */
+    public List findByRange(byte[] minVal, byte[] maxVal, EntityMetadata m, boolean isWrapReq,
+            List<String> relations, int maxResult) throws Exception
+    {
+        return findByRange(minVal, maxVal, m, isWrapReq, relations, 0, maxResult);
+    }
+
+    /**
+     * Find by range, starting at given position within range. Rows before it
+     * are paged past by key cursor, reading a single column of each, rather
+     * than read and dropped.
      * 
      * @param minVal
      *            the min val
@@ -561,99 +1095,195 @@ public class PelopsClient extends ClientBase implements Client<CassQuery>
      *            the is wrap req
      * @param relations
      *            the relations
+     * @param firstResult
+     *            number of rows to skip
+     * @param maxResult
+     *            maximum number of rows to read
      * @return the list
      * @throws Exception
      *             the exception
      */
-    public List findByRange(byte[] minVal, byte[] maxVal, EntityMetadata m, boolean isWrapReq, List<String> relations)
+    public List findByRange(final byte[] minVal, final byte[] maxVal, final EntityMetadata m,
+            final boolean isWrapReq, final List<String> relations, final int firstResult, final int maxResult)
             throws Exception
     {
-        Selector selector = Pelops.createSelector(PelopsUtils.generatePoolName(getPersistenceUnit()));
+        return execute(new Callable<List>()
+        {
+            @Override
+            public List call() throws Exception
+            {
+                List results = new ArrayList();
+                Iterator<Object> entities = scan(minVal, maxVal, m, isWrapReq, relations, firstResult, maxResult);
+                while (entities.hasNext())
+                {
+                    results.add(entities.next());
+                }
+                return results;
+            }
+        });
+    }
 
-        SlicePredicate slicePredicate = Selector.newColumnsPredicateAll(false, Integer.MAX_VALUE);
-        List<Object> entities = null;
-        List<KeySlice> keys = selector.getKeySlices(new ColumnParent(m.getTableName()), selector.newKeyRange(
-                minVal != null ? Bytes.fromByteArray(minVal) : Bytes.fromUTF8(""),
-                maxVal != null ? Bytes.fromByteArray(maxVal) : Bytes.fromUTF8(""), 10000), slicePredicate,
-                consistencyLevel);
+    /**
+     * Iterates over entities of given key range. Unlike
+     * {@link #findByRange(byte[], byte[], EntityMetadata, boolean, List, int, int)}
+     * rows are not collected, next page of rows is fetched only when
+     * iteration reaches end of current page. Backs lazily iterated queries,
+     * see {@link com.impetus.kundera.query.IterableQuery}.
+     * 
+     * @param minVal
+     *            first row key of range, null for start of ring
+     * @param maxVal
+     *            last row key of range, null for end of ring
+     * @param m
+     *            the m
+     * @param isWrapReq
+     *            the is wrap req
+     * @param relations
+     *            the relations
+     * @param firstResult
+     *            number of rows to skip, paged past by key cursor
+     * @param maxResult
+     *            maximum number of rows to read
+     * @return iterator over entities
+     */
+    public Iterator<Object> scan(byte[] minVal, byte[] maxVal, final EntityMetadata m, final boolean isWrapReq,
+            final List<String> relations, int firstResult, int maxResult)
+    {
+        Selector selector = Pelops.createSelector(poolName);
 
-        List<String> superColumnNames = m.getEmbeddedColumnFieldNames();
+        SlicePredicate slicePredicate = Selector.newColumnsPredicateAll(false, Integer.MAX_VALUE);
+        final RangeSliceIterator pages = new RangeSliceIterator(selector, m.getTableName(), slicePredicate,
+                consistencyLevel, minVal, maxVal, getPageSize(), firstResult, maxResult);
+        final List<String> superColumnNames = m.getEmbeddedColumnFieldNames();
 
-        List results = null;
-        if (keys != null)
+        return new Iterator<Object>()
         {
-            results = new ArrayList(keys.size());
-            for (KeySlice key : keys)
-            {
-                List<ColumnOrSuperColumn> columns = key.getColumns();
-                byte[] rowKey = key.getKey();
+            private Iterator<KeySlice> rows = Collections.<KeySlice> emptyList().iterator();
 
-                if (!superColumnNames.isEmpty())
-                {
-                    Object r = null;
+            private Object next;
 
-                    if (m.isCounterColumnType())
+            @Override
+            public boolean hasNext()
+            {
+                while (next == null)
+                {
+                    while (!rows.hasNext())
                     {
-                        List<CounterSuperColumn> superCounterColumns = new ArrayList<CounterSuperColumn>(columns.size());
-                        for (ColumnOrSuperColumn supCol : columns)
+                        if (!pages.hasNext())
                         {
-                            superCounterColumns.add(supCol.getCounter_super_column());
+                            return false;
                         }
-                        r = handler.fromCounterSuperColumnThriftRow(m.getEntityClazz(), m, handler.new ThriftRow(
-                                new String(rowKey), m.getTableName(), null, null, null, superCounterColumns),
-                                relations, isWrapReq);
+                        rows = pages.next().iterator();
                     }
-                    else
+                    try
                     {
-                        List<SuperColumn> superColumns = new ArrayList<SuperColumn>(columns.size());
-                        for (ColumnOrSuperColumn supCol : columns)
-                        {
-                            superColumns.add(supCol.getSuper_column());
-                        }
-
-                        r = handler.fromSuperColumnThriftRow(m.getEntityClazz(), m, handler.new ThriftRow(new String(
-                                rowKey), m.getTableName(), null, superColumns, null, null), relations, isWrapReq);
+                        next = populateEntity(rows.next(), m, isWrapReq, relations, superColumnNames);
                     }
-                    if (r != null)
+                    catch (Exception e)
                     {
-                        results.add(r);
+                        log.error("Error while reading range of " + m.getTableName() + ", Caused by :"
+                                + e.getMessage());
+                        throw new KunderaException(e);
                     }
-                    // List<SuperColumn> superCol = columns.
                 }
-                else
+                return true;
+            }
+
+            @Override
+            public Object next()
+            {
+                if (!hasNext())
                 {
-                    Object r = null;
-                    if (m.isCounterColumnType())
-                    {
-                        List<CounterColumn> cols = new ArrayList<CounterColumn>(columns.size());
-                        for (ColumnOrSuperColumn supCol : columns)
-                        {
-                            cols.add(supCol.getCounter_column());
-                        }
+                    throw new NoSuchElementException();
+                }
+                Object e = next;
+                next = null;
+                return e;
+            }
 
-                        r = handler.fromCounterColumnThriftRow(m.getEntityClazz(), m, handler.new ThriftRow(new String(
-                                rowKey), m.getTableName(), null, null, cols, null), relations, isWrapReq);
-                    }
-                    else
-                    {
-                        List<Column> cols = new ArrayList<Column>(columns.size());
-                        for (ColumnOrSuperColumn supCol : columns)
-                        {
-                            cols.add(supCol.getColumn());
-                        }
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException("remove is not supported while scanning a range");
+            }
+        };
+    }
 
-                        r = handler.fromColumnThriftRow(m.getEntityClazz(), m, handler.new ThriftRow(
-                                new String(rowKey), m.getTableName(), cols, null, null, null), relations, isWrapReq);
-                    }
-                    if (r != null)
-                    {
-                        results.add(r);
-                    }
+    /**
+     * Populates entity from a row read via range slice.
+     * 
+     * @param key
+     *            the key slice
+     * @param m
+     *            the m
+     * @param isWrapReq
+     *            the is wrap req
+     * @param relations
+     *            the relations
+     * @param superColumnNames
+     *            embedded column field names of entity
+     * @return populated entity, or null if row holds no data
+     * @throws Exception
+     *             the exception
+     */
+    private Object populateEntity(KeySlice key, EntityMetadata m, boolean isWrapReq, List<String> relations,
+            List<String> superColumnNames) throws Exception
+    {
+        List<ColumnOrSuperColumn> columns = key.getColumns();
+        byte[] rowKey = key.getKey();
+
+        Object r = null;
+        if (!superColumnNames.isEmpty())
+        {
+            if (m.isCounterColumnType())
+            {
+                List<CounterSuperColumn> superCounterColumns = new ArrayList<CounterSuperColumn>(columns.size());
+                for (ColumnOrSuperColumn supCol : columns)
+                {
+                    superCounterColumns.add(supCol.getCounter_super_column());
                 }
+                r = handler.fromCounterSuperColumnThriftRow(m.getEntityClazz(), m, handler.new ThriftRow(
+                        new String(rowKey), m.getTableName(), null, null, null, superCounterColumns),
+                        relations, isWrapReq);
+            }
+            else
+            {
+                List<SuperColumn> superColumns = new ArrayList<SuperColumn>(columns.size());
+                for (ColumnOrSuperColumn supCol : columns)
+                {
+                    superColumns.add(supCol.getSuper_column());
+                }
+
+                r = handler.fromSuperColumnThriftRow(m.getEntityClazz(), m, handler.new ThriftRow(new String(
+                        rowKey), m.getTableName(), null, superColumns, null, null), relations, isWrapReq);
             }
         }
+        else
+        {
+            if (m.isCounterColumnType())
+            {
+                List<CounterColumn> cols = new ArrayList<CounterColumn>(columns.size());
+                for (ColumnOrSuperColumn supCol : columns)
+                {
+                    cols.add(supCol.getCounter_column());
+                }
+
+                r = handler.fromCounterColumnThriftRow(m.getEntityClazz(), m, handler.new ThriftRow(new String(
+                        rowKey), m.getTableName(), null, null, cols, null), relations, isWrapReq);
+            }
+            else
+            {
+                List<Column> cols = new ArrayList<Column>(columns.size());
+                for (ColumnOrSuperColumn supCol : columns)
+                {
+                    cols.add(supCol.getColumn());
+                }
 
-        return results;
+                r = handler.fromColumnThriftRow(m.getEntityClazz(), m, handler.new ThriftRow(
+                        new String(rowKey), m.getTableName(), cols, null, null, null), relations, isWrapReq);
+            }
+        }
+        return r;
     }
 
     /*
@@ -666,7 +1296,7 @@ public class PelopsClient extends ClientBase implements Client<CassQuery>
     public List<Object> findByRelation(String colName, String colValue, Class clazz)
     {
         EntityMetadata m = KunderaMetadataManager.getEntityMetadata(clazz);
-        Selector selector = Pelops.createSelector(PelopsUtils.generatePoolName(getPersistenceUnit()));
+        Selector selector = Pelops.createSelector(poolName);
 
         SlicePredicate slicePredicate = Selector.newColumnsPredicateAll(false, 10000);
         List<Object> entities = null;
@@ -753,9 +1383,59 @@ public class PelopsClient extends ClientBase implements Client<CassQuery>
      */
     public List executeQuery(String cqlQuery, Class clazz, List<String> relationalField)
     {
-        IThriftPool thrift = Pelops.getDbConnPool(PelopsUtils.generatePoolName(getPersistenceUnit()));
-        // thrift.get
-        IPooledConnection connection = thrift.getConnection();
+        return executeQuery(cqlQuery, clazz, relationalField, null);
+    }
+
+    /**
+     * Method to execute cql query with values bound to its <code>?</code>
+     * markers and return back entity/enhance entities. Query is prepared once
+     * per connection and executed by its id afterwards.
+     * 
+     * @param cqlQuery
+     *            cql query to be executed.
+     * @param clazz
+     *            entity class.
+     * @param relationalField
+     *            collection for relational fields.
+     * @param values
+     *            values of markers, in order, null to execute query as such.
+     * @return list of objects.
+     * 
+     */
+    public List executeQuery(final String cqlQuery, final Class clazz, final List<String> relationalField,
+            final List<ByteBuffer> values)
+    {
+        if (!cqlQuery.trim().toUpperCase().startsWith("SELECT"))
+        {
+            // writes such as counter increments are not safe to retry.
+            return runQuery(cqlQuery, clazz, relationalField, values);
+        }
+        return execute(new Callable<List>()
+        {
+            @Override
+            public List call()
+            {
+                return runQuery(cqlQuery, clazz, relationalField, values);
+            }
+        });
+    }
+
+    /**
+     * Runs a cql query on a pooled connection.
+     * 
+     * @param cqlQuery
+     *            cql query to be executed.
+     * @param clazz
+     *            entity class.
+     * @param relationalField
+     *            collection for relational fields.
+     * @param values
+     *            values of markers, in order, null to execute query as such.
+     * @return list of objects.
+     */
+    private List runQuery(String cqlQuery, Class clazz, List<String> relationalField, List<ByteBuffer> values)
+    {
+        BorrowedConnection connection = new BorrowedConnection(poolName);
         try
         {
             org.apache.cassandra.thrift.Cassandra.Client thriftClient = connection.getAPI();
@@ -765,8 +1445,8 @@ public class PelopsClient extends ClientBase implements Client<CassQuery>
             List returnedEntities = null;
             try
             {
-                result = thriftClient.execute_cql_query(ByteBufferUtil.bytes(cqlQuery),
-                        org.apache.cassandra.thrift.Compression.NONE);
+                result = values != null ? CqlStatementCache.execute(thriftClient, cqlQuery, values)
+                        : CqlStatementCache.execute(thriftClient, cqlQuery);
                 if (result != null && (result.getRows() != null || result.getRowsSize() > 0))
                 {
                     returnedEntities = new ArrayList<Object>(result.getRowsSize());
@@ -828,14 +1508,16 @@ public class PelopsClient extends ClientBase implements Client<CassQuery>
             }
             return returnedEntities;
         }
+        catch (RuntimeException e)
+        {
+            connection.failed(e);
+            throw e;
+        }
         finally
         {
             try
             {
-                if (connection != null)
-                {
-                    connection.release();
-                }
+                connection.release();
             }
             catch (Exception e)
             {
@@ -876,26 +1558,28 @@ public class PelopsClient extends ClientBase implements Client<CassQuery>
             throw new KunderaException(e);
         }
 
+        if (isUpdate && dirtyColumns != null)
+        {
+            retainDirtyColumns(tf);
+        }
+
         addRelationsToThriftRow(metadata, tf, rlHolders);
 
-        Mutator mutator = Pelops.createMutator(PelopsUtils.generatePoolName(getPersistenceUnit()));
+        MutationBatch mutations = getBatch();
         if (metadata.isCounterColumnType())
         {
             List<CounterColumn> thriftCounterColumns = tf.getCounterColumns();
             List<CounterSuperColumn> thriftCounterSuperColumns = tf.getCounterSuperColumns();
             if (thriftCounterColumns != null && !thriftCounterColumns.isEmpty())
             {
-                // Bytes.fromL
-                mutator.writeCounterColumns(metadata.getTableName(), Bytes.fromUTF8(tf.getId()),
-                        Arrays.asList(tf.getCounterColumns().toArray(new CounterColumn[0])));
+                mutations.writeCounterColumns(metadata.getTableName(), tf.getId(), thriftCounterColumns);
             }
 
             if (thriftCounterSuperColumns != null && !thriftCounterSuperColumns.isEmpty())
             {
                 for (CounterSuperColumn sc : thriftCounterSuperColumns)
                 {
-                    mutator.writeSubCounterColumns(metadata.getTableName(), Bytes.fromUTF8(tf.getId()),
-                            Bytes.fromByteArray(sc.getName()), sc.getColumns());
+                    mutations.writeCounterSuperColumn(metadata.getTableName(), tf.getId(), sc);
                 }
             }
         }
@@ -905,22 +1589,19 @@ public class PelopsClient extends ClientBase implements Client<CassQuery>
             List<SuperColumn> thriftSuperColumns = tf.getSuperColumns();
             if (thriftColumns != null && !thriftColumns.isEmpty())
             {
-                // Bytes.fromL
-                mutator.writeColumns(metadata.getTableName(), Bytes.fromUTF8(tf.getId()),
-                        Arrays.asList(tf.getColumns().toArray(new Column[0])));
+                mutations.writeColumns(metadata.getTableName(), tf.getId(), thriftColumns);
             }
 
             if (thriftSuperColumns != null && !thriftSuperColumns.isEmpty())
             {
                 for (SuperColumn sc : thriftSuperColumns)
                 {
-                    mutator.writeSubColumns(metadata.getTableName(), tf.getId(), Bytes.toUTF8(sc.getName()),
-                            sc.getColumns());
+                    mutations.writeSuperColumn(metadata.getTableName(), tf.getId(), sc);
                 }
             }
         }
 
-        mutator.execute(consistencyLevel);
+        onRowsBatched(1);
         tf = null;
     }
 
@@ -941,22 +1622,149 @@ public class PelopsClient extends ClientBase implements Client<CassQuery>
 
             String indexColumnFamily = CassandraIndexHelper.getInvertedIndexTableName(entityMetadata.getTableName());
 
-            Mutator mutator = Pelops.createMutator(PelopsUtils.generatePoolName(getPersistenceUnit()));
+            MutationBatch mutations = getBatch();
 
             List<PelopsDataHandler.ThriftRow> indexThriftyRows = handler.toIndexThriftRow(node.getData(),
                     entityMetadata, indexColumnFamily);
 
             for (PelopsDataHandler.ThriftRow thriftRow : indexThriftyRows)
             {
-                mutator.writeColumns(indexColumnFamily, Bytes.fromUTF8(thriftRow.getId()),
-                        Arrays.asList(thriftRow.getColumns().toArray(new Column[0])));
+                mutations.writeColumns(indexColumnFamily, thriftRow.getId(), thriftRow.getColumns());
 
             }
-            mutator.execute(consistencyLevel);
+            onRowsBatched(indexThriftyRows.size());
             indexThriftyRows = null;
         }
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.impetus.kundera.client.Batcher#executeBatch()
+     */
+    @Override
+    public int executeBatch()
+    {
+        int rows = batchedRows;
+        if (batch != null && !batch.isEmpty())
+        {
+            final MutationBatch mutations = batch;
+            final ConsistencyLevel level = consistencyLevel;
+            if (mutations.hasCounters())
+            {
+                // counter updates are not idempotent, so that batch is
+                // neither retried nor kept once sent.
+                batch = null;
+                batchedRows = 0;
+                writeBatch(mutations, level);
+            }
+            else
+            {
+                // columns carry their timestamps, so that writing them again
+                // is idempotent. Batch is kept until written, for a failed
+                // flush to be retried.
+                executeWrite(new Callable<Void>()
+                {
+                    @Override
+                    public Void call()
+                    {
+                        writeBatch(mutations, level);
+                        return null;
+                    }
+                });
+                batch = null;
+                batchedRows = 0;
+            }
+        }
+        return rows;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.impetus.kundera.client.Batcher#getBatchSize()
+     */
+    @Override
+    public int getBatchSize()
+    {
+        return batchedRows;
+    }
+
+    /**
+     * Writes a batch in a single batch_mutate call.
+     * 
+     * @param mutations
+     *            the batch
+     * @param level
+     *            the consistency level
+     */
+    private void writeBatch(MutationBatch mutations, ConsistencyLevel level)
+    {
+        BorrowedConnection connection = new BorrowedConnection(poolName);
+        try
+        {
+            connection.getAPI().batch_mutate(mutations.toMutationMap(), level);
+        }
+        catch (InvalidRequestException ire)
+        {
+            log.error("Error during executing batch, Caused by :" + ire.getMessage());
+            throw new PersistenceException(ire);
+        }
+        catch (UnavailableException ue)
+        {
+            connection.failed(ue);
+            log.error("Error during executing batch, Caused by :" + ue.getMessage());
+            throw new PersistenceException(ue);
+        }
+        catch (TimedOutException toe)
+        {
+            connection.failed(toe);
+            log.error("Error during executing batch, Caused by :" + toe.getMessage());
+            throw new PersistenceException(toe);
+        }
+        catch (TException te)
+        {
+            connection.failed(te);
+            log.error("Error during executing batch, Caused by :" + te.getMessage());
+            throw new PersistenceException(te);
+        }
+        finally
+        {
+            connection.release();
+        }
+    }
+
+    /**
+     * Returns rows of current batch, creates a batch if there is none in
+     * progress.
+     * 
+     * @return the batch
+     */
+    private MutationBatch getBatch()
+    {
+        if (batch == null)
+        {
+            batch = new MutationBatch();
+        }
+        return batch;
+    }
+
+    /**
+     * Accounts for rows written into batch mutator and executes batch once
+     * maximum batch size is reached.
+     * 
+     * @param rows
+     *            number of rows written
+     */
+    private void onRowsBatched(int rows)
+    {
+        batchedRows += rows;
+        if (batchedRows >= maxBatchSize)
+        {
+            executeBatch();
+        }
+    }
+
     /**
      * Populate tf row.
      * 
@@ -988,6 +1796,28 @@ public class PelopsClient extends ClientBase implements Client<CassQuery>
         return tf;
     }
 
+    /**
+     * Keeps only columns changed since entity was loaded or flushed in thrift
+     * row of an update. Super columns are dropped, as embedded objects are
+     * unchanged unless all columns are to be written.
+     * 
+     * @param tf
+     *            the thrift row
+     */
+    private void retainDirtyColumns(PelopsDataHandler.ThriftRow tf)
+    {
+        List<Column> columns = new ArrayList<Column>(dirtyColumns.size());
+        for (Column column : tf.getColumns())
+        {
+            if (dirtyColumns.contains(PropertyAccessorFactory.STRING.fromBytes(String.class, column.getName())))
+            {
+                columns.add(column);
+            }
+        }
+        tf.setColumns(columns);
+        tf.setSuperColumns(new ArrayList<SuperColumn>());
+    }
+
     /**
      * Adds relation foreign key values as thrift column/ value to thrift row
      * 
@@ -1221,124 +2051,6 @@ public class PelopsClient extends ClientBase implements Client<CassQuery>
         }
     }
 
-    /**
-     * Creates secondary indexes on columns if not already created.
-     * 
-     * @param tableName
-     *            Column family name
-     * @param poolName
-     *            Pool Name
-     * @param columns
-     *            List of columns
-     */
-    private void createIndexesOnColumns(String tableName, String poolName, List<Column> columns)
-    {
-        String keyspace = Pelops.getDbConnPool(poolName).getKeyspace();
-        try
-        {
-            Cassandra.Client api = Pelops.getDbConnPool(poolName).getConnection().getAPI();
-            KsDef ksDef = api.describe_keyspace(keyspace);
-            List<CfDef> cfDefs = ksDef.getCf_defs();
-
-            // Column family definition on which secondary index creation is
-            // required
-            CfDef columnFamilyDefToUpdate = null;
-            boolean isUpdatable = false;
-            // boolean isNew=false;
-            for (CfDef cfDef : cfDefs)
-            {
-                if (cfDef.getName().equals(tableName))
-                {
-                    columnFamilyDefToUpdate = cfDef;
-                    // isNew=false;
-                    break;
-                }
-            }
-
-            // //create a column family, in case it is not already available.
-            // if(columnFamilyDefToUpdate == null)
-            // {
-            // isNew = true;
-            // columnFamilyDefToUpdate = new CfDef(keyspace, tableName);
-            // ksDef.addToCf_defs(columnFamilyDefToUpdate);
-            // }
-
-            // Get list of indexes already created
-            List<ColumnDef> columnMetadataList = columnFamilyDefToUpdate.getColumn_metadata();
-            List<String> indexList = new ArrayList<String>();
-
-            if (columnMetadataList != null)
-            {
-                for (ColumnDef columnDef : columnMetadataList)
-                {
-                    indexList.add(Bytes.toUTF8(columnDef.getName()));
-                }
-                // need to set them to null else it is giving problem on update
-                // column family and trying to add again existing indexes.
-                // columnFamilyDefToUpdate.column_metadata = null;
-            }
-
-            // Iterate over all columns for creating secondary index on them
-            for (Column column : columns)
-            {
-
-                ColumnDef columnDef = new ColumnDef();
-
-                columnDef.setName(column.getName());
-                columnDef.setValidation_class("UTF8Type");
-                columnDef.setIndex_type(IndexType.KEYS);
-
-                // String indexName =
-                // PelopsUtils.getSecondaryIndexName(tableName, column);
-
-                // Add secondary index only if it's not already created
-                // (if already created, it would be there in column family
-                // definition)
-                if (!indexList.contains(Bytes.toUTF8(column.getName())))
-                {
-                    isUpdatable = true;
-                    columnFamilyDefToUpdate.addToColumn_metadata(columnDef);
-                }
-            }
-
-            // Finally, update column family with modified column family
-            // definition
-            if (isUpdatable)
-            {
-                api.system_update_column_family(columnFamilyDefToUpdate);
-            }// } else
-             // {
-             // api.system_add_column_family(columnFamilyDefToUpdate);
-             // }
-
-        }
-        catch (InvalidRequestException e)
-        {
-            log.warn("Could not create secondary index on column family " + tableName + ".Details:" + e.getMessage());
-
-        }
-        catch (SchemaDisagreementException e)
-        {
-            log.warn("Could not create secondary index on column family " + tableName + ".Details:" + e.getMessage());
-
-        }
-        catch (TException e)
-        {
-            log.warn("Could not create secondary index on column family " + tableName + ".Details:" + e.getMessage());
-
-        }
-        catch (NotFoundException e)
-        {
-            log.warn("Could not create secondary index on column family " + tableName + ".Details:" + e.getMessage());
-
-        }
-        catch (PropertyAccessException e)
-        {
-            log.warn("Could not create secondary index on column family " + tableName + ".Details:" + e.getMessage());
-
-        }
-    }
-
     /**
      * Load super columns.
      * 
@@ -1357,7 +2069,7 @@ public class PelopsClient extends ClientBase implements Client<CassQuery>
     {
         if (!isOpen())
             throw new PersistenceException("PelopsClient is closed.");
-        Selector selector = Pelops.createSelector(PelopsUtils.generatePoolName(getPersistenceUnit()));
+        Selector selector = Pelops.createSelector(poolName);
         List<ByteBuffer> rowKeys = new ArrayList<ByteBuffer>();
         rowKeys.add(ByteBuffer.wrap(rowId.getBytes()));
 
@@ -1382,7 +2094,8 @@ public class PelopsClient extends ClientBase implements Client<CassQuery>
     {
         if (cLevel != null)
         {
-            this.consistencyLevel = cLevel;
+            defaultHints.put(PersistenceProperties.KUNDERA_CONSISTENCY_LEVEL, cLevel);
+            setHints(hints);
         }
         else
         {
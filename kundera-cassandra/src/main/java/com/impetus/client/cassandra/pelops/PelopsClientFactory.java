@@ -51,6 +51,9 @@ public class PelopsClientFactory extends GenericClientFactory
     /** The logger. */
     private static Logger logger = LoggerFactory.getLogger(PelopsClientFactory.class);
 
+    /** Default socket timeout in milliseconds, above server's rpc timeout. */
+    static final int DEFAULT_SOCKET_TIMEOUT = 60000;
+
     /** The index manager. */
     private IndexManager indexManager;
 
@@ -63,6 +66,9 @@ public class PelopsClientFactory extends GenericClientFactory
     /** Property reader. */
     private PropertyReader propertyReader;
 
+    /** Keyspace definition cached for clients of this factory. */
+    private KeyspaceMetadataCache keyspaceMetadata;
+
     /*
      * (non-Javadoc)
      * 
@@ -76,13 +82,16 @@ public class PelopsClientFactory extends GenericClientFactory
         logger.info("Initializing Threadsafe Indexmanager. Is it really threadsafe?");
 
         String luceneDirPath = MetadataUtils.getLuceneDirectory(getPersistenceUnit());
+        PersistenceUnitMetadata puMetadata = KunderaMetadata.INSTANCE.getApplicationMetadata()
+                .getPersistenceUnitMetadata(getPersistenceUnit());
         indexManager = new IndexManager(LuceneIndexer.getInstance(new StandardAnalyzer(Version.LUCENE_34),
-                luceneDirPath));
+                luceneDirPath, puMetadata != null ? puMetadata.getProperties() : null));
 
         reader = new CassandraEntityReader();
         propertyReader = new CassandraPropertyReader();
         propertyReader.read(getPersistenceUnit());
 
+        keyspaceMetadata = new KeyspaceMetadataCache(getPersistenceUnit());
     }
 
     /*
@@ -105,14 +114,13 @@ public class PelopsClientFactory extends GenericClientFactory
 
         if (Pelops.getDbConnPool(poolName) == null)
         {
-            Cluster cluster = new Cluster(contactNodes, new IConnection.Config(Integer.parseInt(defaultPort), true, -1,
-                    getAuthenticationRequest(props)), false);
+            Cluster cluster = new Cluster(contactNodes, new IConnection.Config(Integer.parseInt(defaultPort), true,
+                    getSocketTimeout(props), getAuthenticationRequest(props)), false);
 
             Policy policy = PelopsUtils.getPoolConfigPolicy(persistenceUnitMetadata);
 
-            // Add pool with specified policy. null means default operand
-            // policy.
-            Pelops.addPool(poolName, cluster, keyspace, policy, null);
+            // Add pool with specified policy, selecting nodes by latency.
+            Pelops.addPool(poolName, PelopsUtils.createPool(poolName, cluster, keyspace, policy));
 
         }
         // TODO return a thrift pool
@@ -122,7 +130,7 @@ public class PelopsClientFactory extends GenericClientFactory
     @Override
     protected Client instantiateClient(String persistenceUnit)
     {
-        return new PelopsClient(indexManager, reader, persistenceUnit);
+        return new PelopsClient(indexManager, reader, persistenceUnit, keyspaceMetadata);
     }
 
     /*
@@ -160,6 +168,35 @@ public class PelopsClientFactory extends GenericClientFactory
         return schemaManager;
     }
 
+    /**
+     * Returns socket timeout of connections, bounding requests whose timeout
+     * is not enforced otherwise. It bounds every request on pool, large
+     * batches and range scans included, so it does not follow query timeout.
+     * 
+     * @param props
+     *            properties
+     * 
+     * @return milliseconds, -1 for no timeout
+     */
+    static int getSocketTimeout(Properties props)
+    {
+        String timeout = props.getProperty(PersistenceProperties.KUNDERA_SOCKET_TIMEOUT);
+        if (timeout == null || timeout.trim().isEmpty())
+        {
+            return DEFAULT_SOCKET_TIMEOUT;
+        }
+        try
+        {
+            int millis = Integer.parseInt(timeout.trim());
+            return millis > 0 ? millis : -1;
+        }
+        catch (NumberFormatException e)
+        {
+            logger.warn("Invalid socket timeout " + timeout + ", using default " + DEFAULT_SOCKET_TIMEOUT);
+            return DEFAULT_SOCKET_TIMEOUT;
+        }
+    }
+
     /**
      * If userName and password provided, Method prepares for
      * AuthenticationRequest.
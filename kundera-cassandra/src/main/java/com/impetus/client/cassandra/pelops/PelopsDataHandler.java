@@ -18,13 +18,19 @@ package com.impetus.client.cassandra.pelops;
 import java.lang.reflect.Field;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.regex.Pattern;
 
 import javax.persistence.PersistenceException;
 
@@ -34,8 +40,6 @@ import org.apache.cassandra.thrift.ColumnParent;
 import org.apache.cassandra.thrift.ConsistencyLevel;
 import org.apache.cassandra.thrift.CounterColumn;
 import org.apache.cassandra.thrift.CounterSuperColumn;
-import org.apache.cassandra.thrift.SlicePredicate;
-import org.apache.cassandra.thrift.SliceRange;
 import org.apache.cassandra.thrift.SuperColumn;
 import org.apache.cassandra.utils.ByteBufferUtil;
 import org.apache.commons.logging.Log;
@@ -46,6 +50,8 @@ import org.scale7.cassandra.pelops.Pelops;
 import org.scale7.cassandra.pelops.Selector;
 
 import com.impetus.client.cassandra.common.CassandraIndexHelper;
+import com.impetus.client.cassandra.config.CassandraPropertyReader;
+import com.impetus.client.cassandra.config.CassandraPropertyReader.CassandraSchemaMetadata;
 import com.impetus.kundera.Constants;
 import com.impetus.kundera.KunderaException;
 import com.impetus.kundera.cache.ElementCollectionCacheManager;
@@ -56,6 +62,8 @@ import com.impetus.kundera.metadata.MetadataUtils;
 import com.impetus.kundera.metadata.model.EmbeddedColumn;
 import com.impetus.kundera.metadata.model.EntityMetadata;
 import com.impetus.kundera.metadata.model.Relation;
+import com.impetus.kundera.property.EntityFieldAccessor;
+import com.impetus.kundera.property.EntityFieldAccessorFactory;
 import com.impetus.kundera.property.PropertyAccessException;
 import com.impetus.kundera.property.PropertyAccessor;
 import com.impetus.kundera.property.PropertyAccessorFactory;
@@ -98,46 +106,169 @@ final class PelopsDataHandler
     Object fromThriftRow(Selector selector, Class<?> clazz, EntityMetadata m, String rowKey,
             List<String> relationNames, boolean isWrapReq, ConsistencyLevel consistencyLevel) throws Exception
     {
-        List<String> superColumnNames = m.getEmbeddedColumnFieldNames();
-        Object e = null;
+        List<Object> entities = fromThriftRow(selector, clazz, m, relationNames, isWrapReq, consistencyLevel, rowKey);
+        return entities.isEmpty() ? null : entities.get(0);
+    }
+
+    /**
+     * From thrift row. Rows are fetched with multiget, in batches of
+     * configured multiget batch size, instead of one round trip per row key.
+     * 
+     * @param selector
+     *            the selector
+     * @param clazz
+     *            the clazz
+     * @param m
+     *            the m
+     * @param relationNames
+     *            the relation names
+     * @param isWrapReq
+     *            the is wrap req
+     * @param rowIds
+     *            the row ids
+     * @return the list
+     * @throws Exception
+     *             the exception
+     */
+    List<Object> fromThriftRow(Selector selector, Class<?> clazz, EntityMetadata m, List<String> relationNames,
+            boolean isWrapReq, ConsistencyLevel consistencyLevel, Object... rowIds) throws Exception
+    {
+        List<Object> entities = new ArrayList<Object>();
+        if (rowIds == null || rowIds.length == 0)
+        {
+            return entities;
+        }
+
+        // Distinct row keys, in the order they were asked for.
+        Set<String> rowKeys = new LinkedHashSet<String>();
+        for (Object rowId : rowIds)
+        {
+            if (rowId != null)
+            {
+                rowKeys.add(rowId.toString());
+            }
+        }
+
+        int batchSize = getMultigetBatchSize();
+        List<String> batch = new ArrayList<String>(Math.min(batchSize, rowKeys.size()));
+        for (String rowKey : rowKeys)
+        {
+            batch.add(rowKey);
+            if (batch.size() == batchSize)
+            {
+                multigetRows(selector, clazz, m, relationNames, isWrapReq, consistencyLevel, batch, entities);
+                batch.clear();
+            }
+        }
+
+        if (!batch.isEmpty())
+        {
+            multigetRows(selector, clazz, m, relationNames, isWrapReq, consistencyLevel, batch, entities);
+        }
+        return entities;
+    }
+
+    /**
+     * Fetches given rows in a single multiget round trip and adds populated
+     * entities to <code>entities</code>, in the order of row keys.
+     * 
+     * @param selector
+     *            the selector
+     * @param clazz
+     *            the clazz
+     * @param m
+     *            the m
+     * @param relationNames
+     *            the relation names
+     * @param isWrapReq
+     *            the is wrap req
+     * @param consistencyLevel
+     *            the consistency level
+     * @param rowKeys
+     *            row keys to be fetched
+     * @param entities
+     *            list to add populated entities into
+     * @throws Exception
+     *             the exception
+     */
+    private void multigetRows(Selector selector, Class<?> clazz, EntityMetadata m, List<String> relationNames,
+            boolean isWrapReq, ConsistencyLevel consistencyLevel, List<String> rowKeys, List<Object> entities)
+            throws Exception
+    {
+        List<ByteBuffer> keys = new ArrayList<ByteBuffer>(rowKeys.size());
+        for (String rowKey : rowKeys)
+        {
+            keys.add(ByteBufferUtil.bytes(rowKey));
+        }
+
+        Map<ByteBuffer, List<ColumnOrSuperColumn>> rows = selector.getColumnOrSuperColumnsFromRows(new ColumnParent(
+                m.getTableName()), keys, Selector.newColumnsPredicateAll(true, 10000), consistencyLevel);
 
-        if (!superColumnNames.isEmpty())
+        for (int i = 0; i < keys.size(); i++)
+        {
+            List<ColumnOrSuperColumn> colList = rows.get(keys.get(i));
+            if (colList == null || colList.isEmpty())
+            {
+                continue;
+            }
+
+            Object e = fromColumnOrSuperColumns(clazz, m, rowKeys.get(i), colList, relationNames, isWrapReq);
+            if (e != null)
+            {
+                entities.add(e);
+            }
+        }
+    }
+
+    /**
+     * Populates entity from thrift columns/super columns (counter or
+     * otherwise) fetched for a single row.
+     * 
+     * @param clazz
+     *            the clazz
+     * @param m
+     *            the m
+     * @param rowKey
+     *            the row key
+     * @param colList
+     *            columns or super columns of this row
+     * @param relationNames
+     *            the relation names
+     * @param isWrapReq
+     *            the is wrap req
+     * @return the object
+     * @throws Exception
+     *             the exception
+     */
+    private Object fromColumnOrSuperColumns(Class<?> clazz, EntityMetadata m, String rowKey,
+            List<ColumnOrSuperColumn> colList, List<String> relationNames, boolean isWrapReq) throws Exception
+    {
+        Object e = null;
+        if (!m.getEmbeddedColumnFieldNames().isEmpty())
         {
             if (m.isCounterColumnType())
             {
-                List<CounterSuperColumn> thriftCounterSuperColumns = new ArrayList<CounterSuperColumn>();
-                List<ByteBuffer> rowKeys = new ArrayList<ByteBuffer>(1);
-                rowKeys.add(ByteBufferUtil.bytes(rowKey));
-                Map<ByteBuffer, List<ColumnOrSuperColumn>> thriftColumnOrSuperColumns = selector
-                        .getColumnOrSuperColumnsFromRows(new ColumnParent(m.getTableName()), rowKeys,
-                                Selector.newColumnsPredicateAll(true, 10000), consistencyLevel);
-                getThriftCounterSuperColumn(thriftCounterSuperColumns, thriftColumnOrSuperColumns);
-                if (thriftCounterSuperColumns != null)
+                List<CounterSuperColumn> thriftCounterSuperColumns = new ArrayList<CounterSuperColumn>(colList.size());
+                for (ColumnOrSuperColumn col : colList)
                 {
-                    e = fromCounterSuperColumnThriftRow(clazz, m, new ThriftRow(rowKey, m.getTableName(), null, null,
-                            null, thriftCounterSuperColumns), relationNames, isWrapReq);
+                    thriftCounterSuperColumns.add(col.getCounter_super_column());
                 }
+                e = fromCounterSuperColumnThriftRow(clazz, m, new ThriftRow(rowKey, m.getTableName(), null, null, null,
+                        thriftCounterSuperColumns), relationNames, isWrapReq);
             }
             else
             {
-                List<SuperColumn> thriftSuperColumns = selector.getSuperColumnsFromRow(m.getTableName(), rowKey,
-                        Selector.newColumnsPredicateAll(true, 10000), consistencyLevel);
+                List<SuperColumn> thriftSuperColumns = new ArrayList<SuperColumn>(colList.size());
+                for (ColumnOrSuperColumn col : colList)
+                {
+                    thriftSuperColumns.add(col.getSuper_column());
+                }
                 e = fromSuperColumnThriftRow(clazz, m, new ThriftRow(rowKey, m.getTableName(), null,
                         thriftSuperColumns, null, null), relationNames, isWrapReq);
             }
         }
         else
         {
-            List<ByteBuffer> rowKeys = new ArrayList<ByteBuffer>(1);
-
-            ByteBuffer rKeyAsByte = ByteBufferUtil.bytes(rowKey);
-            rowKeys.add(ByteBufferUtil.bytes(rowKey));
-
-            Map<ByteBuffer, List<ColumnOrSuperColumn>> columnOrSuperColumnsFromRow = selector
-                    .getColumnOrSuperColumnsFromRows(new ColumnParent(m.getTableName()), rowKeys,
-                            Selector.newColumnsPredicateAll(true, 10000), consistencyLevel);
-
-            List<ColumnOrSuperColumn> colList = columnOrSuperColumnsFromRow.get(rKeyAsByte);
             if (m.isCounterColumnType())
             {
                 List<CounterColumn> thriftColumns = new ArrayList<CounterColumn>(colList.size());
@@ -181,57 +312,37 @@ final class PelopsDataHandler
     }
 
     /**
-     * @param thriftCounterSuperColumns
-     * @param thriftColumnOrSuperColumns
+     * Returns number of rows to be fetched in a single multiget round trip.
+     * 
+     * @return multiget batch size
      */
-    private void getThriftCounterSuperColumn(List<CounterSuperColumn> thriftCounterSuperColumns,
-            Map<ByteBuffer, List<ColumnOrSuperColumn>> thriftColumnOrSuperColumns)
+    int getMultigetBatchSize()
     {
-        for (Map.Entry<ByteBuffer, List<ColumnOrSuperColumn>> entry : thriftColumnOrSuperColumns.entrySet())
-        {
-            for (ColumnOrSuperColumn col : entry.getValue())
-            {
-                thriftCounterSuperColumns.add(col.getCounter_super_column());
-            }
-        }
+        return CassandraPropertyReader.csmd != null ? CassandraPropertyReader.csmd.getMultigetBatchSize()
+                : CassandraSchemaMetadata.DEFAULT_MULTIGET_BATCH_SIZE;
     }
 
     /**
-     * From thrift row.
+     * Returns number of inverted index columns to be fetched in a single round
+     * trip.
      * 
-     * @param selector
-     *            the selector
-     * @param clazz
-     *            the clazz
-     * @param m
-     *            the m
-     * @param relationNames
-     *            the relation names
-     * @param isWrapReq
-     *            the is wrap req
-     * @param rowIds
-     *            the row ids
-     * @return the list
-     * @throws Exception
-     *             the exception
+     * @return inverted index page size
      */
-    List<Object> fromThriftRow(Selector selector, Class<?> clazz, EntityMetadata m, List<String> relationNames,
-            boolean isWrapReq, ConsistencyLevel consistencyLevel, Object... rowIds) throws Exception
+    int getInvertedIndexPageSize()
     {
-        List<Object> entities = new ArrayList<Object>();
-        if (rowIds != null)
-        {
-            for (Object rowKey : rowIds)
-            {
-                Object e = fromThriftRow(selector, clazz, m, rowKey.toString(), relationNames, isWrapReq,
-                        consistencyLevel);
-                if (e != null)
-                {
-                    entities.add(e);
-                }
-            }
-        }
-        return entities;
+        return CassandraPropertyReader.csmd != null ? CassandraPropertyReader.csmd.getInvertedIndexPageSize()
+                : CassandraSchemaMetadata.DEFAULT_INVERTED_INDEX_PAGE_SIZE;
+    }
+
+    /**
+     * Returns number of rows to be fetched in a single range slice round trip.
+     * 
+     * @return range slice page size
+     */
+    int getRangeSlicePageSize()
+    {
+        return CassandraPropertyReader.csmd != null ? CassandraPropertyReader.csmd.getRangeSlicePageSize()
+                : CassandraSchemaMetadata.DEFAULT_RANGE_SLICE_PAGE_SIZE;
     }
 
     /**
@@ -322,7 +433,7 @@ final class PelopsDataHandler
                             // set value of the field in the bean
                             Field field = columnNameToFieldMap.get(name);
                             Object embeddedObject = PropertyAccessorHelper.getObject(e, scName);
-                            PropertyAccessorHelper.set(embeddedObject, field, value);
+                            PropertyAccessorHelper.set(embeddedObject, field, value, m.getPersistenceUnit());
                         }
 
                     }
@@ -426,16 +537,16 @@ final class PelopsDataHandler
         // }
         // else
         // {
+        EntityFieldAccessor accessor = EntityFieldAccessorFactory.getAccessor(clazz);
         for (Column c : thriftRow.getColumns())
         {
             if (entity == null)
             {
-                entity = clazz.newInstance();
+                entity = accessor.newInstance();
                 // Set row-key
                 PropertyAccessorHelper.setId(entity, m, thriftRow.getId());
             }
 
-            String thriftColumnName = PropertyAccessorFactory.STRING.fromBytes(String.class, c.getName());
             byte[] thriftColumnValue = c.getValue();
 
             if (null == thriftColumnValue)
@@ -444,13 +555,13 @@ final class PelopsDataHandler
             }
 
             // Check if this is a property, or a column representing foreign
-            // keys
-            com.impetus.kundera.metadata.model.Column column = m.getColumn(thriftColumnName);
+            // keys, looking up name bytes without decoding them.
+            com.impetus.kundera.metadata.model.Column column = m.getColumn(c.bufferForName());
             if (column != null)
             {
                 try
                 {
-                    PropertyAccessorHelper.set(entity, column.getField(), thriftColumnValue);
+                    PropertyAccessorHelper.set(entity, column, thriftColumnValue, m.getPersistenceUnit());
                 }
                 catch (PropertyAccessException pae)
                 {
@@ -459,6 +570,7 @@ final class PelopsDataHandler
             }
             else
             {
+                String thriftColumnName = PropertyAccessorFactory.STRING.fromBytes(String.class, c.getName());
                 if (relationNames != null && !relationNames.isEmpty() && relationNames.contains(thriftColumnName))
                 {
                     // relations = new HashMap<String, Object>();
@@ -487,16 +599,16 @@ final class PelopsDataHandler
         // thriftRow.getId());
 
         // Iterate through each column
+        EntityFieldAccessor accessor = EntityFieldAccessorFactory.getAccessor(clazz);
         for (CounterColumn c : thriftRow.getCounterColumns())
         {
             if (entity == null)
             {
-                entity = clazz.newInstance();
+                entity = accessor.newInstance();
                 // Set row-key
                 PropertyAccessorHelper.setId(entity, m, thriftRow.getId());
             }
 
-            String thriftColumnName = PropertyAccessorFactory.STRING.fromBytes(String.class, c.getName());
             Long thriftColumnValue = c.getValue();
 
             if (null == thriftColumnValue)
@@ -506,7 +618,7 @@ final class PelopsDataHandler
 
             // Check if this is a property, or a column representing foreign
             // keys
-            com.impetus.kundera.metadata.model.Column column = m.getColumn(thriftColumnName);
+            com.impetus.kundera.metadata.model.Column column = m.getColumn(c.bufferForName());
             if (column != null)
             {
                 try
@@ -529,6 +641,7 @@ final class PelopsDataHandler
             }
             else
             {
+                String thriftColumnName = PropertyAccessorFactory.STRING.fromBytes(String.class, c.getName());
                 if (relationNames != null && !relationNames.isEmpty() && relationNames.contains(thriftColumnName))
                 {
                     // relations = new HashMap<String, Object>();
@@ -618,7 +731,7 @@ final class PelopsDataHandler
                     Field columnField = columnNameToFieldMap.get(name);
                     if (columnField != null)
                     {
-                        PropertyAccessorHelper.set(embeddedObject, columnField, value);
+                        PropertyAccessorHelper.set(embeddedObject, columnField, value, m.getPersistenceUnit());
                     }
                     else if (relationNames != null && !relationNames.isEmpty() && relationNames.contains(name))
                     {
@@ -653,7 +766,8 @@ final class PelopsDataHandler
                         {
                             try
                             {
-                                PropertyAccessorHelper.set(superColumnObj, columnField, value);
+                                PropertyAccessorHelper.set(superColumnObj, columnField, value,
+                                        m.getPersistenceUnit());
                             }
                             catch (PropertyAccessException e)
                             {
@@ -947,7 +1061,7 @@ final class PelopsDataHandler
                     continue;
                 }
                 Field columnField = columnNameToFieldMap.get(name);
-                PropertyAccessorHelper.set(embeddedObject, columnField, value);
+                PropertyAccessorHelper.set(embeddedObject, columnField, value, m.getPersistenceUnit());
             }
 
         }
@@ -968,7 +1082,7 @@ final class PelopsDataHandler
                 }
                 // set value of the field in the bean
                 Field columnField = columnNameToFieldMap.get(name);
-                PropertyAccessorHelper.set(embeddedObject, columnField, value);
+                PropertyAccessorHelper.set(embeddedObject, columnField, value, m.getPersistenceUnit());
 
             }
         }
@@ -1115,8 +1229,9 @@ final class PelopsDataHandler
             // Construct Index Table Thrift Row
             tr = new ThriftRow();
             tr.setColumnFamilyName(columnFamily); // Index column-family name
-            tr.setId(embeddedColumn.getField().getName() + Constants.INDEX_TABLE_ROW_KEY_DELIMITER
-                    + column.getField().getName()); // Id
+            tr.setId(CassandraIndexHelper.getInvertedIndexBucketRowKey(
+                    CassandraIndexHelper.getInvertedIndexRowKey(embeddedColumn.getField().getName(), column
+                            .getField().getName()), indexColumnName)); // Id
 
             Column thriftColumn = new Column();
             thriftColumn.setName(indexColumnName);
@@ -1149,14 +1264,7 @@ final class PelopsDataHandler
                     {
                         for (com.impetus.kundera.metadata.model.Column column : embeddedColumn.getColumns())
                         {
-                            String rowKey = embeddedColumn.getField().getName()
-                                    + Constants.INDEX_TABLE_ROW_KEY_DELIMITER + column.getField().getName();
-                            byte[] columnName = PropertyAccessorHelper.get(obj, column.getField());
-                            if (columnName != null)
-                            {
-                                mutator.deleteColumn(indexColumnFamily, rowKey, Bytes.fromByteArray(columnName));
-                            }
-
+                            deleteIndexColumn(mutator, indexColumnFamily, embeddedColumn, column, obj);
                         }
                     }
 
@@ -1165,13 +1273,7 @@ final class PelopsDataHandler
                 {
                     for (com.impetus.kundera.metadata.model.Column column : embeddedColumn.getColumns())
                     {
-                        String rowKey = embeddedColumn.getField().getName() + Constants.INDEX_TABLE_ROW_KEY_DELIMITER
-                                + column.getField().getName();
-                        byte[] columnName = PropertyAccessorHelper.get(embeddedObject, column.getField());
-                        if (columnName != null)
-                        {
-                            mutator.deleteColumn(indexColumnFamily, rowKey, Bytes.fromByteArray(columnName));
-                        }
+                        deleteIndexColumn(mutator, indexColumnFamily, embeddedColumn, column, embeddedObject);
                     }
                 }
             }
@@ -1180,124 +1282,282 @@ final class PelopsDataHandler
     }
 
     /**
+     * Deletes inverted index column of a column of an embedded object, from
+     * its bucket row and, while in use, from row written before sharding.
+     * 
+     * @param mutator
+     *            the mutator
+     * @param indexColumnFamily
+     *            inverted index column family
+     * @param embeddedColumn
+     *            the embedded column
+     * @param column
+     *            the column of embedded object
+     * @param obj
+     *            the embedded object
+     */
+    private void deleteIndexColumn(Mutator mutator, String indexColumnFamily, EmbeddedColumn embeddedColumn,
+            com.impetus.kundera.metadata.model.Column column, Object obj)
+    {
+        byte[] columnName = PropertyAccessorHelper.get(obj, column.getField());
+        if (columnName != null)
+        {
+            String rowKey = CassandraIndexHelper.getInvertedIndexRowKey(embeddedColumn.getField().getName(), column
+                    .getField().getName());
+            for (String key : CassandraIndexHelper.getInvertedIndexRowKeys(rowKey, columnName))
+            {
+                mutator.deleteColumn(indexColumnFamily, key, Bytes.fromByteArray(columnName));
+            }
+        }
+    }
+
+    /**
+     * Searches inverted index for given filter clauses. Each clause is an
+     * independent read of inverted index, all of them being run concurrently.
+     * Results of clauses connected by AND are intersected by primary key, and
+     * those of groups of clauses separated by OR are united.
+     * 
      * @param columnFamilyName
+     *            inverted index column family
      * @param m
+     *            entity metadata
      * @param filterClauseQueue
-     * @return
+     *            filter clauses and AND/OR operators
+     * @param persistenceUnit
+     *            the persistence unit
+     * @param consistencyLevel
+     *            the consistency level
+     * @return search results, one per matching row or embedded object
      */
-    public List<SearchResult> getSearchResults(String columnFamilyName, EntityMetadata m,
-            Queue<FilterClause> filterClauseQueue, String persistenceUnit, ConsistencyLevel consistencyLevel)
+    public List<SearchResult> getSearchResults(final String columnFamilyName, final EntityMetadata m,
+            Queue<FilterClause> filterClauseQueue, final String persistenceUnit,
+            final ConsistencyLevel consistencyLevel)
     {
-        Selector selector = Pelops.createSelector(PelopsUtils.generatePoolName(persistenceUnit));
+        List<List<FilterClause>> groups = CassandraIndexHelper.getDisjunctiveGroups(filterClauseQueue);
+
+        List<Callable<List<SearchResult>>> lookups = new ArrayList<Callable<List<SearchResult>>>();
+        for (List<FilterClause> group : groups)
+        {
+            for (final FilterClause clause : group)
+            {
+                lookups.add(new Callable<List<SearchResult>>()
+                {
+                    @Override
+                    public List<SearchResult> call()
+                    {
+                        Selector selector = Pelops.createSelector(PelopsUtils.generatePoolName(persistenceUnit));
+                        return getSearchResults(selector, columnFamilyName, m, clause, consistencyLevel);
+                    }
+                });
+            }
+        }
+        List<List<SearchResult>> clauseResults = ScatterGatherExecutor.invokeAll(lookups);
+
+        Map<String, SearchResult> searchResults = new LinkedHashMap<String, SearchResult>();
+        int groupStart = 0;
+        for (List<FilterClause> group : groups)
+        {
+            for (SearchResult searchResult : intersect(clauseResults.subList(groupStart, groupStart + group.size())))
+            {
+                String key = searchResult.getPrimaryKey() + Constants.INDEX_TABLE_EC_DELIMITER
+                        + searchResult.getEmbeddedColumnValues();
+                if (!searchResults.containsKey(key))
+                {
+                    searchResults.put(key, searchResult);
+                }
+            }
+            groupStart += group.size();
+        }
+        return new ArrayList<SearchResult>(searchResults.values());
+    }
+
+    /**
+     * Intersects search results of clauses connected by AND, by primary key.
+     * Results of clauses on embedded columns are preferred, as they carry
+     * matching embedded objects.
+     * 
+     * @param clauseResults
+     *            search results of each clause
+     * @return search results matching all clauses
+     */
+    private List<SearchResult> intersect(List<List<SearchResult>> clauseResults)
+    {
+        if (clauseResults.size() == 1)
+        {
+            return clauseResults.get(0);
+        }
+        List<SearchResult> base = clauseResults.get(0);
+        for (List<SearchResult> results : clauseResults)
+        {
+            if (!results.isEmpty() && results.get(0).getEmbeddedColumnName() != null)
+            {
+                base = results;
+                break;
+            }
+        }
+        List<Set<String>> primaryKeys = new ArrayList<Set<String>>(clauseResults.size());
+        for (List<SearchResult> results : clauseResults)
+        {
+            if (results.isEmpty())
+            {
+                return results;
+            }
+            if (results != base)
+            {
+                Set<String> keys = new HashSet<String>();
+                for (SearchResult searchResult : results)
+                {
+                    keys.add(String.valueOf(searchResult.getPrimaryKey()));
+                }
+                primaryKeys.add(keys);
+            }
+        }
+        List<SearchResult> matching = new ArrayList<SearchResult>();
+        for (SearchResult searchResult : base)
+        {
+            boolean matchesAll = true;
+            for (Set<String> keys : primaryKeys)
+            {
+                if (!keys.contains(String.valueOf(searchResult.getPrimaryKey())))
+                {
+                    matchesAll = false;
+                    break;
+                }
+            }
+            if (matchesAll)
+            {
+                matching.add(searchResult);
+            }
+        }
+        return matching;
+    }
 
+    /**
+     * Searches inverted index for a single filter clause.
+     * 
+     * @param selector
+     *            the selector
+     * @param columnFamilyName
+     *            inverted index column family
+     * @param m
+     *            entity metadata
+     * @param clause
+     *            the filter clause
+     * @param consistencyLevel
+     *            the consistency level
+     * @return search results, one per matching column of inverted index
+     */
+    private List<SearchResult> getSearchResults(Selector selector, String columnFamilyName, EntityMetadata m,
+            FilterClause clause, ConsistencyLevel consistencyLevel)
+    {
         List<SearchResult> searchResults = new ArrayList<SearchResult>();
 
-        for (FilterClause o : filterClauseQueue)
+        String rowKey = clause.getProperty();
+        String columnName = clause.getValue();
+        String condition = clause.getCondition();
+        log.debug("rowKey:" + rowKey + ";columnName:" + columnName + ";condition:" + condition);
+
+        // TODO: Second check unnecessary but unavoidable as filter clause
+        // property is incorrectly passed as column name
+
+        // Search based on Primary key
+        if (rowKey.equals(m.getIdColumn().getField().getName()) || rowKey.equals(m.getIdColumn().getName()))
         {
             SearchResult searchResult = new SearchResult();
+            searchResult.setPrimaryKey(columnName);
+            searchResults.add(searchResult);
+        }
+        else
+        {
+            // Search results in the form of thrift columns
+            List<Column> thriftColumns = new ArrayList<Column>();
 
-            FilterClause clause = ((FilterClause) o);
-            String rowKey = clause.getProperty();
-            String columnName = clause.getValue();
-            String condition = clause.getCondition();
-            log.debug("rowKey:" + rowKey + ";columnName:" + columnName + ";condition:" + condition);
+            // EQUAL Operator
+            if (condition.equals("="))
+            {
+                List<String> rowKeys = CassandraIndexHelper.getInvertedIndexRowKeys(rowKey,
+                        Bytes.fromUTF8(columnName).toByteArray());
+                Map<String, List<Column>> rows = selector.getColumnsFromRowsUtf8Keys(columnFamilyName, rowKeys,
+                        Selector.newColumnsPredicate(columnName), consistencyLevel);
+                for (List<Column> columns : rows.values())
+                {
+                    thriftColumns.addAll(columns);
+                }
+            }
 
-            // TODO: Second check unnecessary but unavoidable as filter clause
-            // property is incorrectly passed as column name
+            // LIKE operation, sliced by literal prefix of pattern
+            else if (condition.equalsIgnoreCase("LIKE"))
+            {
+                String pattern = CassandraIndexHelper.getLikePattern(columnName);
+                byte[] prefix = Bytes.fromUTF8(CassandraIndexHelper.getLikePrefix(pattern)).toByteArray();
+                searchColumnsInRange(columnFamilyName, consistencyLevel, selector, rowKey, thriftColumns, prefix,
+                        true, CassandraIndexHelper.getPrefixEnd(prefix), false, CassandraIndexHelper.toRegex(pattern));
+            }
 
-            // Search based on Primary key
-            if (rowKey.equals(m.getIdColumn().getField().getName()) || rowKey.equals(m.getIdColumn().getName()))
+            // Greater than operator
+            else if (condition.equals(">"))
             {
+                searchColumnsInRange(columnFamilyName, consistencyLevel, selector, rowKey, thriftColumns,
+                        Bytes.fromUTF8(columnName).toByteArray(), false, new byte[0], true, null);
+            }
 
-                searchResult.setPrimaryKey(columnName);
+            // Less than Operator
+            else if (condition.equals("<"))
+            {
+                searchColumnsInRange(columnFamilyName, consistencyLevel, selector, rowKey, thriftColumns,
+                        new byte[0], true, Bytes.fromUTF8(columnName).toByteArray(), false, null);
+            }
+
+            // Greater than-equals to operator
+            else if (condition.equals(">="))
+            {
+                searchColumnsInRange(columnFamilyName, consistencyLevel, selector, rowKey, thriftColumns,
+                        Bytes.fromUTF8(columnName).toByteArray(), true, new byte[0], true, null);
+            }
 
+            // Less than equal to operator
+            else if (condition.equals("<="))
+            {
+                searchColumnsInRange(columnFamilyName, consistencyLevel, selector, rowKey, thriftColumns,
+                        new byte[0], true, Bytes.fromUTF8(columnName).toByteArray(), true, null);
             }
             else
             {
-                // Search results in the form of thrift columns
-                List<Column> thriftColumns = new ArrayList<Column>();
-
-                // EQUAL Operator
-                if (condition.equals("="))
-                {
-                    Column thriftColumn = selector.getColumnFromRow(columnFamilyName, rowKey, columnName,
-                            consistencyLevel);
-                    thriftColumns.add(thriftColumn);
-                }
+                throw new QueryHandlerException(condition
+                        + " comparison operator not supported currently for Cassandra Inverted Index");
+            }
 
-                // LIKE operation
-                else if (condition.equalsIgnoreCase("LIKE"))
-                {
+            // Construct search results out of these thrift columns
+            for (Column thriftColumn : thriftColumns)
+            {
+                SearchResult searchResult = new SearchResult();
+                byte[] columnValue = thriftColumn.getValue();
+                String columnValueStr = Bytes.toUTF8(columnValue);
 
-                    searchColumnsInRange(columnFamilyName, consistencyLevel, selector, rowKey, columnName,
-                            thriftColumns, columnName.getBytes(), new byte[0]);
-                }
+                PropertyAccessor<?> accessor = PropertyAccessorFactory.getPropertyAccessor(m.getIdColumn()
+                        .getField());
+                Object value = null;
 
-                // Greater than operator
-                else if (condition.equals(">"))
+                if (columnValueStr.indexOf(Constants.INDEX_TABLE_EC_DELIMITER) > 0)
                 {
-                    searchColumnsInRange(columnFamilyName, consistencyLevel, selector, rowKey, columnName,
-                            thriftColumns, columnName.getBytes(), new byte[0]);
-                }
+                    String pk = columnValueStr.substring(0,
+                            columnValueStr.indexOf(Constants.INDEX_TABLE_EC_DELIMITER));
+                    String ecName = columnValueStr.substring(
+                            columnValueStr.indexOf(Constants.INDEX_TABLE_EC_DELIMITER)
+                                    + Constants.INDEX_TABLE_EC_DELIMITER.length(), columnValueStr.length());
 
-                // Less than Operator
-                else if (condition.equals("<"))
-                {
-                    searchColumnsInRange(columnFamilyName, consistencyLevel, selector, rowKey, columnName,
-                            thriftColumns, new byte[0], columnName.getBytes());
-                }
+                    searchResult.setPrimaryKey(pk);
+                    searchResult.setEmbeddedColumnName(rowKey.substring(0,
+                            rowKey.indexOf(Constants.INDEX_TABLE_ROW_KEY_DELIMITER)));
+                    searchResult.addEmbeddedColumnValue(ecName);
 
-                // Greater than-equals to operator
-                else if (condition.equals(">="))
-                {
-                    searchColumnsInRange(columnFamilyName, consistencyLevel, selector, rowKey, columnName,
-                            thriftColumns, columnName.getBytes(), new byte[0]);
-                }
-
-                // Less than equal to operator
-                else if (condition.equals("<="))
-                {
-                    searchColumnsInRange(columnFamilyName, consistencyLevel, selector, rowKey, columnName,
-                            thriftColumns, new byte[0], columnName.getBytes());
                 }
                 else
                 {
-                    throw new QueryHandlerException(condition
-                            + " comparison operator not supported currently for Cassandra Inverted Index");
+                    value = accessor.fromBytes(m.getIdColumn().getField().getClass(), columnValue);
+                    searchResult.setPrimaryKey(value);
                 }
-
-                // Construct search results out of these thrift columns
-                for (Column thriftColumn : thriftColumns)
-                {
-                    byte[] columnValue = thriftColumn.getValue();
-                    String columnValueStr = Bytes.toUTF8(columnValue);
-
-                    PropertyAccessor<?> accessor = PropertyAccessorFactory.getPropertyAccessor(m.getIdColumn()
-                            .getField());
-                    Object value = null;
-
-                    if (columnValueStr.indexOf(Constants.INDEX_TABLE_EC_DELIMITER) > 0)
-                    {
-                        String pk = columnValueStr.substring(0,
-                                columnValueStr.indexOf(Constants.INDEX_TABLE_EC_DELIMITER));
-                        String ecName = columnValueStr.substring(
-                                columnValueStr.indexOf(Constants.INDEX_TABLE_EC_DELIMITER)
-                                        + Constants.INDEX_TABLE_EC_DELIMITER.length(), columnValueStr.length());
-
-                        searchResult.setPrimaryKey(pk);
-                        searchResult.setEmbeddedColumnName(rowKey.substring(0,
-                                rowKey.indexOf(Constants.INDEX_TABLE_ROW_KEY_DELIMITER)));
-                        searchResult.addEmbeddedColumnValue(ecName);
-
-                    }
-                    else
-                    {
-                        value = accessor.fromBytes(m.getIdColumn().getField().getClass(), columnValue);
-                        searchResult.setPrimaryKey(value);
-                    }
-                    searchResults.add(searchResult);
-                }
-
+                searchResults.add(searchResult);
             }
 
         }
@@ -1305,36 +1565,72 @@ final class PelopsDataHandler
     }
 
     /**
-     * Searches <code>searchString</code> into <code>columnFamilyName</code>
-     * (usually a wide row column family) for a given <code>rowKey</code> from
-     * start to finish columns. Adds matching thrift columns into
-     * <code>thriftColumns</code>
+     * Searches columns of inverted index row <code>rowKey</code> of
+     * <code>columnFamilyName</code> whose names lie between start and finish,
+     * and match <code>pattern</code> if any. Adds matching thrift columns into
+     * <code>thriftColumns</code>. Only columns within bounds are read, a page
+     * at a time, so that cost of search grows with number of matching columns
+     * rather than with size of row. First page of all bucket rows of inverted
+     * index row is read in a single multiget, fanned out by coordinator node.
      * 
      * @param columnFamilyName
+     *            inverted index column family
      * @param consistencyLevel
+     *            the consistency level
      * @param selector
+     *            the selector
      * @param rowKey
-     * @param searchString
+     *            inverted index row key
      * @param thriftColumns
+     *            matching columns
+     * @param start
+     *            lower bound of column names, empty for none
+     * @param startInclusive
+     *            whether column named start matches
+     * @param finish
+     *            upper bound of column names, empty for none
+     * @param finishInclusive
+     *            whether column named finish matches
+     * @param pattern
+     *            pattern column names must match, null for any
      */
     private void searchColumnsInRange(String columnFamilyName, ConsistencyLevel consistencyLevel, Selector selector,
-            String rowKey, String searchString, List<Column> thriftColumns, byte[] start, byte[] finish)
+            String rowKey, List<Column> thriftColumns, byte[] start, boolean startInclusive, byte[] finish,
+            boolean finishInclusive, Pattern pattern)
     {
-        SlicePredicate colPredicate = new SlicePredicate();
-        SliceRange sliceRange = new SliceRange();
-        sliceRange.setStart(start);
-        sliceRange.setFinish(finish);
-        colPredicate.setSlice_range(sliceRange);
-        List<Column> allThriftColumns = selector.getColumnsFromRow(columnFamilyName, rowKey, colPredicate,
+        // a page holds at least the column it resumes from, and a new one.
+        int pageSize = Math.max(2, getInvertedIndexPageSize());
+        Bytes finishName = Bytes.fromByteArray(finish);
+        Map<String, List<Column>> rows = selector.getColumnsFromRowsUtf8Keys(columnFamilyName,
+                CassandraIndexHelper.getInvertedIndexRowKeys(rowKey),
+                Selector.newColumnsPredicate(Bytes.fromByteArray(start), finishName, false, pageSize),
                 consistencyLevel);
 
-        for (Column column : allThriftColumns)
+        for (Map.Entry<String, List<Column>> row : rows.entrySet())
         {
-            String colName = Bytes.toUTF8(column.getName());
-            // String colValue = Bytes.toUTF8(column.getValue());
-            if (colName.indexOf(searchString) >= 0)
+            List<Column> page = row.getValue();
+            int first = 0;
+            while (true)
             {
-                thriftColumns.add(column);
+                for (int i = first; i < page.size(); i++)
+                {
+                    byte[] name = page.get(i).getName();
+                    if ((startInclusive || !Arrays.equals(name, start))
+                            && (finishInclusive || !Arrays.equals(name, finish))
+                            && (pattern == null || pattern.matcher(Bytes.toUTF8(name)).matches()))
+                    {
+                        thriftColumns.add(page.get(i));
+                    }
+                }
+                if (page.size() < pageSize)
+                {
+                    break;
+                }
+                // resume from last column read, skipping it.
+                Bytes last = Bytes.fromByteArray(page.get(page.size() - 1).getName());
+                page = selector.getColumnsFromRow(columnFamilyName, row.getKey(),
+                        Selector.newColumnsPredicate(last, finishName, false, pageSize), consistencyLevel);
+                first = 1;
             }
         }
     }
@@ -1531,7 +1827,7 @@ final class PelopsDataHandler
                 String name = column.getName();
                 try
                 {
-                    byte[] value = PropertyAccessorHelper.get(e, field);
+                    byte[] value = PropertyAccessorHelper.get(e, field, m.getPersistenceUnit());
 
                     if (value != null)
                     {
@@ -1608,7 +1904,7 @@ final class PelopsDataHandler
                     {
                         superColumnName = superColumn.getName() + Constants.EMBEDDED_COLUMN_NAME_DELIMITER + count;
                         SuperColumn thriftSuperColumn = buildThriftSuperColumn(superColumnName, timestamp, superColumn,
-                                obj);
+                                obj, m.getPersistenceUnit());
                         tr.addSuperColumn(thriftSuperColumn);
                         ecCacheHandler.addElementCollectionCacheMapping(id, obj, superColumnName);
 
@@ -1631,7 +1927,7 @@ final class PelopsDataHandler
                                     + (++lastEmbeddedObjectCount);
                         }
                         SuperColumn thriftSuperColumn = buildThriftSuperColumn(superColumnName, timestamp, superColumn,
-                                obj);
+                                obj, m.getPersistenceUnit());
                         tr.addSuperColumn(thriftSuperColumn);
                         ecCacheHandler.addElementCollectionCacheMapping(id, obj, superColumnName);
                     }
@@ -1647,7 +1943,7 @@ final class PelopsDataHandler
             {
                 superColumnName = superColumn.getName();
                 SuperColumn thriftSuperColumn = buildThriftSuperColumn(superColumnName, timestamp, superColumn,
-                        superColumnObject);
+                        superColumnObject, m.getPersistenceUnit());
                 tr.addSuperColumn(thriftSuperColumn);
             }
 
@@ -1666,12 +1962,14 @@ final class PelopsDataHandler
      *            the super column
      * @param superColumnObject
      *            the super column object
+     * @param persistenceUnit
+     *            the persistence unit
      * @return the super column
      * @throws PropertyAccessException
      *             the property access exception
      */
-    private SuperColumn buildThriftSuperColumn(String superColumnName, long timestamp, EmbeddedColumn superColumn,
-            Object superColumnObject) throws PropertyAccessException
+    SuperColumn buildThriftSuperColumn(String superColumnName, long timestamp, EmbeddedColumn superColumn,
+            Object superColumnObject, String persistenceUnit) throws PropertyAccessException
     {
         List<Column> thriftColumns = new ArrayList<Column>();
         for (com.impetus.kundera.metadata.model.Column column : superColumn.getColumns())
@@ -1681,7 +1979,7 @@ final class PelopsDataHandler
             byte[] value = null;
             try
             {
-                value = PropertyAccessorHelper.get(superColumnObject, field);
+                value = PropertyAccessorHelper.get(superColumnObject, field, persistenceUnit);
 
             }
             catch (PropertyAccessException exp)
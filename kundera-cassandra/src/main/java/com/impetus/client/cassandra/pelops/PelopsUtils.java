@@ -18,6 +18,8 @@ package com.impetus.client.cassandra.pelops;
 import java.util.Properties;
 
 import org.apache.commons.lang.StringUtils;
+import org.scale7.cassandra.pelops.Cluster;
+import org.scale7.cassandra.pelops.pool.CommonsBackedPool;
 import org.scale7.cassandra.pelops.pool.CommonsBackedPool.Policy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -81,26 +83,63 @@ public class PelopsUtils
 
             if (!StringUtils.isEmpty(maxIdlePerNode))
             {
-                policy.setMaxActivePerNode(Integer.parseInt(maxIdlePerNode));
+                policy.setMaxIdlePerNode(Integer.parseInt(maxIdlePerNode));
             }
 
             if (!StringUtils.isEmpty(minIdlePerNode))
             {
-                policy.setMaxActivePerNode(Integer.parseInt(minIdlePerNode));
+                policy.setMinIdlePerNode(Integer.parseInt(minIdlePerNode));
             }
 
             if (!StringUtils.isEmpty(maxTotal))
             {
-                policy.setMaxActivePerNode(Integer.parseInt(maxTotal));
+                policy.setMaxTotal(Integer.parseInt(maxTotal));
             }
         }
         catch (NumberFormatException e)
         {
             logger.warn("Some Connection pool related property for " + persistenceUnitMetadata.getPersistenceUnitName()
                     + " persistence unit couldn't be parsed. Default pool policy would be used");
-            policy = null;
+            policy = new Policy();
         }
         return policy;
     }
 
+    /**
+     * Creates pool of connections to cluster, selecting nodes by their
+     * latency and load and recording their health into
+     * {@link #getPoolMetrics(String)}.
+     * 
+     * @param poolName
+     *            the pool name
+     * @param cluster
+     *            the cluster
+     * @param keyspace
+     *            the keyspace
+     * @param policy
+     *            the pool policy
+     * @return the pool
+     */
+    public static CommonsBackedPool createPool(String poolName, Cluster cluster, String keyspace, Policy policy)
+    {
+        PoolMetrics metrics = PoolMetrics.getInstance(poolName);
+        // null means default operand and node suspension policy.
+        CommonsBackedPool pool = new CommonsBackedPool(cluster, keyspace, policy, null,
+                new LatencyAwareNodeSelectionStrategy(metrics), null, new TimingConnectionValidator(metrics));
+        metrics.setPool(pool);
+        return pool;
+    }
+
+    /**
+     * Returns health metrics of connection pool of a persistence unit.
+     * 
+     * @param persistenceUnit
+     *            the persistence unit
+     * @return the pool metrics
+     */
+    public static PoolMetrics getPoolMetrics(String persistenceUnit)
+    {
+        return PoolMetrics.getInstance(generatePoolName(persistenceUnit));
+    }
+
 }
@@ -0,0 +1,399 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.client.cassandra.pelops;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.scale7.cassandra.pelops.pool.CommonsBackedPool;
+import org.scale7.cassandra.pelops.pool.CommonsBackedPool.PooledNode;
+
+/**
+ * Health metrics of a connection pool: time taken to borrow connections,
+ * active and idle connections, and latency and error rate of each host.
+ * Latency and error rate are moving averages weighing recent requests more,
+ * sampled from requests made over connections borrowed by Kundera and from
+ * validation of idle connections by pool. Obtained by
+ * {@link PelopsUtils#getPoolMetrics(String)}.
+ *
+ * @author impetus
+ */
+public final class PoolMetrics
+{
+
+    /** Weight of a new sample in moving averages. */
+    private static final double SMOOTHING = 0.2;
+
+    /** Metrics by pool name. */
+    private static final ConcurrentMap<String, PoolMetrics> metrics = new ConcurrentHashMap<String, PoolMetrics>();
+
+    /** The pool name. */
+    private final String poolName;
+
+    /** Number of connections borrowed. */
+    private final AtomicLong borrows = new AtomicLong();
+
+    /** Total nanoseconds taken to borrow connections. */
+    private final AtomicLong borrowNanos = new AtomicLong();
+
+    /** Longest nanoseconds taken to borrow a connection. */
+    private final AtomicLong maxBorrowNanos = new AtomicLong();
+
+    /** Metrics by host address. */
+    private final ConcurrentMap<String, HostMetrics> hosts = new ConcurrentHashMap<String, HostMetrics>();
+
+    /** The pool, null until created. */
+    private volatile CommonsBackedPool pool;
+
+    /**
+     * Instantiates a new pool metrics.
+     *
+     * @param poolName
+     *            the pool name
+     */
+    private PoolMetrics(String poolName)
+    {
+        this.poolName = poolName;
+    }
+
+    /**
+     * Returns metrics of a pool, created on first use.
+     *
+     * @param poolName
+     *            the pool name
+     * @return the pool metrics
+     */
+    static PoolMetrics getInstance(String poolName)
+    {
+        PoolMetrics poolMetrics = metrics.get(poolName);
+        if (poolMetrics == null)
+        {
+            PoolMetrics created = new PoolMetrics(poolName);
+            poolMetrics = metrics.putIfAbsent(poolName, created);
+            if (poolMetrics == null)
+            {
+                poolMetrics = created;
+            }
+        }
+        return poolMetrics;
+    }
+
+    /**
+     * Sets the pool, whose connections are counted.
+     *
+     * @param pool
+     *            the pool
+     */
+    void setPool(CommonsBackedPool pool)
+    {
+        this.pool = pool;
+    }
+
+    /**
+     * Records time taken to borrow a connection.
+     *
+     * @param nanos
+     *            nanoseconds taken
+     */
+    void recordBorrow(long nanos)
+    {
+        borrows.incrementAndGet();
+        borrowNanos.addAndGet(nanos);
+        long max = maxBorrowNanos.get();
+        while (nanos > max && !maxBorrowNanos.compareAndSet(max, nanos))
+        {
+            max = maxBorrowNanos.get();
+        }
+    }
+
+    /**
+     * Records a request made to a host.
+     *
+     * @param host
+     *            host address
+     * @param nanos
+     *            nanoseconds taken
+     * @param failed
+     *            whether it failed for a reason of host, e.g. it timed out
+     */
+    void recordRequest(String host, long nanos, boolean failed)
+    {
+        getHost(host).record(nanos, failed);
+    }
+
+    /**
+     * Returns metrics of a host, created on first use.
+     *
+     * @param host
+     *            host address
+     * @return the host metrics
+     */
+    private HostMetrics getHost(String host)
+    {
+        HostMetrics hostMetrics = hosts.get(host);
+        if (hostMetrics == null)
+        {
+            HostMetrics created = new HostMetrics();
+            hostMetrics = hosts.putIfAbsent(host, created);
+            if (hostMetrics == null)
+            {
+                hostMetrics = created;
+            }
+        }
+        return hostMetrics;
+    }
+
+    /**
+     * Adds a host of pool, if not known yet.
+     *
+     * @param host
+     *            host address
+     */
+    void addHost(String host)
+    {
+        getHost(host);
+    }
+
+    /**
+     * Gets the pool name.
+     *
+     * @return the pool name
+     */
+    public String getPoolName()
+    {
+        return poolName;
+    }
+
+    /**
+     * Gets number of connections borrowed.
+     *
+     * @return the borrow count
+     */
+    public long getBorrowCount()
+    {
+        return borrows.get();
+    }
+
+    /**
+     * Gets average milliseconds taken to borrow a connection.
+     *
+     * @return the average borrow time
+     */
+    public double getAverageBorrowMillis()
+    {
+        long count = borrows.get();
+        return count > 0 ? borrowNanos.get() / 1000000d / count : 0;
+    }
+
+    /**
+     * Gets longest milliseconds taken to borrow a connection.
+     *
+     * @return the longest borrow time
+     */
+    public double getMaxBorrowMillis()
+    {
+        return maxBorrowNanos.get() / 1000000d;
+    }
+
+    /**
+     * Gets number of connections borrowed from pool and not yet released.
+     *
+     * @return the active connection count
+     */
+    public int getActiveConnections()
+    {
+        int active = 0;
+        for (PooledNode node : getNodes())
+        {
+            active += node.getNumActive();
+        }
+        return active;
+    }
+
+    /**
+     * Gets number of connections idle in pool.
+     *
+     * @return the idle connection count
+     */
+    public int getIdleConnections()
+    {
+        int idle = 0;
+        for (PooledNode node : getNodes())
+        {
+            idle += node.getNumIdle();
+        }
+        return idle;
+    }
+
+    /**
+     * Gets addresses of hosts known to pool.
+     *
+     * @return the hosts
+     */
+    public Set<String> getHosts()
+    {
+        return Collections.unmodifiableSet(hosts.keySet());
+    }
+
+    /**
+     * Gets average milliseconds taken by requests to a host.
+     *
+     * @param host
+     *            host address
+     * @return the latency, 0 if no request is recorded
+     */
+    public double getLatencyMillis(String host)
+    {
+        HostMetrics hostMetrics = hosts.get(host);
+        return hostMetrics != null ? hostMetrics.getLatencyNanos() / 1000000d : 0;
+    }
+
+    /**
+     * Gets fraction of recent requests to a host that failed.
+     *
+     * @param host
+     *            host address
+     * @return the error rate, between 0 and 1
+     */
+    public double getErrorRate(String host)
+    {
+        HostMetrics hostMetrics = hosts.get(host);
+        return hostMetrics != null ? hostMetrics.getErrorRate() : 0;
+    }
+
+    /**
+     * Gets number of requests to a host that failed.
+     *
+     * @param host
+     *            host address
+     * @return the error count
+     */
+    public long getErrorCount(String host)
+    {
+        HostMetrics hostMetrics = hosts.get(host);
+        return hostMetrics != null ? hostMetrics.errors.get() : 0;
+    }
+
+    /**
+     * Returns nodes of pool.
+     *
+     * @return the nodes, empty until pool is created
+     */
+    private Iterable<PooledNode> getNodes()
+    {
+        CommonsBackedPool currentPool = pool;
+        if (currentPool == null)
+        {
+            return Collections.emptyList();
+        }
+        List<PooledNode> nodes = new ArrayList<PooledNode>(hosts.size());
+        for (String host : hosts.keySet())
+        {
+            PooledNode node = currentPool.getPooledNode(host);
+            if (node != null)
+            {
+                nodes.add(node);
+            }
+        }
+        return nodes;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder(poolName);
+        builder.append(": borrowed=").append(getBorrowCount()).append(", avgBorrowMs=")
+                .append(String.format("%.3f", getAverageBorrowMillis())).append(", active=")
+                .append(getActiveConnections()).append(", idle=").append(getIdleConnections());
+        for (Map.Entry<String, HostMetrics> host : hosts.entrySet())
+        {
+            builder.append(", ").append(host.getKey()).append("[latencyMs=")
+                    .append(String.format("%.3f", host.getValue().getLatencyNanos() / 1000000d))
+                    .append(", errorRate=").append(String.format("%.3f", host.getValue().getErrorRate()))
+                    .append(']');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Moving averages of requests to a host.
+     */
+    private static final class HostMetrics
+    {
+
+        /** Average latency in nanoseconds, negative until first request. */
+        private double latencyNanos = -1;
+
+        /** Average of failures, 1 for a failed request and 0 otherwise. */
+        private double errorRate;
+
+        /** Number of failed requests. */
+        private final AtomicLong errors = new AtomicLong();
+
+        /**
+         * Records a request.
+         *
+         * @param nanos
+         *            nanoseconds taken
+         * @param failed
+         *            whether it failed
+         */
+        synchronized void record(long nanos, boolean failed)
+        {
+            if (failed)
+            {
+                errors.incrementAndGet();
+            }
+            else
+            {
+                // a failure may return early, its time says little of host.
+                latencyNanos = latencyNanos < 0 ? nanos : latencyNanos + SMOOTHING * (nanos - latencyNanos);
+            }
+            errorRate += SMOOTHING * ((failed ? 1 : 0) - errorRate);
+        }
+
+        /**
+         * Gets average latency.
+         *
+         * @return nanoseconds, 0 until first request
+         */
+        synchronized double getLatencyNanos()
+        {
+            return latencyNanos < 0 ? 0 : latencyNanos;
+        }
+
+        /**
+         * Gets the error rate.
+         *
+         * @return the error rate
+         */
+        synchronized double getErrorRate()
+        {
+            return errorRate;
+        }
+    }
+}
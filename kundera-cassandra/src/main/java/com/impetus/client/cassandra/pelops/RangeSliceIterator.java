@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.client.cassandra.pelops;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.cassandra.thrift.ColumnParent;
+import org.apache.cassandra.thrift.ConsistencyLevel;
+import org.apache.cassandra.thrift.KeySlice;
+import org.apache.cassandra.thrift.SlicePredicate;
+import org.scale7.cassandra.pelops.Bytes;
+import org.scale7.cassandra.pelops.Selector;
+
+/**
+ * Iterates over rows of a key range page by page. Each call to
+ * {@link #next()} returns one page of rows, next page is fetched only when
+ * asked for, starting from last key of previous page. So at most one page of
+ * rows is held in memory, irrespective of size of the range. Rows to be
+ * skipped at start of range are paged past the same way, reading a single
+ * column of each.
+ *
+ * @author impetus
+ */
+final class RangeSliceIterator implements Iterator<List<KeySlice>>
+{
+    /** The selector. */
+    private final Selector selector;
+
+    /** The column parent. */
+    private final ColumnParent columnParent;
+
+    /** The slice predicate. */
+    private final SlicePredicate slicePredicate;
+
+    /** The consistency level. */
+    private final ConsistencyLevel consistencyLevel;
+
+    /** First key of range, empty for start of ring. */
+    private final Bytes startKey;
+
+    /** Last key of range, empty for end of ring. */
+    private final Bytes endKey;
+
+    /** Number of rows fetched per round trip. */
+    private final int pageSize;
+
+    /** Number of rows still to be returned. */
+    private int remaining;
+
+    /** Number of rows still to be skipped before rows are returned. */
+    private int skip;
+
+    /** Last key of previously fetched page, null before first page. */
+    private byte[] lastKey;
+
+    /** Whether end of range has been reached. */
+    private boolean exhausted;
+
+    /** Page fetched by hasNext(), but not yet returned. */
+    private List<KeySlice> nextPage;
+
+    /**
+     * Instantiates a new range slice iterator.
+     *
+     * @param selector
+     *            the selector
+     * @param columnFamily
+     *            the column family
+     * @param slicePredicate
+     *            the slice predicate
+     * @param consistencyLevel
+     *            the consistency level
+     * @param minVal
+     *            first key of range, null for start of ring
+     * @param maxVal
+     *            last key of range, null for end of ring
+     * @param pageSize
+     *            number of rows fetched per round trip
+     * @param skip
+     *            number of rows (holding data) to skip at start of range
+     * @param maxRows
+     *            maximum number of rows to return
+     */
+    RangeSliceIterator(Selector selector, String columnFamily, SlicePredicate slicePredicate,
+            ConsistencyLevel consistencyLevel, byte[] minVal, byte[] maxVal, int pageSize, int skip, int maxRows)
+    {
+        this.selector = selector;
+        this.columnParent = new ColumnParent(columnFamily);
+        this.slicePredicate = slicePredicate;
+        this.consistencyLevel = consistencyLevel;
+        this.startKey = minVal != null ? Bytes.fromByteArray(minVal) : Bytes.fromUTF8("");
+        this.endKey = maxVal != null ? Bytes.fromByteArray(maxVal) : Bytes.fromUTF8("");
+        this.pageSize = pageSize;
+        this.skip = skip;
+        this.remaining = maxRows;
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        while (nextPage == null && !exhausted && remaining > 0)
+        {
+            fetchNextPage();
+        }
+        return nextPage != null;
+    }
+
+    @Override
+    public List<KeySlice> next()
+    {
+        if (!hasNext())
+        {
+            throw new NoSuchElementException();
+        }
+        List<KeySlice> page = nextPage;
+        nextPage = null;
+        return page;
+    }
+
+    @Override
+    public void remove()
+    {
+        throw new UnsupportedOperationException("remove is not supported on range slices");
+    }
+
+    /**
+     * Fetches next page of rows. As start key of a key range is inclusive,
+     * one extra row is asked for on continuation and the repeated row is
+     * dropped.
+     */
+    private void fetchNextPage()
+    {
+        boolean continuation = lastKey != null;
+        boolean skipping = skip > 0;
+        int count = Math.min(pageSize, skipping ? skip : remaining) + (continuation ? 1 : 0);
+
+        List<KeySlice> slices = selector.getKeySlices(columnParent,
+                Selector.newKeyRange(continuation ? Bytes.fromByteArray(lastKey) : startKey, endKey, count),
+                skipping ? Selector.newColumnsPredicateAll(false, 1) : slicePredicate, consistencyLevel);
+
+        exhausted = slices == null || slices.size() < count;
+        if (slices == null || slices.isEmpty())
+        {
+            return;
+        }
+
+        byte[] previousKey = lastKey;
+        lastKey = slices.get(slices.size() - 1).getKey();
+        if (continuation && Arrays.equals(slices.get(0).getKey(), previousKey))
+        {
+            slices = slices.subList(1, slices.size());
+        }
+        if (skipping)
+        {
+            skipRows(slices);
+            return;
+        }
+        if (slices.size() > remaining)
+        {
+            slices = slices.subList(0, remaining);
+        }
+        if (!slices.isEmpty())
+        {
+            remaining -= slices.size();
+            nextPage = slices;
+        }
+    }
+
+    /**
+     * Counts rows of a page towards rows to be skipped. Rows without columns
+     * are deleted ones, not counted as they hold no entity. Once enough rows
+     * are skipped, next page starts after the last of them.
+     * 
+     * @param slices
+     *            page of rows, read with a single column each
+     */
+    private void skipRows(List<KeySlice> slices)
+    {
+        for (KeySlice slice : slices)
+        {
+            if (!slice.getColumns().isEmpty() && --skip == 0)
+            {
+                lastKey = slice.getKey();
+                // rest of page, if any, is yet to be read.
+                exhausted = false;
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.client.cassandra.pelops;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import com.impetus.client.cassandra.config.CassandraPropertyReader;
+import com.impetus.client.cassandra.config.CassandraPropertyReader.CassandraSchemaMetadata;
+import com.impetus.kundera.utils.ThreadPools;
+
+/**
+ * Runs independent lookups of a query concurrently on a bounded, shared pool
+ * of daemon threads, so that a query costs latency of its slowest lookup
+ * rather than sum of all. Calling thread runs first lookup itself, and any
+ * other lookup once pool and its queue are full.
+ *
+ * @author impetus
+ */
+final class ScatterGatherExecutor
+{
+
+    /** Queued lookups allowed per pool thread. */
+    private static final int QUEUE_SIZE_PER_THREAD = 16;
+
+    /** The executor, created on first use. */
+    private static ThreadPoolExecutor executor;
+
+    /**
+     * Instantiates a new scatter gather executor.
+     */
+    private ScatterGatherExecutor()
+    {
+    }
+
+    /**
+     * Runs given lookups, concurrently if there are several.
+     *
+     * @param <T>
+     *            result type
+     * @param lookups
+     *            the lookups
+     * @return results, in order of lookups
+     */
+    static <T> List<T> invokeAll(List<Callable<T>> lookups)
+    {
+        return ThreadPools.invokeAll(lookups.size() > 1 ? getExecutor() : null, lookups);
+    }
+
+    /**
+     * Returns the executor, sized as configured by
+     * {@link com.impetus.kundera.Constants#INDEX_QUERY_THREADS}.
+     *
+     * @return the executor
+     */
+    private static synchronized ThreadPoolExecutor getExecutor()
+    {
+        if (executor == null)
+        {
+            int threads = CassandraPropertyReader.csmd != null ? CassandraPropertyReader.csmd.getIndexQueryThreads()
+                    : CassandraSchemaMetadata.DEFAULT_INDEX_QUERY_THREADS;
+            executor = ThreadPools.newBoundedPool("kundera-index-query", threads, threads * QUEUE_SIZE_PER_THREAD);
+        }
+        return executor;
+    }
+}
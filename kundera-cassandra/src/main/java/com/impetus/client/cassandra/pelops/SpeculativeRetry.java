@@ -0,0 +1,260 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.client.cassandra.pelops;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.QueryTimeoutException;
+
+import org.apache.cassandra.thrift.TimedOutException;
+import org.apache.cassandra.thrift.UnavailableException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.thrift.transport.TTransportException;
+
+import com.impetus.kundera.KunderaException;
+import com.impetus.kundera.utils.ThreadPools;
+
+/**
+ * Runs an operation with a timeout and a number of retries. Without timeout,
+ * operation is retried once it fails for a timed out or unavailable replica.
+ * With timeout, a read runs on a pool of its own and another attempt is
+ * started once timeout elapses, without cancelling the one running, so that
+ * first attempt to complete wins. Writes are retried one attempt after
+ * another only. Each attempt borrows its own connection from pool, so it is
+ * likely sent to another node. An attempt run in calling thread, once pool is
+ * full, is bounded by socket timeout of connection pool instead.
+ *
+ * @author impetus
+ */
+final class SpeculativeRetry
+{
+
+    /** The log. */
+    private static Log log = LogFactory.getLog(SpeculativeRetry.class);
+
+    /** Pool threads, attempts waiting on replicas mostly. */
+    private static final int THREADS = Runtime.getRuntime().availableProcessors() * 4;
+
+    /** Queued attempts allowed per pool thread. */
+    private static final int QUEUE_SIZE_PER_THREAD = 16;
+
+    /** The executor, created on first use. */
+    private static ThreadPoolExecutor executor;
+
+    /**
+     * Instantiates a new speculative retry.
+     */
+    private SpeculativeRetry()
+    {
+    }
+
+    /**
+     * Runs a read.
+     *
+     * @param <T>
+     *            result type
+     * @param operation
+     *            the operation, reading only, so that it is safe to run more
+     *            than once and concurrently
+     * @param timeout
+     *            milliseconds an attempt may take, 0 for no timeout
+     * @param retries
+     *            number of attempts allowed after first one
+     * @return result of first attempt to complete
+     * @throws QueryTimeoutException
+     *             if no attempt completes in time
+     */
+    static <T> T run(Callable<T> operation, long timeout, int retries)
+    {
+        return timeout > 0 ? runSpeculatively(operation, timeout, retries) : retry(operation, retries);
+    }
+
+    /**
+     * Runs a write, or a read without timeout, in calling thread, attempting
+     * it again on transient failures.
+     *
+     * @param <T>
+     *            result type
+     * @param operation
+     *            the operation, safe to run more than once, e.g. a write of
+     *            columns carrying their timestamps
+     * @param retries
+     *            number of attempts allowed after first one
+     * @return the result
+     */
+    static <T> T retry(Callable<T> operation, int retries)
+    {
+        for (int attempt = 0;; attempt++)
+        {
+            try
+            {
+                return operation.call();
+            }
+            catch (Exception e)
+            {
+                if (attempt >= retries || !isTransient(e))
+                {
+                    throw unchecked(e);
+                }
+                log.warn("Attempt " + (attempt + 1) + " failed, retrying, Caused by: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Runs attempts of an operation on pool, starting another one whenever
+     * timeout elapses or an attempt fails transiently, as long as retries are
+     * left.
+     *
+     * @param <T>
+     *            result type
+     * @param operation
+     *            the operation
+     * @param timeout
+     *            milliseconds an attempt may take
+     * @param retries
+     *            number of attempts allowed after first one
+     * @return result of first attempt to complete
+     */
+    private static <T> T runSpeculatively(Callable<T> operation, long timeout, int retries)
+    {
+        CompletionService<T> completion = new ExecutorCompletionService<T>(getExecutor());
+        List<Future<T>> attempts = new ArrayList<Future<T>>(retries + 1);
+        try
+        {
+            attempts.add(completion.submit(operation));
+            int running = 1;
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+            while (true)
+            {
+                long wait = deadline - System.nanoTime();
+                Future<T> done = wait > 0 ? completion.poll(wait, TimeUnit.NANOSECONDS) : null;
+                if (done != null)
+                {
+                    running--;
+                    try
+                    {
+                        return done.get();
+                    }
+                    catch (ExecutionException e)
+                    {
+                        Throwable cause = e.getCause();
+                        if (!isTransient(cause) || (running == 0 && attempts.size() > retries))
+                        {
+                            throw unchecked(cause);
+                        }
+                        log.warn("Attempt failed, Caused by: " + cause.getMessage());
+                    }
+                    if (running > 0)
+                    {
+                        // another attempt is still running, keep waiting for it.
+                        continue;
+                    }
+                }
+                else if (attempts.size() > retries)
+                {
+                    throw new QueryTimeoutException("Operation did not complete within " + timeout + " ms after "
+                            + attempts.size() + " attempts");
+                }
+                attempts.add(completion.submit(operation));
+                running++;
+                deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new KunderaException("Interrupted while waiting for operation", e);
+        }
+        finally
+        {
+            // no-op for completed ones, outstanding ones are not awaited.
+            for (Future<T> attempt : attempts)
+            {
+                attempt.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Returns the executor, distinct from pool of index lookups, as an attempt
+     * may wait for lookups run there.
+     *
+     * @return the executor
+     */
+    private static synchronized ThreadPoolExecutor getExecutor()
+    {
+        if (executor == null)
+        {
+            executor = ThreadPools.newBoundedPool("kundera-retry", THREADS, THREADS * QUEUE_SIZE_PER_THREAD);
+        }
+        return executor;
+    }
+
+    /**
+     * Whether failure is due to a timed out or unavailable replica, or a
+     * broken connection, so that another attempt may succeed.
+     *
+     * @param failure
+     *            the failure
+     * @return true, if transient
+     */
+    static boolean isTransient(Throwable failure)
+    {
+        for (Throwable t = failure; t != null; t = t.getCause())
+        {
+            if (t instanceof TimedOutException || t instanceof UnavailableException
+                    || t instanceof TTransportException)
+            {
+                return true;
+            }
+            if (t.getCause() == t)
+            {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Rethrows failure of an attempt.
+     *
+     * @param failure
+     *            the failure
+     * @return the failure, unchecked
+     */
+    private static RuntimeException unchecked(Throwable failure)
+    {
+        if (failure instanceof RuntimeException)
+        {
+            return (RuntimeException) failure;
+        }
+        if (failure instanceof Error)
+        {
+            throw (Error) failure;
+        }
+        return new KunderaException(failure);
+    }
+}
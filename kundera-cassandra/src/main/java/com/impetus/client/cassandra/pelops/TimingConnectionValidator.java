@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.client.cassandra.pelops;
+
+import org.scale7.cassandra.pelops.pool.CommonsBackedPool;
+import org.scale7.cassandra.pelops.pool.CommonsBackedPool.IConnectionValidator;
+
+/**
+ * Validates idle connections of pool the way Pelops does by default, by
+ * asking node its version, and records time taken as latency of node. Pool
+ * validates idle connections periodically, so latency of each node is
+ * sampled even while it is not selected for requests.
+ *
+ * @author impetus
+ */
+final class TimingConnectionValidator implements IConnectionValidator
+{
+
+    /** Metrics of pool. */
+    private final PoolMetrics metrics;
+
+    /**
+     * Instantiates a new timing connection validator.
+     *
+     * @param metrics
+     *            metrics of pool
+     */
+    TimingConnectionValidator(PoolMetrics metrics)
+    {
+        this.metrics = metrics;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.scale7.cassandra.pelops.pool.CommonsBackedPool.IConnectionValidator
+     * #validate(org.scale7.cassandra.pelops.pool.CommonsBackedPool.
+     * PooledConnection)
+     */
+    @Override
+    public boolean validate(CommonsBackedPool.PooledConnection connection)
+    {
+        long start = System.nanoTime();
+        boolean valid;
+        try
+        {
+            connection.getAPI().describe_version();
+            valid = true;
+        }
+        catch (Exception e)
+        {
+            valid = false;
+        }
+        metrics.recordRequest(connection.getNode().getAddress(), System.nanoTime() - start, !valid);
+        return valid;
+    }
+}
@@ -16,8 +16,12 @@
 package com.impetus.client.cassandra.query;
 
 import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -26,7 +30,6 @@ import javax.persistence.Query;
 import org.apache.cassandra.thrift.IndexClause;
 import org.apache.cassandra.thrift.IndexExpression;
 import org.apache.cassandra.thrift.IndexOperator;
-import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.scale7.cassandra.pelops.Bytes;
@@ -43,6 +46,9 @@ import com.impetus.kundera.metadata.model.EntityMetadata;
 import com.impetus.kundera.metadata.model.KunderaMetadata;
 import com.impetus.kundera.persistence.EntityReader;
 import com.impetus.kundera.persistence.PersistenceDelegator;
+import com.impetus.kundera.property.PropertyAccessor;
+import com.impetus.kundera.property.PropertyAccessorFactory;
+import com.impetus.kundera.property.accessor.DateEncoding;
 import com.impetus.kundera.query.KunderaQuery;
 import com.impetus.kundera.query.KunderaQuery.FilterClause;
 import com.impetus.kundera.query.QueryHandlerException;
@@ -62,6 +68,9 @@ public class CassQuery extends QueryImpl implements Query
     /** The reader. */
     private EntityReader reader;
 
+    /** Values of parameters of native query, by name or position. */
+    private Map<Object, Object> nativeParameters;
+
     /**
      * Instantiates a new cass query.
      * 
@@ -95,7 +104,7 @@ public class CassQuery extends QueryImpl implements Query
         ApplicationMetadata appMetadata = KunderaMetadata.INSTANCE.getApplicationMetadata();
         if (appMetadata.isNative(getJPAQuery()))
         {
-            result = ((PelopsClient) client).executeQuery(getJPAQuery(), m.getEntityClazz(), null);
+            result = executeNativeQuery((PelopsClient) client, m);
         }
         else
         {
@@ -103,15 +112,25 @@ public class CassQuery extends QueryImpl implements Query
             {
 
                 Map<Boolean, List<IndexClause>> ixClause = prepareIndexClause(m);
-                boolean isRowKeyQuery = ixClause.keySet().iterator().next();
-                if (!isRowKeyQuery)
+                byte[][] range = getRowKeyRange(ixClause);
+                if (range != null)
                 {
-                    result = ((PelopsClient) client).find(ixClause.get(isRowKeyQuery), m, false, null, maxResult);
+                    // Rows before first result are paged past by key cursor.
+                    try
+                    {
+                        result = ((PelopsClient) client).findByRange(range[0], range[1], m, false, null,
+                                firstResult, maxResult);
+                    }
+                    catch (Exception e)
+                    {
+                        log.error("Error while executing find by range. Details: " + e.getMessage());
+                        throw new QueryHandlerException(e);
+                    }
+                    setFirstResultSkipped();
                 }
-                else
+                else if (!ixClause.keySet().iterator().next())
                 {
-                    result = ((CassandraEntityReader) getReader()).handleFindByRange(m, client, result, ixClause,
-                            isRowKeyQuery);
+                    result = ((PelopsClient) client).find(ixClause.get(false), m, false, null, getFetchSize());
                 }
 
             }
@@ -124,6 +143,54 @@ public class CassQuery extends QueryImpl implements Query
         return result;
     }
 
+    /**
+     * Returns an iterator reading results page by page, if query reads a key
+     * range (or whole column family) of an entity without relations, else
+     * iterator over results read all at once. Hints of query do not apply
+     * to pages read lazily.
+     * 
+     * @see com.impetus.kundera.query.QueryImpl#iterate()
+     */
+    @Override
+    public <E> Iterator<E> iterate()
+    {
+        EntityMetadata m = getEntityMetadata();
+        if (KunderaMetadata.INSTANCE.getApplicationMetadata().isNative(getJPAQuery())
+                || kunderaQuery.isDeleteUpdate() || !MetadataUtils.useSecondryIndex(m.getPersistenceUnit())
+                || m.isRelationViaJoinTable() || (m.getRelationNames() != null && !m.getRelationNames().isEmpty()))
+        {
+            return super.iterate();
+        }
+
+        byte[][] range = getRowKeyRange(prepareIndexClause(m));
+        if (range == null)
+        {
+            return super.iterate();
+        }
+        PelopsClient client = (PelopsClient) persistenceDelegeator.getClient(m);
+        return (Iterator<E>) client.scan(range[0], range[1], m, false, null, firstResult, maxResult);
+    }
+
+    /**
+     * Returns row key range read by query, if it has only row key
+     * conditions, or none at all (whole column family), null otherwise.
+     * 
+     * @param ixClause
+     *            index clauses of query
+     * @return first and last row keys, null for an end left open
+     */
+    private byte[][] getRowKeyRange(Map<Boolean, List<IndexClause>> ixClause)
+    {
+        boolean isRowKeyQuery = ixClause.keySet().iterator().next();
+        List<IndexClause> clauses = ixClause.get(isRowKeyQuery);
+        if (!isRowKeyQuery)
+        {
+            return clauses.isEmpty() ? new byte[2][] : null;
+        }
+        List<IndexExpression> expressions = clauses.get(0).getExpressions();
+        return expressions != null ? ((CassandraEntityReader) getReader()).getRowKeyRange(expressions) : null;
+    }
+
     @Override
     protected List<Object> recursivelyPopulateEntities(EntityMetadata m, Client client)
     {
@@ -131,7 +198,7 @@ public class CassQuery extends QueryImpl implements Query
         ApplicationMetadata appMetadata = KunderaMetadata.INSTANCE.getApplicationMetadata();
         if (appMetadata.isNative(getJPAQuery()))
         {
-            ls = (List<EnhanceEntity>) ((PelopsClient) client).executeQuery(getJPAQuery(), m.getEntityClazz(), null);
+            ls = (List<EnhanceEntity>) executeNativeQuery((PelopsClient) client, m);
         }
         else
         {
@@ -150,6 +217,7 @@ public class CassQuery extends QueryImpl implements Query
                         : null;
 
                 ((CassandraEntityReader) getReader()).setConditions(ixClause);
+                ((CassandraEntityReader) getReader()).setMaxResult(getFetchSize());
 
                 ls = reader.populateRelation(m, client);
             }
@@ -158,6 +226,127 @@ public class CassQuery extends QueryImpl implements Query
 
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.impetus.kundera.query.QueryImpl#setParameter(java.lang.String,
+     * java.lang.Object)
+     */
+    @Override
+    public Query setParameter(String name, Object value)
+    {
+        if (KunderaMetadata.INSTANCE.getApplicationMetadata().isNative(getJPAQuery()))
+        {
+            setNativeParameter(name, value);
+            return this;
+        }
+        return super.setParameter(name, value);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.impetus.kundera.query.QueryImpl#setParameter(int,
+     * java.lang.Object)
+     */
+    @Override
+    public Query setParameter(int position, Object value)
+    {
+        if (KunderaMetadata.INSTANCE.getApplicationMetadata().isNative(getJPAQuery()))
+        {
+            setNativeParameter(position, value);
+            return this;
+        }
+        return super.setParameter(position, value);
+    }
+
+    /**
+     * Sets value of a parameter of native query.
+     * 
+     * @param parameter
+     *            name or position of parameter
+     * @param value
+     *            the value
+     */
+    private void setNativeParameter(Object parameter, Object value)
+    {
+        if (value == null)
+        {
+            throw new IllegalArgumentException("Parameter " + parameter + " of native query can not be null");
+        }
+        if (nativeParameters == null)
+        {
+            nativeParameters = new HashMap<Object, Object>();
+        }
+        nativeParameters.put(parameter, value);
+    }
+
+    /**
+     * Executes native query. A named query, or one having parameters, is
+     * executed as a statement prepared once per connection with its parameter
+     * values bound, so that server does not parse it again.
+     * 
+     * @param client
+     *            the client
+     * @param m
+     *            metadata of entity mapped to query
+     * @return the result
+     */
+    private List executeNativeQuery(PelopsClient client, EntityMetadata m)
+    {
+        String query = KunderaMetadata.INSTANCE.getApplicationMetadata().getQuery(getJPAQuery());
+        if (query == null)
+        {
+            query = getJPAQuery();
+        }
+
+        NativeQueryStatement statement = NativeQueryStatement.parse(query);
+        if (statement.getParameters().isEmpty() && query.equals(getJPAQuery()))
+        {
+            // ad hoc query, not worth preparing.
+            return client.executeQuery(query, m.getEntityClazz(), null);
+        }
+
+        List<ByteBuffer> values = new ArrayList<ByteBuffer>(statement.getParameters().size());
+        for (Object parameter : statement.getParameters())
+        {
+            Object value = nativeParameters != null ? nativeParameters.get(parameter) : null;
+            if (value == null)
+            {
+                throw new QueryHandlerException("No value set for parameter " + parameter + " of query " + query);
+            }
+            values.add(getParameterValue(value, m));
+        }
+        return client.executeQuery(statement.getCql(), m.getEntityClazz(), null, values);
+    }
+
+    /**
+     * Encodes value of a native query parameter the way values of its type
+     * are written.
+     * 
+     * @param value
+     *            the value
+     * @param m
+     *            metadata of entity mapped to query
+     * @return the encoded value
+     */
+    private ByteBuffer getParameterValue(Object value, EntityMetadata m)
+    {
+        if (value instanceof ByteBuffer)
+        {
+            return (ByteBuffer) value;
+        }
+        else if (value instanceof byte[])
+        {
+            return ByteBuffer.wrap((byte[]) value);
+        }
+        else if (DateEncoding.isTemporal(value) && DateEncoding.isBinaryEncoding(m.getPersistenceUnit()))
+        {
+            return ByteBuffer.wrap(DateEncoding.toBytes(value));
+        }
+        return ByteBuffer.wrap(PropertyAccessorFactory.getPropertyAccessor(value.getClass()).toBytes(value));
+    }
+
     /**
      * On executeUpdate.
      * 
@@ -170,7 +359,11 @@ public class CassQuery extends QueryImpl implements Query
         EntityMetadata m = getEntityMetadata();
         if (KunderaMetadata.INSTANCE.getApplicationMetadata().isNative(getJPAQuery()))
         {
-            ((PelopsClient) persistenceDelegeator.getClient(m)).executeQuery(getJPAQuery(), m.getEntityClazz(), null);
+            executeNativeQuery((PelopsClient) persistenceDelegeator.getClient(m), m);
+
+            // Native query bypasses persistence context, cached entities may
+            // be stale now.
+            persistenceDelegeator.evictFromSecondLevelCache(m.getEntityClazz());
         }
         else if (kunderaQuery.isDeleteUpdate())
         {
@@ -184,7 +377,9 @@ public class CassQuery extends QueryImpl implements Query
     }
 
     /**
-     * Prepare index clause.
+     * Prepare index clause. Conditions connected by AND make a single index
+     * clause, evaluated by cassandra, and each group of them separated by OR
+     * makes a separate one, whose results are merged by client.
      * 
      * @param m
      *            the m
@@ -192,18 +387,18 @@ public class CassQuery extends QueryImpl implements Query
      */
     private Map<Boolean, List<IndexClause>> prepareIndexClause(EntityMetadata m)
     {
-        IndexClause indexClause = Selector.newIndexClause(Bytes.EMPTY, maxResult);
         List<IndexClause> clauses = new ArrayList<IndexClause>();
-        List<IndexExpression> expr = new ArrayList<IndexExpression>();
         Map<Boolean, List<IndexClause>> idxClauses = new HashMap<Boolean, List<IndexClause>>(1);
         // check if id column are mixed with other columns or not?
         String idColumn = m.getIdColumn().getName();
         boolean idPresent = false;
-        for (Object o : getKunderaQuery().getFilterClauseQueue())
+        for (List<FilterClause> group : CassandraIndexHelper.getDisjunctiveGroups(getKunderaQuery()
+                .getFilterClauseQueue()))
         {
-            if (o instanceof FilterClause)
+            IndexClause indexClause = Selector.newIndexClause(Bytes.EMPTY, getFetchSize());
+            List<IndexExpression> expr = new ArrayList<IndexExpression>();
+            for (FilterClause clause : group)
             {
-                FilterClause clause = ((FilterClause) o);
                 // String fieldName = getColumnName(clause.getProperty());
                 String fieldName = clause.getProperty();
                 // in case id column matches with field name, set it for first
@@ -228,25 +423,15 @@ public class CassQuery extends QueryImpl implements Query
                 expr.add(Selector.newIndexExpression(fieldName, getOperator(condition, idPresent),
                         getBytesValue(fieldName, m, value)));
                 // }
-
-            }
-            else
-            {
-                // Case of AND and OR clause.
-                String opr = o.toString();
-                if (opr.equalsIgnoreCase("or"))
-                {
-                    log.error("Support for OR clause is not enabled with in cassandra");
-                    throw new QueryHandlerException("unsupported clause " + opr + " for cassandra");
-                }
-
             }
+            indexClause.setExpressions(expr);
+            clauses.add(indexClause);
         }
 
-        if (!StringUtils.isBlank(getKunderaQuery().getFilter()))
+        if (idPresent && clauses.size() > 1)
         {
-            indexClause.setExpressions(expr);
-            clauses.add(indexClause);
+            log.error("Support for OR clause on rowKey is not enabled with in cassandra");
+            throw new QueryHandlerException("unsupported clause OR for query on row key");
         }
         idxClauses.put(idPresent, clauses);
 
@@ -379,6 +564,15 @@ public class CassQuery extends QueryImpl implements Query
             {
                 return Bytes.fromFloat(Float.valueOf(value));
             }
+            else if (Date.class.isAssignableFrom(f.getType()) || Calendar.class.isAssignableFrom(f.getType()))
+            {
+                // Encoded the same way as while writing for this persistence
+                // unit.
+                PropertyAccessor<?> accessor = PropertyAccessorFactory.getPropertyAccessor(f);
+                Object temporal = accessor.fromString(f.getType(), value);
+                return Bytes.fromByteArray(DateEncoding.isBinaryEncoding(m.getPersistenceUnit()) ? DateEncoding
+                        .toBytes(temporal) : accessor.toBytes(temporal));
+            }
             else
             {
                 log.error("Error while handling data type for:" + fieldName);
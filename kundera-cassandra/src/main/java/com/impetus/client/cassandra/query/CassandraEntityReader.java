@@ -27,6 +27,7 @@ import org.apache.cassandra.thrift.IndexExpression;
 import org.apache.cassandra.thrift.IndexOperator;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.lucene.search.Query;
 
 import com.impetus.client.cassandra.pelops.PelopsClient;
 import com.impetus.kundera.Constants;
@@ -51,6 +52,9 @@ public class CassandraEntityReader extends AbstractEntityReader implements Entit
     /** The conditions. */
     Map<Boolean, List<IndexClause>> conditions = new HashMap<Boolean, List<IndexClause>>();
 
+    /** Maximum number of rows to be read. */
+    private int maxResult = 100;
+
     /** The log. */
     private static Log log = LogFactory.getLog(CassandraEntityReader.class);
 
@@ -60,7 +64,7 @@ public class CassandraEntityReader extends AbstractEntityReader implements Entit
      * @param luceneQuery
      *            the lucene query
      */
-    public CassandraEntityReader(String luceneQuery)
+    public CassandraEntityReader(Query luceneQuery)
     {
         this.luceneQueryFromJPAQuery = luceneQuery;
     }
@@ -114,7 +118,8 @@ public class CassandraEntityReader extends AbstractEntityReader implements Entit
                 if (MetadataUtils.useSecondryIndex(m.getPersistenceUnit()))
                 {
 
-                    ls = ((PelopsClient) client).find(m, relationNames, this.conditions.get(isRowKeyQuery), 100);
+                    ls = ((PelopsClient) client).find(m, relationNames, this.conditions.get(isRowKeyQuery),
+                            maxResult);
 
                 }
                 else
@@ -141,7 +146,7 @@ public class CassandraEntityReader extends AbstractEntityReader implements Entit
                     // in case need to search on secondry columns and it is not
                     // set
                     // to true!
-                    ls = ((PelopsClient) client).find(this.conditions.get(isRowKeyQuery), m, true, null, 100);
+                    ls = ((PelopsClient) client).find(this.conditions.get(isRowKeyQuery), m, true, null, maxResult);
                 }
                 else
                 {
@@ -183,6 +188,30 @@ public class CassandraEntityReader extends AbstractEntityReader implements Entit
             return null;
         }
 
+        byte[][] range = getRowKeyRange(expressions);
+
+        try
+        {
+            result = ((PelopsClient) client).findByRange(range[0], range[1], m, false, null, maxResult);
+        }
+        catch (Exception e)
+        {
+            log.error("Error while executing find by range. Details: " + e.getMessage());
+            throw new QueryHandlerException(e);
+        }
+        return result;
+    }
+
+    /**
+     * Returns first and last row keys of range given by row key conditions,
+     * null for an end left open.
+     * 
+     * @param expressions
+     *            row key conditions
+     * @return first and last row keys
+     */
+    byte[][] getRowKeyRange(List<IndexExpression> expressions)
+    {
         byte[] minValue = null;
         byte[] maxVal = null;
 
@@ -207,17 +236,7 @@ public class CassandraEntityReader extends AbstractEntityReader implements Entit
             minValue = expressions.get(0) != null ? expressions.get(0).getValue() : null;
             maxVal = expressions.size() > 1 && expressions.get(1) != null ? expressions.get(1).getValue() : null;
         }
-
-        try
-        {
-            result = ((PelopsClient) client).findByRange(minValue, maxVal, m, false, null);
-        }
-        catch (Exception e)
-        {
-            log.error("Error while executing find by range. Details: " + e.getMessage());
-            throw new QueryHandlerException(e);
-        }
-        return result;
+        return new byte[][] { minValue, maxVal };
     }
 
     public List<EnhanceEntity> readFromIndexTable(EntityMetadata m, Client client, Queue<FilterClause> filterClauseQueue)
@@ -269,4 +288,15 @@ public class CassandraEntityReader extends AbstractEntityReader implements Entit
     {
         this.conditions = conditions;
     }
+
+    /**
+     * Sets maximum number of rows to be read.
+     * 
+     * @param maxResult
+     *            the maxResult to set
+     */
+    public void setMaxResult(int maxResult)
+    {
+        this.maxResult = maxResult;
+    }
 }
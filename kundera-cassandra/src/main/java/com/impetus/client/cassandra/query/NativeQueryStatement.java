@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.client.cassandra.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.impetus.kundera.query.QueryHandlerException;
+
+/**
+ * A native CQL query whose parameters, either positional (<code>?</code> or
+ * <code>?1</code>) or named (<code>:name</code>), are rewritten into
+ * <code>?</code> markers of a prepared statement. Markers within quoted
+ * literals and identifiers are left as such.
+ *
+ * @author impetus
+ */
+final class NativeQueryStatement
+{
+
+    /** The statement, having a ? marker per parameter. */
+    private final String cql;
+
+    /** Parameter of each marker, an Integer position or a String name. */
+    private final List<Object> parameters;
+
+    /**
+     * Instantiates a new native query statement.
+     *
+     * @param cql
+     *            the statement
+     * @param parameters
+     *            parameter of each marker
+     */
+    private NativeQueryStatement(String cql, List<Object> parameters)
+    {
+        this.cql = cql;
+        this.parameters = Collections.unmodifiableList(parameters);
+    }
+
+    /**
+     * Gets the statement, having a ? marker per parameter.
+     *
+     * @return the cql
+     */
+    String getCql()
+    {
+        return cql;
+    }
+
+    /**
+     * Gets parameter of each marker, in order.
+     *
+     * @return Integer positions or String names
+     */
+    List<Object> getParameters()
+    {
+        return parameters;
+    }
+
+    /**
+     * Parses parameters of a native query.
+     *
+     * @param query
+     *            the query
+     * @return the statement
+     */
+    static NativeQueryStatement parse(String query)
+    {
+        StringBuilder cql = new StringBuilder(query.length());
+        List<Object> parameters = new ArrayList<Object>();
+        int nextPosition = 1;
+        boolean named = false;
+        boolean positional = false;
+        char quote = 0;
+        int i = 0;
+        while (i < query.length())
+        {
+            char c = query.charAt(i);
+            if (quote != 0)
+            {
+                // a doubled quote escapes itself, and toggles twice.
+                if (c == quote)
+                {
+                    quote = 0;
+                }
+                cql.append(c);
+                i++;
+            }
+            else if (c == '\'' || c == '"')
+            {
+                quote = c;
+                cql.append(c);
+                i++;
+            }
+            else if (c == '?')
+            {
+                int end = i + 1;
+                while (end < query.length() && Character.isDigit(query.charAt(end)))
+                {
+                    end++;
+                }
+                parameters.add(end > i + 1 ? Integer.valueOf(query.substring(i + 1, end)) : Integer
+                        .valueOf(nextPosition++));
+                positional = true;
+                cql.append('?');
+                i = end;
+            }
+            else if (c == ':' && i + 1 < query.length() && Character.isJavaIdentifierStart(query.charAt(i + 1)))
+            {
+                int end = i + 1;
+                while (end < query.length() && Character.isJavaIdentifierPart(query.charAt(end)))
+                {
+                    end++;
+                }
+                parameters.add(query.substring(i + 1, end));
+                named = true;
+                cql.append('?');
+                i = end;
+            }
+            else
+            {
+                cql.append(c);
+                i++;
+            }
+        }
+        if (named && positional)
+        {
+            throw new QueryHandlerException("Query " + query + " mixes named and positional parameters");
+        }
+        return new NativeQueryStatement(cql.toString(), parameters);
+    }
+}
@@ -56,6 +56,8 @@ import com.impetus.kundera.metadata.model.Column;
 import com.impetus.kundera.metadata.model.EmbeddedColumn;
 import com.impetus.kundera.metadata.model.EntityMetadata;
 import com.impetus.kundera.metadata.model.EntityMetadata.Type;
+import com.impetus.kundera.metadata.model.KunderaMetadata;
+import com.impetus.kundera.metadata.model.MetamodelImpl;
 import com.impetus.kundera.metadata.model.Relation;
 import com.impetus.kundera.metadata.model.Relation.ForeignKey;
 import com.impetus.kundera.property.PropertyAccessException;
@@ -185,7 +187,10 @@ public class CassandraSchemaManager extends AbstractSchemaManager implements Sch
                 {
                     // TimeUnit.SECONDS.sleep(5);
                     cassandra_client.system_drop_column_family(tableInfo.getTableName());
-                    dropInvertedIndexTable(tableInfo);
+                    if (isTablePresent(tableInfo.getTableName() + Constants.INDEX_TABLE_SUFFIX, ksDef))
+                    {
+                        dropInvertedIndexTable(tableInfo);
+                    }
                     TimeUnit.SECONDS.sleep(3);
                     break;
                 }
@@ -206,18 +211,67 @@ public class CassandraSchemaManager extends AbstractSchemaManager implements Sch
     private void createInvertedIndexTable(TableInfo tableInfo) throws InvalidRequestException,
             SchemaDisagreementException, TException
     {
-        boolean indexTableRequired = CassandraPropertyReader.csmd.isInvertedIndexingEnabled()
-                && !tableInfo.getEmbeddedColumnMetadatas().isEmpty();
-        if (indexTableRequired)
+        if (isInvertedIndexTableRequired(tableInfo))
         {
-            CfDef cfDef = new CfDef();
-            cfDef.setKeyspace(databaseName);
-            cfDef.setName(tableInfo.getTableName() + Constants.INDEX_TABLE_SUFFIX);
-            cfDef.setKey_validation_class(UTF8Type.class.getSimpleName());
-            cassandra_client.system_add_column_family(cfDef);
+            cassandra_client.system_add_column_family(getInvertedIndexTableMetadata(tableInfo));
         }
     }
 
+    /**
+     * Inverted index table is required for super column families having
+     * embedded columns (if inverted indexing is enabled) and for join tables,
+     * where it holds parent keys against each child key.
+     * 
+     * @param tableInfo
+     * @return true, if inverted index table is required
+     */
+    private boolean isInvertedIndexTableRequired(TableInfo tableInfo)
+    {
+        return (CassandraPropertyReader.csmd.isInvertedIndexingEnabled() && !tableInfo.getEmbeddedColumnMetadatas()
+                .isEmpty()) || isJoinTable(tableInfo);
+    }
+
+    /**
+     * @param tableInfo
+     * @return CfDef of inverted index table for given table
+     */
+    private CfDef getInvertedIndexTableMetadata(TableInfo tableInfo)
+    {
+        CfDef cfDef = new CfDef();
+        cfDef.setKeyspace(databaseName);
+        cfDef.setName(tableInfo.getTableName() + Constants.INDEX_TABLE_SUFFIX);
+        cfDef.setKey_validation_class(UTF8Type.class.getSimpleName());
+        return cfDef;
+    }
+
+    /**
+     * Checks whether given table is a join table of any many to many relation
+     * in this persistence unit.
+     * 
+     * @param tableInfo
+     * @return true, if table is a join table
+     */
+    private boolean isJoinTable(TableInfo tableInfo)
+    {
+        MetamodelImpl metamodel = (MetamodelImpl) KunderaMetadata.INSTANCE.getApplicationMetadata().getMetamodel(
+                puMetadata.getPersistenceUnitName());
+        if (metamodel != null)
+        {
+            for (EntityMetadata metadata : metamodel.getEntityMetadataMap().values())
+            {
+                for (Relation relation : metadata.getRelations())
+                {
+                    if (relation.getJoinTableMetadata() != null
+                            && tableInfo.getTableName().equals(relation.getJoinTableMetadata().getJoinTableName()))
+                    {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
     /**
      * @param tableInfo
      * @throws InvalidRequestException
@@ -227,9 +281,7 @@ public class CassandraSchemaManager extends AbstractSchemaManager implements Sch
     private void dropInvertedIndexTable(TableInfo tableInfo) throws InvalidRequestException,
             SchemaDisagreementException, TException
     {
-        boolean indexTableRequired = CassandraPropertyReader.csmd.isInvertedIndexingEnabled()
-                && !tableInfo.getEmbeddedColumnMetadatas().isEmpty();
-        if (indexTableRequired)
+        if (isInvertedIndexTableRequired(tableInfo))
         {
             cassandra_client.system_drop_column_family(tableInfo.getTableName() + Constants.INDEX_TABLE_SUFFIX);
         }
@@ -449,9 +501,37 @@ public class CassandraSchemaManager extends AbstractSchemaManager implements Sch
             {
                 cassandra_client.system_add_column_family(getTableMetadata(tableInfo));
             }
+
+            if (isInvertedIndexTableRequired(tableInfo) && !isTablePresent(tableInfo.getTableName()
+                    + Constants.INDEX_TABLE_SUFFIX, ksDef))
+            {
+                createInvertedIndexTable(tableInfo);
+                if (found && isJoinTable(tableInfo))
+                {
+                    log.warn("Created inverse index table for existing join table " + tableInfo.getTableName()
+                            + ", run InvertedIndexMigrator.migrateJoinTable to backfill it");
+                }
+            }
         }
     }
 
+    /**
+     * @param tableName
+     * @param ksDef
+     * @return true, if table is present in given keyspace definition
+     */
+    private boolean isTablePresent(String tableName, KsDef ksDef)
+    {
+        for (CfDef cfDef : ksDef.getCf_defs())
+        {
+            if (cfDef.getName().equalsIgnoreCase(tableName))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * isInedexesPresent method return whether indexes present or not on
      * particular column.
@@ -529,6 +609,10 @@ public class CassandraSchemaManager extends AbstractSchemaManager implements Sch
         for (TableInfo tableInfo : tableInfos)
         {
             cfDefs.add(getTableMetadata(tableInfo));
+            if (isInvertedIndexTableRequired(tableInfo))
+            {
+                cfDefs.add(getInvertedIndexTableMetadata(tableInfo));
+            }
         }
         ksDef.setCf_defs(cfDefs);
         try
@@ -656,6 +740,7 @@ public class CassandraSchemaManager extends AbstractSchemaManager implements Sch
                 for (TableInfo tableInfo : tableInfos)
                 {
                     cassandra_client.system_drop_column_family(tableInfo.getTableName());
+                    dropInvertedIndexTable(tableInfo);
                 }
             }
             catch (InvalidRequestException e)
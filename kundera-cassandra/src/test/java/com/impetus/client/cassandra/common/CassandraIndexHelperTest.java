@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.client.cassandra.common;
+
+import java.util.Arrays;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+/**
+ * Test case for LIKE and prefix helpers of {@link CassandraIndexHelper}.
+ * 
+ * @author impetus
+ */
+public class CassandraIndexHelperTest
+{
+
+    /**
+     * Test literal prefix of LIKE patterns.
+     */
+    @Test
+    public void testGetLikePrefix()
+    {
+        Assert.assertEquals("abc", CassandraIndexHelper.getLikePrefix("abc%"));
+        Assert.assertEquals("a", CassandraIndexHelper.getLikePrefix("a_c%"));
+        Assert.assertEquals("abc", CassandraIndexHelper.getLikePrefix("abc"));
+        Assert.assertEquals("", CassandraIndexHelper.getLikePrefix("%abc"));
+        Assert.assertEquals("", CassandraIndexHelper.getLikePrefix(""));
+    }
+
+    /**
+     * Test bound of byte strings starting with a prefix, trailing maximum
+     * bytes being carried over.
+     */
+    @Test
+    public void testGetPrefixEnd()
+    {
+        assertPrefixEnd(new byte[] { 'b' }, new byte[] { 'a' });
+        assertPrefixEnd(new byte[] { 'a', 'c' }, new byte[] { 'a', 'b' });
+        assertPrefixEnd(new byte[] { 1, (byte) 0x80 }, new byte[] { 1, 0x7f });
+        assertPrefixEnd(new byte[] { 'b' }, new byte[] { 'a', (byte) 0xff });
+        assertPrefixEnd(new byte[] { 'b' }, new byte[] { 'a', (byte) 0xff, (byte) 0xff });
+
+        // no bound, slice runs to end of row.
+        assertPrefixEnd(new byte[0], new byte[] { (byte) 0xff, (byte) 0xff });
+        assertPrefixEnd(new byte[0], new byte[0]);
+    }
+
+    /**
+     * Test LIKE patterns compiled into regular expressions.
+     */
+    @Test
+    public void testToRegex()
+    {
+        assertMatches("a%", true, "a", "abc", "a\nb");
+        assertMatches("a%", false, "", "ba");
+        assertMatches("a_c", true, "abc", "a_c");
+        assertMatches("a_c", false, "ac", "abbc");
+        assertMatches("%b%", true, "b", "abc");
+        assertMatches("%", true, "", "anything");
+        assertMatches("", true, "");
+        assertMatches("", false, "a");
+
+        // other characters are literals.
+        assertMatches("a.c%", true, "a.c", "a.cd");
+        assertMatches("a.c%", false, "abc");
+        assertMatches("(a)*", true, "(a)*");
+        assertMatches("(a)*", false, "aa");
+    }
+
+    /**
+     * Asserts bound of byte strings starting with a prefix.
+     * 
+     * @param expected
+     *            expected bound
+     * @param prefix
+     *            the prefix
+     */
+    private void assertPrefixEnd(byte[] expected, byte[] prefix)
+    {
+        byte[] end = CassandraIndexHelper.getPrefixEnd(prefix);
+        Assert.assertTrue(Arrays.toString(end), Arrays.equals(expected, end));
+    }
+
+    /**
+     * Asserts whether values match a LIKE pattern.
+     * 
+     * @param pattern
+     *            the pattern
+     * @param matches
+     *            whether values match
+     * @param values
+     *            the values
+     */
+    private void assertMatches(String pattern, boolean matches, String... values)
+    {
+        for (String value : values)
+        {
+            Assert.assertEquals(pattern + " against " + value, matches, CassandraIndexHelper.toRegex(pattern)
+                    .matcher(value).matches());
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.client.cassandra.pelops;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import junit.framework.Assert;
+
+import org.apache.cassandra.thrift.ConsistencyLevel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.impetus.kundera.PersistenceProperties;
+import com.impetus.kundera.metadata.model.KunderaMetadata;
+import com.impetus.kundera.metadata.model.PersistenceUnitMetadata;
+
+/**
+ * Test case for hints applied to {@link PelopsClient}.
+ * 
+ * @author impetus
+ */
+public class PelopsClientHintsTest
+{
+
+    /** The persistence unit. */
+    private static final String PU = "hintsTest";
+
+    /** Properties of persistence unit. */
+    private Properties props;
+
+    /**
+     * Registers persistence unit, hinting consistency level QUORUM.
+     */
+    @Before
+    public void setUp()
+    {
+        props = new Properties();
+        props.put(PersistenceProperties.KUNDERA_NODES, "localhost");
+        props.put(PersistenceProperties.KUNDERA_PORT, "9160");
+        props.put(PersistenceProperties.KUNDERA_KEYSPACE, "KunderaExamples");
+        props.put(PersistenceProperties.KUNDERA_CONSISTENCY_LEVEL, "QUORUM");
+        props.put(PersistenceProperties.KUNDERA_QUERY_TIMEOUT, "100");
+
+        KunderaMetadata.INSTANCE.setApplicationMetadata(null);
+        PersistenceUnitMetadata puMetadata = new PersistenceUnitMetadata();
+        puMetadata.setPersistenceUnitName(PU);
+        puMetadata.setProperties(props);
+        Map<String, PersistenceUnitMetadata> metadata = new HashMap<String, PersistenceUnitMetadata>();
+        metadata.put(PU, puMetadata);
+        KunderaMetadata.INSTANCE.getApplicationMetadata().addPersistenceUnitMetadata(metadata);
+    }
+
+    /**
+     * Clears persistence unit.
+     */
+    @After
+    public void tearDown()
+    {
+        KunderaMetadata.INSTANCE.setApplicationMetadata(null);
+    }
+
+    /**
+     * Test hints override persistence unit's ones, which apply again once
+     * hints are removed.
+     */
+    @Test
+    public void testHints()
+    {
+        PelopsClient client = new PelopsClient(null, null, PU, null);
+        Assert.assertEquals(ConsistencyLevel.QUORUM, client.getConsistencyLevel());
+        Assert.assertTrue(client.getHints().isEmpty());
+
+        Map<String, Object> hints = new HashMap<String, Object>();
+        hints.put(PersistenceProperties.KUNDERA_CONSISTENCY_LEVEL, "all");
+        client.setHints(hints);
+        Assert.assertEquals(ConsistencyLevel.ALL, client.getConsistencyLevel());
+        Assert.assertEquals(hints, client.getHints());
+
+        client.setHints(new HashMap<String, Object>());
+        Assert.assertEquals(ConsistencyLevel.QUORUM, client.getConsistencyLevel());
+    }
+
+    /**
+     * Test invalid hints are rejected, leaving hints applied before.
+     */
+    @Test
+    public void testInvalidHints()
+    {
+        PelopsClient client = new PelopsClient(null, null, PU, null);
+        assertInvalid(client, PersistenceProperties.KUNDERA_CONSISTENCY_LEVEL, "MOST");
+        assertInvalid(client, PersistenceProperties.KUNDERA_PAGE_SIZE, "-1");
+        assertInvalid(client, PersistenceProperties.KUNDERA_RETRY_ATTEMPTS, "twice");
+        Assert.assertEquals(ConsistencyLevel.QUORUM, client.getConsistencyLevel());
+    }
+
+    /**
+     * Test socket timeout does not follow query timeout.
+     */
+    @Test
+    public void testSocketTimeout()
+    {
+        Assert.assertEquals(PelopsClientFactory.DEFAULT_SOCKET_TIMEOUT, PelopsClientFactory.getSocketTimeout(props));
+
+        props.put(PersistenceProperties.KUNDERA_SOCKET_TIMEOUT, "5000");
+        Assert.assertEquals(5000, PelopsClientFactory.getSocketTimeout(props));
+
+        props.put(PersistenceProperties.KUNDERA_SOCKET_TIMEOUT, "0");
+        Assert.assertEquals(-1, PelopsClientFactory.getSocketTimeout(props));
+    }
+
+    /**
+     * Asserts a hint is rejected.
+     * 
+     * @param client
+     *            the client
+     * @param name
+     *            hint name
+     * @param value
+     *            invalid value
+     */
+    private void assertInvalid(PelopsClient client, String name, Object value)
+    {
+        Map<String, Object> hints = new HashMap<String, Object>();
+        hints.put(name, value);
+        try
+        {
+            client.setHints(hints);
+            Assert.fail("Invalid value " + value + " for " + name + " accepted");
+        }
+        catch (IllegalArgumentException e)
+        {
+            Assert.assertTrue(client.getHints().isEmpty());
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.client.cassandra.pelops;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Locale;
+
+import junit.framework.Assert;
+
+import org.apache.cassandra.thrift.SuperColumn;
+import org.junit.Test;
+
+import com.impetus.kundera.annotations.Serializer;
+import com.impetus.kundera.metadata.model.EmbeddedColumn;
+import com.impetus.kundera.metadata.model.EntityMetadata;
+import com.impetus.kundera.property.serializer.ObjectSerializer;
+
+/**
+ * The Class PelopsDataHandlerTest.
+ * 
+ * @author impetus
+ */
+public class PelopsDataHandlerTest
+{
+
+    /**
+     * Test an embedded value written with a custom serializer is read back
+     * with it.
+     */
+    @Test
+    public void testEmbeddedSerializerRoundTrip() throws Exception
+    {
+        EmbeddedColumn embeddedColumn = new EmbeddedColumn("address", Person.class.getDeclaredField("address"));
+        embeddedColumn.addColumn("locale", Address.class.getDeclaredField("locale"));
+        EntityMetadata m = new EntityMetadata(Person.class);
+        m.addEmbeddedColumn("address", embeddedColumn);
+
+        Address address = new Address();
+        address.locale = new Locale("hi");
+
+        PelopsDataHandler handler = new PelopsDataHandler();
+        SuperColumn sc = handler.buildThriftSuperColumn("address", System.currentTimeMillis(), embeddedColumn,
+                address, m.getPersistenceUnit());
+        Assert.assertEquals("locale:hi", new String(sc.getColumns().get(0).getValue(), "UTF-8"));
+
+        Address read = (Address) handler.populateEmbeddedObject(sc, m);
+        Assert.assertEquals(address.locale, read.locale);
+    }
+
+    /**
+     * Entity holding an embedded object.
+     */
+    public static class Person
+    {
+
+        /** The address. */
+        private Address address;
+    }
+
+    /**
+     * Embedded object holding a value of a custom serializer.
+     */
+    public static class Address
+    {
+
+        /** The locale. */
+        @Serializer(LocaleSerializer.class)
+        private Locale locale;
+    }
+
+    /**
+     * Serializer writing a locale as text, which java serialization can not
+     * read.
+     */
+    public static class LocaleSerializer implements ObjectSerializer
+    {
+
+        /** The prefix. */
+        private static final String PREFIX = "locale:";
+
+        @Override
+        public byte[] serialize(Object value)
+        {
+            try
+            {
+                return (PREFIX + value).getBytes("UTF-8");
+            }
+            catch (UnsupportedEncodingException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public Object deserialize(byte[] bytes)
+        {
+            try
+            {
+                return new Locale(new String(bytes, "UTF-8").substring(PREFIX.length()));
+            }
+            catch (UnsupportedEncodingException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
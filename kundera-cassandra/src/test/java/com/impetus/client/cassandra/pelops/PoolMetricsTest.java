@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.client.cassandra.pelops;
+
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+/**
+ * The Class PoolMetricsTest.
+ * 
+ * @author impetus
+ */
+public class PoolMetricsTest
+{
+
+    /**
+     * Test latency and error rate are averaged per host.
+     */
+    @Test
+    public void testHostMetrics()
+    {
+        PoolMetrics metrics = PoolMetrics.getInstance("PoolMetricsTest.testHostMetrics");
+        for (int i = 0; i < 20; i++)
+        {
+            metrics.recordRequest("fast", TimeUnit.MILLISECONDS.toNanos(1), false);
+            metrics.recordRequest("slow", TimeUnit.MILLISECONDS.toNanos(50), i % 2 == 0);
+        }
+        metrics.recordBorrow(TimeUnit.MILLISECONDS.toNanos(4));
+        metrics.recordBorrow(TimeUnit.MILLISECONDS.toNanos(2));
+
+        Assert.assertEquals(2, metrics.getHosts().size());
+        Assert.assertEquals(1.0, metrics.getLatencyMillis("fast"), 0.01);
+        Assert.assertTrue(metrics.getLatencyMillis("slow") > 40);
+        Assert.assertEquals(0, metrics.getErrorCount("fast"));
+        Assert.assertEquals(10, metrics.getErrorCount("slow"));
+        Assert.assertTrue(metrics.getErrorRate("slow") > 0.3);
+        Assert.assertEquals(2, metrics.getBorrowCount());
+        Assert.assertEquals(3.0, metrics.getAverageBorrowMillis(), 0.01);
+        Assert.assertEquals(4.0, metrics.getMaxBorrowMillis(), 0.01);
+    }
+
+    /**
+     * Test slow or failing hosts score worse than fast ones unless much less
+     * loaded.
+     */
+    @Test
+    public void testScore()
+    {
+        PoolMetrics metrics = PoolMetrics.getInstance("PoolMetricsTest.testScore");
+        for (int i = 0; i < 20; i++)
+        {
+            metrics.recordRequest("fast", TimeUnit.MILLISECONDS.toNanos(2), false);
+            metrics.recordRequest("slow", TimeUnit.MILLISECONDS.toNanos(20), false);
+            metrics.recordRequest("failing", TimeUnit.MILLISECONDS.toNanos(2), true);
+        }
+        LatencyAwareNodeSelectionStrategy strategy = new LatencyAwareNodeSelectionStrategy(metrics);
+
+        Assert.assertTrue(strategy.score("fast", 0) < strategy.score("slow", 0));
+        Assert.assertTrue(strategy.score("fast", 0) < strategy.score("failing", 0));
+        Assert.assertTrue(strategy.score("fast", 20) > strategy.score("slow", 0));
+        // unknown hosts score by load alone, so they get tried.
+        Assert.assertTrue(strategy.score("new", 0) < strategy.score("fast", 0));
+    }
+}
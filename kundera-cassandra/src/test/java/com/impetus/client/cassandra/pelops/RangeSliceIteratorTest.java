@@ -0,0 +1,232 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.client.cassandra.pelops;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import junit.framework.Assert;
+
+import org.apache.cassandra.thrift.Column;
+import org.apache.cassandra.thrift.ColumnOrSuperColumn;
+import org.apache.cassandra.thrift.ColumnParent;
+import org.apache.cassandra.thrift.ConsistencyLevel;
+import org.apache.cassandra.thrift.KeyRange;
+import org.apache.cassandra.thrift.KeySlice;
+import org.apache.cassandra.thrift.SlicePredicate;
+import org.junit.Test;
+import org.scale7.cassandra.pelops.Bytes;
+import org.scale7.cassandra.pelops.Selector;
+
+/**
+ * Test case for {@link RangeSliceIterator}, reading rows from a selector
+ * serving a sorted range of keys.
+ * 
+ * @author impetus
+ */
+public class RangeSliceIteratorTest
+{
+
+    /**
+     * Test rows are returned page by page, each exactly once, whether or not
+     * number of rows is a multiple of page size.
+     */
+    @Test
+    public void testPageBoundaries()
+    {
+        List<List<KeySlice>> pages = readAll(new RangeSelector(10), 3, 0, 100);
+        Assert.assertEquals(4, pages.size());
+        Assert.assertEquals(1, pages.get(3).size());
+        Assert.assertEquals(keys(0, 10), keysOf(pages));
+
+        pages = readAll(new RangeSelector(9), 3, 0, 100);
+        Assert.assertEquals(3, pages.size());
+        Assert.assertEquals(keys(0, 9), keysOf(pages));
+    }
+
+    /**
+     * Test no more than maximum number of rows is returned.
+     */
+    @Test
+    public void testMaxRows()
+    {
+        RangeSelector selector = new RangeSelector(10);
+        List<List<KeySlice>> pages = readAll(selector, 4, 0, 5);
+        Assert.assertEquals(2, pages.size());
+        Assert.assertEquals(keys(0, 5), keysOf(pages));
+        Assert.assertEquals(2, selector.calls);
+    }
+
+    /**
+     * Test an empty range has no page.
+     */
+    @Test
+    public void testEmptyRange()
+    {
+        RangeSliceIterator iterator = new RangeSliceIterator(new RangeSelector(0), "CF", new SlicePredicate(),
+                ConsistencyLevel.ONE, null, null, 3, 0, 100);
+        Assert.assertFalse(iterator.hasNext());
+        try
+        {
+            iterator.next();
+            Assert.fail("No page expected");
+        }
+        catch (NoSuchElementException e)
+        {
+            // expected.
+        }
+    }
+
+    /**
+     * Test first rows are skipped, deleted rows not counting, even if whole
+     * pages hold no row to return.
+     */
+    @Test
+    public void testFirstResult()
+    {
+        RangeSelector selector = new RangeSelector(10, 1, 2, 3);
+        List<List<KeySlice>> pages = readAll(selector, 2, 3, 3);
+        Assert.assertEquals(Arrays.asList("k6", "k7", "k8"), keysOf(pages));
+
+        // skipping past end of range returns nothing.
+        Assert.assertTrue(readAll(new RangeSelector(10, 1, 2, 3), 2, 7, 3).isEmpty());
+    }
+
+    /**
+     * Reads all pages of a range.
+     * 
+     * @param selector
+     *            the selector
+     * @param pageSize
+     *            the page size
+     * @param skip
+     *            rows to skip
+     * @param maxRows
+     *            maximum number of rows
+     * @return the pages
+     */
+    private List<List<KeySlice>> readAll(Selector selector, int pageSize, int skip, int maxRows)
+    {
+        RangeSliceIterator iterator = new RangeSliceIterator(selector, "CF", new SlicePredicate(),
+                ConsistencyLevel.ONE, null, null, pageSize, skip, maxRows);
+        List<List<KeySlice>> pages = new ArrayList<List<KeySlice>>();
+        while (iterator.hasNext())
+        {
+            List<KeySlice> page = iterator.next();
+            Assert.assertFalse(page.isEmpty());
+            Assert.assertTrue(page.size() <= pageSize);
+            pages.add(page);
+        }
+        return pages;
+    }
+
+    /**
+     * Returns keys from first (inclusive) to last (exclusive).
+     * 
+     * @param first
+     *            the first
+     * @param last
+     *            the last
+     * @return the keys
+     */
+    private static List<String> keys(int first, int last)
+    {
+        List<String> keys = new ArrayList<String>();
+        for (int i = first; i < last; i++)
+        {
+            keys.add("k" + i);
+        }
+        return keys;
+    }
+
+    /**
+     * Returns keys of rows of pages.
+     * 
+     * @param pages
+     *            the pages
+     * @return the keys
+     */
+    private static List<String> keysOf(List<List<KeySlice>> pages)
+    {
+        List<String> keys = new ArrayList<String>();
+        for (List<KeySlice> page : pages)
+        {
+            for (KeySlice slice : page)
+            {
+                keys.add(Bytes.fromByteArray(slice.getKey()).toUTF8());
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Selector serving rows k0 to k(n-1), sorted by key, some of which may be
+     * deleted, i.e. have no column.
+     */
+    private static final class RangeSelector extends Selector
+    {
+
+        /** The rows. */
+        private final List<KeySlice> rows = new ArrayList<KeySlice>();
+
+        /** Number of calls. */
+        private int calls;
+
+        /**
+         * Instantiates a new range selector.
+         * 
+         * @param n
+         *            number of rows
+         * @param deleted
+         *            numbers of deleted rows
+         */
+        RangeSelector(int n, Integer... deleted)
+        {
+            super(null);
+            for (int i = 0; i < n; i++)
+            {
+                List<ColumnOrSuperColumn> columns = new ArrayList<ColumnOrSuperColumn>();
+                if (!Arrays.asList(deleted).contains(i))
+                {
+                    columns.add(new ColumnOrSuperColumn().setColumn(new Column(ByteBuffer.wrap("c".getBytes()))));
+                }
+                rows.add(new KeySlice(ByteBuffer.wrap(("k" + i).getBytes()), columns));
+            }
+        }
+
+        @Override
+        public List<KeySlice> getKeySlices(ColumnParent colParent, KeyRange keyRange, SlicePredicate colPredicate,
+                ConsistencyLevel cLevel)
+        {
+            calls++;
+            String start = Bytes.fromByteArray(keyRange.getStart_key()).toUTF8();
+            List<KeySlice> slices = new ArrayList<KeySlice>();
+            for (KeySlice row : rows)
+            {
+                if (slices.size() < keyRange.getCount()
+                        && Bytes.fromByteArray(row.getKey()).toUTF8().compareTo(start) >= 0)
+                {
+                    slices.add(row);
+                }
+            }
+            return Collections.unmodifiableList(slices);
+        }
+    }
+}
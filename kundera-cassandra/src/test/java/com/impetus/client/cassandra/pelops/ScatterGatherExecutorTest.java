@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.client.cassandra.pelops;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+/**
+ * The Class ScatterGatherExecutorTest.
+ * 
+ * @author impetus
+ */
+public class ScatterGatherExecutorTest
+{
+
+    /**
+     * Test lookups run concurrently and results keep order of lookups.
+     */
+    @Test
+    public void testInvokeAll()
+    {
+        final int lookupCount = 3;
+        final CountDownLatch started = new CountDownLatch(lookupCount);
+        List<Callable<Integer>> lookups = new ArrayList<Callable<Integer>>();
+        for (int i = 0; i < lookupCount; i++)
+        {
+            final int result = i;
+            lookups.add(new Callable<Integer>()
+            {
+                @Override
+                public Integer call() throws Exception
+                {
+                    started.countDown();
+                    // completes only if all lookups are running at once.
+                    Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+                    return result;
+                }
+            });
+        }
+
+        List<Integer> results = ScatterGatherExecutor.invokeAll(lookups);
+        Assert.assertEquals(lookupCount, results.size());
+        for (int i = 0; i < lookupCount; i++)
+        {
+            Assert.assertEquals(i, results.get(i).intValue());
+        }
+    }
+
+    /**
+     * Test failure of a lookup is propagated to caller.
+     */
+    @Test
+    public void testFailure()
+    {
+        List<Callable<Integer>> lookups = new ArrayList<Callable<Integer>>();
+        lookups.add(new Callable<Integer>()
+        {
+            @Override
+            public Integer call()
+            {
+                return 1;
+            }
+        });
+        lookups.add(new Callable<Integer>()
+        {
+            @Override
+            public Integer call()
+            {
+                throw new IllegalStateException("lookup failed");
+            }
+        });
+        try
+        {
+            ScatterGatherExecutor.invokeAll(lookups);
+            Assert.fail();
+        }
+        catch (IllegalStateException e)
+        {
+            Assert.assertEquals("lookup failed", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.client.cassandra.pelops;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.persistence.QueryTimeoutException;
+
+import junit.framework.Assert;
+
+import org.apache.cassandra.thrift.TimedOutException;
+import org.junit.Test;
+
+import com.impetus.kundera.KunderaException;
+
+/**
+ * The Class SpeculativeRetryTest.
+ * 
+ * @author impetus
+ */
+public class SpeculativeRetryTest
+{
+
+    /**
+     * Test a transient failure is retried while retries are left.
+     */
+    @Test
+    public void testRetry()
+    {
+        Assert.assertEquals("done", SpeculativeRetry.retry(failing(1), 1));
+
+        try
+        {
+            SpeculativeRetry.retry(failing(2), 1);
+            Assert.fail("Retries exhausted, failure expected");
+        }
+        catch (KunderaException e)
+        {
+            Assert.assertTrue(e.getCause() instanceof TimedOutException);
+        }
+    }
+
+    /**
+     * Test a failure which is not transient is not retried.
+     */
+    @Test
+    public void testNoRetryOfPermanentFailure()
+    {
+        final AtomicInteger attempts = new AtomicInteger();
+        try
+        {
+            SpeculativeRetry.retry(new Callable<String>()
+            {
+                @Override
+                public String call()
+                {
+                    attempts.incrementAndGet();
+                    throw new IllegalStateException("permanent");
+                }
+            }, 3);
+            Assert.fail("Failure expected");
+        }
+        catch (IllegalStateException e)
+        {
+            Assert.assertEquals(1, attempts.get());
+        }
+    }
+
+    /**
+     * Test an attempt exceeding timeout is raced by another one, first to
+     * complete winning.
+     */
+    @Test
+    public void testSpeculativeAttempt() throws Exception
+    {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger attempts = new AtomicInteger();
+        try
+        {
+            String result = SpeculativeRetry.run(new Callable<String>()
+            {
+                @Override
+                public String call() throws Exception
+                {
+                    if (attempts.incrementAndGet() == 1)
+                    {
+                        // first attempt hangs until released.
+                        release.await(10, TimeUnit.SECONDS);
+                        return "slow";
+                    }
+                    return "fast";
+                }
+            }, 50, 1);
+            Assert.assertEquals("fast", result);
+            Assert.assertEquals(2, attempts.get());
+        }
+        finally
+        {
+            release.countDown();
+        }
+    }
+
+    /**
+     * Test a read fails with query timeout once all attempts exceeded timeout.
+     */
+    @Test
+    public void testTimeout() throws Exception
+    {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch started = new CountDownLatch(2);
+        try
+        {
+            SpeculativeRetry.run(new Callable<String>()
+            {
+                @Override
+                public String call() throws Exception
+                {
+                    started.countDown();
+                    release.await(10, TimeUnit.SECONDS);
+                    return "slow";
+                }
+            }, 20, 1);
+            Assert.fail("Timeout expected");
+        }
+        catch (QueryTimeoutException e)
+        {
+            // both attempts were started, none is retried further.
+            Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+        }
+        finally
+        {
+            release.countDown();
+        }
+    }
+
+    /**
+     * Test failures of timed out or unavailable replicas are transient.
+     */
+    @Test
+    public void testIsTransient()
+    {
+        Assert.assertTrue(SpeculativeRetry.isTransient(new KunderaException(new TimedOutException())));
+        Assert.assertFalse(SpeculativeRetry.isTransient(new IllegalStateException()));
+    }
+
+    /**
+     * Returns an operation failing with a timed out replica a number of times
+     * before it succeeds.
+     * 
+     * @param failures
+     *            number of failures
+     * @return the operation
+     */
+    private Callable<String> failing(final int failures)
+    {
+        final AtomicInteger attempts = new AtomicInteger();
+        return new Callable<String>()
+        {
+            @Override
+            public String call() throws Exception
+            {
+                if (attempts.incrementAndGet() <= failures)
+                {
+                    throw new TimedOutException();
+                }
+                return "done";
+            }
+        };
+    }
+}
@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.client.cassandra.query;
+
+import java.util.Arrays;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.impetus.kundera.query.QueryHandlerException;
+
+/**
+ * The Class NativeQueryStatementTest.
+ * 
+ * @author impetus
+ */
+public class NativeQueryStatementTest
+{
+
+    /**
+     * Test positional parameters are numbered in order, unless numbered.
+     */
+    @Test
+    public void testPositionalParameters()
+    {
+        NativeQueryStatement statement = NativeQueryStatement
+                .parse("SELECT * FROM users WHERE KEY = ? AND age > ?");
+        Assert.assertEquals("SELECT * FROM users WHERE KEY = ? AND age > ?", statement.getCql());
+        Assert.assertEquals(Arrays.<Object> asList(1, 2), statement.getParameters());
+
+        statement = NativeQueryStatement.parse("SELECT * FROM users WHERE age > ?2 AND KEY = ?1");
+        Assert.assertEquals("SELECT * FROM users WHERE age > ? AND KEY = ?", statement.getCql());
+        Assert.assertEquals(Arrays.<Object> asList(2, 1), statement.getParameters());
+    }
+
+    /**
+     * Test named parameters, and markers within quotes left as such.
+     */
+    @Test
+    public void testNamedParameters()
+    {
+        NativeQueryStatement statement = NativeQueryStatement
+                .parse("SELECT * FROM users WHERE name = :name AND city = 'a:b ?' AND age = :age");
+        Assert.assertEquals("SELECT * FROM users WHERE name = ? AND city = 'a:b ?' AND age = ?", statement.getCql());
+        Assert.assertEquals(Arrays.<Object> asList("name", "age"), statement.getParameters());
+
+        Assert.assertTrue(NativeQueryStatement.parse("SELECT * FROM users").getParameters().isEmpty());
+    }
+
+    /**
+     * Test named and positional parameters can not be mixed.
+     */
+    @Test
+    public void testMixedParameters()
+    {
+        try
+        {
+            NativeQueryStatement.parse("SELECT * FROM users WHERE name = :name AND age = ?");
+            Assert.fail("mixed parameters accepted");
+        }
+        catch (QueryHandlerException e)
+        {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,277 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.client.crud;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import junit.framework.Assert;
+
+import org.apache.cassandra.thrift.CfDef;
+import org.apache.cassandra.thrift.ColumnDef;
+import org.apache.cassandra.thrift.IndexType;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.impetus.client.persistence.CassandraCli;
+import com.impetus.kundera.persistence.AsyncEntityManager;
+
+/**
+ * Test case for {@link AsyncEntityManager}, including a benchmark comparing
+ * throughput of asynchronous finds issued from a single thread with blocking
+ * ones.
+ * 
+ * @author impetus
+ */
+public class AsyncEntityManagerTest extends BaseTest
+{
+
+    /** The log. */
+    private static Log log = LogFactory.getLog(AsyncEntityManagerTest.class);
+
+    /** Number of entities persisted and found. */
+    private static final int ROWS = 500;
+
+    /** Number of measured rounds of finds. */
+    private static final int ROUNDS = 5;
+
+    /** Number of entity managers asynchronous finds are spread over. */
+    private static final int CALLERS = 16;
+
+    /** The emf. */
+    private EntityManagerFactory emf;
+
+    /**
+     * Sets the up.
+     * 
+     * @throws Exception
+     *             the exception
+     */
+    @Before
+    public void setUp() throws Exception
+    {
+        CassandraCli.cassandraSetUp();
+        CassandraCli.createKeySpace("KunderaExamples");
+        CassandraCli.client.set_keyspace("KunderaExamples");
+
+        CfDef cfDef = new CfDef("KunderaExamples", "PERSON");
+        cfDef.setComparator_type("UTF8Type");
+        cfDef.setDefault_validation_class("UTF8Type");
+        ColumnDef columnDef = new ColumnDef(ByteBuffer.wrap("PERSON_NAME".getBytes()), "UTF8Type");
+        columnDef.index_type = IndexType.KEYS;
+        cfDef.addToColumn_metadata(columnDef);
+        ColumnDef ageDef = new ColumnDef(ByteBuffer.wrap("AGE".getBytes()), "UTF8Type");
+        ageDef.index_type = IndexType.KEYS;
+        cfDef.addToColumn_metadata(ageDef);
+        CassandraCli.client.system_add_column_family(cfDef);
+
+        emf = Persistence.createEntityManagerFactory("secIdxCassandraTest");
+    }
+
+    /**
+     * Persists entities asynchronously, then finds them asynchronously, one
+     * by one and in a single multiget.
+     * 
+     * @throws Exception
+     *             the exception
+     */
+    @Test
+    public void testFindAsync() throws Exception
+    {
+        persist(ROWS);
+
+        EntityManager em = emf.createEntityManager();
+        AsyncEntityManager async = em.unwrap(AsyncEntityManager.class);
+        List<Future<PersonCassandra>> found = new ArrayList<Future<PersonCassandra>>(ROWS);
+        for (int i = 0; i < ROWS; i++)
+        {
+            found.add(async.findAsync(PersonCassandra.class, "" + i));
+        }
+        for (int i = 0; i < ROWS; i++)
+        {
+            PersonCassandra p = found.get(i).get();
+            Assert.assertNotNull(p);
+            Assert.assertEquals(i, p.getAge());
+        }
+
+        List<PersonCassandra> all = async.findAllAsync(PersonCassandra.class, "1", "2", "3").get();
+        Assert.assertEquals(3, all.size());
+        Assert.assertEquals(2, all.get(1).getAge());
+        // copies, like those returned by find.
+        Assert.assertNotSame(all.get(0), async.findAsync(PersonCassandra.class, "1").get());
+        em.close();
+    }
+
+    /**
+     * Compares throughput of finds issued from a single caller thread,
+     * blocking on one entity manager with asynchronous ones fanned out over
+     * {@link #CALLERS} entity managers. Each is measured over several rounds
+     * once warmed up, with entity managers of their own, so that persistence
+     * context does not serve repeated finds. Rates are logged, not asserted.
+     * 
+     * @throws Exception
+     *             the exception
+     */
+    @Test
+    public void testThroughput() throws Exception
+    {
+        persist(ROWS);
+        findBlocking();
+        findAsync();
+
+        long blocking = 0;
+        long concurrent = 0;
+        for (int round = 0; round < ROUNDS; round++)
+        {
+            blocking += findBlocking();
+            concurrent += findAsync();
+        }
+
+        double blockingRate = ROWS * ROUNDS * 1e9 / blocking;
+        double asyncRate = ROWS * ROUNDS * 1e9 / concurrent;
+        // Timings depend on machine and load, so they are only reported.
+        log.info("Found " + ROWS * ROUNDS + " entities at " + (long) blockingRate + " finds/s blocking, "
+                + (long) asyncRate + " finds/s asynchronously over " + CALLERS + " entity managers");
+    }
+
+    /**
+     * Writes submitted asynchronously are applied in order of submission.
+     * 
+     * @throws Exception
+     *             the exception
+     */
+    @Test
+    public void testWritesInOrder() throws Exception
+    {
+        EntityManager em = emf.createEntityManager();
+        AsyncEntityManager async = em.unwrap(AsyncEntityManager.class);
+        async.persistAsync(prepareData("1", 10));
+        PersonCassandra p = prepareData("1", 10);
+        p.setPersonName("merged");
+        Future<PersonCassandra> merged = async.mergeAsync(p);
+        // find runs after merge submitted before it.
+        Future<PersonCassandra> found = async.findAsync(PersonCassandra.class, "1");
+        Assert.assertEquals("merged", merged.get().getPersonName());
+        Assert.assertEquals("merged", found.get().getPersonName());
+        em.close();
+
+        em = emf.createEntityManager();
+        Assert.assertEquals("merged", findById(PersonCassandra.class, "1", em).getPersonName());
+        em.close();
+    }
+
+    /**
+     * Persists given number of entities asynchronously.
+     * 
+     * @param rows
+     *            number of entities
+     * @throws Exception
+     *             the exception
+     */
+    private void persist(int rows) throws Exception
+    {
+        EntityManager em = emf.createEntityManager();
+        AsyncEntityManager async = em.unwrap(AsyncEntityManager.class);
+        List<Future<Void>> persisted = new ArrayList<Future<Void>>(rows);
+        for (int i = 0; i < rows; i++)
+        {
+            persisted.add(async.persistAsync(prepareData("" + i, i)));
+        }
+        for (Future<Void> future : persisted)
+        {
+            future.get();
+        }
+        em.close();
+    }
+
+    /**
+     * Finds all entities one after another on a single entity manager.
+     * 
+     * @return elapsed nanos
+     */
+    private long findBlocking()
+    {
+        EntityManager em = emf.createEntityManager();
+        long start = System.nanoTime();
+        for (int i = 0; i < ROWS; i++)
+        {
+            Assert.assertNotNull(findById(PersonCassandra.class, "" + i, em));
+        }
+        long elapsed = System.nanoTime() - start;
+        em.close();
+        return elapsed;
+    }
+
+    /**
+     * Finds all entities asynchronously from calling thread, spread over
+     * {@link #CALLERS} entity managers, each running its finds in order.
+     * 
+     * @return elapsed nanos
+     * @throws Exception
+     *             the exception
+     */
+    private long findAsync() throws Exception
+    {
+        List<EntityManager> ems = new ArrayList<EntityManager>(CALLERS);
+        List<AsyncEntityManager> asyncEms = new ArrayList<AsyncEntityManager>(CALLERS);
+        for (int i = 0; i < CALLERS; i++)
+        {
+            EntityManager em = emf.createEntityManager();
+            ems.add(em);
+            asyncEms.add(em.unwrap(AsyncEntityManager.class));
+        }
+
+        long start = System.nanoTime();
+        List<Future<PersonCassandra>> found = new ArrayList<Future<PersonCassandra>>(ROWS);
+        for (int i = 0; i < ROWS; i++)
+        {
+            found.add(asyncEms.get(i % CALLERS).findAsync(PersonCassandra.class, "" + i));
+        }
+        for (Future<PersonCassandra> future : found)
+        {
+            Assert.assertNotNull(future.get());
+        }
+        long elapsed = System.nanoTime() - start;
+
+        for (EntityManager em : ems)
+        {
+            em.close();
+        }
+        return elapsed;
+    }
+
+    /**
+     * Tear down.
+     * 
+     * @throws Exception
+     *             the exception
+     */
+    @After
+    public void tearDown() throws Exception
+    {
+        emf.close();
+        CassandraCli.dropKeySpace("KunderaExamples");
+    }
+}
@@ -86,8 +86,38 @@ public final class Constants
 
     public final static String INDEX_TABLE_EC_DELIMITER = "@SuperColumn:";
 
+    /** Separates inverted index row key from its bucket number. */
+    public final static String INDEX_TABLE_BUCKET_DELIMITER = "#";
+
     public final static String INVERTED_INDEXING_ENABLED = "inverted.indexing.enabled";
 
+    /** Number of row keys fetched in a single multiget round trip. */
+    public final static String MULTIGET_BATCH_SIZE = "multiget.batch.size";
+
+    /** Number of rows fetched in a single range slice round trip. */
+    public final static String RANGE_SLICE_PAGE_SIZE = "range.slice.page.size";
+
+    /** Number of threads running index lookups of a query concurrently. */
+    public final static String INDEX_QUERY_THREADS = "index.query.threads";
+
+    /** Number of rows entries of each inverted index row are spread across. */
+    public final static String INVERTED_INDEX_BUCKETS = "inverted.index.buckets";
+
+    /** Whether inverted index reads include rows written before sharding. */
+    public final static String INVERTED_INDEX_READ_UNSHARDED = "inverted.index.read.unsharded";
+
+    /** Number of inverted index columns fetched in a single round trip. */
+    public final static String INVERTED_INDEX_PAGE_SIZE = "inverted.index.page.size";
+
+    /** Number of prepared CQL statements cached per connection. */
+    public final static String CQL_PREPARED_CACHE_SIZE = "cql.prepared.cache.size";
+
+    /** Length of CQL statements from which they are sent compressed. */
+    public final static String CQL_COMPRESSION_THRESHOLD = "cql.compression.threshold";
+
+    /** Age (in seconds) after which cached keyspace metadata is reloaded. */
+    public final static String KEYSPACE_METADATA_REFRESH_INTERVAL = "keyspace.metadata.refresh.interval";
+
     public final static String ZOOKEEPER_PORT = "zookeeper_port";
 
     public final static String ZOOKEEPER_HOST = "zookeeper_host";
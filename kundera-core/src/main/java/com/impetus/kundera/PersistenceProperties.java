@@ -70,6 +70,21 @@ public interface PersistenceProperties
      */
     public static final String KUNDERA_INDEX_HOME_DIR = "index.home.dir";
 
+    /** Seconds between two commits of Lucene index, 5 by default. */
+    public static final String KUNDERA_INDEX_COMMIT_INTERVAL = "index.commit.interval";
+
+    /**
+     * Number of documents written to Lucene index after which it is committed
+     * ahead of next periodic commit, 10000 by default.
+     */
+    public static final String KUNDERA_INDEX_COMMIT_DOCUMENTS = "index.commit.documents";
+
+    /**
+     * Megabytes of RAM Lucene buffers documents in before flushing them to
+     * index directory, 32 by default.
+     */
+    public static final String KUNDERA_INDEX_RAM_BUFFER_MB = "index.ram.buffer.mb";
+
     /** Option to create schema. */
     public static final String KUNDERA_DDL_AUTO_PREPARE = "kundera.ddl.auto.prepare";
 
@@ -79,4 +94,70 @@ public interface PersistenceProperties
     public static final String KUNDERA_USERNAME = "kundera.username";
 
     public static final String KUNDERA_PASSWORD = "kundera.password";
+
+    /** Maximum number of rows written in a single batch while flushing. */
+    public static final String KUNDERA_BATCH_SIZE = "kundera.batch.size";
+
+    /**
+     * Encoding of date and time columns on write, either "string" (default)
+     * or "binary" for milliseconds since epoch. Both are read back.
+     */
+    public static final String KUNDERA_DATE_ENCODING = "kundera.date.encoding";
+
+    /**
+     * Serializer for fields without a dedicated accessor, either "java"
+     * (default), "compact" or class name of an ObjectSerializer.
+     */
+    public static final String KUNDERA_SERIALIZER = "kundera.serializer";
+
+    /**
+     * Consistency level of reads and writes, e.g. "ONE" (default) or
+     * "QUORUM". Also accepted as entity manager property and query hint.
+     */
+    public static final String KUNDERA_CONSISTENCY_LEVEL = "kundera.consistency.level";
+
+    /**
+     * Milliseconds a read may take before it is retried, if retries are left,
+     * or fails with a QueryTimeoutException. None by default. Also accepted as
+     * entity manager property and query hint. Writes, and reads run in calling
+     * thread once retry pool is full, are bounded by
+     * {@link #KUNDERA_SOCKET_TIMEOUT} instead.
+     */
+    public static final String KUNDERA_QUERY_TIMEOUT = "javax.persistence.query.timeout";
+
+    /**
+     * Milliseconds a connection may wait for a response of datastore before
+     * request fails, 0 for none. It bounds every request, including large
+     * batch writes and range scans, so it is independent of
+     * {@link #KUNDERA_QUERY_TIMEOUT}. 60 seconds by default.
+     */
+    public static final String KUNDERA_SOCKET_TIMEOUT = "kundera.socket.timeout";
+
+    /**
+     * Number of rows read in a single round trip while paging through
+     * results. Also accepted as entity manager property and query hint.
+     */
+    public static final String KUNDERA_PAGE_SIZE = "kundera.page.size";
+
+    /**
+     * Number of times an operation is retried on timeout or on an unavailable
+     * replica, 0 by default. Also accepted as entity manager property and
+     * query hint.
+     */
+    public static final String KUNDERA_RETRY_ATTEMPTS = "kundera.retry.attempts";
+
+    /**
+     * Number of threads running asynchronous entity manager operations of a
+     * factory, twice number of processors by default.
+     */
+    public static final String KUNDERA_ASYNC_THREADS = "kundera.async.threads";
+
+    /**
+     * Whether entity classes are read from index written at build time by
+     * {@link com.impetus.kundera.classreading.EntityIndexProcessor}, where
+     * present, instead of scanning classes it covers at startup; true by
+     * default. See {@link com.impetus.kundera.classreading.EntityIndex} for
+     * merging indexes into a shaded jar.
+     */
+    public static final String KUNDERA_ENTITY_INDEX = "kundera.entity.index";
 }
@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.kundera.cache;
+
+import java.io.Serializable;
+
+/**
+ * Key of an entity in cache, made of its class and id. Caches may keep
+ * entities of a class in a region of their own, see
+ * {@link #getEntityClass()}.
+ * 
+ * @author impetus
+ */
+public final class CacheKey implements Serializable
+{
+
+    /** The Constant serialVersionUID. */
+    private static final long serialVersionUID = 1L;
+
+    /** The entity class. */
+    private final Class<?> entityClass;
+
+    /**
+     * The id in its string form, as ids of a flushed node are known by their
+     * string form only.
+     */
+    private final String id;
+
+    /**
+     * Instantiates a new cache key.
+     * 
+     * @param entityClass
+     *            the entity class
+     * @param id
+     *            the id
+     */
+    public CacheKey(Class<?> entityClass, Object id)
+    {
+        this.entityClass = entityClass;
+        this.id = String.valueOf(id);
+    }
+
+    /**
+     * Gets the entity class.
+     * 
+     * @return the entity class
+     */
+    public Class<?> getEntityClass()
+    {
+        return entityClass;
+    }
+
+    /**
+     * Gets the id.
+     * 
+     * @return the id, in its string form
+     */
+    public String getId()
+    {
+        return id;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+        {
+            return true;
+        }
+        if (!(obj instanceof CacheKey))
+        {
+            return false;
+        }
+        CacheKey other = (CacheKey) obj;
+        return entityClass.getName().equals(other.entityClass.getName()) && id.equals(other.id);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode()
+    {
+        return 31 * entityClass.getName().hashCode() + id.hashCode();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString()
+    {
+        return entityClass.getName() + "_" + id;
+    }
+}
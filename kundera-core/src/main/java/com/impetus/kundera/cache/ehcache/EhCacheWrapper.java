@@ -15,14 +15,22 @@
  ******************************************************************************/
 package com.impetus.kundera.cache.ehcache;
 
-import net.sf.ehcache.Element;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-import org.apache.commons.lang.NotImplementedException;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
 
 import com.impetus.kundera.cache.Cache;
+import com.impetus.kundera.cache.CacheKey;
 
 /**
- * Cache implementation using Ehcache.
+ * Cache implementation using Ehcache. Entities, put by {@link CacheKey}, are
+ * kept in a region per entity class, an ehcache named
+ * <code>&lt;cache name&gt;.&lt;entity class name&gt;</code> configured like
+ * default cache unless configured otherwise, so that all entities of a class
+ * are evicted at once.
  * 
  * @author animesh.kumar
  */
@@ -32,6 +40,9 @@ public class EhCacheWrapper implements Cache
     /** The ehcache. */
     private net.sf.ehcache.Cache ehcache;
 
+    /** Regions by entity class name. */
+    private final ConcurrentMap<String, Ehcache> regions = new ConcurrentHashMap<String, Ehcache>();
+
     /**
      * Instantiates a new eh cache wrapper.
      * 
@@ -52,7 +63,7 @@ public class EhCacheWrapper implements Cache
     @Override
     public Object get(Object key)
     {
-        Element element = ehcache.get(key);
+        Element element = getCache(key).get(key);
         return element == null ? null : element.getObjectValue();
     }
 
@@ -69,7 +80,7 @@ public class EhCacheWrapper implements Cache
     @Override
     public void put(Object key, Object value)
     {
-        ehcache.put(new Element(key, value));
+        getCache(key).put(new Element(key, value));
     }
 
     /* @see com.impetus.kundera.cache.Cache#size() */
@@ -81,7 +92,12 @@ public class EhCacheWrapper implements Cache
     @Override
     public int size()
     {
-        return ehcache.getSize();
+        int size = ehcache.getSize();
+        for (Ehcache region : regions.values())
+        {
+            size += region.getSize();
+        }
+        return size;
     }
 
     /*
@@ -92,7 +108,7 @@ public class EhCacheWrapper implements Cache
     @Override
     public boolean contains(Class arg0, Object arg1)
     {
-        return (ehcache.get(arg1) != null);
+        return get(new CacheKey(arg0, arg1)) != null;
     }
 
     /*
@@ -103,8 +119,11 @@ public class EhCacheWrapper implements Cache
     @Override
     public void evict(Class arg0)
     {
-        // TODO Can we use Class with ehcache
-        throw new NotImplementedException("TODO");
+        Ehcache region = regions.get(arg0.getName());
+        if (region != null)
+        {
+            region.removeAll();
+        }
     }
 
     /*
@@ -115,8 +134,8 @@ public class EhCacheWrapper implements Cache
     @Override
     public void evict(Class arg0, Object arg1)
     {
-        // TODO Can we use Class with ehcache
-        ehcache.remove(arg1);
+        CacheKey key = new CacheKey(arg0, arg1);
+        getCache(key).remove(key);
     }
 
     /*
@@ -128,6 +147,44 @@ public class EhCacheWrapper implements Cache
     public void evictAll()
     {
         ehcache.removeAll();
+        for (Ehcache region : regions.values())
+        {
+            region.removeAll();
+        }
+    }
+
+    /**
+     * Returns cache holding given key, the region of its entity class for a
+     * {@link CacheKey}.
+     * 
+     * @param key
+     *            the key
+     * @return the cache
+     */
+    private Ehcache getCache(Object key)
+    {
+        if (!(key instanceof CacheKey))
+        {
+            return ehcache;
+        }
+        String className = ((CacheKey) key).getEntityClass().getName();
+        Ehcache region = regions.get(className);
+        if (region == null)
+        {
+            CacheManager manager = ehcache.getCacheManager();
+            if (manager == null)
+            {
+                // not managed, e.g. after shutdown; keep all in one cache.
+                return ehcache;
+            }
+            region = manager.addCacheIfAbsent(ehcache.getName() + "." + className);
+            Ehcache existing = regions.putIfAbsent(className, region);
+            if (existing != null)
+            {
+                region = existing;
+            }
+        }
+        return region;
     }
 
 }
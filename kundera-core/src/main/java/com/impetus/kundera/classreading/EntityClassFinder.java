@@ -0,0 +1,271 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.kundera.classreading;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import javassist.bytecode.AnnotationsAttribute;
+import javassist.bytecode.ClassFile;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.impetus.kundera.utils.ThreadPools;
+
+/**
+ * Finds entity classes of jars and class directories. Those having an
+ * {@link EntityIndex} are read from it, other classes, including ones of such
+ * a jar or directory which its index does not cover, are scanned for having
+ * any valid annotation of reader. Class files are read in sequence, and parsed
+ * in chunks on a bounded, shared pool of daemon threads, calling thread
+ * parsing last chunk itself and any chunk pool can not queue.
+ *
+ * @author impetus
+ */
+public final class EntityClassFinder
+{
+
+    /** The log. */
+    private static Logger log = LoggerFactory.getLogger(EntityClassFinder.class);
+
+    /** Class files parsed by a single task. */
+    private static final int CHUNK_SIZE = 256;
+
+    /** Queued chunks allowed per pool thread, bounding class files held. */
+    private static final int QUEUE_SIZE_PER_THREAD = 2;
+
+    /** Pool threads, parsing being CPU bound. */
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+    /** The executor, created on first use. */
+    private static ThreadPoolExecutor executor;
+
+    /**
+     * Instantiates a new entity class finder.
+     */
+    private EntityClassFinder()
+    {
+    }
+
+    /**
+     * Finds entity classes of given jars and class directories.
+     *
+     * @param resources
+     *            the jars and class directories
+     * @param reader
+     *            the reader, whose valid annotations mark an entity
+     * @param useIndex
+     *            whether index is read where present
+     * @return names of entity classes
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    public static List<String> find(URL[] resources, final Reader reader, boolean useIndex) throws IOException
+    {
+        List<String> classNames = new ArrayList<String>();
+        List<Future<List<String>>> futures = new ArrayList<Future<List<String>>>();
+        try
+        {
+            List<byte[]> chunk = new ArrayList<byte[]>(CHUNK_SIZE);
+            for (URL resource : resources)
+            {
+                EntityIndex index = useIndex ? EntityIndex.find(resource) : null;
+                ResourceIterator itr;
+                if (index != null)
+                {
+                    UncoveredClassIterator uncovered = new UncoveredClassIterator(EntityIndex.toFile(resource),
+                            index, reader.getFilter());
+                    log.debug("Read " + uncovered.getEntityClassNames().size() + " entity classes from index of "
+                            + resource);
+                    classNames.addAll(uncovered.getEntityClassNames());
+                    itr = uncovered;
+                }
+                else
+                {
+                    itr = reader.getResourceIterator(resource, reader.getFilter());
+                }
+
+                try
+                {
+                    InputStream is = null;
+                    while ((is = itr.next()) != null)
+                    {
+                        chunk.add(readFully(is));
+                        if (chunk.size() == CHUNK_SIZE)
+                        {
+                            final List<byte[]> classFiles = chunk;
+                            futures.add(getExecutor().submit(new Callable<List<String>>()
+                            {
+                                @Override
+                                public List<String> call() throws IOException
+                                {
+                                    return parse(classFiles, reader);
+                                }
+                            }));
+                            chunk = new ArrayList<byte[]>(CHUNK_SIZE);
+                        }
+                    }
+                }
+                finally
+                {
+                    itr.close();
+                }
+            }
+
+            List<String> last = parse(chunk, reader);
+            for (Future<List<String>> future : futures)
+            {
+                classNames.addAll(get(future));
+            }
+            classNames.addAll(last);
+            return classNames;
+        }
+        finally
+        {
+            // no-op for completed ones, stops remaining ones on failure.
+            for (Future<List<String>> future : futures)
+            {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Reads a class file, and closes it.
+     *
+     * @param is
+     *            the class file
+     * @return its bytes
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private static byte[] readFully(InputStream is) throws IOException
+    {
+        try
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = is.read(buffer)) != -1)
+            {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toByteArray();
+        }
+        finally
+        {
+            is.close();
+        }
+    }
+
+    /**
+     * Parses class files, keeping classes having any valid annotation.
+     *
+     * @param classFiles
+     *            the class files
+     * @param reader
+     *            the reader
+     * @return names of classes kept
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private static List<String> parse(List<byte[]> classFiles, Reader reader) throws IOException
+    {
+        List<String> classNames = new ArrayList<String>();
+        for (byte[] bytes : classFiles)
+        {
+            ClassFile cf = new ClassFile(new DataInputStream(new ByteArrayInputStream(bytes)));
+            List<String> annotations = new ArrayList<String>();
+            reader.accumulateAnnotations(annotations,
+                    (AnnotationsAttribute) cf.getAttribute(AnnotationsAttribute.visibleTag));
+            reader.accumulateAnnotations(annotations,
+                    (AnnotationsAttribute) cf.getAttribute(AnnotationsAttribute.invisibleTag));
+            for (String validAnn : reader.getValidAnnotations())
+            {
+                if (annotations.contains(validAnn))
+                {
+                    classNames.add(cf.getName());
+                    break;
+                }
+            }
+        }
+        return classNames;
+    }
+
+    /**
+     * Waits for a chunk parsed by pool.
+     *
+     * @param future
+     *            the future
+     * @return names of classes kept
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private static List<String> get(Future<List<String>> future) throws IOException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new ResourceReadingException("Interrupted while scanning classes", e);
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+            throw new ResourceReadingException(cause);
+        }
+    }
+
+    /**
+     * Returns the executor.
+     *
+     * @return the executor
+     */
+    private static synchronized ThreadPoolExecutor getExecutor()
+    {
+        if (executor == null)
+        {
+            executor = ThreadPools.newBoundedPool("kundera-scan", THREADS, THREADS * QUEUE_SIZE_PER_THREAD);
+        }
+        return executor;
+    }
+}
@@ -0,0 +1,279 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.kundera.classreading;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Index of entity classes of a jar or class directory, written at build time
+ * by {@link EntityIndexProcessor} so that entities need not be found by
+ * scanning every class at startup. It is a UTF-8 text resource listing binary
+ * name of an entity class per line, and of each top level class compiled along
+ * with them per line prefixed with <code>class </code>. Classes not listed as
+ * compiled, e.g. ones of a module compiled with <code>-proc:none</code>, are
+ * still scanned.
+ * <p>
+ * Lines of an index do not depend on each other, so indexes of several modules
+ * merged into one jar are merged by concatenating them, e.g. with
+ * <code>AppendingTransformer</code> of maven-shade-plugin for
+ * {@value #RESOURCE}. A merge keeping only one of them leaves classes of others
+ * scanned.
+ *
+ * @author impetus
+ */
+public final class EntityIndex
+{
+
+    /** Path of index within a jar or class directory. */
+    public static final String RESOURCE = "META-INF/kundera/entity.index";
+
+    /** Encoding of index. */
+    static final String ENCODING = "UTF-8";
+
+    /** Prefix of lines naming a compiled class. */
+    private static final String COMPILED_PREFIX = "class ";
+
+    /** Binary names of entity classes. */
+    private final List<String> entityClassNames = new ArrayList<String>();
+
+    /** Binary names of top level classes compiled. */
+    private final Set<String> compiledClassNames = new HashSet<String>();
+
+    /**
+     * Instantiates a new entity index.
+     */
+    private EntityIndex()
+    {
+    }
+
+    /**
+     * Gets the entity class names.
+     *
+     * @return binary names of entity classes
+     */
+    public List<String> getEntityClassNames()
+    {
+        return entityClassNames;
+    }
+
+    /**
+     * Gets the compiled class names.
+     *
+     * @return binary names of top level classes compiled
+     */
+    Set<String> getCompiledClassNames()
+    {
+        return compiledClassNames;
+    }
+
+    /**
+     * Checks whether a class file was compiled along with index, so that
+     * index lists it if it is an entity.
+     *
+     * @param path
+     *            path of class file within jar or class directory
+     * @return true, if it was
+     */
+    public boolean covers(String path)
+    {
+        String className = path.substring(0, path.length() - ".class".length()).replace('/', '.');
+        int nested = className.indexOf('$', className.lastIndexOf('.') + 1);
+        return compiledClassNames.contains(nested < 0 ? className : className.substring(0, nested));
+    }
+
+    /**
+     * Reads index of a jar or class directory, as given to
+     * {@link Reader#getResourceIterator(URL, Filter)}.
+     *
+     * @param root
+     *            the jar or class directory
+     * @return the index, null if it has none or is not on file system
+     * @throws IOException
+     *             if index exists but can not be read
+     */
+    public static EntityIndex find(URL root) throws IOException
+    {
+        File file = toFile(root);
+        if (file == null)
+        {
+            return null;
+        }
+        if (file.isDirectory())
+        {
+            File index = new File(file, RESOURCE);
+            if (!index.isFile())
+            {
+                return null;
+            }
+            InputStream is = new FileInputStream(index);
+            try
+            {
+                return read(is);
+            }
+            finally
+            {
+                is.close();
+            }
+        }
+        if (!file.isFile() || file.getName().endsWith(".class"))
+        {
+            return null;
+        }
+
+        ZipFile jar = new ZipFile(file);
+        try
+        {
+            ZipEntry index = jar.getEntry(RESOURCE);
+            if (index == null)
+            {
+                return null;
+            }
+            InputStream is = jar.getInputStream(index);
+            try
+            {
+                return read(is);
+            }
+            finally
+            {
+                is.close();
+            }
+        }
+        finally
+        {
+            jar.close();
+        }
+    }
+
+    /**
+     * Returns file of a jar or class directory, given either as a plain URL or
+     * as root of a <code>jar:</code> one.
+     *
+     * @param root
+     *            the jar or class directory
+     * @return the file, null if it is not on file system
+     */
+    static File toFile(URL root)
+    {
+        String urlString = root.toString();
+        if (urlString.startsWith("jar:"))
+        {
+            if (!urlString.endsWith("!/"))
+            {
+                // a nested jar or a directory within one.
+                return null;
+            }
+            urlString = urlString.substring("jar:".length(), urlString.length() - "!/".length());
+        }
+        try
+        {
+            URL url = new URL(urlString);
+            if (!"file".equals(url.getProtocol()))
+            {
+                return null;
+            }
+            try
+            {
+                return new File(url.toURI());
+            }
+            catch (URISyntaxException e)
+            {
+                // unescaped characters, e.g. spaces.
+                return new File(url.getPath());
+            }
+            catch (IllegalArgumentException e)
+            {
+                return new File(url.getPath());
+            }
+        }
+        catch (MalformedURLException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Reads an index.
+     *
+     * @param is
+     *            the index
+     * @return the index
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    static EntityIndex read(InputStream is) throws IOException
+    {
+        EntityIndex index = new EntityIndex();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(is, ENCODING));
+        String line;
+        while ((line = reader.readLine()) != null)
+        {
+            line = line.trim();
+            if (line.startsWith(COMPILED_PREFIX))
+            {
+                index.compiledClassNames.add(line.substring(COMPILED_PREFIX.length()).trim());
+            }
+            else if (line.length() > 0 && !line.startsWith("#"))
+            {
+                index.entityClassNames.add(line);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Writes an index.
+     *
+     * @param writer
+     *            the writer, encoding UTF-8
+     * @param classNames
+     *            names of entity classes
+     * @param compiledClassNames
+     *            names of top level classes compiled
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    static void write(Writer writer, Collection<String> classNames, Collection<String> compiledClassNames)
+            throws IOException
+    {
+        for (String className : classNames)
+        {
+            writer.write(className);
+            writer.write('\n');
+        }
+        for (String className : compiledClassNames)
+        {
+            writer.write(COMPILED_PREFIX);
+            writer.write(className);
+            writer.write('\n');
+        }
+    }
+}
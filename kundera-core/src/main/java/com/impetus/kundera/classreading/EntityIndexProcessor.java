@@ -0,0 +1,205 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.kundera.classreading;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Annotation processor writing {@link EntityIndex} of classes annotated with
+ * <code>@Entity</code> into compiler output, so that they are not scanned for
+ * at startup. Runs with compiler on having kundera-core on classpath. Index
+ * lists too every top level class compiled, so that classes it does not cover
+ * are still scanned. Classes indexed by an earlier compilation into same
+ * output, e.g. an incremental one, are kept while they still exist, and
+ * entities while they still are entities.
+ *
+ * @author impetus
+ */
+@SupportedAnnotationTypes(EntityIndexProcessor.ENTITY)
+public class EntityIndexProcessor extends AbstractProcessor
+{
+
+    /** The entity annotation. */
+    static final String ENTITY = "javax.persistence.Entity";
+
+    /** Binary names of entity classes found. */
+    private final Set<String> classNames = new TreeSet<String>();
+
+    /** Binary names of top level classes compiled. */
+    private final Set<String> compiledClassNames = new TreeSet<String>();
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see javax.annotation.processing.AbstractProcessor#getSupportedSourceVersion()
+     */
+    @Override
+    public SourceVersion getSupportedSourceVersion()
+    {
+        return SourceVersion.latestSupported();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see javax.annotation.processing.AbstractProcessor#process(java.util.Set,
+     * javax.annotation.processing.RoundEnvironment)
+     */
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv)
+    {
+        Elements elements = processingEnv.getElementUtils();
+        for (Element element : roundEnv.getRootElements())
+        {
+            if (element instanceof TypeElement)
+            {
+                compiledClassNames.add(elements.getBinaryName((TypeElement) element).toString());
+            }
+        }
+        TypeElement entity = elements.getTypeElement(ENTITY);
+        if (entity != null)
+        {
+            for (Element element : roundEnv.getElementsAnnotatedWith(entity))
+            {
+                if (element.getKind() == ElementKind.CLASS)
+                {
+                    classNames.add(elements.getBinaryName((TypeElement) element).toString());
+                }
+            }
+        }
+        if (roundEnv.processingOver() && !classNames.isEmpty())
+        {
+            writeIndex();
+        }
+        // not claimed, other processors may handle entities too.
+        return false;
+    }
+
+    /**
+     * Writes index of entity classes found, merged with existing one.
+     */
+    private void writeIndex()
+    {
+        Filer filer = processingEnv.getFiler();
+        Elements elements = processingEnv.getElementUtils();
+        try
+        {
+            EntityIndex indexed = readIndex(filer);
+            if (indexed != null)
+            {
+                for (String className : indexed.getEntityClassNames())
+                {
+                    TypeElement type = elements.getTypeElement(className.replace('$', '.'));
+                    if (type != null && isEntity(type))
+                    {
+                        classNames.add(className);
+                    }
+                }
+                for (String className : indexed.getCompiledClassNames())
+                {
+                    if (elements.getTypeElement(className.replace('$', '.')) != null)
+                    {
+                        compiledClassNames.add(className);
+                    }
+                }
+            }
+
+            FileObject index = filer.createResource(StandardLocation.CLASS_OUTPUT, "", EntityIndex.RESOURCE);
+            Writer writer = new OutputStreamWriter(index.openOutputStream(), EntityIndex.ENCODING);
+            try
+            {
+                EntityIndex.write(writer, classNames, compiledClassNames);
+            }
+            finally
+            {
+                writer.close();
+            }
+        }
+        catch (IOException e)
+        {
+            // entities are scanned for at startup instead.
+            processingEnv.getMessager().printMessage(Kind.WARNING,
+                    "Unable to write " + EntityIndex.RESOURCE + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads index written by an earlier compilation.
+     *
+     * @param filer
+     *            the filer
+     * @return the index, null if there is none
+     */
+    private EntityIndex readIndex(Filer filer)
+    {
+        try
+        {
+            InputStream is = filer.getResource(StandardLocation.CLASS_OUTPUT, "", EntityIndex.RESOURCE)
+                    .openInputStream();
+            try
+            {
+                return EntityIndex.read(is);
+            }
+            finally
+            {
+                is.close();
+            }
+        }
+        catch (IOException e)
+        {
+            // no index yet.
+            return null;
+        }
+    }
+
+    /**
+     * Checks whether a class is annotated with <code>@Entity</code>.
+     *
+     * @param type
+     *            the class
+     * @return true, if it is an entity
+     */
+    private boolean isEntity(TypeElement type)
+    {
+        for (AnnotationMirror annotation : type.getAnnotationMirrors())
+        {
+            if (((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(ENTITY))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
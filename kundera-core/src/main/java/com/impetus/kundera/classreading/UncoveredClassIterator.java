@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.kundera.classreading;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Iterates class files of a jar or class directory having an
+ * {@link EntityIndex} which it does not cover, so that they are scanned. Keeps
+ * entities of index whose class file exists.
+ *
+ * @author impetus
+ */
+class UncoveredClassIterator implements ResourceIterator
+{
+
+    /** The log. */
+    private static Logger log = LoggerFactory.getLogger(UncoveredClassIterator.class);
+
+    /** The class directory, null for a jar. */
+    private final File dir;
+
+    /** The jar, null for a class directory. */
+    private final ZipFile jar;
+
+    /** Paths of class files to scan. */
+    private final List<String> paths = new ArrayList<String>();
+
+    /** Entities of index whose class file exists. */
+    private final List<String> entityClassNames = new ArrayList<String>();
+
+    /** The next path. */
+    private int next = 0;
+
+    /**
+     * Instantiates a new uncovered class iterator.
+     *
+     * @param root
+     *            the jar or class directory
+     * @param index
+     *            its index
+     * @param filter
+     *            the filter of class files to scan
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    UncoveredClassIterator(File root, EntityIndex index, Filter filter) throws IOException
+    {
+        Set<String> classFiles = new HashSet<String>();
+        if (root.isDirectory())
+        {
+            dir = root;
+            jar = null;
+            list(dir, "", classFiles);
+        }
+        else
+        {
+            dir = null;
+            jar = new ZipFile(root);
+            Enumeration<? extends ZipEntry> entries = jar.entries();
+            while (entries.hasMoreElements())
+            {
+                ZipEntry entry = entries.nextElement();
+                if (!entry.isDirectory() && entry.getName().endsWith(".class"))
+                {
+                    classFiles.add(entry.getName());
+                }
+            }
+        }
+
+        for (String className : index.getEntityClassNames())
+        {
+            if (classFiles.contains(className.replace('.', '/') + ".class"))
+            {
+                entityClassNames.add(className);
+            }
+            else
+            {
+                log.warn("Ignoring " + className + " indexed as entity in " + root + ", it has no class file");
+            }
+        }
+        for (String path : classFiles)
+        {
+            if (!index.covers(path) && (filter == null || filter.accepts(path)))
+            {
+                paths.add(path);
+            }
+        }
+        if (!paths.isEmpty())
+        {
+            log.info("Scanning " + paths.size() + " classes of " + root + " not covered by its entity index");
+        }
+    }
+
+    /**
+     * Gets the entity class names.
+     *
+     * @return entities of index whose class file exists
+     */
+    List<String> getEntityClassNames()
+    {
+        return entityClassNames;
+    }
+
+    /**
+     * Lists class files of a directory, recursively.
+     *
+     * @param file
+     *            the directory
+     * @param prefix
+     *            its path within class directory
+     * @param classFiles
+     *            paths of class files found
+     */
+    private static void list(File file, String prefix, Set<String> classFiles)
+    {
+        File[] files = file.listFiles();
+        if (files == null)
+        {
+            return;
+        }
+        for (File child : files)
+        {
+            if (child.isDirectory())
+            {
+                list(child, prefix + child.getName() + "/", classFiles);
+            }
+            else if (child.getName().endsWith(".class"))
+            {
+                classFiles.add(prefix + child.getName());
+            }
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.impetus.kundera.classreading.ResourceIterator#next()
+     */
+    @Override
+    public InputStream next()
+    {
+        if (next >= paths.size())
+        {
+            return null;
+        }
+        String path = paths.get(next++);
+        try
+        {
+            return dir != null ? new FileInputStream(new File(dir, path)) : jar.getInputStream(jar.getEntry(path));
+        }
+        catch (IOException e)
+        {
+            throw new ResourceReadingException("Couldn't read class file " + path, e);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.impetus.kundera.classreading.ResourceIterator#close()
+     */
+    @Override
+    public void close()
+    {
+        if (jar != null)
+        {
+            try
+            {
+                jar.close();
+            }
+            catch (IOException e)
+            {
+                log.warn("Couldn't close " + jar.getName(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.kundera.client;
+
+/**
+ * Implemented by clients which buffer mutations generated while flushing nodes
+ * and write them to database in batches, rather than making a round trip per
+ * node. Buffered mutations are written once configured batch size is reached
+ * or when {@link #executeBatch()} is invoked at the end of flush.
+ * 
+ * @author impetus
+ */
+public interface Batcher
+{
+
+    /**
+     * Writes all buffered mutations to database.
+     * 
+     * @return number of rows written
+     */
+    int executeBatch();
+
+    /**
+     * Returns number of rows currently buffered.
+     * 
+     * @return buffered row count
+     */
+    int getBatchSize();
+}
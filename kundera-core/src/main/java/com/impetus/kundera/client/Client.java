@@ -139,6 +139,26 @@ public interface Client<Q extends Query>
      */
     <E> List<E> getColumnsById(String tableName, String pKeyColumnName, String columnName, String pKeyColumnValue);
 
+    /**
+     * Returns List of column values for each of given primary keys, fetched
+     * in as few round trips as possible.
+     * 
+     * @param <E>
+     *            Type cast
+     * @param tableName
+     *            Table/column family name.
+     * @param pKeyColumnName
+     *            Primary key column name.
+     * @param columnName
+     *            Name of column to be fetched.
+     * @param pKeyColumnValues
+     *            primary key values.
+     * @return map of primary key value to list of values fetched for
+     *         <columnName>
+     */
+    <E> Map<String, List<E>> getColumnsByIds(String tableName, String pKeyColumnName, String columnName,
+            List<String> pKeyColumnValues);
+
     /**
      * Returns array of primary key for given column name and it's value.
      * 
@@ -157,6 +177,26 @@ public interface Client<Q extends Query>
 
     Object[] findIdsByColumn(String tableName, String pKeyName, String columnName, Object columnValue, Class entityClazz);
 
+    /**
+     * Returns primary keys for each of given column values, fetched in as few
+     * round trips as possible.
+     * 
+     * @param tableName
+     *            table/column family name.
+     * @param pKeyName
+     *            primary key column name.
+     * @param columnName
+     *            column name to be used for search.
+     * @param columnValues
+     *            values for parameterised <columnName>.
+     * @param entityClazz
+     *            entity class
+     * @return map of column value to primary keys fetched for it, empty if
+     *         there are none.
+     */
+    Map<String, List<Object>> findIdsByColumnValues(String tableName, String pKeyName, String columnName,
+            List<String> columnValues, Class entityClazz);
+
     /**
      * Delete rows from given table for given column name and corresponding
      * value..
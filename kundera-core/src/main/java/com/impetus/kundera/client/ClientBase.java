@@ -18,6 +18,7 @@ package com.impetus.kundera.client;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import com.impetus.kundera.db.RelationHolder;
 import com.impetus.kundera.graph.Node;
@@ -49,6 +50,12 @@ public abstract class ClientBase
 
     protected boolean isUpdate;
 
+    /**
+     * Columns changed since entity was loaded or flushed, that are the only
+     * ones to be written on update; null if all columns are to be written.
+     */
+    protected Set<String> dirtyColumns;
+
     /*
      * (non-Javadoc)
      * 
@@ -80,6 +87,7 @@ public abstract class ClientBase
         String id = ObjectGraphUtils.getEntityId(node.getNodeId());
         EntityMetadata metadata = KunderaMetadataManager.getEntityMetadata(node.getDataClass());
         isUpdate = node.isUpdate();
+        dirtyColumns = isUpdate ? node.getDirtyColumns() : null;
         List<RelationHolder> relationHolders = getRelationHolders(node);
         onPersist(metadata, entity, id, relationHolders);
         indexNode(node, metadata);
@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.kundera.client;
+
+import java.util.Map;
+
+/**
+ * Implemented by clients which let consistency level, timeout, page size and
+ * retries of their operations be tuned per entity manager and per query, by
+ * hints named in {@link com.impetus.kundera.PersistenceProperties}. Hints not
+ * understood by a client are ignored.
+ * 
+ * @author impetus
+ */
+public interface HintsAware
+{
+
+    /**
+     * Returns hints applied to operations of this client.
+     * 
+     * @return the hints, by name
+     */
+    Map<String, Object> getHints();
+
+    /**
+     * Applies given hints to subsequent operations, in place of ones applied
+     * before.
+     * 
+     * @param hints
+     *            the hints, by name
+     * @throws IllegalArgumentException
+     *             if value of a hint is invalid
+     */
+    void setHints(Map<String, Object> hints);
+}
@@ -15,19 +15,13 @@
  ******************************************************************************/
 package com.impetus.kundera.configure;
 
-import java.io.BufferedInputStream;
-import java.io.DataInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import javassist.bytecode.AnnotationsAttribute;
-import javassist.bytecode.ClassFile;
-
 import javax.persistence.Entity;
 import javax.persistence.Table;
 import javax.persistence.metamodel.Metamodel;
@@ -35,9 +29,10 @@ import javax.persistence.metamodel.Metamodel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.impetus.kundera.PersistenceProperties;
 import com.impetus.kundera.classreading.ClasspathReader;
+import com.impetus.kundera.classreading.EntityClassFinder;
 import com.impetus.kundera.classreading.Reader;
-import com.impetus.kundera.classreading.ResourceIterator;
 import com.impetus.kundera.loader.MetamodelLoaderException;
 import com.impetus.kundera.metadata.MetadataBuilder;
 import com.impetus.kundera.metadata.model.ApplicationMetadata;
@@ -121,6 +116,7 @@ public class MetamodelConfiguration implements Configuration
         List<String> classesToScan;
         URL[] resources = null;
         String client = null;
+        boolean useIndex = true;
         if (persistentUnitMetadataMap == null || persistentUnitMetadataMap.isEmpty())
         {
             log.error("It is necessary to load Persistence Unit metadata  for persistence unit " + persistenceUnit
@@ -134,6 +130,7 @@ public class MetamodelConfiguration implements Configuration
             classesToScan = puMetadata.getManagedClassNames();
             List<URL> managedURLs = puMetadata.getManagedURLs();
             client = puMetadata.getClient();
+            useIndex = !"false".equalsIgnoreCase(puMetadata.getProperty(PersistenceProperties.KUNDERA_ENTITY_INDEX));
             if (managedURLs != null)
             {
                 resources = managedURLs.toArray(new URL[] {});
@@ -185,25 +182,19 @@ public class MetamodelConfiguration implements Configuration
 
         if (resources != null)
         {
-            for (URL resource : resources)
+            try
             {
-                try
+                for (String className : EntityClassFinder.find(resources, reader, useIndex))
                 {
-                    ResourceIterator itr = reader.getResourceIterator(resource, reader.getFilter());
-
-                    InputStream is = null;
-                    while ((is = itr.next()) != null)
-                    {
-                        classes.addAll(scanClassAndPutMetadata(is, reader, entityMetadataMap, entityNameToClassMap,
-                                persistenceUnit, client, puToClazzMap));
-                    }
+                    classes.addAll(loadClassAndPutMetadata(className, entityMetadataMap, entityNameToClassMap,
+                            persistenceUnit, client, puToClazzMap));
                 }
-                catch (IOException e)
-                {
-                    log.error("Error while retreiving and storing entity metadata. Details:" + e.getMessage());
-                    throw new MetamodelLoaderException("Error while retreiving and storing entity metadata");
+            }
+            catch (IOException e)
+            {
+                log.error("Error while retreiving and storing entity metadata. Details:" + e.getMessage());
+                throw new MetamodelLoaderException("Error while retreiving and storing entity metadata");
 
-                }
             }
         }
         ((MetamodelImpl) metamodel).setEntityMetadataMap(entityMetadataMap);
@@ -238,103 +229,79 @@ public class MetamodelConfiguration implements Configuration
     }
 
     /**
-     * Scan class and put metadata.
+     * Load class and put metadata.
      * 
-     * @param bits
-     *            the bits
-     * @param reader
-     *            the reader
+     * @param className
+     *            name of an entity class
      * @param entityMetadataMap
      *            the entity metadata map
      * @param entityNameToClassMap
      *            the entity name to class map
      * @param persistence
      *            unit the persistence unit.
-     * @throws IOException
-     *             Signals that an I/O exception has occurred.
+     * @return the class, if it is an entity with a table
      */
-    private List<Class<?>> scanClassAndPutMetadata(InputStream bits, Reader reader,
-            Map<Class<?>, EntityMetadata> entityMetadataMap, Map<String, Class<?>> entityNameToClassMap,
-            String persistenceUnit, String client, Map<String, List<String>> clazzToPuMap) throws IOException
+    private List<Class<?>> loadClassAndPutMetadata(String className, Map<Class<?>, EntityMetadata> entityMetadataMap,
+            Map<String, Class<?>> entityNameToClassMap, String persistenceUnit, String client,
+            Map<String, List<String>> clazzToPuMap)
     {
-        DataInputStream dstream = new DataInputStream(new BufferedInputStream(bits));
-        ClassFile cf = null;
-        String className = null;
-
         List<Class<?>> classes = new ArrayList<Class<?>>();
 
         try
         {
-            cf = new ClassFile(dstream);
+            Class<?> clazz = Class.forName(className);
 
-            className = cf.getName();
-            List<String> annotations = new ArrayList<String>();
-
-            reader.accumulateAnnotations(annotations,
-                    (AnnotationsAttribute) cf.getAttribute(AnnotationsAttribute.visibleTag));
-            reader.accumulateAnnotations(annotations,
-                    (AnnotationsAttribute) cf.getAttribute(AnnotationsAttribute.invisibleTag));
-
-            // iterate through all valid annotations
-            for (String validAnn : reader.getValidAnnotations())
+            // an index may be stale.
+            if (!clazz.isAnnotationPresent(Entity.class))
             {
-                // check if the current class has one?
-                if (annotations.contains(validAnn))
-                {
-                    Class<?> clazz = Class.forName(className);
+                log.warn("Class " + className + " is not an entity, it won't be loaded as entity");
+                return classes;
+            }
 
-                    if (entityNameToClassMap.containsKey(clazz.getSimpleName()))
-                    {
-                        throw new MetamodelLoaderException("Name conflict between classes "
-                                + entityNameToClassMap.get(clazz.getSimpleName()).getName() + " and " + clazz.getName()
-                                + ". Make sure no two entity classes with the same name "
-                                + " are specified for persistence unit " + persistenceUnit);
-                    }
+            if (entityNameToClassMap.containsKey(clazz.getSimpleName()))
+            {
+                throw new MetamodelLoaderException("Name conflict between classes "
+                        + entityNameToClassMap.get(clazz.getSimpleName()).getName() + " and " + clazz.getName()
+                        + ". Make sure no two entity classes with the same name "
+                        + " are specified for persistence unit " + persistenceUnit);
+            }
 
-                    // This is required just to keep hibernate happy.
-                    // As somehow it complains for lazily loading of entities
-                    // while building session factory.
+            // This is required just to keep hibernate happy.
+            // As somehow it complains for lazily loading of entities
+            // while building session factory.
 
-                    entityNameToClassMap.put(clazz.getSimpleName(), clazz);
+            entityNameToClassMap.put(clazz.getSimpleName(), clazz);
 
-                    EntityMetadata metadata = entityMetadataMap.get(clazz);
+            EntityMetadata metadata = entityMetadataMap.get(clazz);
+            if (null == metadata)
+            {
+                log.debug("Metadata not found in cache for " + clazz.getName());
+                // double check locking.
+                synchronized (clazz)
+                {
                     if (null == metadata)
                     {
-                        log.debug("Metadata not found in cache for " + clazz.getName());
-                        // double check locking.
-                        synchronized (clazz)
+                        MetadataBuilder metadataBuilder = new MetadataBuilder(persistenceUnit, client);
+                        metadata = metadataBuilder.buildEntityMetadata(clazz);
+
+                        // in case entity's pu does not belong to parse
+                        // persistence unit, it will be null.
+                        if (metadata != null)
                         {
-                            if (null == metadata)
-                            {
-                                MetadataBuilder metadataBuilder = new MetadataBuilder(persistenceUnit, client);
-                                metadata = metadataBuilder.buildEntityMetadata(clazz);
-
-                                // in case entity's pu does not belong to parse
-                                // persistence unit, it will be null.
-                                if (metadata != null)
-                                {
-                                    entityMetadataMap.put(clazz, metadata);
-                                    mapClazztoPu(clazz, persistenceUnit, clazzToPuMap);
-                                }
-                            }
+                            entityMetadataMap.put(clazz, metadata);
+                            mapClazztoPu(clazz, persistenceUnit, clazzToPuMap);
                         }
                     }
-
-                    // TODO :
-                    onValidateClientProperties(classes, clazz, persistenceUnit);
-
                 }
             }
+
+            // TODO :
+            onValidateClientProperties(classes, clazz, persistenceUnit);
         }
         catch (ClassNotFoundException e)
         {
             log.error("Class " + className + " not found, it won't be loaded as entity");
         }
-        finally
-        {
-            dstream.close();
-            bits.close();
-        }
 
         return classes;
     }
@@ -389,4 +356,4 @@ public class MetamodelConfiguration implements Configuration
         return clazzToPuMap;
     }
 
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,333 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.kundera.graph;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import com.impetus.kundera.metadata.KunderaMetadataManager;
+import com.impetus.kundera.metadata.model.Column;
+import com.impetus.kundera.metadata.model.EmbeddedColumn;
+import com.impetus.kundera.metadata.model.EntityMetadata;
+import com.impetus.kundera.metadata.model.Relation;
+import com.impetus.kundera.property.PropertyAccessorFactory;
+import com.impetus.kundera.property.PropertyAccessorHelper;
+import com.impetus.kundera.proxy.ProxyHelper;
+
+/**
+ * Compact state of an entity, as last loaded or flushed, compared against
+ * its current state to find changed columns. Values of immutable types are
+ * kept as such, others as their serialized bytes, embedded objects as values
+ * of their columns and relations as ids of related entities.
+ *
+ * @author impetus
+ */
+public final class EntitySnapshot
+{
+
+    /** Types whose values are kept as such. */
+    private static final Set<Class<?>> IMMUTABLE_TYPES = new HashSet<Class<?>>(Arrays.<Class<?>> asList(
+            String.class, Boolean.class, Character.class, Byte.class, Short.class, Integer.class, Long.class,
+            Float.class, Double.class, BigInteger.class, BigDecimal.class, UUID.class));
+
+    /** Value of a relation not loaded yet, equal to itself only. */
+    private static final Object UNLOADED = new Object();
+
+    /** The entity metadata, columns being in its order. */
+    private final EntityMetadata metadata;
+
+    /** Values of columns. */
+    private final Object[] columns;
+
+    /** Values of embedded objects and element collections. */
+    private final Object[] embeddedColumns;
+
+    /** Ids of related entities. */
+    private final Object[] relations;
+
+    /**
+     * Instantiates a new entity snapshot.
+     *
+     * @param metadata
+     *            the entity metadata
+     * @param columns
+     *            values of columns
+     * @param embeddedColumns
+     *            values of embedded objects
+     * @param relations
+     *            ids of related entities
+     */
+    private EntitySnapshot(EntityMetadata metadata, Object[] columns, Object[] embeddedColumns, Object[] relations)
+    {
+        this.metadata = metadata;
+        this.columns = columns;
+        this.embeddedColumns = embeddedColumns;
+        this.relations = relations;
+    }
+
+    /**
+     * Takes snapshot of an entity.
+     *
+     * @param entity
+     *            the entity
+     * @param metadata
+     *            the entity metadata
+     * @return the snapshot
+     */
+    public static EntitySnapshot of(Object entity, EntityMetadata metadata)
+    {
+        List<Column> columnList = metadata.getColumnsAsList();
+        Object[] columns = new Object[columnList.size()];
+        for (int i = 0; i < columns.length; i++)
+        {
+            columns[i] = valueOf(PropertyAccessorHelper.getObject(entity, columnList.get(i).getField()));
+        }
+
+        List<EmbeddedColumn> embeddedColumnList = metadata.getEmbeddedColumnsAsList();
+        Object[] embeddedColumns = new Object[embeddedColumnList.size()];
+        for (int i = 0; i < embeddedColumns.length; i++)
+        {
+            EmbeddedColumn embeddedColumn = embeddedColumnList.get(i);
+            embeddedColumns[i] = embeddedValueOf(PropertyAccessorHelper.getObject(entity, embeddedColumn.getField()),
+                    embeddedColumn);
+        }
+
+        List<Relation> relationList = metadata.getRelations();
+        Object[] relations = new Object[relationList.size()];
+        for (int i = 0; i < relations.length; i++)
+        {
+            relations[i] = relationValueOf(PropertyAccessorHelper.getObject(entity, relationList.get(i).getProperty()));
+        }
+        return new EntitySnapshot(metadata, columns, embeddedColumns, relations);
+    }
+
+    /**
+     * Compares with a snapshot of same entity taken earlier.
+     *
+     * @param previous
+     *            the previous snapshot
+     * @return names of changed columns, empty if nothing changed, null if an
+     *         embedded object or relation changed too, i.e. whole entity is
+     *         to be written
+     */
+    public Set<String> diff(EntitySnapshot previous)
+    {
+        for (int i = 0; i < embeddedColumns.length; i++)
+        {
+            if (!same(embeddedColumns[i], previous.embeddedColumns[i]))
+            {
+                return null;
+            }
+        }
+        for (int i = 0; i < relations.length; i++)
+        {
+            // a relation not loaded in both can not have been changed, one
+            // loaded in either only may have been replaced.
+            if (!same(relations[i], previous.relations[i]))
+            {
+                return null;
+            }
+        }
+
+        Set<String> changed = new HashSet<String>();
+        List<Column> columnList = null;
+        for (int i = 0; i < columns.length; i++)
+        {
+            if (!same(columns[i], previous.columns[i]))
+            {
+                if (columnList == null)
+                {
+                    columnList = metadata.getColumnsAsList();
+                }
+                changed.add(columnList.get(i).getName());
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Returns snapshot of a value.
+     *
+     * @param value
+     *            the value
+     * @return the value if immutable, elements of a collection or its bytes
+     *         otherwise
+     */
+    private static Object valueOf(Object value)
+    {
+        if (value == null || value instanceof Enum || IMMUTABLE_TYPES.contains(value.getClass()))
+        {
+            return value;
+        }
+        if (value instanceof byte[])
+        {
+            return ((byte[]) value).clone();
+        }
+        if (value instanceof Collection)
+        {
+            List<Object> elements = new ArrayList<Object>(((Collection<?>) value).size());
+            for (Object element : (Collection<?>) value)
+            {
+                elements.add(valueOf(element));
+            }
+            return elements;
+        }
+        if (value instanceof Map)
+        {
+            List<Object> entries = new ArrayList<Object>(((Map<?, ?>) value).size() * 2);
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet())
+            {
+                entries.add(valueOf(entry.getKey()));
+                entries.add(valueOf(entry.getValue()));
+            }
+            return entries;
+        }
+        try
+        {
+            return PropertyAccessorFactory.getPropertyAccessor(value.getClass()).toBytes(value);
+        }
+        catch (RuntimeException e)
+        {
+            // not serializable, equal to no other value so that it is always
+            // written.
+            return new Object();
+        }
+    }
+
+    /**
+     * Returns snapshot of an embedded object or element collection.
+     *
+     * @param value
+     *            the embedded object or collection
+     * @param embeddedColumn
+     *            the embedded column
+     * @return values of columns of each object
+     */
+    private static Object embeddedValueOf(Object value, EmbeddedColumn embeddedColumn)
+    {
+        if (value == null)
+        {
+            return null;
+        }
+        if (value instanceof Collection)
+        {
+            List<Object> elements = new ArrayList<Object>(((Collection<?>) value).size());
+            for (Object element : (Collection<?>) value)
+            {
+                elements.add(embeddedValueOf(element, embeddedColumn));
+            }
+            return elements;
+        }
+        if (embeddedColumn.getColumns().isEmpty())
+        {
+            return valueOf(value);
+        }
+        List<Object> values = new ArrayList<Object>(embeddedColumn.getColumns().size());
+        for (Column column : embeddedColumn.getColumns())
+        {
+            values.add(valueOf(PropertyAccessorHelper.getObject(value, column.getField())));
+        }
+        return values;
+    }
+
+    /**
+     * Returns snapshot of a relation.
+     *
+     * @param value
+     *            the related entity or collection of them
+     * @return id of related entity, ids of a collection, or
+     *         {@link #UNLOADED}
+     */
+    private static Object relationValueOf(Object value)
+    {
+        if (value == null)
+        {
+            return null;
+        }
+        if (ProxyHelper.isUninitialized(value))
+        {
+            return UNLOADED;
+        }
+        value = ProxyHelper.getImplementation(value);
+        if (value instanceof Map)
+        {
+            value = ((Map<?, ?>) value).values();
+        }
+        if (value instanceof Collection)
+        {
+            // order matters to lists only.
+            Collection<Object> ids = value instanceof List ? new ArrayList<Object>() : new HashSet<Object>();
+            for (Object element : (Collection<?>) value)
+            {
+                ids.add(relationValueOf(element));
+            }
+            return ids;
+        }
+        EntityMetadata metadata = KunderaMetadataManager.getEntityMetadata(value.getClass());
+        return metadata != null ? PropertyAccessorHelper.getId(value, metadata) : new Object();
+    }
+
+    /**
+     * Compares snapshots of two values.
+     *
+     * @param value
+     *            the value
+     * @param other
+     *            the other value
+     * @return true, if they are equal
+     */
+    private static boolean same(Object value, Object other)
+    {
+        if (value == other)
+        {
+            return true;
+        }
+        if (value == null || other == null)
+        {
+            return false;
+        }
+        if (value instanceof byte[] && other instanceof byte[])
+        {
+            return Arrays.equals((byte[]) value, (byte[]) other);
+        }
+        if (value instanceof List && other instanceof List)
+        {
+            List<?> values = (List<?>) value;
+            List<?> others = (List<?>) other;
+            if (values.size() != others.size())
+            {
+                return false;
+            }
+            for (int i = 0; i < values.size(); i++)
+            {
+                if (!same(values.get(i), others.get(i)))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return value.equals(other);
+    }
+}
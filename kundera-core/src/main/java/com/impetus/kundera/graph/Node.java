@@ -16,7 +16,9 @@
 package com.impetus.kundera.graph;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.lang.builder.HashCodeBuilder;
 
@@ -24,6 +26,7 @@ import com.impetus.kundera.client.Client;
 import com.impetus.kundera.lifecycle.NodeStateContext;
 import com.impetus.kundera.lifecycle.states.NodeState;
 import com.impetus.kundera.lifecycle.states.TransientState;
+import com.impetus.kundera.metadata.KunderaMetadataManager;
 import com.impetus.kundera.persistence.PersistenceDelegator;
 import com.impetus.kundera.persistence.context.PersistenceCache;
 import com.impetus.kundera.utils.ObjectUtils;
@@ -63,6 +66,12 @@ public class Node implements NodeStateContext
     // Whether this node is dirty
     private boolean dirty;
 
+    // Columns changed since last flush, null if all of them are to be written
+    private Set<String> dirtyColumns;
+
+    // Snapshot of data as last loaded or flushed, null if not taken yet
+    private EntitySnapshot snapshot;
+
     // Whether this is a head node
     private boolean isHeadNode;
 
@@ -176,6 +185,75 @@ public class Node implements NodeStateContext
         this.data = data;
     }
 
+    /**
+     * Gets snapshot of data as last loaded or flushed, taking it from data if
+     * not taken yet.
+     * 
+     * @return the snapshot, null if there is no data
+     */
+    public EntitySnapshot getSnapshot()
+    {
+        if (snapshot == null && data != null)
+        {
+            takeSnapshot();
+        }
+        return snapshot;
+    }
+
+    /**
+     * @param snapshot
+     *            the snapshot to set
+     */
+    public void setSnapshot(EntitySnapshot snapshot)
+    {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Takes snapshot of data, as loaded or flushed.
+     */
+    public void takeSnapshot()
+    {
+        snapshot = data != null ? EntitySnapshot.of(data, KunderaMetadataManager.getEntityMetadata(dataClass))
+                : null;
+    }
+
+    /**
+     * Marks node dirty for a change of given columns. On update, these are
+     * written along with ones changed since last flush.
+     * 
+     * @param columns
+     *            changed columns, null if all of them are to be written
+     */
+    public void addDirtyColumns(Set<String> columns)
+    {
+        if (!dirty)
+        {
+            dirty = true;
+            dirtyColumns = columns != null ? new HashSet<String>(columns) : null;
+        }
+        else if (dirtyColumns != null)
+        {
+            if (columns != null)
+            {
+                dirtyColumns.addAll(columns);
+            }
+            else
+            {
+                dirtyColumns = null;
+            }
+        }
+    }
+
+    /**
+     * @return columns changed since last flush, null if all of them are to be
+     *         written
+     */
+    public Set<String> getDirtyColumns()
+    {
+        return dirtyColumns;
+    }
+
     /**
      * @return the dataClass
      */
@@ -352,6 +430,11 @@ public class Node implements NodeStateContext
     @Override
     public void setDirty(boolean dirty)
     {
+        if (dirty && !this.dirty)
+        {
+            // changes are not known, all columns are written.
+            dirtyColumns = null;
+        }
         this.dirty = dirty;
     }
 
@@ -18,6 +18,7 @@ package com.impetus.kundera.graph;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import com.impetus.kundera.Constants;
 import com.impetus.kundera.graph.NodeLink.LinkProperty;
@@ -28,8 +29,7 @@ import com.impetus.kundera.metadata.model.EntityMetadata;
 import com.impetus.kundera.metadata.model.Relation;
 import com.impetus.kundera.persistence.context.PersistenceCache;
 import com.impetus.kundera.property.PropertyAccessorHelper;
-import com.impetus.kundera.utils.DeepEquals;
-import com.impetus.kundera.utils.ObjectUtils;
+import com.impetus.kundera.proxy.ProxyHelper;
 
 /**
  * Responsible for generating {@link ObjectGraph} of nodes from a given entity
@@ -103,25 +103,27 @@ public class ObjectGraphBuilder
         node = null;
         Node nodeInPersistenceCache = persistenceCache.getMainCache().getNodeFromCache(nodeId);
 
-        // Make a deep copy of entity data
-        Object nodeDataCopy = ObjectUtils.deepCopy(entity);
-
         if (nodeInPersistenceCache == null)
         {
-            node = new Node(nodeId, nodeDataCopy, initialNodeState, persistenceCache);
-
+            // Node holds entity itself, its state as last loaded or flushed
+            // is kept by snapshot of node
+            node = new Node(nodeId, entity, initialNodeState, persistenceCache);
         }
         else
         {
             node = nodeInPersistenceCache;
 
             // Determine whether this node is dirty based on comparison between
-            // Node data and entity data
-            // If dirty, set the entity data into node and mark it as dirty
-            if (!DeepEquals.deepEquals(node.getData(), entity))
+            // snapshot of Node data and of entity data, column by column
+            // If dirty, set entity as node data and mark changed columns dirty
+            EntitySnapshot snapshot = EntitySnapshot.of(entity, entityMetadata);
+            EntitySnapshot nodeSnapshot = node.getSnapshot();
+            Set<String> changedColumns = nodeSnapshot != null ? snapshot.diff(nodeSnapshot) : null;
+            if (changedColumns == null || !changedColumns.isEmpty())
             {
-                node.setData(nodeDataCopy);
-                node.setDirty(true);
+                node.setData(entity);
+                node.setSnapshot(snapshot);
+                node.addDirtyColumns(changedColumns);
             }
             else
             {
@@ -147,6 +149,13 @@ public class ObjectGraphBuilder
             // Child Object set in this entity
             Object childObject = PropertyAccessorHelper.getObject(entity, relation.getProperty());
 
+            // Lazily loaded relation not accessed yet, nothing to cascade
+            if (ProxyHelper.isUninitialized(childObject))
+            {
+                continue;
+            }
+            childObject = ProxyHelper.getImplementation(childObject);
+
             if (childObject != null)
             {
                 // This child object could be either an entity(1-1 or M-1) or a
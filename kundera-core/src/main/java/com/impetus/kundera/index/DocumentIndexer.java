@@ -16,6 +16,8 @@
 package com.impetus.kundera.index;
 
 import java.io.CharArrayReader;
+import java.util.Calendar;
+import java.util.Date;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.LetterTokenizer;
@@ -23,6 +25,7 @@ import org.apache.lucene.analysis.Tokenizer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.NumericField;
 import org.apache.lucene.util.Version;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -62,6 +65,12 @@ public abstract class DocumentIndexer implements Indexer
     /** The Constant KUNDERA_ID_FIELD. */
     public static final String KUNDERA_ID_FIELD = UUID + ".kundera.id";
 
+    /**
+     * Key of documents indexed for an entity and parent, replaced as a whole
+     * when entity is indexed again.
+     */
+    public static final String DOCUMENT_ID_FIELD = UUID + ".document.id";
+
     /** The Constant ENTITY_INDEXNAME_FIELD. */
     public static final String ENTITY_INDEXNAME_FIELD = UUID + ".entity.indexname";
 
@@ -156,7 +165,8 @@ public abstract class DocumentIndexer implements Indexer
     }
 
     /**
-     * Index super column.
+     * Adds fields of an embedded object and of entity to document of a super
+     * column.
      * 
      * @param metadata
      *            the metadata
@@ -169,8 +179,8 @@ public abstract class DocumentIndexer implements Indexer
      * @param superColumn
      *            the super column
      */
-    protected void indexSuperColumn(EntityMetadata metadata, Object object, Document currentDoc, Object embeddedObject,
-            EmbeddedColumn superColumn)
+    protected void addSuperColumnToDocument(EntityMetadata metadata, Object object, Document currentDoc,
+            Object embeddedObject, EmbeddedColumn superColumn)
     {
 
         // Add all super column fields into document
@@ -183,10 +193,6 @@ public abstract class DocumentIndexer implements Indexer
         }
         // Add all entity fields to document
         addEntityFieldsToDocument(metadata, object, currentDoc);
-
-        // Store document into Index
-        indexDocument(metadata, currentDoc);
-
     }
 
     /**
@@ -251,11 +257,9 @@ public abstract class DocumentIndexer implements Indexer
             // /*Field.Store.YES, Field.Index.ANALYZED_NO_NORMS*/);
             document.add(luceneField);
 
-            // index namespace for unique deletion
-            luceneField = new Field(KUNDERA_ID_FIELD, getKunderaId(metadata, id), Field.Store.YES, Field.Index.NO); // adding
-            // class
-            // namespace
-            // Field.Store.YES/*, Field.Index.ANALYZED_NO_NORMS*/);
+            // index namespace for unique deletion, as a single term
+            luceneField = new Field(KUNDERA_ID_FIELD, getKunderaId(metadata, id), Field.Store.YES,
+                    Field.Index.NOT_ANALYZED_NO_NORMS);
             document.add(luceneField);
 
             // index entity class
@@ -298,7 +302,18 @@ public abstract class DocumentIndexer implements Indexer
         {
             Object obj = PropertyAccessorHelper.getObject(object, field);
             // String value = (obj == null) ? null : obj.toString();
-            if (obj != null)
+            Number number = getNumericValue(obj);
+            if (number instanceof Double)
+            {
+                document.add(new NumericField(getCannonicalPropertyName(indexName, colName), Field.Store.YES, true)
+                        .setDoubleValue(number.doubleValue()));
+            }
+            else if (number != null)
+            {
+                document.add(new NumericField(getCannonicalPropertyName(indexName, colName), Field.Store.YES, true)
+                        .setLongValue(number.longValue()));
+            }
+            else if (obj != null)
             {
                 Field luceneField = new Field(getCannonicalPropertyName(indexName, colName), obj.toString(),
                         Field.Store.YES, Field.Index.ANALYZED_NO_NORMS);
@@ -316,6 +331,53 @@ public abstract class DocumentIndexer implements Indexer
         }
     }
 
+    /**
+     * Checks whether properties of given type are indexed as numeric (trie)
+     * fields, so that they can be searched by numeric range rather than by
+     * text. Integral types are indexed as long, floating point types as
+     * double, dates and calendars as milliseconds since epoch.
+     * 
+     * @param type
+     *            the property type
+     * @return true, if numeric
+     */
+    public static boolean isNumericType(Class<?> type)
+    {
+        return type == int.class || type == Integer.class || type == long.class || type == Long.class
+                || type == short.class || type == Short.class || type == byte.class || type == Byte.class
+                || type == float.class || type == Float.class || type == double.class || type == Double.class
+                || Date.class.isAssignableFrom(type) || Calendar.class.isAssignableFrom(type);
+    }
+
+    /**
+     * Returns value a property value is indexed as, if its type is numeric.
+     * 
+     * @param value
+     *            the property value
+     * @return a Long or Double, null if value is null or is indexed as text
+     * @see #isNumericType(Class)
+     */
+    public static Number getNumericValue(Object value)
+    {
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte)
+        {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof Float || value instanceof Double)
+        {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof Date)
+        {
+            return ((Date) value).getTime();
+        }
+        if (value instanceof Calendar)
+        {
+            return ((Calendar) value).getTimeInMillis();
+        }
+        return null;
+    }
+
     /**
      * Gets the kundera id.
      * 
@@ -331,6 +393,23 @@ public abstract class DocumentIndexer implements Indexer
         return metadata.getEntityClazz().getCanonicalName() + DELIMETER + id;
     }
 
+    /**
+     * Gets key of documents indexed for an entity and parent.
+     * 
+     * @param kunderaId
+     *            the kundera id of entity
+     * @param parentId
+     *            the parent id, null if none
+     * @param clazz
+     *            the parent class, null if none
+     * @return the document id
+     */
+    protected String getDocumentId(String kunderaId, String parentId, Class<?> clazz)
+    {
+        return parentId == null ? kunderaId : kunderaId + DELIMETER + clazz.getCanonicalName() + DELIMETER
+                + parentId;
+    }
+
     /**
      * Gets the cannonical property name.
      * 
@@ -341,7 +420,7 @@ public abstract class DocumentIndexer implements Indexer
      * 
      * @return the cannonical property name
      */
-    private String getCannonicalPropertyName(String indexName, String propertyName)
+    public static String getCannonicalPropertyName(String indexName, String propertyName)
     {
         return indexName + "." + propertyName;
     }
@@ -17,11 +17,11 @@ package com.impetus.kundera.index;
 
 import java.util.Map;
 
+import org.apache.lucene.search.Query;
+
 import com.impetus.kundera.Constants;
 import com.impetus.kundera.metadata.MetadataUtils;
 import com.impetus.kundera.metadata.model.EntityMetadata;
-import com.impetus.kundera.property.PropertyAccessException;
-import com.impetus.kundera.property.PropertyAccessorHelper;
 
 /**
  * Manager responsible to co-ordinate with an Indexer. It is bound with
@@ -67,34 +67,23 @@ public class IndexManager
     }
 
     /**
-     * Updates the index for an object.
+     * Updates the index for an object. Indexer replaces documents previously
+     * indexed for object and parent, so there is no need to look them up.
      * 
      * @param metadata
      *            the metadata
      * @param entity
      *            the entity
+     * @param parentId
+     *            parent Id.
+     * @param clazz
+     *            class name
      */
     public final void update(EntityMetadata metadata, Object entity, String parentId, Class<?> clazz)
     {
-
-        try
-        {
-            if (!MetadataUtils.useSecondryIndex(metadata.getPersistenceUnit()))
-            {
-                String id = PropertyAccessorHelper.getId(entity, metadata);
-
-                boolean documentExists = indexer.entityExistsInIndex(entity.getClass());
-                if (documentExists)
-                {
-                    indexer.unindex(metadata, id);
-                    indexer.flush();
-                }
-                indexer.index(metadata, entity, parentId, clazz);
-            }
-        }
-        catch (PropertyAccessException e)
+        if (!MetadataUtils.useSecondryIndex(metadata.getPersistenceUnit()))
         {
-            throw new IndexingException("Can't access ID from entity class " + metadata.getEntityClazz(), e);
+            indexer.index(metadata, entity, parentId, clazz);
         }
     }
 
@@ -209,6 +198,34 @@ public class IndexManager
         return indexer.search(query, start, count, fetchRelation);
     }
 
+    /**
+     * Searches on the index using an already built query.
+     * 
+     * @param query
+     *            the query
+     * @return the list
+     */
+    public final Map<String, String> search(Query query)
+    {
+        return search(query, Constants.INVALID, Constants.INVALID);
+    }
+
+    /**
+     * Searches on the index using an already built query.
+     * 
+     * @param query
+     *            the query
+     * @param start
+     *            the start
+     * @param count
+     *            the count
+     * @return the list
+     */
+    public final Map<String, String> search(Query query, int start, int count)
+    {
+        return indexer.search(query, start, count, false);
+    }
+
     /**
      * Flushes out the indexes, keeping RAM directory open.
      */
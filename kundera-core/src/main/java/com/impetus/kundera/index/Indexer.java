@@ -17,6 +17,8 @@ package com.impetus.kundera.index;
 
 import java.util.Map;
 
+import org.apache.lucene.search.Query;
+
 import com.impetus.kundera.metadata.model.EntityMetadata;
 
 /**
@@ -79,6 +81,21 @@ public interface Indexer
 
     Map<String, String> search(String luceneQuery, int start, int count, boolean fetchRelation);
 
+    /**
+     * Searches for an object using an already built query.
+     * 
+     * @param luceneQuery
+     *            the lucene query
+     * @param start
+     *            the start
+     * @param count
+     *            the count
+     * @param fetchRelation
+     *            the fetch relation
+     * @return the list
+     */
+    Map<String, String> search(Query luceneQuery, int start, int count, boolean fetchRelation);
+
     boolean entityExistsInIndex(Class<?> entityClass);
 
     /**
@@ -17,15 +17,25 @@ package com.impetus.kundera.index;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
@@ -39,12 +49,12 @@ import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.store.LockObtainFailedException;
-import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.store.MMapDirectory;
 import org.apache.lucene.util.Version;
 
 import com.impetus.kundera.Constants;
+import com.impetus.kundera.PersistenceProperties;
 import com.impetus.kundera.cache.ElementCollectionCacheManager;
 import com.impetus.kundera.metadata.model.EmbeddedColumn;
 import com.impetus.kundera.metadata.model.EntityMetadata;
@@ -54,6 +64,17 @@ import com.impetus.kundera.property.PropertyAccessorHelper;
 /**
  * Provides indexing functionality using lucene library.
  * 
+ * Index is kept in a memory mapped, file backed directory. Searches share a
+ * near real time reader opened from the index writer, which is reopened only
+ * if index has been modified since it was last opened. Changes are committed
+ * to disk by a background thread, periodically and whenever enough documents
+ * have been written since last commit, and on {@link #close()}.
+ * 
+ * Documents of an entity are keyed by a single, not analyzed term, and are
+ * replaced atomically via {@link IndexWriter#updateDocuments(Term, Collection)}
+ * whenever entity is indexed again, so that index holds exactly one set of
+ * documents per entity and parent.
+ * 
  * @author amresh.singh
  */
 public class LuceneIndexer extends DocumentIndexer
@@ -62,27 +83,72 @@ public class LuceneIndexer extends DocumentIndexer
     /** log for this class. */
     private static Log log = LogFactory.getLog(LuceneIndexer.class);
 
+    /** Default interval (in seconds) between two background commits. */
+    private static final int DEFAULT_COMMIT_INTERVAL_SECONDS = 5;
+
+    /** Default number of documents written after which index is committed. */
+    private static final int DEFAULT_COMMIT_DOCUMENTS = 10000;
+
+    /** Default size of RAM buffer of index writer, in megabytes. */
+    private static final int DEFAULT_RAM_BUFFER_MB = 32;
+
     /** The w. */
     private static IndexWriter w;
 
-    /** The reader. */
+    /** Shared near real time reader. */
     private static IndexReader reader;
 
     /** The index. */
     private static Directory index;
 
-    /** The is initialized. */
-    private static boolean isInitialized;
-
     /** The indexer. */
     private static LuceneIndexer indexer;
 
-    /** The ready for commit. */
-    private static boolean readyForCommit;
+    /** Whether there are changes not yet committed to disk. */
+    private static volatile boolean readyForCommit;
+
+    /** Whether there are changes not yet visible to shared reader. */
+    private static volatile boolean readerStale;
+
+    /** Analyzer of queries given as text. */
+    private static final Analyzer QUERY_ANALYZER = new StandardAnalyzer(Version.LUCENE_34);
 
     /** The lucene dir path. */
     private static String luceneDirPath;
 
+    /** Seconds to wait for a running background commit on close. */
+    private static final long CLOSE_TIMEOUT_SECONDS = 30;
+
+    /** Runs periodic commits. */
+    private static ScheduledExecutorService committer;
+
+    /** Number of documents written after which index is committed. */
+    private static int commitDocuments;
+
+    /** Number of documents written since last commit. */
+    private static final AtomicInteger uncommittedDocuments = new AtomicInteger();
+
+    /** Whether a commit has been scheduled ahead of next periodic one. */
+    private static final AtomicBoolean commitRequested = new AtomicBoolean();
+
+    /** Commits pending changes, logging failures. */
+    private static final Runnable COMMIT_TASK = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            commitRequested.set(false);
+            try
+            {
+                commit();
+            }
+            catch (LuceneIndexingException e)
+            {
+                log.error("Error while committing lucene indexes in background. Details:" + e.getMessage());
+            }
+        }
+    };
+
     /**
      * Instantiates a new lucene indexer.
      * 
@@ -90,33 +156,39 @@ public class LuceneIndexer extends DocumentIndexer
      *            the analyzer
      * @param lucDirPath
      *            the luc dir path
+     * @param properties
+     *            persistence unit properties configuring commits, may be null
      */
-    private LuceneIndexer(Analyzer analyzer, String lucDirPath)
+    private LuceneIndexer(Analyzer analyzer, String lucDirPath, Properties properties)
     {
         super(analyzer);
         try
         {
             luceneDirPath = lucDirPath;
-            File file = new File(luceneDirPath);
-            if (file.exists())
-            {
-                Directory sourceDir = FSDirectory.open(getIndexDirectory());
-                index = new RAMDirectory(sourceDir);
-            }
-            else
+            index = new MMapDirectory(getIndexDirectory());
+
+            int commitInterval = readIntProperty(properties, PersistenceProperties.KUNDERA_INDEX_COMMIT_INTERVAL,
+                    DEFAULT_COMMIT_INTERVAL_SECONDS);
+            commitDocuments = readIntProperty(properties, PersistenceProperties.KUNDERA_INDEX_COMMIT_DOCUMENTS,
+                    DEFAULT_COMMIT_DOCUMENTS);
+
+            IndexWriterConfig config = new IndexWriterConfig(Version.LUCENE_34, analyzer);
+            config.setMergePolicy(new LogDocMergePolicy());
+            config.setRAMBufferSizeMB(readIntProperty(properties, PersistenceProperties.KUNDERA_INDEX_RAM_BUFFER_MB,
+                    DEFAULT_RAM_BUFFER_MB));
+            w = new IndexWriter(index, config);
+
+            committer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
             {
-                index = new RAMDirectory();
-            }
-            /*
-             * FSDirectory.open(getIndexDirectory( ))
-             */
-            // isInitialized
-            /* writer */
-            w = new IndexWriter(index, new IndexWriterConfig(Version.LUCENE_34, analyzer));
-            /* reader = */
-            w.setMergePolicy(new LogDocMergePolicy());
-            w.setMergeFactor(1000);
-            w.getConfig().setRAMBufferSizeMB(32);
+                @Override
+                public Thread newThread(Runnable r)
+                {
+                    Thread t = new Thread(r, "kundera-lucene-committer");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            committer.scheduleWithFixedDelay(COMMIT_TASK, commitInterval, commitInterval, TimeUnit.SECONDS);
         }
         catch (CorruptIndexException e)
         {
@@ -142,16 +214,66 @@ public class LuceneIndexer extends DocumentIndexer
      * @return single instance of LuceneIndexer
      */
     public static synchronized LuceneIndexer getInstance(Analyzer analyzer, String lucDirPath)
+    {
+        return getInstance(analyzer, lucDirPath, null);
+    }
+
+    /**
+     * Gets the single instance of LuceneIndexer, configured by given
+     * persistence unit properties when first created.
+     * 
+     * @param analyzer
+     *            the analyzer
+     * @param lucDirPath
+     *            the luc dir path
+     * @param properties
+     *            persistence unit properties, may be null
+     * @return single instance of LuceneIndexer
+     */
+    public static synchronized LuceneIndexer getInstance(Analyzer analyzer, String lucDirPath, Properties properties)
     {
         // super(analyzer);
         if (indexer == null && lucDirPath != null)
         {
-            indexer = new LuceneIndexer(analyzer, lucDirPath);
+            indexer = new LuceneIndexer(analyzer, lucDirPath, properties);
 
         }
         return indexer;
     }
 
+    /**
+     * Reads a positive integer property.
+     * 
+     * @param properties
+     *            the properties, may be null
+     * @param name
+     *            the property name
+     * @param defaultValue
+     *            value if property is not set or invalid
+     * @return the value
+     */
+    private static int readIntProperty(Properties properties, String name, int defaultValue)
+    {
+        String value = properties != null ? properties.getProperty(name) : null;
+        if (value != null)
+        {
+            try
+            {
+                int intValue = Integer.parseInt(value.trim());
+                if (intValue > 0)
+                {
+                    return intValue;
+                }
+            }
+            catch (NumberFormatException e)
+            {
+                // reported below.
+            }
+            log.warn("Invalid value " + value + " for " + name + ", using default " + defaultValue);
+        }
+        return defaultValue;
+    }
+
     /**
      * Added for HBase support.
      * 
@@ -163,36 +285,62 @@ public class LuceneIndexer extends DocumentIndexer
     }
 
     /**
-     * Returns default index reader.
+     * Returns shared index reader, reopened if index has changed since last
+     * call. Returned reader has its reference count incremented and must be
+     * released via {@link #releaseIndexReader(IndexReader)}.
      * 
      * @return index reader.
      */
-    private IndexReader getIndexReader()
+    private static synchronized IndexReader acquireIndexReader()
     {
-        flushInternal();
-
-        if (reader == null)
+        try
         {
-            try
-            {
-                if (!isInitialized)
-                {
-                    Directory sourceDir = FSDirectory.open(getIndexDirectory());
-                    sourceDir.copy(sourceDir, index, true);
-                    isInitialized = true;
-                }
-                reader = IndexReader.open(index, true);
-            }
-            catch (CorruptIndexException e)
+            if (reader == null)
             {
-                throw new LuceneIndexingException(e);
+                reader = IndexReader.open(w, true);
+                readerStale = false;
             }
-            catch (IOException e)
+            else if (readerStale)
             {
-                throw new LuceneIndexingException(e);
+                // Clear flag before reopening, so that writes happening
+                // during reopen are picked up by next search.
+                readerStale = false;
+                IndexReader newReader = reader.reopen();
+                if (newReader != reader)
+                {
+                    reader.decRef();
+                    reader = newReader;
+                }
             }
+            reader.incRef();
+            return reader;
+        }
+        catch (CorruptIndexException e)
+        {
+            throw new LuceneIndexingException(e);
+        }
+        catch (IOException e)
+        {
+            throw new LuceneIndexingException(e);
+        }
+    }
+
+    /**
+     * Releases reader acquired via {@link #acquireIndexReader()}.
+     * 
+     * @param r
+     *            the reader
+     */
+    private static void releaseIndexReader(IndexReader r)
+    {
+        try
+        {
+            r.decRef();
+        }
+        catch (IOException e)
+        {
+            log.warn("Error while releasing lucene index reader. Details:" + e.getMessage());
         }
-        return reader;
     }
 
     /**
@@ -206,7 +354,7 @@ public class LuceneIndexer extends DocumentIndexer
 
         if (!file.isDirectory())
         {
-            file.mkdir();
+            file.mkdirs();
         }
         return file;
     }
@@ -215,7 +363,6 @@ public class LuceneIndexer extends DocumentIndexer
     public final void index(EntityMetadata metadata, Object object)
     {
         indexDocument(metadata, object, null, null);
-        onCommit();
     }
 
     @Override
@@ -226,6 +373,7 @@ public class LuceneIndexer extends DocumentIndexer
         {
             /* String indexName, Query query, boolean autoCommit */
             getIndexWriter().deleteDocuments(new Term(KUNDERA_ID_FIELD, getKunderaId(metadata, id)));
+            onCommit(1);
         }
         catch (CorruptIndexException e)
         {
@@ -237,37 +385,40 @@ public class LuceneIndexer extends DocumentIndexer
         }
     }
 
-    @SuppressWarnings("deprecation")
     @Override
     public final Map<String, String> search(String luceneQuery, int start, int count, boolean fetchRelation)
     {
+        QueryParser qp = new QueryParser(Version.LUCENE_34, DEFAULT_SEARCHABLE_FIELD, QUERY_ANALYZER);
+        qp.setLowercaseExpandedTerms(false);
+        qp.setAllowLeadingWildcard(true);
+        try
+        {
+            return search(qp.parse(luceneQuery), start, count, fetchRelation);
+        }
+        catch (ParseException e)
+        {
+            throw new LuceneIndexingException("Error while parsing Lucene Query " + luceneQuery, e);
+        }
+    }
 
-        reader = getIndexReader();
+    @Override
+    public final Map<String, String> search(Query q, int start, int count, boolean fetchRelation)
+    {
         if (Constants.INVALID == count)
         {
             count = 100;
         }
 
-        log.debug("Searching index with query[" + luceneQuery + "], start:" + start + ", count:" + count);
+        log.debug("Searching index with query[" + q + "], start:" + start + ", count:" + count);
 
         // Set<String> entityIds = new HashSet<String>();
         Map<String, String> indexCol = new HashMap<String, String>();
 
-        if (reader == null)
-        {
-            throw new LuceneIndexingException("Index reader is not initialized!");
-        }
-
-        IndexSearcher searcher = new IndexSearcher(reader);
-        QueryParser qp = new QueryParser(Version.LUCENE_34, DEFAULT_SEARCHABLE_FIELD, new StandardAnalyzer(
-                Version.LUCENE_34));
+        IndexReader r = acquireIndexReader();
+        IndexSearcher searcher = new IndexSearcher(r);
 
         try
         {
-            qp.setLowercaseExpandedTerms(false);
-            qp.setAllowLeadingWildcard(true);
-            // qp.set
-            Query q = qp.parse(luceneQuery);
             TopDocs docs = searcher.search(q, count);
 
             int nullCount = 0;
@@ -287,16 +438,15 @@ public class LuceneIndexer extends DocumentIndexer
                 indexCol.put(superCol + "|" + entityId, entityId);
             }
         }
-        catch (ParseException e)
-        {
-            throw new LuceneIndexingException("Error while parsing Lucene Query " + luceneQuery, e);
-        }
         catch (IOException e)
         {
             throw new LuceneIndexingException(e);
         }
+        finally
+        {
+            releaseIndexReader(r);
+        }
 
-        reader = null;
         return indexCol;
     }
 
@@ -316,11 +466,8 @@ public class LuceneIndexer extends DocumentIndexer
         IndexWriter w = getIndexWriter();
         try
         {
-            // w.setR
             w.addDocument(document);
-            // w.optimize();
-            // w.commit();
-            // w.close();
+            onCommit(1);
         }
         catch (CorruptIndexException e)
         {
@@ -335,55 +482,145 @@ public class LuceneIndexer extends DocumentIndexer
     }
 
     /**
-     * Flush internal.
+     * Replaces all documents having given key by given documents, atomically.
+     * 
+     * @param metadata
+     *            the metadata
+     * @param documentId
+     *            key of documents
+     * @param documents
+     *            the documents, may be empty
      */
-    private void flushInternal()
+    private void updateDocuments(EntityMetadata metadata, String documentId, List<Document> documents)
+    {
+        log.debug("Indexing " + documents.size() + " documents for key " + documentId + " of "
+                + metadata.getDBType() + " in file system using Lucene");
+
+        for (Document document : documents)
+        {
+            document.add(new Field(DOCUMENT_ID_FIELD, documentId, Field.Store.NO, Field.Index.NOT_ANALYZED_NO_NORMS));
+        }
+        try
+        {
+            getIndexWriter().updateDocuments(new Term(DOCUMENT_ID_FIELD, documentId), documents);
+            onCommit(Math.max(1, documents.size()));
+        }
+        catch (CorruptIndexException e)
+        {
+            log.error("Error while indexing documents for key " + documentId + " into Lucene. Details:"
+                    + e.getMessage());
+            throw new LuceneIndexingException("Error while indexing documents for key " + documentId
+                    + " into Lucene.", e);
+        }
+        catch (IOException e)
+        {
+            log.error("Error while indexing documents for key " + documentId + " into Lucene. Details:"
+                    + e.getMessage());
+            throw new LuceneIndexingException("Error while indexing documents for key " + documentId
+                    + " into Lucene.", e);
+        }
+    }
+
+    /**
+     * Commits pending changes to disk, if any.
+     */
+    private static void commit()
     {
         try
         {
             if (w != null && readyForCommit)
             {
-                w.commit();
-                index.copy(index, FSDirectory.open(getIndexDirectory()), false);
                 readyForCommit = false;
+                uncommittedDocuments.set(0);
+                w.commit();
             }
         }
-
         catch (CorruptIndexException e)
         {
-            log.error("Error while Flushing Lucene Indexes. Details:" + e.getMessage());
-            throw new LuceneIndexingException("Error while Flushing Lucene Indexes", e);
+            readyForCommit = true;
+            log.error("Error while committing Lucene Indexes. Details:" + e.getMessage());
+            throw new LuceneIndexingException("Error while committing Lucene Indexes", e);
         }
         catch (IOException e)
         {
-            log.error("Error while Flushing Lucene Indexes" + e.getMessage());
-            throw new LuceneIndexingException("Error while Flushing Lucene Indexes", e);
+            readyForCommit = true;
+            log.error("Error while committing Lucene Indexes. Details:" + e.getMessage());
+            throw new LuceneIndexingException("Error while committing Lucene Indexes", e);
         }
     }
 
     /**
-     * Close of transaction.
+     * Closes index once its persistence unit is closed. Background commits
+     * are stopped first, then pending changes are committed and index writer
+     * is closed, releasing its lock. Next {@link #getInstance} opens index
+     * again.
      */
     public void close()
     {
-        try
+        closeIndex();
+    }
+
+    /**
+     * Stops committer, then commits pending changes and closes index.
+     */
+    private static synchronized void closeIndex()
+    {
+        if (committer != null)
         {
-            if (w != null && readyForCommit)
+            committer.shutdown();
+            try
             {
-                w.commit();
-                index.copy(index, FSDirectory.open(getIndexDirectory()), false);
+                if (!committer.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS))
+                {
+                    log.warn("Background commit of lucene indexes still running after " + CLOSE_TIMEOUT_SECONDS
+                            + " seconds, closing anyway");
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
             }
+            committer = null;
+        }
+        try
+        {
+            commit();
+        }
+        finally
+        {
+            // closed even if commit failed, so that index lock is released.
+            indexer = null;
+            closeWriter();
         }
+    }
 
-        catch (CorruptIndexException e)
+    /**
+     * Closes shared reader, index writer and directory.
+     */
+    private static void closeWriter()
+    {
+        try
         {
-            log.error("Error while closing lucene indexes. Details:" + e.getMessage());
-            throw new LuceneIndexingException("Error while closing lucene indexes.", e);
+            if (reader != null)
+            {
+                reader.decRef();
+                reader = null;
+            }
+            if (w != null)
+            {
+                w.close();
+                w = null;
+            }
+            if (index != null)
+            {
+                index.close();
+                index = null;
+            }
         }
         catch (IOException e)
         {
-            log.error("Error while closing lucene indexes. Details:" + e.getMessage());
-            throw new LuceneIndexingException("Error while closing lucene indexes.", e);
+            log.error("Error while closing Lucene Indexes. Details:" + e.getMessage());
+            throw new LuceneIndexingException("Error while closing Lucene Indexes", e);
         }
     }
 
@@ -395,14 +632,8 @@ public class LuceneIndexer extends DocumentIndexer
     @Override
     public void flush()
     {
-/*        if (w != null)
-        {
-
-            // w.commit();
-            // w.close();
-            // index.copy(index, FSDirectory.open(getIndexDirectory()),
-            // false);
-        }*/
+        // Nothing to do, changes are made visible to searches by reopening
+        // near real time reader and are committed by background thread.
     }
 
     @Override
@@ -410,7 +641,6 @@ public class LuceneIndexer extends DocumentIndexer
     {
 
         indexDocument(metadata, object, parentId, clazz);
-        onCommit();
     }
 
     @Override
@@ -437,7 +667,8 @@ public class LuceneIndexer extends DocumentIndexer
     }
 
     /**
-     * Index document.
+     * Indexes an entity, replacing documents previously indexed for it and
+     * given parent.
      * 
      * @param metadata
      *            the metadata
@@ -447,17 +678,17 @@ public class LuceneIndexer extends DocumentIndexer
      *            the parent id
      * @param clazz
      *            the clazz
-     * @return the document
      */
-    private Document indexDocument(EntityMetadata metadata, Object object, String parentId, Class<?> clazz)
+    private void indexDocument(EntityMetadata metadata, Object object, String parentId, Class<?> clazz)
     {
         if (!metadata.isIndexable())
         {
-            return null;
+            return;
         }
 
         log.debug("Indexing @Entity[" + metadata.getEntityClazz().getName() + "] " + object);
 
+        List<Document> documents = new ArrayList<Document>();
         Document currentDoc = null;
         Object embeddedObject = null;
         String rowKey = null;
@@ -506,7 +737,8 @@ public class LuceneIndexer extends DocumentIndexer
 
                                 currentDoc = prepareDocumentForSuperColumn(metadata, object,
                                         elementCollectionObjectName, parentId, clazz);
-                                indexSuperColumn(metadata, object, currentDoc, obj, embeddedColumn);
+                                addSuperColumnToDocument(metadata, object, currentDoc, obj, embeddedColumn);
+                                documents.add(currentDoc);
                                 count++;
                             }
                         }
@@ -531,7 +763,8 @@ public class LuceneIndexer extends DocumentIndexer
 
                                 currentDoc = prepareDocumentForSuperColumn(metadata, object,
                                         elementCollectionObjectName, parentId, clazz);
-                                indexSuperColumn(metadata, object, currentDoc, obj, embeddedColumn);
+                                addSuperColumnToDocument(metadata, object, currentDoc, obj, embeddedColumn);
+                                documents.add(currentDoc);
                             }
                         }
 
@@ -540,9 +773,10 @@ public class LuceneIndexer extends DocumentIndexer
                     {
                         currentDoc = prepareDocumentForSuperColumn(metadata, object, embeddedColumnName, parentId,
                                 clazz);
-                        indexSuperColumn(metadata, object, currentDoc,
+                        addSuperColumnToDocument(metadata, object, currentDoc,
                                 metadata.isEmbeddable(embeddedObject.getClass()) ? embeddedObject : object,
                                 embeddedColumn);
+                        documents.add(currentDoc);
                     }
                 }
                 catch (PropertyAccessException e)
@@ -564,35 +798,29 @@ public class LuceneIndexer extends DocumentIndexer
             addEntityFieldsToDocument(metadata, object, currentDoc);
 
             indexParentKey(parentId, currentDoc, clazz);
-            // Store document into index
-            indexDocument(metadata, currentDoc);
+            documents.add(currentDoc);
         }
 
-        return currentDoc;
+        // Store documents into index, in place of previous ones
+        updateDocuments(metadata, getDocumentId(getKunderaId(metadata, rowKey), parentId, clazz), documents);
     }
 
     /**
-     * On commit.
+     * Marks index as modified, so that next search reopens shared reader and
+     * next background commit persists the changes. Commits ahead of schedule
+     * once enough documents have been written since last commit.
+     * 
+     * @param documents
+     *            number of documents written
      */
-    private void onCommit()
+    private void onCommit(int documents)
     {
-        // TODO: Sadly this required to keep lucene happy, in case of indexing
-        // and searching with same entityManager.
-        // Other alternative would be to issue flush on each search
-        // try
-        // {
-        // w.commit();
-        isInitialized = true;
+        readerStale = true;
         readyForCommit = true;
-        // }
-        // catch (CorruptIndexException e)
-        // {
-        // throw new IndexingException(e.getMessage());
-        // }
-        // catch (IOException e)
-        // {
-        // throw new IndexingException(e.getMessage());
-        // }
+        if (uncommittedDocuments.addAndGet(documents) >= commitDocuments && commitRequested.compareAndSet(false, true))
+        {
+            committer.execute(COMMIT_TASK);
+        }
     }
 
 }
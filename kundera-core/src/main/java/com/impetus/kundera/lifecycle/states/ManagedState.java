@@ -101,11 +101,29 @@ public class ManagedState extends NodeState
         EntityMetadata entityMetadata = KunderaMetadataManager.getEntityMetadata(nodeDataClass);
         String entityId = ObjectGraphUtils.getEntityId(nodeStateContext.getNodeId());
 
-        Object nodeData = null; // Node data
-
         EntityReader reader = client.getReader();
         EnhanceEntity ee = reader.findById(entityId, entityMetadata, client);
 
+        handleFind(nodeStateContext, ee);
+    }
+
+    /**
+     * Populates node from an already fetched record (e.g. one of the rows
+     * returned by a multiget), finds associated entities if there are any and
+     * puts node into persistence cache.
+     * 
+     * @param nodeStateContext
+     *            node to be populated
+     * @param ee
+     *            fetched record, may be null
+     */
+    public void handleFind(NodeStateContext nodeStateContext, EnhanceEntity ee)
+    {
+        EntityMetadata entityMetadata = KunderaMetadataManager.getEntityMetadata(nodeStateContext.getDataClass());
+        EntityReader reader = nodeStateContext.getClient().getReader();
+
+        Object nodeData = null; // Node data
+
         // Recursively retrieve relationship entities (if there are any)
         if (ee != null && ee.getEntity() != null)
         {
@@ -115,22 +133,8 @@ public class ManagedState extends NodeState
                     && !entityMetadata.isRelationViaJoinTable())
             {
                 // There is no relation (not even via Join Table), Construct
-                // Node out of this enhance entity,
-                // put into Persistence Cache, and just return.
-
+                // Node out of this enhance entity.
                 nodeData = entity;
-                nodeStateContext.setData(nodeData);
-                nodeStateContext.getPersistenceCache().getMainCache().addNodeToCache((Node) nodeStateContext);
-                nodeStateContext.setDirty(false); // This node is fresh and
-                                                  // hence NOT dirty
-
-                // One time set as required for rollback.
-                // Object original = ObjectUtils.deepCopy((Node)
-                // nodeStateContext);
-                Object original = ((Node) nodeStateContext).clone();
-                ((Node) nodeStateContext).setOriginalNode((Node) original);
-
-                return;
             }
 
             else
@@ -144,20 +148,35 @@ public class ManagedState extends NodeState
         // Construct Node out of this entity and put into Persistence Cache
         if (nodeData != null)
         {
-
-            nodeStateContext.setData(nodeData);
-            nodeStateContext.getPersistenceCache().getMainCache().addNodeToCache((Node) nodeStateContext);
-
-            // This node is fresh and hence NOT dirty
-            nodeStateContext.setDirty(false);
-            // One time set as required for rollback.
-            Object original = ((Node) nodeStateContext).clone();
-            ((Node) nodeStateContext).setOriginalNode((Node) original);
+            populateNode(nodeStateContext, nodeData);
         }
 
         // No state change, Node to remain in Managed state
     }
 
+    /**
+     * Sets given data into node and puts node into persistence cache as a
+     * fresh (NOT dirty) node. Used for data fetched from database as well as
+     * for data found in second level cache.
+     * 
+     * @param nodeStateContext
+     *            node to be populated
+     * @param nodeData
+     *            node data
+     */
+    public void populateNode(NodeStateContext nodeStateContext, Object nodeData)
+    {
+        nodeStateContext.setData(nodeData);
+        nodeStateContext.getPersistenceCache().getMainCache().addNodeToCache((Node) nodeStateContext);
+
+        // This node is fresh and hence NOT dirty
+        nodeStateContext.setDirty(false);
+        ((Node) nodeStateContext).takeSnapshot();
+        // One time set as required for rollback.
+        Object original = ((Node) nodeStateContext).clone();
+        ((Node) nodeStateContext).setOriginalNode((Node) original);
+    }
+
     @Override
     public void handleClose(NodeStateContext nodeStateContext)
     {
@@ -181,8 +200,10 @@ public class ManagedState extends NodeState
 
         // logNodeEvent("FLUSHED", this, nodeStateContext.getNodeId());
 
-        // Since node is flushed, mark it as NOT dirty
+        // Since node is flushed, mark it as NOT dirty, changes being compared
+        // to what is flushed from now on
         nodeStateContext.setDirty(false);
+        ((Node) nodeStateContext).takeSnapshot();
 
     }
 
@@ -17,7 +17,6 @@ package com.impetus.kundera.lifecycle.states;
 
 import com.impetus.kundera.graph.Node;
 import com.impetus.kundera.lifecycle.NodeStateContext;
-import com.impetus.kundera.utils.ObjectUtils;
 
 /**
  * @author amresh
@@ -71,10 +70,8 @@ public class TransientState extends NodeState
     @Override
     public void handleMerge(NodeStateContext nodeStateContext)
     {
-        // create a new managed entity and copy state of original entity into
-        // this one.
-        Object copiedNodeData = ObjectUtils.deepCopy(nodeStateContext.getData());
-        nodeStateContext.setData(copiedNodeData);
+        // Entity becomes managed as it is, its state being compared to
+        // snapshot of node on flush, rather than to a copy of it.
     }
 
     @Override
@@ -24,6 +24,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.impetus.kundera.Constants;
+import com.impetus.kundera.metadata.model.Column;
 import com.impetus.kundera.metadata.model.EntityMetadata;
 import com.impetus.kundera.metadata.processor.CacheableAnnotationProcessor;
 import com.impetus.kundera.metadata.processor.EntityListenersProcessor;
@@ -31,6 +32,7 @@ import com.impetus.kundera.metadata.processor.IndexProcessor;
 import com.impetus.kundera.metadata.processor.TableProcessor;
 import com.impetus.kundera.metadata.validator.EntityValidator;
 import com.impetus.kundera.metadata.validator.EntityValidatorImpl;
+import com.impetus.kundera.property.EntityFieldAccessorFactory;
 
 /**
  * Concrete implementation of IMetadataManager.
@@ -118,6 +120,16 @@ public class MetadataBuilder
             }
         }
 
+        if (metadata != null)
+        {
+            // generate field accessors at load, rather than on first read.
+            EntityFieldAccessorFactory.getAccessor(clazz);
+            for (Column column : metadata.getColumnsAsList())
+            {
+                column.getSlot();
+            }
+        }
+
         return metadata;
     }
 
@@ -17,6 +17,10 @@ package com.impetus.kundera.metadata.model;
 
 import java.lang.reflect.Field;
 
+import com.impetus.kundera.property.EntityFieldAccessorFactory;
+import com.impetus.kundera.property.PropertyAccessor;
+import com.impetus.kundera.property.PropertyAccessorFactory;
+
 /**
  * Holds metadata for entity column.
  * 
@@ -34,6 +38,12 @@ public final class Column
     /** whether indexable. */
     private boolean isIndexable; // default is NOT indexable
 
+    /** slot of field in entity field accessor, resolved on first use. */
+    private int slot = -1;
+
+    /** property accessor of field, resolved on first use. */
+    private PropertyAccessor<?> propertyAccessor;
+
     /**
      * Instantiates a new column.
      * 
@@ -75,6 +85,36 @@ public final class Column
         return field;
     }
 
+    /**
+     * Gets slot of field in field accessors of its declaring class and
+     * subclasses.
+     * 
+     * @return the slot
+     * @see EntityFieldAccessorFactory
+     */
+    public int getSlot()
+    {
+        if (slot < 0)
+        {
+            slot = EntityFieldAccessorFactory.getAccessor(field.getDeclaringClass()).indexOf(field);
+        }
+        return slot;
+    }
+
+    /**
+     * Gets property accessor of field.
+     * 
+     * @return the property accessor
+     */
+    public PropertyAccessor<?> getPropertyAccessor()
+    {
+        if (propertyAccessor == null)
+        {
+            propertyAccessor = PropertyAccessorFactory.getPropertyAccessor(field);
+        }
+        return propertyAccessor;
+    }
+
     /**
      * Checks if is indexable.
      * 
@@ -96,4 +136,4 @@ public final class Column
         this.isIndexable = isIndexable;
     }
 
-}
\ No newline at end of file
+}
\ No newline at end of file
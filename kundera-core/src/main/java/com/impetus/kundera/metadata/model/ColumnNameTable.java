@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.kundera.metadata.model;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import com.impetus.kundera.Constants;
+import com.impetus.kundera.property.PropertyAccessException;
+
+/**
+ * Open addressing table of columns by encoded column name, looked up with
+ * name bytes as read from data store, without decoding them to a string.
+ *
+ * @author impetus
+ */
+final class ColumnNameTable
+{
+
+    /** Encoded names, by bucket. */
+    private final byte[][] names;
+
+    /** Columns, by bucket. */
+    private final Column[] columns;
+
+    /** Bucket mask. */
+    private final int mask;
+
+    /**
+     * Instantiates a new column name table.
+     *
+     * @param columnsMap
+     *            columns, by name
+     */
+    ColumnNameTable(Map<String, Column> columnsMap)
+    {
+        int capacity = 4;
+        while (capacity < columnsMap.size() * 2)
+        {
+            capacity <<= 1;
+        }
+        names = new byte[capacity][];
+        columns = new Column[capacity];
+        mask = capacity - 1;
+        for (Map.Entry<String, Column> entry : columnsMap.entrySet())
+        {
+            byte[] name = encode(entry.getKey());
+            int bucket = spread(hash(name, 0, name.length)) & mask;
+            while (names[bucket] != null)
+            {
+                bucket = (bucket + 1) & mask;
+            }
+            names[bucket] = name;
+            columns[bucket] = entry.getValue();
+        }
+    }
+
+    /**
+     * Gets column of given encoded name, between position and limit of
+     * buffer.
+     *
+     * @param name
+     *            encoded name
+     * @return the column, null if there is no column of that name
+     */
+    Column get(ByteBuffer name)
+    {
+        int offset = name.position();
+        int length = name.remaining();
+        int hash;
+        if (name.hasArray())
+        {
+            hash = hash(name.array(), name.arrayOffset() + offset, length);
+        }
+        else
+        {
+            hash = 1;
+            for (int i = offset; i < offset + length; i++)
+            {
+                hash = 31 * hash + name.get(i);
+            }
+        }
+        for (int bucket = spread(hash) & mask; names[bucket] != null; bucket = (bucket + 1) & mask)
+        {
+            if (matches(names[bucket], name, offset, length))
+            {
+                return columns[bucket];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether stored name equals buffer content.
+     *
+     * @param stored
+     *            stored name
+     * @param name
+     *            buffer
+     * @param offset
+     *            start of name in buffer
+     * @param length
+     *            length of name
+     * @return true, if equal
+     */
+    private static boolean matches(byte[] stored, ByteBuffer name, int offset, int length)
+    {
+        if (stored.length != length)
+        {
+            return false;
+        }
+        for (int i = 0; i < length; i++)
+        {
+            if (stored[i] != name.get(offset + i))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hash of given bytes.
+     *
+     * @param bytes
+     *            the bytes
+     * @param offset
+     *            the offset
+     * @param length
+     *            the length
+     * @return the hash
+     */
+    private static int hash(byte[] bytes, int offset, int length)
+    {
+        int hash = 1;
+        for (int i = offset; i < offset + length; i++)
+        {
+            hash = 31 * hash + bytes[i];
+        }
+        return hash;
+    }
+
+    /**
+     * Spreads higher bits of hash to lower ones used for bucket.
+     *
+     * @param hash
+     *            the hash
+     * @return spread hash
+     */
+    private static int spread(int hash)
+    {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Encodes column name.
+     *
+     * @param name
+     *            the name
+     * @return encoded name
+     */
+    private static byte[] encode(String name)
+    {
+        try
+        {
+            return name.getBytes(Constants.ENCODING);
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            throw new PropertyAccessException(e);
+        }
+    }
+}
@@ -17,6 +17,7 @@ package com.impetus.kundera.metadata.model;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -83,6 +84,9 @@ public final class EntityMetadata
     /** Maps of column name and their metadata. */
     private Map<String, Column> columnsMap = new HashMap<String, Column>();
 
+    /** columns by encoded name, built from columns map on first use. */
+    private volatile ColumnNameTable columnNameTable;
+
     /** Map of embedded column names and their metadata. */
     private Map<String, EmbeddedColumn> embeddedColumnsMap = new HashMap<String, EmbeddedColumn>();
 
@@ -395,6 +399,25 @@ public final class EntityMetadata
         return columnsMap.get(key);
     }
 
+    /**
+     * Gets the column of given UTF-8 encoded name, without decoding it.
+     * 
+     * @param name
+     *            encoded name, between position and limit of buffer
+     * 
+     * @return the column
+     */
+    public Column getColumn(ByteBuffer name)
+    {
+        ColumnNameTable table = columnNameTable;
+        if (table == null)
+        {
+            table = new ColumnNameTable(columnsMap);
+            columnNameTable = table;
+        }
+        return table.get(name);
+    }
+
     /**
      * Gets the super column.
      * 
@@ -459,6 +482,7 @@ public final class EntityMetadata
     public void addColumn(String key, Column column)
     {
         columnsMap.put(key, column);
+        columnNameTable = null;
         fieldToColMap.put(column.getField().getName(), key);
     }
 
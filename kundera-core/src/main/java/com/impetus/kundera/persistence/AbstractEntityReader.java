@@ -15,14 +15,19 @@
  ******************************************************************************/
 package com.impetus.kundera.persistence;
 
+import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import javax.persistence.FetchType;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.lucene.search.Query;
 
 import com.impetus.kundera.client.Client;
 import com.impetus.kundera.client.EnhanceEntity;
@@ -33,6 +38,8 @@ import com.impetus.kundera.metadata.model.Relation;
 import com.impetus.kundera.persistence.context.PersistenceCacheManager;
 import com.impetus.kundera.property.PropertyAccessException;
 import com.impetus.kundera.property.PropertyAccessorHelper;
+import com.impetus.kundera.proxy.KunderaProxy;
+import com.impetus.kundera.proxy.ProxyHelper;
 
 /**
  * The Class AbstractEntityReader.
@@ -46,7 +53,7 @@ public class AbstractEntityReader
     private static Log log = LogFactory.getLog(AbstractEntityReader.class);
 
     /** The lucene query from jpa query. */
-    protected String luceneQueryFromJPAQuery;
+    protected Query luceneQueryFromJPAQuery;
 
     AssociationBuilder associationBuilder;
 
@@ -94,26 +101,105 @@ public class AbstractEntityReader
             PersistenceDelegator pd)
     {
         String entityId = PropertyAccessorHelper.getId(entity, m);
+        recursivelyFindEntities(Collections.singletonList(new EnhanceEntity(entity, entityId, relationsMap)), m, pd);
+        return entity;
+    }
+
+    /**
+     * Recursively fetches associated entities for all of given entities.
+     * Entities associated via a relation are fetched together for the whole
+     * list rather than one entity at a time.
+     * 
+     * @param enhanceEntities
+     * @param m
+     * @param pd
+     * @return entities, with associations populated
+     */
+    public List<Object> recursivelyFindEntities(List<EnhanceEntity> enhanceEntities, EntityMetadata m,
+            PersistenceDelegator pd)
+    {
+        List<Object> entities = new ArrayList<Object>(enhanceEntities.size());
+        for (EnhanceEntity ee : enhanceEntities)
+        {
+            entities.add(ee.getEntity());
+        }
         associationBuilder = new AssociationBuilder();
 
         for (Relation relation : m.getRelations())
         {
-            if (relation.isRelatedViaJoinTable())
+            List<EnhanceEntity> eagerEntities = new ArrayList<EnhanceEntity>(enhanceEntities.size());
+            for (EnhanceEntity ee : enhanceEntities)
             {
-                // M-M relationship. Relationship entities are always fetched
-                // from Join Table.
+                // Lazy relations will be fetched on first access.
+                if (!FetchType.LAZY.equals(relation.getFetchType())
+                        || !setLazyRelation(ee.getEntity(), ee.getRelations(), m, relation, pd))
+                {
+                    eagerEntities.add(ee);
+                }
+            }
 
-                // First, Save this entity to persistence cache
-                PersistenceCacheManager.addEntityToPersistenceCache(entity, pd, entityId);
-                associationBuilder.populateRelationFromJoinTable(entity, m, pd, relation);
+            if (!eagerEntities.isEmpty())
+            {
+                populateRelation(eagerEntities, m, relation, pd);
             }
-            else
+        }
+
+        return entities;
+    }
+
+    /**
+     * Fetches entities associated with <code>entity</code> via given
+     * relation. Used to initialize lazily loaded relations.
+     * 
+     * @param entity
+     * @param m
+     * @param relation
+     * @param pd
+     */
+    public void loadRelation(Object entity, EntityMetadata m, Relation relation, PersistenceDelegator pd)
+    {
+        associationBuilder = new AssociationBuilder();
+        String entityId = PropertyAccessorHelper.getId(entity, m);
+        populateRelation(Collections.singletonList(new EnhanceEntity(entity, entityId, null)), m, relation, pd);
+    }
+
+    /**
+     * Fetches and sets entities associated with given entities via given
+     * relation.
+     * 
+     * @param enhanceEntities
+     * @param m
+     * @param relation
+     * @param pd
+     */
+    private void populateRelation(List<EnhanceEntity> enhanceEntities, EntityMetadata m, Relation relation,
+            PersistenceDelegator pd)
+    {
+        if (relation.isRelatedViaJoinTable())
+        {
+            // M-M relationship. Relationship entities are always fetched
+            // from Join Table.
+            List<Object> entities = new ArrayList<Object>(enhanceEntities.size());
+            for (EnhanceEntity ee : enhanceEntities)
             {
-                String relationName = MetadataUtils.getMappedName(m, relation);
-                Object relationValue = relationsMap != null ? relationsMap.get(relationName) : null;
+                // First, Save this entity to persistence cache
+                PersistenceCacheManager.addEntityToPersistenceCache(ee.getEntity(), pd, ee.getEntityId());
+                entities.add(ee.getEntity());
+            }
+            associationBuilder.populateRelationFromJoinTable(entities, m, pd, relation);
+        }
+        else
+        {
+            String relationName = MetadataUtils.getMappedName(m, relation);
 
-                Class<?> childClass = relation.getTargetEntity();
-                EntityMetadata childMetadata = KunderaMetadataManager.getEntityMetadata(childClass);
+            Class<?> childClass = relation.getTargetEntity();
+            EntityMetadata childMetadata = KunderaMetadataManager.getEntityMetadata(childClass);
+
+            List<Object> entities = new ArrayList<Object>(enhanceEntities.size());
+            List<Object> relationValues = new ArrayList<Object>(enhanceEntities.size());
+            for (EnhanceEntity ee : enhanceEntities)
+            {
+                Object relationValue = ee.getRelations() != null ? ee.getRelations().get(relationName) : null;
 
                 if (relationValue != null)
                 {
@@ -121,8 +207,8 @@ public class AbstractEntityReader
                     // of entity and hence
                     // relationship entities would be retrieved from database
                     // based on these IDs already available
-                    associationBuilder.populateRelationFromValue(entity, pd, relation, relationValue, childMetadata);
-
+                    entities.add(ee.getEntity());
+                    relationValues.add(relationValue);
                 }
                 else
                 {
@@ -133,15 +219,65 @@ public class AbstractEntityReader
                     // database)
                     // Running query returns all those associated entities that
                     // hold parent entity ID as foreign key
-                    associationBuilder.populateRelationViaQuery(entity, pd, entityId, relation, relationName,
-                            childMetadata);
+                    associationBuilder.populateRelationViaQuery(ee.getEntity(), pd, ee.getEntityId(), relation,
+                            relationName, childMetadata);
                 }
+            }
 
+            if (!entities.isEmpty())
+            {
+                associationBuilder.populateRelationFromValues(entities, relationValues, pd, relation,
+                        childMetadata);
             }
+        }
+    }
 
+    /**
+     * Sets a proxy in place of entities associated via a lazily fetched
+     * relation. Collections are replaced with a proxy collection, single
+     * valued relations (whose ID is held at this side) with an entity proxy.
+     * 
+     * @param entity
+     * @param relationsMap
+     * @param m
+     * @param relation
+     * @param pd
+     * @return true, if proxy was set; false if relation needs to be fetched
+     *         right away
+     */
+    private boolean setLazyRelation(Object entity, Map<String, Object> relationsMap, EntityMetadata m,
+            Relation relation, PersistenceDelegator pd)
+    {
+        Field property = relation.getProperty();
+
+        if (PropertyAccessorHelper.isCollection(property.getType()))
+        {
+            if (!ProxyHelper.isProxyCollectionSupported(property))
+            {
+                return false;
+            }
+            PropertyAccessorHelper.set(entity, property, ProxyHelper.getProxyCollection(entity, m, relation, pd));
+            return true;
         }
 
-        return entity;
+        Object relationValue = relationsMap != null ? relationsMap.get(MetadataUtils.getMappedName(m, relation))
+                : null;
+        if (relation.isRelatedViaJoinTable() || relationValue == null)
+        {
+            // ID is not available at this side, can't create a proxy.
+            return false;
+        }
+
+        Class<?> childClass = relation.getTargetEntity();
+        EntityMetadata childMetadata = KunderaMetadataManager.getEntityMetadata(childClass);
+        String childId = relationValue.toString();
+
+        KunderaProxy proxy = KunderaMetadataManager.getLazyInitializerFactory().getProxy(childClass.getName(),
+                childClass, childMetadata.getReadIdentifierMethod(), childMetadata.getWriteIdentifierMethod(),
+                childId, pd);
+        pd.registerProxy(childClass, childId);
+        PropertyAccessorHelper.set(entity, property, proxy);
+        return true;
     }
 
     /**
@@ -19,7 +19,10 @@ import java.lang.reflect.Field;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -57,15 +60,17 @@ final class AssociationBuilder
     private static Log log = LogFactory.getLog(AssociationBuilder.class);
 
     /**
-     * Populates entities related via join table for <code>entity</code>
+     * Populates entities related via join table for all of
+     * <code>entities</code>. Foreign keys of all entities are read from join
+     * table together and related entities are fetched in a single batch.
      * 
-     * @param entity
+     * @param entities
      * @param entityMetadata
      * @param delegator
      * @param relation
      */
-    void populateRelationFromJoinTable(Object entity, EntityMetadata entityMetadata, PersistenceDelegator delegator,
-            Relation relation)
+    void populateRelationFromJoinTable(List<Object> entities, EntityMetadata entityMetadata,
+            PersistenceDelegator delegator, Relation relation)
     {
 
         JoinTableMetadata jtMetadata = relation.getJoinTableMetadata();
@@ -77,97 +82,185 @@ final class AssociationBuilder
         String joinColumnName = (String) joinColumns.toArray()[0];
         String inverseJoinColumnName = (String) inverseJoinColumns.toArray()[0];
 
-        // EntityMetadata relMetadata =
-        // delegator.getMetadata(relation.getTargetEntity());
+        Class<?> entityClass = entityMetadata.getEntityClazz();
+        Class<?> childClass = relation.getTargetEntity();
+        EntityMetadata childMetadata = delegator.getMetadata(childClass);
 
         Client pClient = delegator.getClient(entityMetadata);
-        String entityId = PropertyAccessorHelper.getId(entity, entityMetadata);
-        List<?> foreignKeys = pClient.getColumnsById(joinTableName, joinColumnName, inverseJoinColumnName, entityId);
-
-        List childrenEntities = new ArrayList();
-        for (Object foreignKey : foreignKeys)
+        List<String> entityIds = new ArrayList<String>(entities.size());
+        for (Object entity : entities)
         {
-            EntityMetadata childMetadata = delegator.getMetadata(relation.getTargetEntity());
-
-            Object child = delegator.find(relation.getTargetEntity(), foreignKey);
-            Object obj = child instanceof EnhanceEntity && child != null ? ((EnhanceEntity) child).getEntity() : child;
+            entityIds.add(PropertyAccessorHelper.getId(entity, entityMetadata));
+        }
+        Map<String, List<Object>> foreignKeysById = pClient.getColumnsByIds(joinTableName, joinColumnName,
+                inverseJoinColumnName, entityIds);
 
-            // If child has any bidirectional relationship, process them here
-            Field biDirectionalField = getBiDirectionalField(entity.getClass(), relation.getTargetEntity());
-            boolean isBidirectionalRelation = (biDirectionalField != null);
+        // Fetch children of all entities at once
+        Set<Object> foreignKeys = new LinkedHashSet<Object>();
+        for (List<Object> fks : foreignKeysById.values())
+        {
+            foreignKeys.addAll(fks);
+        }
+        Map<String, Object> childrenById = findByIds(delegator, childClass, childMetadata, foreignKeys);
 
-            if (isBidirectionalRelation && obj != null)
+        // If child has any bidirectional relationship, process them here
+        Field biDirectionalField = getBiDirectionalField(entityClass, childClass);
+        if (biDirectionalField != null && !childrenById.isEmpty())
+        {
+            // Parents of all children are looked up together
+            Map<String, List<Object>> parentKeysByChild = pClient.findIdsByColumnValues(joinTableName,
+                    joinColumnName, inverseJoinColumnName, new ArrayList<String>(childrenById.keySet()),
+                    entityClass);
+            Set<Object> parentKeys = new LinkedHashSet<Object>();
+            for (List<Object> pKeys : parentKeysByChild.values())
             {
+                parentKeys.addAll(pKeys);
+            }
 
-                String columnValue = PropertyAccessorHelper.getId(obj, childMetadata);
-                Object[] pKeys = pClient.findIdsByColumn(joinTableName, joinColumnName, inverseJoinColumnName,
-                        columnValue, entityMetadata.getEntityClazz());
-                List parents = delegator.find(entity.getClass(), pKeys);
-                PropertyAccessorHelper.set(obj, biDirectionalField,
+            Map<String, Object> parentsById = findByIds(delegator, entityClass, entityMetadata, parentKeys);
+            for (Map.Entry<String, Object> child : childrenById.entrySet())
+            {
+                List parents = new ArrayList();
+                List<Object> pKeys = parentKeysByChild.get(child.getKey());
+                if (pKeys != null)
+                {
+                    for (Object pKey : pKeys)
+                    {
+                        Object parent = parentsById.get(pKey.toString());
+                        if (parent != null)
+                        {
+                            parents.add(parent);
+                        }
+                    }
+                }
+                PropertyAccessorHelper.set(child.getValue(), biDirectionalField,
                         ObjectUtils.getFieldInstance(parents, biDirectionalField));
             }
-
-            childrenEntities.add(obj);
         }
 
         Field childField = relation.getProperty();
-
-        try
+        for (int i = 0; i < entities.size(); i++)
         {
-            PropertyAccessorHelper.set(
-                    entity,
-                    childField,
-                    PropertyAccessorHelper.isCollection(childField.getType()) ? ObjectUtils.getFieldInstance(
-                            childrenEntities, childField) : childrenEntities.get(0));
-            PersistenceCacheManager.addEntityToPersistenceCache(entity, delegator, entityId);
-        }
-        catch (PropertyAccessException ex)
-        {
-            throw new EntityReaderException(ex);
+            Object entity = entities.get(i);
+            String entityId = entityIds.get(i);
+
+            List childrenEntities = new ArrayList();
+            List<Object> fks = foreignKeysById.get(entityId);
+            if (fks != null)
+            {
+                for (Object foreignKey : fks)
+                {
+                    Object child = childrenById.get(foreignKey.toString());
+                    if (child != null)
+                    {
+                        childrenEntities.add(child);
+                    }
+                }
+            }
+
+            try
+            {
+                PropertyAccessorHelper.set(entity, childField,
+                        PropertyAccessorHelper.isCollection(childField.getType()) ? ObjectUtils.getFieldInstance(
+                                childrenEntities, childField) : (childrenEntities.isEmpty() ? null
+                                : childrenEntities.get(0)));
+                PersistenceCacheManager.addEntityToPersistenceCache(entity, delegator, entityId);
+            }
+            catch (PropertyAccessException ex)
+            {
+                throw new EntityReaderException(ex);
+            }
         }
 
     }
 
     /**
-     * @param entity
+     * Populates entities whose IDs are held by <code>entities</code> (1-1 or
+     * M-1 relationship). Related entities of all entities are fetched in a
+     * single batch.
+     * 
+     * @param entities
+     * @param relationValues
+     *            relation value (i.e. ID of related entity) of each entity
      * @param pd
      * @param relation
-     * @param relationValue
+     * @param childMetadata
      */
-    void populateRelationFromValue(Object entity, PersistenceDelegator pd, Relation relation, Object relationValue,
-            EntityMetadata childMetadata)
+    void populateRelationFromValues(List<Object> entities, List<Object> relationValues, PersistenceDelegator pd,
+            Relation relation, EntityMetadata childMetadata)
     {
         Class<?> childClass = relation.getTargetEntity();
 
-        Object child = pd.find(childClass, relationValue.toString());
-        child = child != null && child instanceof EnhanceEntity ? ((EnhanceEntity) child).getEntity() : child;
-
-        if (child != null)
+        Set<Object> childIds = new LinkedHashSet<Object>();
+        for (Object relationValue : relationValues)
         {
-            PropertyAccessorHelper.set(entity, relation.getProperty(), child);
+            childIds.add(relationValue.toString());
+        }
+        Map<String, Object> childrenById = findByIds(pd, childClass, childMetadata, childIds);
 
-            // If child has any bidirectional relationship, process them here
-            Field biDirectionalField = getBiDirectionalField(entity.getClass(), relation.getTargetEntity());
-            boolean isBidirectionalRelation = (biDirectionalField != null);
+        // If child has any bidirectional relationship, process them here
+        Field biDirectionalField = getBiDirectionalField(entities.get(0).getClass(), childClass);
+        Relation reverseRelation = biDirectionalField != null ? childMetadata.getRelation(biDirectionalField
+                .getName()) : null;
+        EntityMetadata reverseEntityMetadata = KunderaMetadataManager.getEntityMetadata(entities.get(0).getClass());
+        Set<String> processedChildIds = new HashSet<String>();
+
+        for (int i = 0; i < entities.size(); i++)
+        {
+            Object entity = entities.get(i);
+            String childId = relationValues.get(i).toString();
+            Object child = childrenById.get(childId);
 
-            if (isBidirectionalRelation)
+            if (child != null)
             {
-                Relation reverseRelation = childMetadata.getRelation(biDirectionalField.getName());
+                PropertyAccessorHelper.set(entity, relation.getProperty(), child);
 
-                if (relation.getType().equals(ForeignKey.ONE_TO_ONE))
-                {
-                    PropertyAccessorHelper.set(child, reverseRelation.getProperty(), entity);
-                }
-                else
+                if (reverseRelation != null)
                 {
-                    String childId = PropertyAccessorHelper.getId(child, childMetadata);
-                    EntityMetadata reverseEntityMetadata = KunderaMetadataManager.getEntityMetadata(entity.getClass());
-                    populateRelationViaQuery(child, pd, childId, reverseRelation, relation.getJoinColumnName(),
-                            reverseEntityMetadata);
+                    if (relation.getType().equals(ForeignKey.ONE_TO_ONE))
+                    {
+                        PropertyAccessorHelper.set(child, reverseRelation.getProperty(), entity);
+                    }
+                    else if (processedChildIds.add(childId))
+                    {
+                        // Children of a parent are same for every entity
+                        // referring to it, fetch them once.
+                        populateRelationViaQuery(child, pd, childId, reverseRelation, relation.getJoinColumnName(),
+                                reverseEntityMetadata);
+                    }
                 }
+            }
+        }
+    }
 
+    /**
+     * Finds entities for given IDs in a single batch, entities already in
+     * persistence cache are not fetched again.
+     * 
+     * @param pd
+     * @param entityClass
+     * @param metadata
+     * @param ids
+     * @return found entities, keyed by their ID
+     */
+    private Map<String, Object> findByIds(PersistenceDelegator pd, Class<?> entityClass, EntityMetadata metadata,
+            Collection<Object> ids)
+    {
+        Map<String, Object> entitiesById = new HashMap<String, Object>();
+        if (ids.isEmpty())
+        {
+            return entitiesById;
+        }
+
+        for (Object o : pd.find(entityClass, ids.toArray()))
+        {
+            o = o instanceof EnhanceEntity ? ((EnhanceEntity) o).getEntity() : o;
+            if (o != null)
+            {
+                entitiesById.put(PropertyAccessorHelper.getId(o, metadata), o);
             }
         }
+        return entitiesById;
     }
 
     /**
@@ -266,11 +359,13 @@ final class AssociationBuilder
         else if (associatedEntities != null)
         {
             // These entities has associated entities, find them recursively.
+            List<EnhanceEntity> enhanceEntities = new ArrayList<EnhanceEntity>(associatedEntities.size());
             for (Object associatedEntity : associatedEntities)
             {
-                associatedEntity = pd.getReader(childClient).recursivelyFindEntities(associatedEntity, null,
-                        childMetadata, pd);
+                enhanceEntities.add(new EnhanceEntity(associatedEntity, PropertyAccessorHelper.getId(
+                        associatedEntity, childMetadata), null));
             }
+            pd.getReader(childClient).recursivelyFindEntities(enhanceEntities, childMetadata, pd);
         }
 
     }
@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.kundera.persistence;
+
+import java.util.List;
+import java.util.concurrent.Future;
+
+import javax.persistence.Query;
+
+/**
+ * Asynchronous operations of an entity manager, obtained by
+ * <code>em.unwrap(AsyncEntityManager.class)</code>. Operations run on a
+ * bounded pool of threads of entity manager factory, sized by
+ * {@link com.impetus.kundera.PersistenceProperties#KUNDERA_ASYNC_THREADS},
+ * and return as soon as they are submitted. Once pool and its queue are full,
+ * calling thread runs operation itself.
+ * <p>
+ * Operations of an entity manager, reads included, run one after another in
+ * order of submission, as entity manager, its persistence context and clients
+ * are not thread safe. So a find sees writes submitted before it. Operations
+ * of different entity managers run concurrently, so independent lookups are
+ * to be spread over entity managers of their own, or combined into
+ * {@link #findAllAsync(Class, Object...)}. Transaction is to be committed
+ * only after futures of its writes are done.
+ * 
+ * @author impetus
+ */
+public interface AsyncEntityManager
+{
+
+    /**
+     * Persists an entity.
+     * 
+     * @param entity
+     *            the entity
+     * @return future, done once entity is persisted
+     */
+    Future<Void> persistAsync(Object entity);
+
+    /**
+     * Merges state of an entity.
+     * 
+     * @param <E>
+     *            entity type
+     * @param entity
+     *            the entity
+     * @return future of managed entity
+     */
+    <E> Future<E> mergeAsync(E entity);
+
+    /**
+     * Removes an entity.
+     * 
+     * @param entity
+     *            the entity
+     * @return future, done once entity is removed
+     */
+    Future<Void> removeAsync(Object entity);
+
+    /**
+     * Flushes persistence context.
+     * 
+     * @return future, done once flushed
+     */
+    Future<Void> flushAsync();
+
+    /**
+     * Finds an entity by primary key.
+     * 
+     * @param <E>
+     *            entity type
+     * @param entityClass
+     *            entity class
+     * @param primaryKey
+     *            primary key
+     * @return future of found entity, null if not found
+     */
+    <E> Future<E> findAsync(Class<E> entityClass, Object primaryKey);
+
+    /**
+     * Finds entities of given primary keys, read in a single multiget call
+     * unless found in persistence context. Like
+     * {@link #findAsync(Class, Object)}, returns copies of found entities.
+     * 
+     * @param <E>
+     *            entity type
+     * @param entityClass
+     *            entity class
+     * @param primaryKeys
+     *            primary keys
+     * @return future of found entities
+     */
+    <E> Future<List<E>> findAllAsync(Class<E> entityClass, Object... primaryKeys);
+
+    /**
+     * Runs a select query.
+     * 
+     * @param query
+     *            the query, not to be modified until future is done
+     * @return future of query results
+     */
+    Future<List<?>> queryAsync(Query query);
+
+    /**
+     * Runs an update or delete query.
+     * 
+     * @param query
+     *            the query, not to be modified until future is done
+     * @return future of number of entities updated or deleted
+     */
+    Future<Integer> executeUpdateAsync(Query query);
+}
@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.kundera.persistence;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import javax.persistence.Query;
+
+/**
+ * Runs operations of an entity manager on pool of its factory, one after
+ * another on a lane of their own, as entity manager and its clients are not
+ * thread safe.
+ * 
+ * @author impetus
+ */
+final class AsyncEntityManagerImpl implements AsyncEntityManager
+{
+
+    /** The entity manager. */
+    private final EntityManagerImpl em;
+
+    /** Lane running operations of this entity manager in order. */
+    private final AsyncExecutor.Lane lane;
+
+    /**
+     * Instantiates a new async entity manager.
+     * 
+     * @param em
+     *            the entity manager
+     * @param executor
+     *            the executor of its factory
+     */
+    AsyncEntityManagerImpl(EntityManagerImpl em, AsyncExecutor executor)
+    {
+        this.em = em;
+        this.lane = executor.newLane();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.impetus.kundera.persistence.AsyncEntityManager#persistAsync(java.
+     * lang.Object)
+     */
+    @Override
+    public Future<Void> persistAsync(final Object entity)
+    {
+        return lane.submit(new Callable<Void>()
+        {
+            @Override
+            public Void call()
+            {
+                em.persist(entity);
+                return null;
+            }
+        });
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.impetus.kundera.persistence.AsyncEntityManager#mergeAsync(java.lang
+     * .Object)
+     */
+    @Override
+    public <E> Future<E> mergeAsync(final E entity)
+    {
+        return lane.submit(new Callable<E>()
+        {
+            @Override
+            public E call()
+            {
+                return em.merge(entity);
+            }
+        });
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.impetus.kundera.persistence.AsyncEntityManager#removeAsync(java.lang
+     * .Object)
+     */
+    @Override
+    public Future<Void> removeAsync(final Object entity)
+    {
+        return lane.submit(new Callable<Void>()
+        {
+            @Override
+            public Void call()
+            {
+                em.remove(entity);
+                return null;
+            }
+        });
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.impetus.kundera.persistence.AsyncEntityManager#flushAsync()
+     */
+    @Override
+    public Future<Void> flushAsync()
+    {
+        return lane.submit(new Callable<Void>()
+        {
+            @Override
+            public Void call()
+            {
+                em.flush();
+                return null;
+            }
+        });
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.impetus.kundera.persistence.AsyncEntityManager#findAsync(java.lang
+     * .Class, java.lang.Object)
+     */
+    @Override
+    public <E> Future<E> findAsync(final Class<E> entityClass, final Object primaryKey)
+    {
+        return lane.submit(new Callable<E>()
+        {
+            @Override
+            public E call()
+            {
+                return em.find(entityClass, primaryKey);
+            }
+        });
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.impetus.kundera.persistence.AsyncEntityManager#findAllAsync(java.
+     * lang.Class, java.lang.Object[])
+     */
+    @Override
+    public <E> Future<List<E>> findAllAsync(final Class<E> entityClass, final Object... primaryKeys)
+    {
+        return lane.submit(new Callable<List<E>>()
+        {
+            @Override
+            public List<E> call()
+            {
+                return em.findAll(entityClass, primaryKeys);
+            }
+        });
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.impetus.kundera.persistence.AsyncEntityManager#queryAsync(javax.
+     * persistence.Query)
+     */
+    @Override
+    public Future<List<?>> queryAsync(final Query query)
+    {
+        return lane.submit(new Callable<List<?>>()
+        {
+            @Override
+            public List<?> call()
+            {
+                return query.getResultList();
+            }
+        });
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.impetus.kundera.persistence.AsyncEntityManager#executeUpdateAsync
+     * (javax.persistence.Query)
+     */
+    @Override
+    public Future<Integer> executeUpdateAsync(final Query query)
+    {
+        return lane.submit(new Callable<Integer>()
+        {
+            @Override
+            public Integer call()
+            {
+                return query.executeUpdate();
+            }
+        });
+    }
+}
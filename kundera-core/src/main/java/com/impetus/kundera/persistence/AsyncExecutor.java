@@ -0,0 +1,226 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.kundera.persistence;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import com.impetus.kundera.utils.ThreadPools;
+
+/**
+ * Bounded pool of daemon threads running asynchronous operations of entity
+ * managers of a factory, each on a lane of its own. Once pool and its queue
+ * are full, calling thread runs operation itself, so that callers are slowed
+ * down rather than rejected.
+ * 
+ * @author impetus
+ */
+final class AsyncExecutor
+{
+
+    /** Queued operations allowed per pool thread. */
+    private static final int QUEUE_SIZE_PER_THREAD = 16;
+
+    /** Pool threads by default, operations being I/O bound. */
+    static final int DEFAULT_THREADS = Runtime.getRuntime().availableProcessors() * 2;
+
+    /** The executor. */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Instantiates a new async executor.
+     * 
+     * @param threads
+     *            number of pool threads
+     */
+    AsyncExecutor(int threads)
+    {
+        executor = ThreadPools.newBoundedPool("kundera-async", threads, threads * QUEUE_SIZE_PER_THREAD);
+    }
+
+    /**
+     * Returns a new lane of this executor, running operations submitted to it
+     * one after another, in order of submission.
+     * 
+     * @return the lane
+     */
+    Lane newLane()
+    {
+        return new Lane();
+    }
+
+    /**
+     * Stops pool threads once operations submitted so far are run.
+     */
+    void shutdown()
+    {
+        executor.shutdown();
+    }
+
+    /**
+     * Checks that executor is not shut down, as pool would discard operations
+     * submitted then rather than run them.
+     */
+    private void checkRunning()
+    {
+        if (executor.isShutdown())
+        {
+            throw newClosedException();
+        }
+    }
+
+    /**
+     * Returns exception for operations submitted once executor is shut down.
+     * 
+     * @return the exception
+     */
+    private static IllegalStateException newClosedException()
+    {
+        return new IllegalStateException("EntityManagerFactory is closed");
+    }
+
+    /**
+     * An operation, which may be failed without being run.
+     * 
+     * @param <T>
+     *            result type
+     */
+    private static final class Operation<T> extends FutureTask<T>
+    {
+
+        /**
+         * Instantiates a new operation.
+         * 
+         * @param callable
+         *            the callable
+         */
+        Operation(Callable<T> callable)
+        {
+            super(callable);
+        }
+
+        /**
+         * Completes operation with given failure, unless it is done already.
+         * 
+         * @param t
+         *            the failure
+         */
+        void fail(Throwable t)
+        {
+            setException(t);
+        }
+    }
+
+    /**
+     * Runs operations one after another on pool threads, holding at most one
+     * pool thread at a time.
+     */
+    final class Lane implements Runnable
+    {
+
+        /** Operations not yet run. */
+        private final Queue<Operation<?>> pending = new LinkedList<Operation<?>>();
+
+        /** Whether a pool thread is running operations of this lane. */
+        private boolean running;
+
+        /**
+         * Submits an operation to run once those submitted before it are
+         * done.
+         * 
+         * @param <T>
+         *            result type
+         * @param operation
+         *            the operation
+         * @return future of its result
+         */
+        <T> Future<T> submit(Callable<T> operation)
+        {
+            checkRunning();
+            Operation<T> task = new Operation<T>(operation);
+            synchronized (pending)
+            {
+                pending.add(task);
+                if (running)
+                {
+                    return task;
+                }
+                running = true;
+            }
+            try
+            {
+                executor.execute(this);
+            }
+            catch (RejectedExecutionException e)
+            {
+                // shut down since checked, no thread will run pending ones.
+                failPending();
+                throw newClosedException();
+            }
+            return task;
+        }
+
+        /**
+         * Fails operations not yet run, as executor is shut down.
+         */
+        private void failPending()
+        {
+            List<Operation<?>> failed;
+            synchronized (pending)
+            {
+                failed = new ArrayList<Operation<?>>(pending);
+                pending.clear();
+                running = false;
+            }
+            for (Operation<?> task : failed)
+            {
+                task.fail(newClosedException());
+            }
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see java.lang.Runnable#run()
+         */
+        @Override
+        public void run()
+        {
+            while (true)
+            {
+                Operation<?> task;
+                synchronized (pending)
+                {
+                    task = pending.poll();
+                    if (task == null)
+                    {
+                        running = false;
+                        return;
+                    }
+                }
+                // failure is held by future of task.
+                task.run();
+            }
+        }
+    }
+}
@@ -42,6 +42,7 @@ import com.impetus.kundera.cache.NonOperationalCacheProvider;
 import com.impetus.kundera.client.ClientResolver;
 import com.impetus.kundera.loader.ClientLifeCycleManager;
 import com.impetus.kundera.metadata.KunderaMetadataManager;
+import com.impetus.kundera.query.QueryResolver;
 
 /**
  * The Class EntityManagerFactoryImpl.
@@ -76,6 +77,9 @@ public class EntityManagerFactoryImpl implements EntityManagerFactory
     // Transaction type
     PersistenceUnitTransactionType transactionType;
 
+    /** Executor of asynchronous operations, created on first use. */
+    private AsyncExecutor asyncExecutor;
+
     /**
      * This one is generally called via the PersistenceProvider.
      * 
@@ -160,7 +164,50 @@ public class EntityManagerFactoryImpl implements EntityManagerFactory
         for (String pu : persistenceUnits)
         {
             ((ClientLifeCycleManager) ClientResolver.getClientFactory(pu)).destroy();
+            QueryResolver.getQueryPlanCache().evict(pu);
+        }
+
+        synchronized (this)
+        {
+            if (asyncExecutor != null)
+            {
+                asyncExecutor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Returns executor of asynchronous operations of entity managers of this
+     * factory, sized by {@link PersistenceProperties#KUNDERA_ASYNC_THREADS}.
+     * 
+     * @return the async executor
+     */
+    synchronized AsyncExecutor getAsyncExecutor()
+    {
+        if (asyncExecutor == null)
+        {
+            Object threads = properties.get(PersistenceProperties.KUNDERA_ASYNC_THREADS);
+            if (threads == null)
+            {
+                threads = KunderaMetadataManager.getPersistenceUnitMetadata(persistenceUnits[0]).getProperty(
+                        PersistenceProperties.KUNDERA_ASYNC_THREADS);
+            }
+            int size = AsyncExecutor.DEFAULT_THREADS;
+            if (threads != null)
+            {
+                try
+                {
+                    size = Integer.parseInt(threads.toString().trim());
+                }
+                catch (NumberFormatException e)
+                {
+                    logger.warn("Invalid value " + threads + " for " + PersistenceProperties.KUNDERA_ASYNC_THREADS
+                            + ", using default " + AsyncExecutor.DEFAULT_THREADS);
+                }
+            }
+            asyncExecutor = new AsyncExecutor(size > 0 ? size : AsyncExecutor.DEFAULT_THREADS);
         }
+        return asyncExecutor;
     }
 
     @Override
@@ -15,6 +15,12 @@
  ******************************************************************************/
 package com.impetus.kundera.persistence;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 
 import javax.naming.Context;
@@ -26,6 +32,7 @@ import javax.persistence.EntityTransaction;
 import javax.persistence.FlushModeType;
 import javax.persistence.LockModeType;
 import javax.persistence.PersistenceContextType;
+import javax.persistence.PersistenceException;
 import javax.persistence.Query;
 import javax.persistence.TransactionRequiredException;
 import javax.persistence.TypedQuery;
@@ -81,6 +88,9 @@ public class EntityManagerImpl implements EntityManager, EntityTransaction, Reso
     /** Properties provided by user at the time of EntityManager Creation. */
     private PersistenceDelegator persistenceDelegator;
 
+    /** Asynchronous operations, created once unwrapped. */
+    private AsyncEntityManager asyncEntityManager;
+
     /** Persistence Context Type (Transaction/ Extended) */
     private PersistenceContextType persistenceContextType;
 
@@ -170,6 +180,13 @@ public class EntityManagerImpl implements EntityManager, EntityTransaction, Reso
     {
         this(factory, transactionType, persistenceContextType);
         this.properties = properties;
+        if (properties != null)
+        {
+            for (Object name : properties.keySet())
+            {
+                persistenceDelegator.setHint(name.toString(), properties.get(name));
+            }
+        }
     }
 
     /*
@@ -194,6 +211,57 @@ public class EntityManagerImpl implements EntityManager, EntityTransaction, Reso
         if (e == null)
             return null;
 
+        return copyOfFound(entityClass, primaryKey, e);
+    }
+
+    /**
+     * Finds entities of given primary keys, read together in a single
+     * multiget call unless found in persistence context. Returns copies, as
+     * {@link #find(Class, Object)} does, one per distinct primary key and null
+     * for those not found.
+     * 
+     * @param entityClass
+     *            entity class
+     * @param primaryKeys
+     *            primary keys
+     * @return found entities
+     */
+    <E> List<E> findAll(Class<E> entityClass, Object... primaryKeys)
+    {
+        checkClosed();
+        checkTransactionNeeded();
+
+        List<E> found = getPersistenceDelegator().find(entityClass, primaryKeys);
+        List<E> entities = new ArrayList<E>(found.size());
+        if (found.isEmpty())
+        {
+            return entities;
+        }
+
+        // Delegator returns an entity per distinct key, in order of keys.
+        Iterator<Object> keys = new LinkedHashSet<Object>(Arrays.asList(primaryKeys)).iterator();
+        for (E e : found)
+        {
+            Object primaryKey = keys.next();
+            entities.add(e != null ? copyOfFound(entityClass, primaryKey, e) : null);
+        }
+        return entities;
+    }
+
+    /**
+     * Marks node of found entity as head node if applicable, and returns a
+     * deep copy of entity.
+     * 
+     * @param entityClass
+     *            entity class
+     * @param primaryKey
+     *            primary key
+     * @param e
+     *            found entity
+     * @return copy of entity
+     */
+    private <E> E copyOfFound(Class<E> entityClass, Object primaryKey, E e)
+    {
         // Set this returned entity as head node if applicable
         String nodeId = ObjectGraphUtils.getNodeId(primaryKey, entityClass);
         CacheBase mainCache = getPersistenceDelegator().getPersistenceCache().getMainCache();
@@ -590,8 +658,14 @@ public class EntityManagerImpl implements EntityManager, EntityTransaction, Reso
     @Override
     public void setProperty(String paramString, Object paramObject)
     {
-        throw new NotImplementedException("TODO");
+        checkClosed();
+        Map<String, Object> updated = properties != null ? new HashMap<String, Object>(properties)
+                : new HashMap<String, Object>();
+        updated.put(paramString, paramObject);
+        properties = updated;
 
+        // Applied as hint to operations of clients that understand it.
+        persistenceDelegator.setHint(paramString, paramObject);
     }
 
     /*
@@ -639,7 +713,24 @@ public class EntityManagerImpl implements EntityManager, EntityTransaction, Reso
     @Override
     public <T> T unwrap(Class<T> paramClass)
     {
-        throw new NotImplementedException("TODO");
+        if (paramClass.isInstance(this))
+        {
+            return (T) this;
+        }
+        if (AsyncEntityManager.class.equals(paramClass))
+        {
+            checkClosed();
+            synchronized (this)
+            {
+                if (asyncEntityManager == null)
+                {
+                    asyncEntityManager = new AsyncEntityManagerImpl(this,
+                            ((EntityManagerFactoryImpl) factory).getAsyncExecutor());
+                }
+                return (T) asyncEntityManager;
+            }
+        }
+        throw new PersistenceException("Unwrapping to " + paramClass + " is not supported");
     }
 
     @Override
@@ -752,7 +843,7 @@ public class EntityManagerImpl implements EntityManager, EntityTransaction, Reso
      * 
      * @return the persistence delegator
      */
-    private PersistenceDelegator getPersistenceDelegator()
+    PersistenceDelegator getPersistenceDelegator()
     {
         return persistenceDelegator;
     }
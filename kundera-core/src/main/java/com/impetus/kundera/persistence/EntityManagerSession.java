@@ -22,6 +22,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.impetus.kundera.cache.Cache;
+import com.impetus.kundera.cache.CacheKey;
 
 /**
  * The Class EntityManagerSession.
@@ -64,7 +65,7 @@ public class EntityManagerSession
     @SuppressWarnings("unchecked")
     protected <T> T lookup(Class<T> entityClass, Object id)
     {
-        String key = cacheKey(entityClass, id);
+        CacheKey key = new CacheKey(entityClass, id);
         LOG.debug("Reading from L1 >> " + key);
         T o = (T) sessionCache.get(key);
 
@@ -110,7 +111,7 @@ public class EntityManagerSession
      */
     protected void store(Object id, Object entity, boolean spillOverToL2)
     {
-        String key = cacheKey(entity.getClass(), id);
+        CacheKey key = new CacheKey(entity.getClass(), id);
         LOG.debug("Writing to L1 >> " + key);
         sessionCache.put(key, entity);
 
@@ -155,7 +156,7 @@ public class EntityManagerSession
      */
     protected <T> void remove(Class<T> entityClass, Object id, boolean spillOverToL2)
     {
-        String key = cacheKey(entityClass, id);
+        CacheKey key = new CacheKey(entityClass, id);
         LOG.debug("Removing from L1 >> " + key);
         Object o = sessionCache.remove(key);
 
@@ -165,38 +166,44 @@ public class EntityManagerSession
             Cache c = (Cache) getL2Cache();
             if (c != null)
             {
-                c.evict(entityClass, key);
+                c.evict(entityClass, id);
             }
         }
     }
 
     /**
-     * Cache key.
+     * Evicts all entities of given class from L1 and L2 cache.
      * 
-     * @param clazz
-     *            the clazz
-     * @param id
-     *            the id
-     * 
-     * @return the string
+     * @param <T>
+     *            the generic type
+     * @param entityClass
+     *            the entity class
      */
-    private String cacheKey(Class<?> clazz, Object id)
+    protected <T> void evict(Class<T> entityClass)
     {
-        return clazz.getName() + "_" + id;
+        LOG.debug("Evicting from L1 and L2 >> " + entityClass.getName());
+        for (Object key : sessionCache.keySet())
+        {
+            if (((CacheKey) key).getEntityClass().equals(entityClass))
+            {
+                sessionCache.remove(key);
+            }
+        }
+
+        Cache c = (Cache) getL2Cache();
+        if (c != null)
+        {
+            c.evict(entityClass);
+        }
     }
 
     /**
-     * Clear.
+     * Clears L1 cache. L2 cache is shared across entity managers of a factory
+     * and is therefore left intact.
      */
     public final void clear()
     {
         sessionCache = new ConcurrentHashMap<Object, Object>();
-
-        // Clear L2 Cahce
-        if (getL2Cache() != null)
-        {
-            getL2Cache().evictAll();
-        }
     }
 
     /**
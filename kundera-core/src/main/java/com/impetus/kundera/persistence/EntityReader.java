@@ -21,6 +21,7 @@ import java.util.Map;
 import com.impetus.kundera.client.Client;
 import com.impetus.kundera.client.EnhanceEntity;
 import com.impetus.kundera.metadata.model.EntityMetadata;
+import com.impetus.kundera.metadata.model.Relation;
 
 /**
  * The Interface EntityReader.
@@ -72,6 +73,38 @@ public interface EntityReader
     Object recursivelyFindEntities(Object entity, Map<String, Object> relationsMap, EntityMetadata m,
             PersistenceDelegator pd);
 
+    /**
+     * Returns populated entities along with all relational values. Entities
+     * associated via a relation are fetched together for all of the given
+     * entities.
+     * 
+     * @param enhanceEntities
+     *            enhance entities (entity along with its relation values)
+     * @param m
+     *            entity meta data
+     * @param pd
+     *            persistence delegator
+     * @return populated entities
+     */
+    List<Object> recursivelyFindEntities(List<EnhanceEntity> enhanceEntities, EntityMetadata m,
+            PersistenceDelegator pd);
+
+    /**
+     * Fetches entities associated with <code>entity</code> via given
+     * relation, irrespective of its fetch type. Used to initialize lazily
+     * loaded relations.
+     * 
+     * @param entity
+     *            the entity
+     * @param m
+     *            entity meta data
+     * @param relation
+     *            the relation
+     * @param pd
+     *            persistence delegator
+     */
+    void loadRelation(Object entity, EntityMetadata m, Relation relation, PersistenceDelegator pd);
+
     /**
      * Find by id.
      * 
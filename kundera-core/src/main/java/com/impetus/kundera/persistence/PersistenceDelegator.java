@@ -18,12 +18,18 @@ package com.impetus.kundera.persistence;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.persistence.FlushModeType;
 import javax.persistence.PostPersist;
@@ -38,9 +44,12 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.impetus.kundera.KunderaException;
+import com.impetus.kundera.client.Batcher;
 import com.impetus.kundera.client.Client;
 import com.impetus.kundera.client.ClientResolver;
 import com.impetus.kundera.client.ClientResolverException;
+import com.impetus.kundera.client.EnhanceEntity;
+import com.impetus.kundera.client.HintsAware;
 import com.impetus.kundera.graph.Node;
 import com.impetus.kundera.graph.NodeLink;
 import com.impetus.kundera.graph.NodeLink.LinkProperty;
@@ -63,6 +72,8 @@ import com.impetus.kundera.persistence.event.EntityEventDispatcher;
 import com.impetus.kundera.property.PropertyAccessException;
 import com.impetus.kundera.property.PropertyAccessorHelper;
 import com.impetus.kundera.query.QueryResolver;
+import com.impetus.kundera.utils.ObjectUtils;
+import com.impetus.kundera.utils.ThreadPools;
 
 /**
  * The Class PersistenceDelegator.
@@ -73,6 +84,15 @@ public class PersistenceDelegator
     /** The Constant log. */
     private static final Log log = LogFactory.getLog(PersistenceDelegator.class);
 
+    /** Threads flushing to different persistence units, writes being I/O bound. */
+    private static final int FLUSH_THREADS = Runtime.getRuntime().availableProcessors() * 2;
+
+    /** Queued flush tasks allowed per pool thread. */
+    private static final int QUEUE_SIZE_PER_THREAD = 16;
+
+    /** The flush executor, shared by all delegators and created on first use. */
+    private static ThreadPoolExecutor flushExecutor;
+
     /** The closed. */
     private boolean closed = false;
 
@@ -92,7 +112,12 @@ public class PersistenceDelegator
 
     private ObjectGraphBuilder graphBuilder;
 
-    private static final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * Guards flush stack and join table data of this persistence context.
+     * Persistence cache is thread safe on its own and no lock is held while
+     * reading from or writing to database.
+     */
+    private final Lock lock = new ReentrantLock();
 
     // Whether a transaction is in progress
     private boolean isTransactionInProgress;
@@ -103,6 +128,12 @@ public class PersistenceDelegator
 
     private boolean enableFlush;
 
+    /** Hints applied to operations of all clients, set as properties. */
+    private final Map<String, Object> hints = new HashMap<String, Object>();
+
+    /** IDs of uninitialized entity proxies, per entity class. */
+    private final Map<Class<?>, Set<Object>> proxyIds = new ConcurrentHashMap<Class<?>, Set<Object>>();
+
     /**
      * Instantiates a new persistence delegator.
      * 
@@ -139,24 +170,32 @@ public class PersistenceDelegator
         // Call persist on each node in object graph
         Node node = graph.getHeadNode();
 
-        lock.writeLock().lock();
-
-        node.persist();
-        if (node.isHeadNode())
+        lock.lock();
+        try
         {
-            // build flush stack.
+            node.persist();
+            if (node.isHeadNode())
+            {
+                // build flush stack.
 
-            flushManager.buildFlushStack(node, EventType.INSERT);
+                flushManager.buildFlushStack(node, EventType.INSERT);
 
-            // TODO : push into action queue.
-            // Action/ExecutionQueue/ActivityQueue :-> id, name, EndPoint,
+                // TODO : push into action queue.
+                // Action/ExecutionQueue/ActivityQueue :-> id, name, EndPoint,
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
 
+        if (node.isHeadNode())
+        {
             flush();
 
             // Add node to persistence context after successful flush.
             getPersistenceCache().getMainCache().addHeadNode(node);
         }
-        lock.writeLock().unlock();
         graph.getNodeMapping().clear();
         graph = null;
 
@@ -181,9 +220,6 @@ public class PersistenceDelegator
      */
     public <E> E find(Class<E> entityClass, Object primaryKey)
     {
-        // Locking as it might read from persistence context.
-        lock.readLock().lock();
-
         EntityMetadata entityMetadata = getMetadata(entityClass);
 
         if (entityMetadata == null)
@@ -198,15 +234,24 @@ public class PersistenceDelegator
         // if node is not in persistence cache or is dirty, fetch from database
         if (node == null || node.isDirty())
         {
-
-            node = new Node(nodeId, entityClass, new ManagedState(), getPersistenceCache());
+            ManagedState state = new ManagedState();
+            node = new Node(nodeId, entityClass, state, getPersistenceCache());
             node.setClient(getClient(entityMetadata));
             node.setPersistenceDelegator(this);
 
-            node.find();
+            // Look into second level cache before going to database.
+            Object cachedEntity = lookupSecondLevelCache(entityMetadata, entityClass, primaryKey);
+            if (cachedEntity != null)
+            {
+                state.populateNode(node, cachedEntity);
+            }
+            else
+            {
+                node.find();
+                storeInSecondLevelCache(entityMetadata, primaryKey, node.getData());
+            }
         }
 
-        lock.readLock().unlock();
         Object nodeData = node.getData();
         if (nodeData == null)
         {
@@ -220,7 +265,9 @@ public class PersistenceDelegator
     }
 
     /**
-     * Retrieves a {@link List} of Entities for given Primary Keys
+     * Retrieves a {@link List} of Entities for given Primary Keys. Entities
+     * found (and not dirty) in persistence cache are returned from there, rest
+     * are fetched from database in a single multiget call to client.
      * 
      * @param entityClass
      *            Entity Class
@@ -232,10 +279,100 @@ public class PersistenceDelegator
     public <E> List<E> find(Class<E> entityClass, Object... primaryKeys)
     {
         List<E> entities = new ArrayList<E>();
-        Set pKeys = new HashSet(Arrays.asList(primaryKeys));
+        if (primaryKeys == null || primaryKeys.length == 0)
+        {
+            return entities;
+        }
+
+        EntityMetadata entityMetadata = getMetadata(entityClass);
+        if (entityMetadata == null)
+        {
+            throw new KunderaException("Unable to load entity metadata for :" + entityClass);
+        }
+
+        Set pKeys = new LinkedHashSet(Arrays.asList(primaryKeys));
+        Map<Object, Node> nodes = new LinkedHashMap<Object, Node>();
+        List<Object> keysToFetch = new ArrayList<Object>();
+
+        MainCache mainCache = (MainCache) getPersistenceCache().getMainCache();
         for (Object primaryKey : pKeys)
         {
-            entities.add(find(entityClass, primaryKey));
+            Node node = primaryKey != null ? mainCache.getNodeFromCache(ObjectGraphUtils.getNodeId(primaryKey,
+                    entityClass)) : null;
+            if (primaryKey != null && (node == null || node.isDirty()))
+            {
+                node = null;
+                Object cachedEntity = lookupSecondLevelCache(entityMetadata, entityClass, primaryKey);
+                if (cachedEntity != null)
+                {
+                    ManagedState state = new ManagedState();
+                    node = new Node(ObjectGraphUtils.getNodeId(primaryKey, entityClass), entityClass, state,
+                            getPersistenceCache());
+                    node.setClient(getClient(entityMetadata));
+                    node.setPersistenceDelegator(this);
+                    state.populateNode(node, cachedEntity);
+                }
+                else
+                {
+                    keysToFetch.add(primaryKey);
+                }
+            }
+            nodes.put(primaryKey, node);
+        }
+
+        if (!keysToFetch.isEmpty())
+        {
+            Client client = getClient(entityMetadata);
+            List<?> records = client.findAll(entityClass, keysToFetch.toArray());
+
+            Map<String, EnhanceEntity> recordsById = new HashMap<String, EnhanceEntity>();
+            if (records != null)
+            {
+                for (Object record : records)
+                {
+                    EnhanceEntity ee = record instanceof EnhanceEntity ? (EnhanceEntity) record : new EnhanceEntity(
+                            record, PropertyAccessorHelper.getId(record, entityMetadata), null);
+                    recordsById.put(ee.getEntityId(), ee);
+                }
+            }
+
+            // Associated entities of all fetched records are found together
+            if ((entityMetadata.getRelationNames() != null && !entityMetadata.getRelationNames().isEmpty())
+                    || entityMetadata.isRelationViaJoinTable())
+            {
+                List<EnhanceEntity> fetched = new ArrayList<EnhanceEntity>(recordsById.size());
+                for (Object primaryKey : keysToFetch)
+                {
+                    EnhanceEntity ee = recordsById.get(primaryKey.toString());
+                    if (ee != null && ee.getEntity() != null)
+                    {
+                        fetched.add(ee);
+                    }
+                }
+                getReader(client).recursivelyFindEntities(fetched, entityMetadata, this);
+            }
+
+            for (Object primaryKey : keysToFetch)
+            {
+                ManagedState state = new ManagedState();
+                Node node = new Node(ObjectGraphUtils.getNodeId(primaryKey, entityClass), entityClass, state,
+                        getPersistenceCache());
+                node.setClient(client);
+                node.setPersistenceDelegator(this);
+
+                EnhanceEntity ee = recordsById.get(primaryKey.toString());
+                if (ee != null && ee.getEntity() != null)
+                {
+                    state.populateNode(node, ee.getEntity());
+                }
+                storeInSecondLevelCache(entityMetadata, primaryKey, node.getData());
+                nodes.put(primaryKey, node);
+            }
+        }
+
+        for (Node node : nodes.values())
+        {
+            entities.add(node != null ? (E) node.getData() : null);
         }
         return entities;
     }
@@ -307,26 +444,30 @@ public class PersistenceDelegator
         // node.setHeadNode(true);
         // }
 
-        lock.writeLock().lock();
-
-        // TODO : push into action queue, get original end-point from
-        // persistenceContext first!
+        lock.lock();
+        try
+        {
+            // TODO : push into action queue, get original end-point from
+            // persistenceContext first!
 
-        // Action/ExecutionQueue/ActivityQueue :-> id, name, EndPoint, changed
-        // state
+            // Action/ExecutionQueue/ActivityQueue :-> id, name, EndPoint,
+            // changed state
 
-        // Change state of node, after successful flush processing.
-        node.remove();
+            // Change state of node, after successful flush processing.
+            node.remove();
 
-        // build flush stack.
+            // build flush stack.
 
-        flushManager.buildFlushStack(node, EventType.DELETE);
+            flushManager.buildFlushStack(node, EventType.DELETE);
+        }
+        finally
+        {
+            lock.unlock();
+        }
 
         // Flush node.
         flush();
 
-        lock.writeLock().unlock();
-
         // clear out graph
         graph.getNodeMapping().clear();
         graph = null;
@@ -337,88 +478,358 @@ public class PersistenceDelegator
     }
 
     /**
-     * Flushes Dirty objects in {@link PersistenceCache} to databases.
+     * Flushes Dirty objects in {@link PersistenceCache} to databases. Flush
+     * stack and join table data are drained under lock, database writes are
+     * performed after lock is released. Nodes are flushed a dependency level
+     * at a time, writes of a level going to different clients concurrently.
      */
     public void flush()
     {
         // Get flush stack from Flush Manager
         if (applyFlush())
         {
-            FlushStack fs = flushManager.getFlushStack();
-
-            // Flush each node in flush stack from top to bottom unit it's empty
-            log.debug("Flushing following flush stack to database(s) (showing stack objects from top to bottom):\n"
-                    + fs);
+            List<List<Node>> levelsToFlush;
+            List<JoinTableData> joinTableData = new ArrayList<JoinTableData>();
 
-            if (fs != null)
+            lock.lock();
+            try
             {
-                while (!fs.isEmpty())
+                FlushStack fs = flushManager.getFlushStack();
+                if (fs == null)
                 {
-                    Node node = fs.pop();
-
-                    // Only nodes in Managed and Removed state are flushed, rest
-                    // are
-                    // ignored
-                    if (node.isInState(ManagedState.class) || node.isInState(RemovedState.class))
-                    {
-                        EntityMetadata metadata = getMetadata(node.getDataClass());
-                        node.setClient(getClient(metadata));
-
-                        node.flush();
+                    return;
+                }
 
-                        // Update Link value for all nodes attached to this one
-                        Map<NodeLink, Node> parents = node.getParents();
-                        Map<NodeLink, Node> children = node.getChildren();
+                // Flush each node in flush stack from top to bottom unit it's
+                // empty
+                log.debug("Flushing following flush stack to database(s) (showing stack objects from top to bottom):\n"
+                        + fs);
 
-                        if (parents != null && !parents.isEmpty())
-                        {
-                            for (NodeLink parentNodeLink : parents.keySet())
-                            {
-                                parentNodeLink.addLinkProperty(LinkProperty.LINK_VALUE,
-                                        ObjectGraphUtils.getEntityId(node.getNodeId()));
-                            }
-                        }
+                levelsToFlush = flushManager.popFlushLevels();
 
-                        if (children != null && !children.isEmpty())
-                        {
-                            for (NodeLink childNodeLink : children.keySet())
-                            {
-                                childNodeLink.addLinkProperty(LinkProperty.LINK_VALUE,
-                                        ObjectGraphUtils.getEntityId(node.getNodeId()));
-                            }
-                        }
-                    }
+                // All Join table operations are taken up, clear it.
+                Map<String, JoinTableData> joinTableDataMap = flushManager.getJoinTableDataMap();
+                joinTableData.addAll(joinTableDataMap.values());
+                joinTableDataMap.clear();
+            }
+            finally
+            {
+                lock.unlock();
+            }
 
+            // Second level cache is updated once all writes are done.
+            List<Node> flushedNodes = new ArrayList<Node>();
+            boolean isWritten = false;
+            try
+            {
+                for (List<Node> level : levelsToFlush)
+                {
+                    flushedNodes.addAll(flushLevel(level));
                 }
 
                 // TODO : This needs to be look for different
                 // permutation/combination
                 // Flush Join Table data into database
-                Map<String, JoinTableData> joinTableDataMap = flushManager.getJoinTableDataMap();
-                for (JoinTableData jtData : joinTableDataMap.values())
+                for (JoinTableData jtData : joinTableData)
                 {
-                    EntityMetadata m = KunderaMetadataManager.getEntityMetadata(jtData.getEntityClass());
-                    Client client = getClient(m);
+                    flushJoinTableData(jtData);
+                }
+
+                executeBatch();
+                isWritten = true;
+            }
+            finally
+            {
+                updateSecondLevelCache(flushedNodes, isWritten);
+            }
+        }
+    }
 
-                    if (OPERATION.INSERT.equals(jtData.getOperation()))
+    /**
+     * Writes mutations buffered by batching clients (if any) to database,
+     * concurrently if there are several.
+     */
+    private void executeBatch()
+    {
+        if (clientMap != null)
+        {
+            List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+            for (Client client : clientMap.values())
+            {
+                if (client instanceof Batcher)
+                {
+                    final Batcher batcher = (Batcher) client;
+                    tasks.add(new Callable<Void>()
                     {
-                        client.persistJoinTable(jtData);
-                    }
-                    else if (OPERATION.DELETE.equals(jtData.getOperation()))
+                        @Override
+                        public Void call()
+                        {
+                            batcher.executeBatch();
+                            return null;
+                        }
+                    });
+                }
+            }
+            invokeAll(tasks);
+        }
+    }
+
+    /**
+     * Flushes a level of nodes independent of each other. Nodes are grouped
+     * per persistence unit, and thus per client, groups being flushed
+     * concurrently. Nodes of a group are flushed one after another, in order
+     * of flush stack, as a client is not used by several threads at once.
+     * 
+     * @param level
+     *            the nodes
+     * @return nodes which were dirty and have been flushed
+     */
+    private List<Node> flushLevel(List<Node> level)
+    {
+        Map<String, List<Node>> nodesByPersistenceUnit = new LinkedHashMap<String, List<Node>>();
+        for (Node node : level)
+        {
+            String persistenceUnit = getMetadata(node.getDataClass()).getPersistenceUnit();
+            List<Node> nodes = nodesByPersistenceUnit.get(persistenceUnit);
+            if (nodes == null)
+            {
+                nodes = new ArrayList<Node>();
+                nodesByPersistenceUnit.put(persistenceUnit, nodes);
+            }
+            nodes.add(node);
+        }
+
+        List<Callable<List<Node>>> tasks = new ArrayList<Callable<List<Node>>>(nodesByPersistenceUnit.size());
+        for (final List<Node> nodes : nodesByPersistenceUnit.values())
+        {
+            tasks.add(new Callable<List<Node>>()
+            {
+                @Override
+                public List<Node> call()
+                {
+                    List<Node> flushed = new ArrayList<Node>(nodes.size());
+                    for (Node node : nodes)
                     {
-                        for (Object pk : jtData.getJoinTableRecords().keySet())
+                        if (flushNode(node))
                         {
-                            client.deleteByColumn(jtData.getJoinTableName(), m.getIdColumn().getName(), pk);
+                            flushed.add(node);
                         }
                     }
-                    jtData.setProcessed(true);
+                    return flushed;
                 }
-                joinTableDataMap.clear(); // All Join table operation performed,
-                                          // clear it.
+            });
+        }
+
+        List<Node> flushedNodes = new ArrayList<Node>();
+        for (List<Node> flushed : invokeAll(tasks))
+        {
+            flushedNodes.addAll(flushed);
+        }
+        return flushedNodes;
+    }
+
+    /**
+     * Runs flush tasks, on flush executor if there are several, and waits for
+     * all of them.
+     * 
+     * @param <T>
+     *            result type
+     * @param tasks
+     *            the tasks
+     * @return results, in order of tasks
+     */
+    private static <T> List<T> invokeAll(List<Callable<T>> tasks)
+    {
+        return ThreadPools.invokeAll(tasks.size() > 1 ? getFlushExecutor() : null, tasks);
+    }
+
+    /**
+     * Returns the flush executor.
+     * 
+     * @return the flush executor
+     */
+    private static synchronized ThreadPoolExecutor getFlushExecutor()
+    {
+        if (flushExecutor == null)
+        {
+            flushExecutor = ThreadPools.newBoundedPool("kundera-flush", FLUSH_THREADS, FLUSH_THREADS
+                    * QUEUE_SIZE_PER_THREAD);
+        }
+        return flushExecutor;
+    }
+
+    /**
+     * Flushes a single node popped from flush stack and updates link value for
+     * all nodes attached to it.
+     * 
+     * @param node
+     *            the node
+     * @return true, if node was dirty and has been flushed
+     */
+    private boolean flushNode(Node node)
+    {
+        // Only nodes in Managed and Removed state are flushed, rest
+        // are ignored
+        if (node.isInState(ManagedState.class) || node.isInState(RemovedState.class))
+        {
+            EntityMetadata metadata = getMetadata(node.getDataClass());
+            node.setClient(getClient(metadata));
 
+            boolean isFlushed = node.isDirty();
+            node.flush();
+
+            // Update Link value for all nodes attached to this one
+            Map<NodeLink, Node> parents = node.getParents();
+            Map<NodeLink, Node> children = node.getChildren();
+
+            if (parents != null && !parents.isEmpty())
+            {
+                for (NodeLink parentNodeLink : parents.keySet())
+                {
+                    parentNodeLink.addLinkProperty(LinkProperty.LINK_VALUE,
+                            ObjectGraphUtils.getEntityId(node.getNodeId()));
+                }
+            }
+
+            if (children != null && !children.isEmpty())
+            {
+                for (NodeLink childNodeLink : children.keySet())
+                {
+                    childNodeLink.addLinkProperty(LinkProperty.LINK_VALUE,
+                            ObjectGraphUtils.getEntityId(node.getNodeId()));
+                }
+            }
+            return isFlushed;
+        }
+        return false;
+    }
+
+    /**
+     * Keeps second level cache in sync with flushed nodes, once their writes
+     * are done. Newly persisted entities are put into cache, updated and
+     * removed ones are evicted. If writes failed, all of them are evicted, as
+     * some may have been written.
+     * 
+     * @param nodes
+     *            flushed nodes
+     * @param isWritten
+     *            whether all writes succeeded
+     */
+    private void updateSecondLevelCache(List<Node> nodes, boolean isWritten)
+    {
+        for (Node node : nodes)
+        {
+            if (getMetadata(node.getDataClass()).isCacheable())
+            {
+                String entityId = ObjectGraphUtils.getEntityId(node.getNodeId());
+                if (isWritten && node.isInState(ManagedState.class) && !node.isUpdate() && node.getData() != null)
+                {
+                    session.store(entityId, ObjectUtils.deepCopy(node.getData()));
+                }
+                else
+                {
+                    session.remove(node.getDataClass(), entityId);
+                }
             }
+        }
+    }
 
+    /**
+     * Looks up second level cache for a <code>@Cacheable</code> entity.
+     * 
+     * @param m
+     *            entity metadata
+     * @param entityClass
+     *            entity class
+     * @param primaryKey
+     *            primary key
+     * @return copy of cached entity, null if entity is not cacheable or not in
+     *         cache
+     */
+    private Object lookupSecondLevelCache(EntityMetadata m, Class<?> entityClass, Object primaryKey)
+    {
+        if (!m.isCacheable())
+        {
+            return null;
         }
+        // cached entity is shared, node data is changed by this entity manager.
+        Object cachedEntity = session.lookup(entityClass, primaryKey);
+        return cachedEntity != null ? ObjectUtils.deepCopy(cachedEntity) : null;
+    }
+
+    /**
+     * Stores a copy of entity loaded from database into second level cache, if
+     * entity is <code>@Cacheable</code>.
+     * 
+     * @param m
+     *            entity metadata
+     * @param primaryKey
+     *            primary key
+     * @param entity
+     *            loaded entity, may be null
+     */
+    private void storeInSecondLevelCache(EntityMetadata m, Object primaryKey, Object entity)
+    {
+        if (m.isCacheable() && entity != null)
+        {
+            session.store(primaryKey, ObjectUtils.deepCopy(entity));
+        }
+    }
+
+    /**
+     * Evicts an entity from second level cache.
+     * 
+     * @param entityClass
+     *            entity class
+     * @param primaryKey
+     *            primary key
+     */
+    public void evictFromSecondLevelCache(Class<?> entityClass, Object primaryKey)
+    {
+        if (getMetadata(entityClass).isCacheable())
+        {
+            session.remove(entityClass, primaryKey);
+        }
+    }
+
+    /**
+     * Evicts all entities of given class from second level cache, e.g. after a
+     * bulk update that bypasses persistence context.
+     * 
+     * @param entityClass
+     *            entity class
+     */
+    public void evictFromSecondLevelCache(Class<?> entityClass)
+    {
+        if (getMetadata(entityClass).isCacheable())
+        {
+            session.evict(entityClass);
+        }
+    }
+
+    /**
+     * Flushes join table data into database.
+     * 
+     * @param jtData
+     *            the join table data
+     */
+    private void flushJoinTableData(JoinTableData jtData)
+    {
+        EntityMetadata m = KunderaMetadataManager.getEntityMetadata(jtData.getEntityClass());
+        Client client = getClient(m);
+
+        if (OPERATION.INSERT.equals(jtData.getOperation()))
+        {
+            client.persistJoinTable(jtData);
+        }
+        else if (OPERATION.DELETE.equals(jtData.getOperation()))
+        {
+            for (Object pk : jtData.getJoinTableRecords().keySet())
+            {
+                client.deleteByColumn(jtData.getJoinTableName(), m.getIdColumn().getName(), pk);
+            }
+        }
+        jtData.setProcessed(true);
     }
 
     /**
@@ -448,23 +859,29 @@ public class PersistenceDelegator
         // Call merge on each node in object graph
         Node node = graph.getHeadNode();
 
-        lock.writeLock().lock();
-        // Change node's state after successful flush.
+        lock.lock();
+        try
+        {
+            // Change node's state after successful flush.
 
-        // TODO : push into action queue, get original end-point from
-        // persistenceContext first!
+            // TODO : push into action queue, get original end-point from
+            // persistenceContext first!
 
-        // Action/ExecutionQueue/ActivityQueue :-> id, name, EndPoint, changed
-        // state
+            // Action/ExecutionQueue/ActivityQueue :-> id, name, EndPoint,
+            // changed state
 
-        node.merge();
+            node.merge();
 
-        // build flush stack.
+            // build flush stack.
 
-        flushManager.buildFlushStack(node, EventType.UPDATE);
+            flushManager.buildFlushStack(node, EventType.UPDATE);
+        }
+        finally
+        {
+            lock.unlock();
+        }
 
         flush();
-        lock.writeLock().unlock();
 
         graph.getNodeMapping().clear();
         graph = null;
@@ -573,15 +990,67 @@ public class PersistenceDelegator
 
         // TODO: Move all nodes tied to this EM into detached state
 
+        proxyIds.clear();
         closed = true;
     }
 
     public final void clear()
     {
         // Move all nodes tied to this EM into detached state
-        flushManager.clearFlushStack();
+        lock.lock();
+        try
+        {
+            flushManager.clearFlushStack();
+        }
+        finally
+        {
+            lock.unlock();
+        }
         getPersistenceCache().clean();
+        proxyIds.clear();
+
+    }
 
+    /**
+     * Registers ID of an uninitialized entity proxy, so that it can be loaded
+     * along with other proxies of same class when any of them is accessed.
+     * 
+     * @param entityClass
+     *            the entity class
+     * @param primaryKey
+     *            the primary key
+     */
+    public void registerProxy(Class<?> entityClass, Object primaryKey)
+    {
+        Set<Object> ids = proxyIds.get(entityClass);
+        if (ids == null)
+        {
+            ids = Collections.newSetFromMap(new ConcurrentHashMap<Object, Boolean>());
+            proxyIds.put(entityClass, ids);
+        }
+        ids.add(primaryKey);
+    }
+
+    /**
+     * Loads entity behind a proxy. All other registered proxies of same class
+     * are fetched in the same batch, so that accessing them later is served
+     * from persistence cache.
+     * 
+     * @param entityClass
+     *            the entity class
+     * @param primaryKey
+     *            the primary key
+     * @return the entity
+     */
+    public <E> E initializeProxy(Class<E> entityClass, Object primaryKey)
+    {
+        Set<Object> ids = proxyIds.remove(entityClass);
+        if (ids != null && ids.size() > 1)
+        {
+            ids.add(primaryKey);
+            find(entityClass, ids.toArray());
+        }
+        return find(entityClass, primaryKey);
     }
 
     /**
@@ -705,8 +1174,16 @@ public class PersistenceDelegator
             flush();
             isTransactionInProgress = false;
             enableFlush = false;
-            flushManager.commit();
-            flushManager.clearFlushStack();
+            lock.lock();
+            try
+            {
+                flushManager.commit();
+                flushManager.clearFlushStack();
+            }
+            finally
+            {
+                lock.unlock();
+            }
         }
     }
 
@@ -714,7 +1191,16 @@ public class PersistenceDelegator
     {
         isTransactionInProgress = false;
         flushManager.rollback(this);
-        flushManager.clearFlushStack();
+        executeBatch();
+        lock.lock();
+        try
+        {
+            flushManager.clearFlushStack();
+        }
+        finally
+        {
+            lock.unlock();
+        }
         getPersistenceCache().clean();
 
     }
@@ -750,10 +1236,56 @@ public class PersistenceDelegator
 
         if (!clientMap.containsKey(persistenceUnit))
         {
-            clientMap.put(persistenceUnit, ClientResolver.discoverClient(persistenceUnit));
+            Client client = ClientResolver.discoverClient(persistenceUnit);
+            if (!hints.isEmpty() && client instanceof HintsAware)
+            {
+                ((HintsAware) client).setHints(new HashMap<String, Object>(hints));
+            }
+            clientMap.put(persistenceUnit, client);
         }
     }
 
+    /**
+     * Sets a hint to be applied to subsequent operations of all clients which
+     * are {@link HintsAware}.
+     * 
+     * @param name
+     *            hint name
+     * @param value
+     *            hint value, null to remove hint
+     */
+    void setHint(String name, Object value)
+    {
+        if (value != null)
+        {
+            hints.put(name, value);
+        }
+        else
+        {
+            hints.remove(name);
+        }
+        if (clientMap != null)
+        {
+            for (Client client : clientMap.values())
+            {
+                if (client instanceof HintsAware)
+                {
+                    ((HintsAware) client).setHints(new HashMap<String, Object>(hints));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns hints applied to operations of all clients.
+     * 
+     * @return the hints, by name
+     */
+    public Map<String, Object> getHints()
+    {
+        return Collections.unmodifiableMap(hints);
+    }
+
     /**
      * Returns map of client as delegate to entity manager.
      * 
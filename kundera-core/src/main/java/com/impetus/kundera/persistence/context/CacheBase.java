@@ -16,10 +16,11 @@
 package com.impetus.kundera.persistence.context;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -27,10 +28,11 @@ import org.apache.commons.logging.LogFactory;
 import com.impetus.kundera.graph.Node;
 import com.impetus.kundera.graph.NodeLink;
 import com.impetus.kundera.graph.ObjectGraph;
-import com.impetus.kundera.utils.ObjectUtils;
 
 /**
- * Base class for all cache required in persistence context
+ * Base class for all cache required in persistence context. Node mappings and
+ * head nodes are held in concurrent collections, so that cache can be read and
+ * populated without any external lock.
  * 
  * @author amresh.singh
  */
@@ -44,12 +46,18 @@ public class CacheBase
 
     public CacheBase()
     {
-        headNodes = new HashSet<Node>();
-        nodeMappings = new HashMap<String, Node>();
+        headNodes = Collections.newSetFromMap(new ConcurrentHashMap<Node, Boolean>());
+        nodeMappings = new ConcurrentHashMap<String, Node>();
     }
 
     public Node getNodeFromCache(String nodeId)
     {
+        // Concurrent map does not accept null keys, and an entity without id
+        // is never cached.
+        if (nodeId == null)
+        {
+            return null;
+        }
 
         Node node = nodeMappings.get(nodeId);
 
@@ -62,11 +70,8 @@ public class CacheBase
 
     public void addNodeToCache(Node node)
     {
-        // Make a deep copy of Node data and and set into node
-        // Original data object is now detached from Node and is possibly
-        // referred by user code
-        Object nodeDataCopy = ObjectUtils.deepCopy(node.getData());
-        node.setData(nodeDataCopy);
+        // Node data is not copied, its state as last loaded or flushed is kept
+        // by snapshot of node.
 
         /*
          * check if this node already exists in cache node mappings If yes,
@@ -117,12 +122,8 @@ public class CacheBase
 
     public void removeNodeFromCache(Node node)
     {
-        if (getHeadNodes().contains(node))
-        {
-            getHeadNodes().remove(node);
-        }
-
-        if (nodeMappings.get(node.getNodeId()) != null)
+        getHeadNodes().remove(node);
+        if (node.getNodeId() != null)
         {
             nodeMappings.remove(node.getNodeId());
         }
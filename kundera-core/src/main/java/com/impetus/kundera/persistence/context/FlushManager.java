@@ -15,12 +15,15 @@
  */
 package com.impetus.kundera.persistence.context;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.Stack;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -94,7 +97,9 @@ public class FlushManager
     }
 
     /**
-     * Adds the nodes to flush stack.
+     * Adds the nodes to flush stack. Object graph is traversed depth first
+     * using an explicit stack of frames rather than recursion, so that deep
+     * chains of entities can not overflow call stack.
      * 
      * @param node
      *            the node
@@ -103,181 +108,246 @@ public class FlushManager
      */
     private void addNodesToFlushStack(Node node, EventType eventType)
     {
+        Stack<TraversalFrame> frames = new Stack<TraversalFrame>();
+        frames.push(new TraversalFrame(node));
 
+        while (!frames.isEmpty())
+        {
+            TraversalFrame frame = frames.peek();
+            Node next = nextNodeToTraverse(frame, eventType);
+            if (next != null)
+            {
+                frames.push(new TraversalFrame(next));
+            }
+            else
+            {
+                frames.pop();
+
+                // Finally, if this node itself is not traversed yet, (as may
+                // happen in 1-1 and M-1 cases), push it to stack
+                if (!frame.node.isTraversed() && frame.node.isDirty())
+                {
+                    pushNode(frame.node, eventType);
+                }
+            }
+        }
+    }
+
+    /**
+     * Processes children of node of given frame until a node to be traversed
+     * first is found. One-To-Many and Many-To-Many children are traversed
+     * before node is pushed, One-To-One and Many-To-One children after it.
+     * 
+     * @param frame
+     *            the frame of node being traversed
+     * @param eventType
+     *            the event type
+     * @return the node to be traversed next, null once all children are
+     *         processed
+     */
+    private Node nextNodeToTraverse(TraversalFrame frame, EventType eventType)
+    {
+        Node node = frame.node;
         Map<NodeLink, Node> children = node.getChildren();
 
         // If this is a leaf node (not having any child, no need to go any
         // deeper
-        if (children != null)
+        if (children == null)
         {
-            Map<NodeLink, Node> oneToOneChildren = new HashMap<NodeLink, Node>();
-            Map<NodeLink, Node> oneToManyChildren = new HashMap<NodeLink, Node>();
-            Map<NodeLink, Node> manyToOneChildren = new HashMap<NodeLink, Node>();
-            Map<NodeLink, Node> manyToManyChildren = new HashMap<NodeLink, Node>();
+            return null;
+        }
 
-            for (NodeLink nodeLink : children.keySet())
+        // Process One-To-Many children
+        while (frame.oneToMany.hasNext())
+        {
+            Node childNode = children.get(frame.oneToMany.next());
+            if (!childNode.isTraversed())
             {
-                Relation.ForeignKey multiplicity = nodeLink.getMultiplicity();
-
-                switch (multiplicity)
-                {
-                case ONE_TO_ONE:
-                    oneToOneChildren.put(nodeLink, children.get(nodeLink));
-                    break;
-                case ONE_TO_MANY:
-                    oneToManyChildren.put(nodeLink, children.get(nodeLink));
-                    break;
-                case MANY_TO_ONE:
-                    manyToOneChildren.put(nodeLink, children.get(nodeLink));
-                    break;
-                case MANY_TO_MANY:
-                    manyToManyChildren.put(nodeLink, children.get(nodeLink));
-                    break;
-                }
-
+                return childNode;
             }
+        }
 
-            // Process One-To-Many children
-            for (NodeLink nodeLink : oneToManyChildren.keySet())
+        // Process Many-To-Many children
+        while (frame.manyToMany.hasNext())
+        {
+            NodeLink nodeLink = frame.manyToMany.next();
+            Node childNode = children.get(nodeLink);
+            if (childNode != null)
             {
-                // Process child node Graph recursively first
-                // Node childNode =
-                // mainCache.getNodeFromCache(nodeLink.getTargetNodeId());
-                Node childNode = children.get(nodeLink);
-
+                addJoinTableData(node, nodeLink, childNode);
                 if (!childNode.isTraversed())
                 {
-                    addNodesToFlushStack(childNode, eventType);
+                    return childNode;
                 }
-
             }
+        }
 
-            // Process Many-To-Many children
-            for (NodeLink nodeLink : manyToManyChildren.keySet())
+        // Process One-To-One children
+        while (frame.oneToOne.hasNext())
+        {
+            NodeLink nodeLink = frame.oneToOne.next();
+            if (!node.isTraversed())
             {
-                // Node childNode =
-                // mainCache.getNodeFromCache(nodeLink.getTargetNodeId());
-                Node childNode = children.get(nodeLink);
+                pushNode(node, eventType);
+                return children.get(nodeLink);
+            }
+        }
 
-                if (childNode != null)
+        // Process Many-To-One children
+        while (true)
+        {
+            if (frame.manyToOneChild == null)
+            {
+                if (!frame.manyToOne.hasNext())
                 {
-                    // Extract information required to be persisted into
-                    // Join
-                    // Table
-                    if (node.isDirty() && !node.isTraversed())
-                    {
-                        JoinTableMetadata jtmd = (JoinTableMetadata) nodeLink
-                                .getLinkProperty(LinkProperty.JOIN_TABLE_METADATA);
-                        if (jtmd != null)
-                        {
-                            String joinColumnName = (String) jtmd.getJoinColumns().toArray()[0];
-                            String inverseJoinColumnName = (String) jtmd.getInverseJoinColumns().toArray()[0];
-                            Object entityId = ObjectGraphBuilder.getEntityId(node.getNodeId());
-                            Object childId = ObjectGraphBuilder.getEntityId(childNode.getNodeId());
-
-                            Set<Object> childValues = new HashSet<Object>();
-                            childValues.add(childId);
-
-                            OPERATION operation = null;
-                            if (node.getCurrentNodeState().getClass().equals(ManagedState.class))
-                            {
-                                operation = OPERATION.INSERT;
-                            }
-                            else if (node.getCurrentNodeState().getClass().equals(RemovedState.class))
-                            {
-                                operation = OPERATION.DELETE;
-                            }
-
-                            addJoinTableDataIntoMap(operation, jtmd.getJoinTableName(), joinColumnName,
-                                    inverseJoinColumnName, node.getDataClass(), entityId, childValues);
-                        }
-                    }
-
-                    // Process child node Graph recursively first
-                    if (!childNode.isTraversed())
-                    {
-                        addNodesToFlushStack(childNode, eventType);
-                    }
-
+                    return null;
                 }
-
-            }
-            // Process One-To-One children
-            for (NodeLink nodeLink : oneToOneChildren.keySet())
-            {
+                NodeLink nodeLink = frame.manyToOne.next();
                 if (!node.isTraversed())
                 {
-                    // Push this node to stack
-                    node.setTraversed(true);
-                    flushStack.push(node);
-                    logEvent(node, eventType);
-
-                    // Process child node Graph recursively
-                    // Node childNode =
-                    // mainCache.getNodeFromCache(nodeLink.getTargetNodeId());
-                    Node childNode = children.get(nodeLink);
-                    addNodesToFlushStack(childNode, eventType);
+                    pushNode(node, eventType);
                 }
+                frame.manyToOneChild = children.get(nodeLink);
+                Map<NodeLink, Node> parents = frame.manyToOneChild.getParents();
+                frame.manyToOneParents = parents != null ? parents.entrySet().iterator() : null;
             }
 
-            // Process Many-To-One children
-            for (NodeLink nodeLink : manyToOneChildren.keySet())
+            // Process all parents of child node with Many-To-One
+            // relationship first
+            while (frame.manyToOneParents != null && frame.manyToOneParents.hasNext())
             {
-                if (!node.isTraversed())
+                Map.Entry<NodeLink, Node> parent = frame.manyToOneParents.next();
+                Node parentNode = parent.getValue();
+                if (parent.getKey().getMultiplicity().equals(Relation.ForeignKey.MANY_TO_ONE)
+                        && !parentNode.isTraversed() && parentNode.isDirty())
                 {
-                    // Push this node to stack
-                    node.setTraversed(true);
-                    flushStack.push(node);
-                    logEvent(node, eventType);
+                    return parentNode;
                 }
+            }
 
-                // Child node of this node
-                // Node childNode =
-                // mainCache.getNodeFromCache(nodeLink.getTargetNodeId());
-                Node childNode = children.get(nodeLink);
+            // Finally process this child node
+            Node childNode = frame.manyToOneChild;
+            frame.manyToOneChild = null;
+            if (!childNode.isTraversed() && childNode.isDirty())
+            {
+                return childNode;
+            }
+            else if (!childNode.isDirty())
+            {
+                pushNode(childNode, eventType);
+            }
+        }
+    }
 
-                // Process all parents of child node with Many-To-One
-                // relationship first
-                Map<NodeLink, Node> parents = childNode.getParents();
-                for (NodeLink parentLink : parents.keySet())
-                {
-                    Relation.ForeignKey multiplicity = parentLink.getMultiplicity();
-                    if (multiplicity.equals(Relation.ForeignKey.MANY_TO_ONE))
-                    {
-                        Node parentNode = parents.get(parentLink);
+    /**
+     * Marks node as traversed and pushes it to flush stack.
+     * 
+     * @param node
+     *            the node
+     * @param eventType
+     *            the event type
+     */
+    private void pushNode(Node node, EventType eventType)
+    {
+        node.setTraversed(true);
+        flushStack.push(node);
+        logEvent(node, eventType);
+    }
 
-                        if (!parentNode.isTraversed() && parentNode.isDirty())
-                        {
-                            addNodesToFlushStack(parentNode, eventType);
-                        }
-                    }
-                }
+    /**
+     * Extracts information required to be persisted into join table for a
+     * Many-To-Many child of a dirty node.
+     * 
+     * @param node
+     *            the node
+     * @param nodeLink
+     *            link to child node
+     * @param childNode
+     *            the child node
+     */
+    private void addJoinTableData(Node node, NodeLink nodeLink, Node childNode)
+    {
+        if (node.isDirty() && !node.isTraversed())
+        {
+            JoinTableMetadata jtmd = (JoinTableMetadata) nodeLink.getLinkProperty(LinkProperty.JOIN_TABLE_METADATA);
+            if (jtmd != null)
+            {
+                String joinColumnName = (String) jtmd.getJoinColumns().toArray()[0];
+                String inverseJoinColumnName = (String) jtmd.getInverseJoinColumns().toArray()[0];
+                Object entityId = ObjectGraphBuilder.getEntityId(node.getNodeId());
+                Object childId = ObjectGraphBuilder.getEntityId(childNode.getNodeId());
+
+                Set<Object> childValues = new HashSet<Object>();
+                childValues.add(childId);
 
-                // Finally process this child node
-                if (!childNode.isTraversed() && childNode.isDirty())
+                OPERATION operation = null;
+                if (node.getCurrentNodeState().getClass().equals(ManagedState.class))
                 {
-                    addNodesToFlushStack(childNode, eventType);
+                    operation = OPERATION.INSERT;
                 }
-                else if (!childNode.isDirty())
+                else if (node.getCurrentNodeState().getClass().equals(RemovedState.class))
                 {
-                    childNode.setTraversed(true);
-                    flushStack.push(childNode);
-                    logEvent(childNode, eventType);
+                    operation = OPERATION.DELETE;
                 }
+
+                addJoinTableDataIntoMap(operation, jtmd.getJoinTableName(), joinColumnName, inverseJoinColumnName,
+                        node.getDataClass(), entityId, childValues);
             }
         }
+    }
 
-        // Finally, if this node itself is not traversed yet, (as may happen
-        // in
-        // 1-1 and M-1
-        // cases), push it to stack
-        if (!node.isTraversed() && node.isDirty())
+    /**
+     * Pops all nodes from flush stack, grouped into levels to be flushed one
+     * after another. A node is placed in level next to the last one holding a
+     * node linked to it that is popped before it, so that every pair of linked
+     * nodes is flushed in stack order while nodes of a level are independent
+     * of each other and can be flushed concurrently.
+     * 
+     * @return the levels, in flush order
+     */
+    public List<List<Node>> popFlushLevels()
+    {
+        List<List<Node>> levels = new ArrayList<List<Node>>();
+        Map<Node, Integer> nodeLevels = new HashMap<Node, Integer>();
+        while (!flushStack.isEmpty())
         {
-            node.setTraversed(true);
-            flushStack.push(node);
-            logEvent(node, eventType);
+            Node node = flushStack.pop();
+            int level = Math.max(getNextLevel(node.getParents(), nodeLevels),
+                    getNextLevel(node.getChildren(), nodeLevels));
+            if (level == levels.size())
+            {
+                levels.add(new ArrayList<Node>());
+            }
+            levels.get(level).add(node);
+            nodeLevels.put(node, level);
         }
+        return levels;
+    }
 
+    /**
+     * Returns level next to the last one holding any of given linked nodes.
+     * 
+     * @param linkedNodes
+     *            parents or children of a node, may be null
+     * @param nodeLevels
+     *            levels of nodes popped so far
+     * @return the level, 0 if none of linked nodes is popped yet
+     */
+    private int getNextLevel(Map<NodeLink, Node> linkedNodes, Map<Node, Integer> nodeLevels)
+    {
+        int level = 0;
+        if (linkedNodes != null)
+        {
+            for (Node linkedNode : linkedNodes.values())
+            {
+                Integer linkedLevel = nodeLevels.get(linkedNode);
+                if (linkedLevel != null && linkedLevel >= level)
+                {
+                    level = linkedLevel + 1;
+                }
+            }
+        }
+        return level;
     }
 
     /**
@@ -440,6 +510,9 @@ public class FlushManager
                     Client client = delegator.getClient(metadata);
                     if (node.isProcessed())
                     {
+                        // Cached copy (if any) no longer reflects database.
+                        delegator.evictFromSecondLevelCache(clazz, ObjectGraphUtils.getEntityId(node.getNodeId()));
+
                         if (node.getOriginalNode() == null)
                         {
                             String entityId = ObjectGraphUtils.getEntityId(node.getNodeId());
@@ -541,4 +614,75 @@ public class FlushManager
         }
     }
 
+    /**
+     * State of traversal of a node: children remaining to be processed, by
+     * multiplicity, and Many-To-One child whose parents are being processed.
+     */
+    private static final class TraversalFrame
+    {
+
+        /** The node. */
+        private final Node node;
+
+        /** The one to many children. */
+        private final Iterator<NodeLink> oneToMany;
+
+        /** The many to many children. */
+        private final Iterator<NodeLink> manyToMany;
+
+        /** The one to one children. */
+        private final Iterator<NodeLink> oneToOne;
+
+        /** The many to one children. */
+        private final Iterator<NodeLink> manyToOne;
+
+        /** Many-To-One child being processed, if any. */
+        private Node manyToOneChild;
+
+        /** Remaining parents of Many-To-One child being processed. */
+        private Iterator<Map.Entry<NodeLink, Node>> manyToOneParents;
+
+        /**
+         * Instantiates a new traversal frame.
+         * 
+         * @param node
+         *            the node
+         */
+        private TraversalFrame(Node node)
+        {
+            this.node = node;
+
+            List<NodeLink> oneToOneChildren = new ArrayList<NodeLink>();
+            List<NodeLink> oneToManyChildren = new ArrayList<NodeLink>();
+            List<NodeLink> manyToOneChildren = new ArrayList<NodeLink>();
+            List<NodeLink> manyToManyChildren = new ArrayList<NodeLink>();
+
+            Map<NodeLink, Node> children = node.getChildren();
+            if (children != null)
+            {
+                for (NodeLink nodeLink : children.keySet())
+                {
+                    switch (nodeLink.getMultiplicity())
+                    {
+                    case ONE_TO_ONE:
+                        oneToOneChildren.add(nodeLink);
+                        break;
+                    case ONE_TO_MANY:
+                        oneToManyChildren.add(nodeLink);
+                        break;
+                    case MANY_TO_ONE:
+                        manyToOneChildren.add(nodeLink);
+                        break;
+                    case MANY_TO_MANY:
+                        manyToManyChildren.add(nodeLink);
+                        break;
+                    }
+                }
+            }
+            oneToMany = oneToManyChildren.iterator();
+            manyToMany = manyToManyChildren.iterator();
+            oneToOne = oneToOneChildren.iterator();
+            manyToOne = manyToOneChildren.iterator();
+        }
+    }
 }
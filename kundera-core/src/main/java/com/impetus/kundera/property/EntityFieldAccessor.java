@@ -0,0 +1,248 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.kundera.property;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes instance fields of a class by slot, slot being position of
+ * field among instance fields of class hierarchy, super class fields first.
+ * Slot of a field is thus same for its declaring class and all of its
+ * subclasses.
+ *
+ * This implementation uses reflection, fields being made accessible once.
+ * {@link EntityFieldAccessorFactory} generates subclasses accessing fields
+ * directly wherever JVM access rules allow it.
+ *
+ * @author impetus
+ */
+public class EntityFieldAccessor
+{
+
+    /** The class. */
+    private final Class<?> clazz;
+
+    /** Instance fields, by slot. */
+    protected final Field[] fields;
+
+    /** Slots, by field. */
+    private final Map<Field, Integer> slots;
+
+    /** No-argument constructor, null if class has none. */
+    private final Constructor<?> constructor;
+
+    /**
+     * Instantiates a new reflective accessor.
+     *
+     * @param clazz
+     *            the class
+     * @param fields
+     *            instance fields of class, as returned by
+     *            {@link #getInstanceFields(Class)}
+     */
+    public EntityFieldAccessor(Class<?> clazz, Field[] fields)
+    {
+        this.clazz = clazz;
+        this.fields = fields;
+        this.slots = new HashMap<Field, Integer>(fields.length * 2);
+        for (int i = 0; i < fields.length; i++)
+        {
+            slots.put(fields[i], i);
+            try
+            {
+                fields[i].setAccessible(true);
+            }
+            catch (RuntimeException e)
+            {
+                // denied, left to fail on access.
+            }
+        }
+        this.constructor = getNoArgConstructor(clazz);
+    }
+
+    /**
+     * Gets the class.
+     *
+     * @return the class
+     */
+    public Class<?> getEntityClass()
+    {
+        return clazz;
+    }
+
+    /**
+     * Returns slot of given field.
+     *
+     * @param field
+     *            the field
+     * @return the slot, -1 if field is not an instance field of class
+     */
+    public int indexOf(Field field)
+    {
+        Integer slot = slots.get(field);
+        return slot != null ? slot : -1;
+    }
+
+    /**
+     * Gets value of field at given slot.
+     *
+     * @param entity
+     *            instance of class
+     * @param slot
+     *            the slot
+     * @return the value, primitives being boxed
+     */
+    public Object get(Object entity, int slot)
+    {
+        try
+        {
+            return fields[slot].get(entity);
+        }
+        catch (IllegalArgumentException iarg)
+        {
+            throw new PropertyAccessException(iarg);
+        }
+        catch (IllegalAccessException iacc)
+        {
+            throw new PropertyAccessException(iacc);
+        }
+    }
+
+    /**
+     * Sets value of field at given slot.
+     *
+     * @param entity
+     *            instance of class
+     * @param slot
+     *            the slot
+     * @param value
+     *            the value, primitives being boxed
+     */
+    public void set(Object entity, int slot, Object value)
+    {
+        try
+        {
+            fields[slot].set(entity, value);
+        }
+        catch (IllegalArgumentException iarg)
+        {
+            throw new PropertyAccessException(iarg);
+        }
+        catch (IllegalAccessException iacc)
+        {
+            throw new PropertyAccessException(iacc);
+        }
+    }
+
+    /**
+     * Creates a new instance of class using its no-argument constructor.
+     *
+     * @return the instance
+     */
+    public Object newInstance()
+    {
+        if (constructor == null)
+        {
+            throw new PropertyAccessException(clazz.getName() + " has no no-argument constructor");
+        }
+        try
+        {
+            return constructor.newInstance();
+        }
+        catch (InstantiationException e)
+        {
+            throw new PropertyAccessException(e);
+        }
+        catch (IllegalAccessException e)
+        {
+            throw new PropertyAccessException(e);
+        }
+        catch (InvocationTargetException e)
+        {
+            throw new PropertyAccessException(e);
+        }
+    }
+
+    /**
+     * Returns instance fields of given class hierarchy, super class fields
+     * first.
+     *
+     * @param clazz
+     *            the class
+     * @return the instance fields
+     */
+    public static Field[] getInstanceFields(Class<?> clazz)
+    {
+        LinkedList<Class<?>> hierarchy = new LinkedList<Class<?>>();
+        for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass())
+        {
+            hierarchy.addFirst(c);
+        }
+        List<Field> fields = new ArrayList<Field>();
+        for (Class<?> c : hierarchy)
+        {
+            for (Field f : c.getDeclaredFields())
+            {
+                if (!Modifier.isStatic(f.getModifiers()) && !f.isSynthetic())
+                {
+                    fields.add(f);
+                }
+            }
+        }
+        return fields.toArray(new Field[fields.size()]);
+    }
+
+    /**
+     * Returns no-argument constructor of given class, made accessible.
+     *
+     * @param clazz
+     *            the class
+     * @return the constructor, null if class is abstract or has none
+     */
+    private static Constructor<?> getNoArgConstructor(Class<?> clazz)
+    {
+        if (Modifier.isAbstract(clazz.getModifiers()) || clazz.isInterface())
+        {
+            return null;
+        }
+        try
+        {
+            Constructor<?> constructor = clazz.getDeclaredConstructor();
+            if (!Modifier.isPublic(constructor.getModifiers()) || !Modifier.isPublic(clazz.getModifiers()))
+            {
+                constructor.setAccessible(true);
+            }
+            return constructor;
+        }
+        catch (NoSuchMethodException e)
+        {
+            return null;
+        }
+        catch (RuntimeException e)
+        {
+            // denied.
+            return null;
+        }
+    }
+}
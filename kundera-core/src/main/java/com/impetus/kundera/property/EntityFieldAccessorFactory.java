@@ -0,0 +1,481 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.kundera.property;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javassist.ClassClassPath;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtNewConstructor;
+import javassist.CtNewMethod;
+import javassist.LoaderClassPath;
+import javassist.NotFoundException;
+import javassist.bytecode.CodeAttribute;
+import javassist.bytecode.ConstPool;
+import javassist.bytecode.MethodInfo;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Provides {@link EntityFieldAccessor} of a class, generated once per class
+ * with javassist.
+ *
+ * Generated accessor reads and writes a field directly if it is visible from
+ * class' package, else through its getter or setter if that only reads or
+ * writes the field and is not overridden. Other fields, and all fields of
+ * classes for which generation fails, are accessed through reflection.
+ *
+ * @author impetus
+ */
+public final class EntityFieldAccessorFactory
+{
+
+    /** The log. */
+    private static Log log = LogFactory.getLog(EntityFieldAccessorFactory.class);
+
+    /** Suffix of generated accessor class names. */
+    private static final String ACCESSOR_SUFFIX = "$KunderaFieldAccessor";
+
+    /** Accessors, by class. */
+    private static final Map<Class<?>, EntityFieldAccessor> accessors =
+            new ConcurrentHashMap<Class<?>, EntityFieldAccessor>();
+
+    /** Wrapper class and unboxing method, by primitive type. */
+    private static final Map<Class<?>, String[]> wrappers = new HashMap<Class<?>, String[]>();
+
+    static
+    {
+        wrappers.put(boolean.class, new String[] { "java.lang.Boolean", "booleanValue" });
+        wrappers.put(byte.class, new String[] { "java.lang.Byte", "byteValue" });
+        wrappers.put(char.class, new String[] { "java.lang.Character", "charValue" });
+        wrappers.put(short.class, new String[] { "java.lang.Short", "shortValue" });
+        wrappers.put(int.class, new String[] { "java.lang.Integer", "intValue" });
+        wrappers.put(long.class, new String[] { "java.lang.Long", "longValue" });
+        wrappers.put(float.class, new String[] { "java.lang.Float", "floatValue" });
+        wrappers.put(double.class, new String[] { "java.lang.Double", "doubleValue" });
+    }
+
+    /**
+     * Instantiates a new entity field accessor factory.
+     */
+    private EntityFieldAccessorFactory()
+    {
+    }
+
+    /**
+     * Returns accessor of given class, creating it on first use.
+     *
+     * @param clazz
+     *            the class
+     * @return the accessor
+     */
+    public static EntityFieldAccessor getAccessor(Class<?> clazz)
+    {
+        EntityFieldAccessor accessor = accessors.get(clazz);
+        return accessor != null ? accessor : createAccessor(clazz);
+    }
+
+    /**
+     * Creates accessor of given class, falling back to reflection if it can
+     * not be generated.
+     *
+     * @param clazz
+     *            the class
+     * @return the accessor
+     */
+    private static synchronized EntityFieldAccessor createAccessor(Class<?> clazz)
+    {
+        EntityFieldAccessor accessor = accessors.get(clazz);
+        if (accessor == null)
+        {
+            Field[] fields = EntityFieldAccessor.getInstanceFields(clazz);
+            if (isGeneratable(clazz))
+            {
+                accessor = generate(clazz, fields);
+            }
+            if (accessor == null)
+            {
+                accessor = new EntityFieldAccessor(clazz, fields);
+            }
+            accessors.put(clazz, accessor);
+        }
+        return accessor;
+    }
+
+    /**
+     * Generates accessor of given class.
+     *
+     * @param clazz
+     *            the class
+     * @param fields
+     *            instance fields of class
+     * @return the accessor, null if generation failed
+     */
+    private static EntityFieldAccessor generate(Class<?> clazz, Field[] fields)
+    {
+        ClassPool pool = new ClassPool(true);
+        pool.appendClassPath(new LoaderClassPath(clazz.getClassLoader()));
+        pool.appendClassPath(new ClassClassPath(EntityFieldAccessor.class));
+        CtClass ctClass = null;
+        try
+        {
+            String className = typeName(clazz);
+            StringBuilder get = new StringBuilder("public Object get(Object e, int slot) { switch ($2) {");
+            StringBuilder set = new StringBuilder("public void set(Object e, int slot, Object v) { switch ($2) {");
+            boolean generated = false;
+            for (int i = 0; i < fields.length; i++)
+            {
+                Field field = fields[i];
+                String target = "((" + className + ") $1)";
+                String getter = null;
+                String setter = null;
+                if (isVisible(clazz, field.getDeclaringClass(), field.getModifiers()))
+                {
+                    getter = target + "." + field.getName();
+                    if (!Modifier.isFinal(field.getModifiers()))
+                    {
+                        setter = target + "." + field.getName() + " = ";
+                    }
+                }
+                else
+                {
+                    String suffix = Character.toUpperCase(field.getName().charAt(0)) + field.getName().substring(1);
+                    Method method = findTrivialMethod(pool, clazz, field, "get" + suffix, true);
+                    if (method == null && (field.getType() == boolean.class || field.getType() == Boolean.class))
+                    {
+                        method = findTrivialMethod(pool, clazz, field, "is" + suffix, true);
+                    }
+                    getter = method != null ? target + "." + method.getName() + "()" : null;
+                    method = findTrivialMethod(pool, clazz, field, "set" + suffix, false);
+                    setter = method != null ? target + "." + method.getName() + "(" : null;
+                }
+                if (getter != null)
+                {
+                    get.append("case ").append(i).append(": return ($w) ").append(getter).append(";");
+                    generated = true;
+                }
+                if (setter != null)
+                {
+                    String value = unboxed(field.getType(), "$3");
+                    set.append("case ").append(i).append(": ");
+                    if (field.getType().isPrimitive())
+                    {
+                        set.append("if ($3 == null) { super.set($1, $2, $3); return; } ");
+                    }
+                    set.append(setter).append(value).append(setter.endsWith("(") ? ");" : ";").append(" return;");
+                    generated = true;
+                }
+            }
+            get.append("default: return super.get($1, $2); } }");
+            set.append("default: super.set($1, $2, $3); } }");
+
+            String constructor = null;
+            if (!Modifier.isAbstract(clazz.getModifiers()) && hasVisibleNoArgConstructor(clazz))
+            {
+                constructor = "public Object newInstance() { return new " + className + "(); }";
+                generated = true;
+            }
+            if (!generated)
+            {
+                return null;
+            }
+
+            ctClass = pool.makeClass(clazz.getName() + ACCESSOR_SUFFIX, pool.get(EntityFieldAccessor.class.getName()));
+            ctClass.addConstructor(CtNewConstructor.make("public " + ctClass.getSimpleName()
+                    + "(Class clazz, java.lang.reflect.Field[] fields) { super($1, $2); }", ctClass));
+            ctClass.addMethod(CtNewMethod.make(get.toString(), ctClass));
+            ctClass.addMethod(CtNewMethod.make(set.toString(), ctClass));
+            if (constructor != null)
+            {
+                ctClass.addMethod(CtNewMethod.make(constructor, ctClass));
+            }
+            Class<?> accessorClass = ctClass.toClass(clazz.getClassLoader(), clazz.getProtectionDomain());
+            return (EntityFieldAccessor) accessorClass.getConstructor(Class.class, Field[].class).newInstance(clazz,
+                    fields);
+        }
+        catch (Exception e)
+        {
+            // compilation failures, or defining class in entity class loader
+            // being denied.
+            log.debug("Using reflection to access fields of " + clazz.getName() + ", Caused by: " + e.getMessage());
+        }
+        catch (LinkageError e)
+        {
+            log.debug("Using reflection to access fields of " + clazz.getName() + ", Caused by: " + e.getMessage());
+        }
+        finally
+        {
+            if (ctClass != null)
+            {
+                ctClass.detach();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether an accessor can be generated for given class.
+     *
+     * @param clazz
+     *            the class
+     * @return true, if class is a named, non-private class outside of JDK
+     */
+    private static boolean isGeneratable(Class<?> clazz)
+    {
+        return clazz.getClassLoader() != null && !clazz.isInterface() && !clazz.isArray() && !clazz.isPrimitive()
+                && !clazz.isAnonymousClass() && !clazz.isLocalClass() && !Modifier.isPrivate(clazz.getModifiers())
+                && !clazz.getName().startsWith("java.") && clazz.getPackage() != null;
+    }
+
+    /**
+     * Checks whether a member of given modifiers, declared by given class, is
+     * visible from package of class accessor is generated for.
+     *
+     * @param clazz
+     *            the class accessor is generated for
+     * @param declaringClass
+     *            declaring class of member
+     * @param modifiers
+     *            modifiers of member
+     * @return true, if visible
+     */
+    private static boolean isVisible(Class<?> clazz, Class<?> declaringClass, int modifiers)
+    {
+        if (Modifier.isPrivate(modifiers) || Modifier.isStatic(modifiers))
+        {
+            return false;
+        }
+        if (declaringClass.getClassLoader() == clazz.getClassLoader()
+                && declaringClass.getPackage().getName().equals(clazz.getPackage().getName()))
+        {
+            return true;
+        }
+        return Modifier.isPublic(modifiers) && Modifier.isPublic(declaringClass.getModifiers());
+    }
+
+    /**
+     * Checks whether given class has a no-argument constructor visible from
+     * its package.
+     *
+     * @param clazz
+     *            the class
+     * @return true, if it has one
+     */
+    private static boolean hasVisibleNoArgConstructor(Class<?> clazz)
+    {
+        try
+        {
+            return !Modifier.isPrivate(clazz.getDeclaredConstructor().getModifiers());
+        }
+        catch (NoSuchMethodException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Finds getter or setter of given field which only reads or writes the
+     * field, declared by field's declaring class, visible from package of
+     * given class, and not overridden up to it.
+     *
+     * @param pool
+     *            class pool to read method bytecode from
+     * @param clazz
+     *            the class accessor is generated for
+     * @param field
+     *            the field
+     * @param name
+     *            method name
+     * @param isGetter
+     *            whether a getter is looked for
+     * @return the method, null if there is no such method
+     */
+    private static Method findTrivialMethod(ClassPool pool, Class<?> clazz, Field field, String name,
+            boolean isGetter)
+    {
+        Class<?>[] parameterTypes = isGetter ? new Class<?>[0] : new Class<?>[] { field.getType() };
+        Class<?> declaringClass = field.getDeclaringClass();
+        Method method;
+        try
+        {
+            method = declaringClass.getDeclaredMethod(name, parameterTypes);
+        }
+        catch (NoSuchMethodException e)
+        {
+            return null;
+        }
+        if ((isGetter ? method.getReturnType() != field.getType() : method.getReturnType() != void.class)
+                || !isVisible(clazz, declaringClass, method.getModifiers()))
+        {
+            return null;
+        }
+        for (Class<?> c = clazz; c != declaringClass; c = c.getSuperclass())
+        {
+            try
+            {
+                c.getDeclaredMethod(name, parameterTypes);
+                return null;
+            }
+            catch (NoSuchMethodException e)
+            {
+                // not overridden here.
+            }
+        }
+        try
+        {
+            String descriptor = isGetter ? "()" + descriptor(field.getType()) : "(" + descriptor(field.getType())
+                    + ")V";
+            List<?> methods = pool.get(declaringClass.getName()).getClassFile2().getMethods();
+            for (Object o : methods)
+            {
+                MethodInfo info = (MethodInfo) o;
+                if (info.getName().equals(name) && info.getDescriptor().equals(descriptor))
+                {
+                    return isTrivial(info, field, isGetter) ? method : null;
+                }
+            }
+        }
+        catch (NotFoundException e)
+        {
+            log.debug("Bytecode of " + declaringClass.getName() + " not found, Caused by: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether given method's bytecode does nothing but return or assign
+     * given field.
+     *
+     * @param info
+     *            the method
+     * @param field
+     *            the field
+     * @param isGetter
+     *            whether method is a getter
+     * @return true, if trivial
+     */
+    private static boolean isTrivial(MethodInfo info, Field field, boolean isGetter)
+    {
+        CodeAttribute attribute = info.getCodeAttribute();
+        if (attribute == null)
+        {
+            return false;
+        }
+        byte[] code = attribute.getCode();
+        int fieldRef;
+        if (isGetter)
+        {
+            // aload_0, getfield, xreturn
+            if (code.length != 5 || code[0] != 0x2a || code[1] != (byte) 0xb4 || (code[4] & 0xff) < 0xac
+                    || (code[4] & 0xff) > 0xb0)
+            {
+                return false;
+            }
+            fieldRef = ((code[2] & 0xff) << 8) | (code[3] & 0xff);
+        }
+        else
+        {
+            // aload_0, xload_1, putfield, return
+            if (code.length != 6 || code[0] != 0x2a || (code[1] != 0x1b && code[1] != 0x1f && code[1] != 0x23
+                    && code[1] != 0x27 && code[1] != 0x2b) || code[2] != (byte) 0xb5 || code[5] != (byte) 0xb1)
+            {
+                return false;
+            }
+            fieldRef = ((code[3] & 0xff) << 8) | (code[4] & 0xff);
+        }
+        ConstPool constPool = info.getConstPool();
+        return field.getName().equals(constPool.getFieldrefName(fieldRef))
+                && field.getDeclaringClass().getName().equals(constPool.getFieldrefClassName(fieldRef));
+    }
+
+    /**
+     * Returns source expression unboxing given expression to given type.
+     *
+     * @param type
+     *            the type
+     * @param expression
+     *            the expression
+     * @return the unboxing expression
+     */
+    private static String unboxed(Class<?> type, String expression)
+    {
+        String[] wrapper = wrappers.get(type);
+        return wrapper != null ? "((" + wrapper[0] + ") " + expression + ")." + wrapper[1] + "()" : "("
+                + typeName(type) + ") " + expression;
+    }
+
+    /**
+     * Returns source name of given type.
+     *
+     * @param type
+     *            the type
+     * @return the name
+     */
+    private static String typeName(Class<?> type)
+    {
+        return type.isArray() ? typeName(type.getComponentType()) + "[]" : type.getName();
+    }
+
+    /**
+     * Returns JVM descriptor of given type.
+     *
+     * @param type
+     *            the type
+     * @return the descriptor
+     */
+    private static String descriptor(Class<?> type)
+    {
+        if (type.isArray())
+        {
+            return type.getName().replace('.', '/');
+        }
+        else if (type.isPrimitive())
+        {
+            return String.valueOf("ZBCSIJFDV".charAt(descriptorIndex(type)));
+        }
+        return "L" + type.getName().replace('.', '/') + ";";
+    }
+
+    /**
+     * Returns position of given primitive type's descriptor character in
+     * "ZBCSIJFDV".
+     *
+     * @param type
+     *            primitive type
+     * @return the position
+     */
+    private static int descriptorIndex(Class<?> type)
+    {
+        Class<?>[] types = { boolean.class, byte.class, char.class, short.class, int.class, long.class, float.class,
+                double.class, void.class };
+        for (int i = 0; i < types.length; i++)
+        {
+            if (types[i] == type)
+            {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException(type.getName());
+    }
+}
@@ -24,7 +24,11 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import com.impetus.kundera.metadata.model.Column;
 import com.impetus.kundera.metadata.model.EntityMetadata;
+import com.impetus.kundera.property.accessor.DateEncoding;
+import com.impetus.kundera.property.accessor.ObjectAccessor;
+import com.impetus.kundera.property.serializer.SerializerFactory;
 import com.impetus.kundera.proxy.EnhancedEntity;
 import com.impetus.kundera.utils.ReflectUtils;
 
@@ -57,6 +61,59 @@ public class PropertyAccessorHelper
         set(target, field, value);
     }
 
+    /**
+     * Sets a byte-array onto a field, deserializing it with serializer
+     * configured for field or persistence unit if field type has no dedicated
+     * accessor.
+     * 
+     * @param target
+     *            the target
+     * @param field
+     *            the field
+     * @param bytes
+     *            the bytes
+     * @param persistenceUnit
+     *            the persistence unit
+     * 
+     * @throws PropertyAccessException
+     *             the property access exception
+     */
+    public static void set(Object target, Field field, byte[] bytes, String persistenceUnit)
+    {
+        PropertyAccessor<?> accessor = PropertyAccessorFactory.getPropertyAccessor(field);
+        set(target, field, fromBytes(accessor, field, bytes, persistenceUnit));
+    }
+
+    /**
+     * Sets a byte-array onto field of a column, using property accessor and
+     * slot resolved once for column.
+     * 
+     * @param target
+     *            the target
+     * @param column
+     *            the column
+     * @param bytes
+     *            the bytes
+     * @param persistenceUnit
+     *            the persistence unit
+     * 
+     * @throws PropertyAccessException
+     *             the property access exception
+     */
+    public static void set(Object target, Column column, byte[] bytes, String persistenceUnit)
+    {
+        Field field = column.getField();
+        Object value = fromBytes(column.getPropertyAccessor(), field, bytes, persistenceUnit);
+        if (target != null && column.getSlot() >= 0 && field.getDeclaringClass().isInstance(target))
+        {
+            set(target, EntityFieldAccessorFactory.getAccessor(target.getClass()), column.getSlot(), value);
+        }
+        else
+        {
+            set(target, field, value);
+        }
+    }
+
     /**
      * Sets a byte-array onto a field.
      * 
@@ -93,6 +150,16 @@ public class PropertyAccessorHelper
      */
     public static void set(Object target, Field field, Object value)
     {
+        if (target != null)
+        {
+            EntityFieldAccessor accessor = EntityFieldAccessorFactory.getAccessor(target.getClass());
+            int slot = accessor.indexOf(field);
+            if (slot >= 0)
+            {
+                set(target, accessor, slot, value);
+                return;
+            }
+        }
 
         if (!field.isAccessible())
         {
@@ -127,6 +194,15 @@ public class PropertyAccessorHelper
      */
     public static Object getObject(Object from, Field field)
     {
+        if (from != null)
+        {
+            EntityFieldAccessor accessor = EntityFieldAccessorFactory.getAccessor(from.getClass());
+            int slot = accessor.indexOf(field);
+            if (slot >= 0)
+            {
+                return accessor.get(from, slot);
+            }
+        }
 
         if (!field.isAccessible())
         {
@@ -147,6 +223,51 @@ public class PropertyAccessorHelper
         }
     }
 
+    /**
+     * Sets an object onto field at given slot of accessor.
+     * 
+     * @param target
+     *            the target
+     * @param accessor
+     *            accessor of target's class
+     * @param slot
+     *            slot of field
+     * @param value
+     *            the value
+     */
+    private static void set(Object target, EntityFieldAccessor accessor, int slot, Object value)
+    {
+        try
+        {
+            accessor.set(target, slot, value);
+        }
+        catch (ClassCastException ccex)
+        {
+            throw new PropertyAccessException(ccex);
+        }
+    }
+
+    /**
+     * Converts bytes to value of field, deserializing them with serializer
+     * configured for field or persistence unit if field type has no dedicated
+     * accessor.
+     * 
+     * @param accessor
+     *            property accessor of field
+     * @param field
+     *            the field
+     * @param bytes
+     *            the bytes
+     * @param persistenceUnit
+     *            the persistence unit
+     * @return the value
+     */
+    private static Object fromBytes(PropertyAccessor<?> accessor, Field field, byte[] bytes, String persistenceUnit)
+    {
+        return accessor instanceof ObjectAccessor ? ((ObjectAccessor) accessor).fromBytes(field.getType(), bytes,
+                SerializerFactory.getSerializer(field, persistenceUnit)) : accessor.fromBytes(field.getType(), bytes);
+    }
+
     /**
      * Gets the string.
      * 
@@ -188,6 +309,37 @@ public class PropertyAccessorHelper
         return accessor.toBytes(getObject(from, field));
     }
 
+    /**
+     * Gets bytes of field value, date and time values being encoded and
+     * values of types without a dedicated accessor being serialized as
+     * configured for given field or persistence unit.
+     * 
+     * @param from
+     *            the from
+     * @param field
+     *            the field
+     * @param persistenceUnit
+     *            the persistence unit
+     * @return the byte[]
+     * 
+     * @throws PropertyAccessException
+     *             the property access exception
+     */
+    public static byte[] get(Object from, Field field, String persistenceUnit)
+    {
+        Object value = getObject(from, field);
+        if (DateEncoding.isTemporal(value) && DateEncoding.isBinaryEncoding(persistenceUnit))
+        {
+            return DateEncoding.toBytes(value);
+        }
+        PropertyAccessor<?> accessor = PropertyAccessorFactory.getPropertyAccessor(field);
+        if (accessor instanceof ObjectAccessor)
+        {
+            return ((ObjectAccessor) accessor).toBytes(value, SerializerFactory.getSerializer(field, persistenceUnit));
+        }
+        return accessor.toBytes(value);
+    }
+
     /**
      * Get identifier of an entity object by invoking getXXX() method.
      * 
@@ -16,10 +16,8 @@
 package com.impetus.kundera.property.accessor;
 
 import java.io.UnsupportedEncodingException;
-import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.Locale;
 
 import com.impetus.kundera.Constants;
 import com.impetus.kundera.property.PropertyAccessException;
@@ -33,9 +31,6 @@ import com.impetus.kundera.property.PropertyAccessor;
 public class CalendarAccessor implements PropertyAccessor<Calendar>
 {
 
-    /** The Constant DATE_FORMATTER. */
-    private static final SimpleDateFormat DATE_FORMATTER = new SimpleDateFormat("dd-MM-yyyy HH:mm:ss", Locale.ENGLISH);
-
     /*
      * (non-Javadoc)
      * 
@@ -44,10 +39,16 @@ public class CalendarAccessor implements PropertyAccessor<Calendar>
     @Override
     public Calendar fromBytes(Class targetClass, byte[] b)
     {
+        if (DateEncoding.isBinary(b))
+        {
+            Calendar cal = Calendar.getInstance();
+            cal.setTimeInMillis(DateEncoding.toMillis(b));
+            return cal;
+        }
+
         String s;
         try
         {
-            String s1 = new String(b);
             s = new String(b, Constants.ENCODING);
         }
         catch (UnsupportedEncodingException e)
@@ -69,7 +70,8 @@ public class CalendarAccessor implements PropertyAccessor<Calendar>
     public byte[] toBytes(Object object)
     {
         Calendar cal = (Calendar) object;
-        return DateAccessor.getFormattedObect(cal.getTime().toString()).getBytes();
+        // Same as formatting after parsing back via getFormattedObect().
+        return cal.getTime().toString().getBytes();
     }
 
     /*
@@ -96,9 +98,7 @@ public class CalendarAccessor implements PropertyAccessor<Calendar>
     public Calendar fromString(Class targetClass, String s)
     {
         Calendar cal = Calendar.getInstance();
-        Date d;
-        // d = (Date)DATE_FORMATTER.parse(s);
-        d = DateAccessor.getDateByPattern(s);
+        Date d = DateAccessor.getDateByPattern(s);
         cal.setTime(d);
         return cal;
     }
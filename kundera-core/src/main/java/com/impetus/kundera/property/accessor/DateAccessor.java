@@ -15,8 +15,7 @@
  ******************************************************************************/
 package com.impetus.kundera.property.accessor;
 
-import java.text.DateFormat;
-import java.text.ParseException;
+import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
@@ -35,9 +34,30 @@ import com.impetus.kundera.property.PropertyAccessor;
 public class DateAccessor implements PropertyAccessor<Date>
 {
 
-    /** The Constant DATE_FORMATTER. */
-    private static final SimpleDateFormat DATE_FORMATTER = new SimpleDateFormat("dd MMM yyyy HH:mm:ss:S Z",
-            Locale.ENGLISH);
+    /** Per thread formatter, as SimpleDateFormat is not thread safe. */
+    private static final ThreadLocal<SimpleDateFormat> DATE_FORMATTER = new ThreadLocal<SimpleDateFormat>()
+    {
+        @Override
+        protected SimpleDateFormat initialValue()
+        {
+            return new SimpleDateFormat("dd MMM yyyy HH:mm:ss:S Z", Locale.ENGLISH);
+        }
+    };
+
+    /** Per thread parsers, one for each of the patterns. */
+    private static final ThreadLocal<SimpleDateFormat[]> PARSERS = new ThreadLocal<SimpleDateFormat[]>()
+    {
+        @Override
+        protected SimpleDateFormat[] initialValue()
+        {
+            SimpleDateFormat[] parsers = new SimpleDateFormat[patterns.size()];
+            for (int i = 0; i < parsers.length; i++)
+            {
+                parsers[i] = new SimpleDateFormat(patterns.get(i));
+            }
+            return parsers;
+        }
+    };
 
     /** The patterns. */
     private static List<String> patterns = new ArrayList<String>(15);
@@ -93,10 +113,12 @@ public class DateAccessor implements PropertyAccessor<Date>
     @Override
     public final Date fromBytes(Class targetClass, byte[] bytes)
     {
+        if (DateEncoding.isBinary(bytes))
+        {
+            return new Date(DateEncoding.toMillis(bytes));
+        }
         try
         {
-            // return DATE_FORMATTER.parse(new String(bytes,
-            // Constants.ENCODING));
             return getDateByPattern(new String(bytes, Constants.ENCODING));
         }
         catch (Exception e)
@@ -116,7 +138,7 @@ public class DateAccessor implements PropertyAccessor<Date>
     {
         try
         {
-            return DATE_FORMATTER.format(((Date) date)).getBytes(Constants.ENCODING);
+            return DATE_FORMATTER.get().format(((Date) date)).getBytes(Constants.ENCODING);
         }
         catch (Exception e)
         {
@@ -168,25 +190,14 @@ public class DateAccessor implements PropertyAccessor<Date>
      */
     public static Date getDateByPattern(String date)
     {
-        for (String p : patterns)
+        for (SimpleDateFormat parser : PARSERS.get())
         {
-            try
+            // Parse failure is signalled by null, move to next pattern.
+            Date dt = parser.parse(date, new ParsePosition(0));
+            if (dt != null)
             {
-                DateFormat formatter = new SimpleDateFormat(p);
-                Date dt = formatter.parse(date);
                 return dt;
             }
-            catch (IllegalArgumentException iae)
-            {
-                // Do nothing.
-                // move to next pattern.
-            }
-            catch (ParseException e)
-            {
-                // Do nothing.
-                // move to next pattern.
-            }
-
         }
 
         throw new PropertyAccessException("Required Date format is not supported!" + date);
@@ -211,4 +222,4 @@ public class DateAccessor implements PropertyAccessor<Date>
     {
         return new Date();
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.kundera.property.accessor;
+
+import java.util.Calendar;
+import java.util.Date;
+
+import com.impetus.kundera.PersistenceProperties;
+import com.impetus.kundera.metadata.KunderaMetadataManager;
+import com.impetus.kundera.metadata.model.PersistenceUnitMetadata;
+
+/**
+ * Binary encoding of date and time values, as milliseconds since epoch in 8
+ * big-endian bytes (same as Cassandra's DateType and LongType). Values are
+ * written in binary only for persistence units having
+ * {@link PersistenceProperties#KUNDERA_DATE_ENCODING} set to
+ * {@link #BINARY}, otherwise they are written as strings by their accessors.
+ * Date and time accessors read both forms.
+ *
+ * @author impetus
+ */
+public final class DateEncoding
+{
+    /** Value of date encoding property for binary encoding. */
+    public static final String BINARY = "binary";
+
+    /** Value of date encoding property for string encoding (default). */
+    public static final String STRING = "string";
+
+    /** Length of a binary encoded value. */
+    private static final int BINARY_LENGTH = 8;
+
+    /**
+     * Instantiates a new date encoding.
+     */
+    private DateEncoding()
+    {
+    }
+
+    /**
+     * Checks whether date and time values are to be written in binary for
+     * given persistence unit.
+     *
+     * @param persistenceUnit
+     *            the persistence unit
+     * @return true, if binary encoding is enabled
+     */
+    public static boolean isBinaryEncoding(String persistenceUnit)
+    {
+        if (persistenceUnit == null)
+        {
+            return false;
+        }
+        PersistenceUnitMetadata puMetadata = KunderaMetadataManager.getPersistenceUnitMetadata(persistenceUnit);
+        return puMetadata != null
+                && BINARY.equalsIgnoreCase(puMetadata.getProperty(PersistenceProperties.KUNDERA_DATE_ENCODING));
+    }
+
+    /**
+     * Checks whether given value can be binary encoded.
+     *
+     * @param value
+     *            the value
+     * @return true, if value is a date or calendar
+     */
+    public static boolean isTemporal(Object value)
+    {
+        return value instanceof Date || value instanceof Calendar;
+    }
+
+    /**
+     * Checks whether given bytes hold a binary encoded value. Only string
+     * encoded value of 8 bytes is a time of day ("HH:mm:ss"), all other
+     * string forms are longer.
+     *
+     * @param b
+     *            the bytes
+     * @return true, if binary encoded
+     */
+    public static boolean isBinary(byte[] b)
+    {
+        return b != null && b.length == BINARY_LENGTH && !(b[2] == ':' && b[5] == ':');
+    }
+
+    /**
+     * Encodes a date or calendar. Sub millisecond part of a
+     * {@link java.sql.Timestamp} is not retained.
+     *
+     * @param temporal
+     *            date or calendar
+     * @return encoded bytes
+     */
+    public static byte[] toBytes(Object temporal)
+    {
+        long millis = temporal instanceof Calendar ? ((Calendar) temporal).getTimeInMillis() : ((Date) temporal)
+                .getTime();
+        return toBytes(millis);
+    }
+
+    /**
+     * Encodes milliseconds since epoch.
+     *
+     * @param millis
+     *            milliseconds since epoch
+     * @return encoded bytes
+     */
+    public static byte[] toBytes(long millis)
+    {
+        byte[] b = new byte[BINARY_LENGTH];
+        for (int i = BINARY_LENGTH - 1; i >= 0; i--)
+        {
+            b[i] = (byte) millis;
+            millis >>>= 8;
+        }
+        return b;
+    }
+
+    /**
+     * Decodes milliseconds since epoch.
+     *
+     * @param b
+     *            binary encoded bytes
+     * @return milliseconds since epoch
+     */
+    public static long toMillis(byte[] b)
+    {
+        long millis = 0;
+        for (int i = 0; i < BINARY_LENGTH; i++)
+        {
+            millis = (millis << 8) | (b[i] & 0xFF);
+        }
+        return millis;
+    }
+}
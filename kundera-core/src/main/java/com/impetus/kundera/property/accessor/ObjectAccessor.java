@@ -15,17 +15,14 @@
  ******************************************************************************/
 package com.impetus.kundera.property.accessor;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.impetus.kundera.property.PropertyAccessException;
 import com.impetus.kundera.property.PropertyAccessor;
+import com.impetus.kundera.property.serializer.JavaSerializer;
+import com.impetus.kundera.property.serializer.ObjectSerializer;
+import com.impetus.kundera.property.serializer.SerializerFactory;
 
 /**
  * The Class ObjectAccessor.
@@ -46,27 +43,32 @@ public class ObjectAccessor implements PropertyAccessor<Object>
     @Override
     public final Object fromBytes(Class targetClass, byte[] bytes)
     {
-        try
+        return fromBytes(targetClass, bytes, SerializerFactory.getSerializerFor(bytes));
+    }
+
+    /**
+     * Deserializes bytes with given serializer. Bytes written with java
+     * serialization are always read with java serialization.
+     * 
+     * @param targetClass
+     *            the target class
+     * @param bytes
+     *            the bytes
+     * @param serializer
+     *            the serializer
+     * @return the object
+     */
+    public final Object fromBytes(Class targetClass, byte[] bytes, ObjectSerializer serializer)
+    {
+        if (targetClass != null && targetClass.equals(byte[].class))
         {
-            if (targetClass != null && targetClass.equals(byte[].class))
-            {
-                return bytes;
-            }
-            ObjectInputStream ois;
-            ois = new ObjectInputStream(new ByteArrayInputStream(bytes));
-            Object o = ois.readObject();
-            ois.close();
-            return o;
+            return bytes;
         }
-        catch (IOException e)
+        if (JavaSerializer.isJavaSerialized(bytes))
         {
-            throw new PropertyAccessException(e);
+            return SerializerFactory.getDefaultSerializer().deserialize(bytes);
         }
-        catch (ClassNotFoundException e)
-        {
-            throw new PropertyAccessException(e);
-        }
-
+        return serializer.deserialize(bytes);
     }
 
     /*
@@ -82,28 +84,29 @@ public class ObjectAccessor implements PropertyAccessor<Object>
     @Override
     public final byte[] toBytes(Object o)
     {
+        return toBytes(o, SerializerFactory.getDefaultSerializer());
+    }
 
-        try
+    /**
+     * Serializes object with given serializer.
+     * 
+     * @param o
+     *            the object
+     * @param serializer
+     *            the serializer
+     * @return the bytes
+     */
+    public final byte[] toBytes(Object o, ObjectSerializer serializer)
+    {
+        if (o == null)
         {
-            if (o != null)
-            {
-                if (o instanceof byte[])
-                {
-                    return (byte[]) o;
-                }
-
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                ObjectOutputStream oos = new ObjectOutputStream(baos);
-                oos.writeObject(o);
-                oos.close();
-                return baos.toByteArray();
-            }
+            return null;
         }
-        catch (IOException e)
+        if (o instanceof byte[])
         {
-            throw new PropertyAccessException(e);
+            return (byte[]) o;
         }
-        return null;
+        return serializer.serialize(o);
     }
 
     /*
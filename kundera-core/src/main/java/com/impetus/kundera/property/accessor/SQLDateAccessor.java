@@ -38,6 +38,11 @@ public class SQLDateAccessor implements PropertyAccessor<Date>
     @Override
     public Date fromBytes(Class targetClass, byte[] b)
     {
+        if (DateEncoding.isBinary(b))
+        {
+            return new Date(DateEncoding.toMillis(b));
+        }
+
         String s;
         try
         {
@@ -38,6 +38,11 @@ public class SQLTimeAccessor implements PropertyAccessor<Time>
     @Override
     public Time fromBytes(Class targetClass, byte[] b)
     {
+        if (DateEncoding.isBinary(b))
+        {
+            return new Time(DateEncoding.toMillis(b));
+        }
+
         String s;
         try
         {
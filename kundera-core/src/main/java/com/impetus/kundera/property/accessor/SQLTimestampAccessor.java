@@ -38,6 +38,10 @@ public class SQLTimestampAccessor implements PropertyAccessor<Timestamp>
     @Override
     public Timestamp fromBytes(Class targetClass, byte[] b)
     {
+        if (DateEncoding.isBinary(b))
+        {
+            return new Timestamp(DateEncoding.toMillis(b));
+        }
 
         String s;
         try
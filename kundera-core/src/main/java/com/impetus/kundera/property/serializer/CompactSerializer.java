@@ -0,0 +1,870 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.kundera.property.serializer;
+
+import java.io.Externalizable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.impetus.kundera.property.PropertyAccessException;
+
+/**
+ * Compact binary serializer. Unlike java serialization no class descriptors
+ * are written: common JDK types are written as a one byte tag followed by
+ * their value (integers as variable length), and other classes as a class
+ * name (written once per value) followed by their fields in a fixed order,
+ * schema of each class being derived once via reflection and cached.
+ * Serialization works on a per thread buffer, reused across calls.
+ *
+ * A class is written field by field only if it has a no-argument
+ * constructor and does not customize java serialization; otherwise it is
+ * embedded using java serialization. Values holding cyclic references are
+ * written using java serialization altogether. Shared (non cyclic)
+ * references are written once per reference.
+ *
+ * @author impetus
+ */
+public class CompactSerializer implements ObjectSerializer
+{
+
+    /** First byte of every serialized value. */
+    static final byte MAGIC = (byte) 0x4B;
+
+    /** Format version, second byte of every serialized value. */
+    static final byte VERSION = 1;
+
+    /** Largest buffer retained per thread between calls. */
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    /** The UTF-8 charset. */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    // Value tags.
+    private static final byte NULL = 0;
+
+    private static final byte STRING = 1;
+
+    private static final byte INT = 2;
+
+    private static final byte LONG = 3;
+
+    private static final byte DOUBLE = 4;
+
+    private static final byte FLOAT = 5;
+
+    private static final byte TRUE = 6;
+
+    private static final byte FALSE = 7;
+
+    private static final byte SHORT = 8;
+
+    private static final byte BYTE = 9;
+
+    private static final byte CHAR = 10;
+
+    private static final byte BYTES = 11;
+
+    private static final byte DATE = 12;
+
+    private static final byte BIG_INTEGER = 13;
+
+    private static final byte BIG_DECIMAL = 14;
+
+    private static final byte UUID_VALUE = 15;
+
+    private static final byte ENUM = 16;
+
+    private static final byte COLLECTION = 17;
+
+    private static final byte MAP = 18;
+
+    private static final byte OBJECT = 19;
+
+    private static final byte JAVA = 20;
+
+    /** Collection and map types written element by element. */
+    private static final List<Class<?>> CONTAINER_TYPES = Arrays.<Class<?>> asList(ArrayList.class,
+            LinkedList.class, HashSet.class, LinkedHashSet.class, HashMap.class, LinkedHashMap.class);
+
+    /** Per thread serialization buffer. */
+    private static final ThreadLocal<Output> BUFFERS = new ThreadLocal<Output>()
+    {
+        @Override
+        protected Output initialValue()
+        {
+            return new Output();
+        }
+    };
+
+    /** Cached class schemas. */
+    private static final Map<Class<?>, ClassSchema> schemas = new ConcurrentHashMap<Class<?>, ClassSchema>();
+
+    /** Cached classes by name. */
+    private static final Map<String, Class<?>> classes = new ConcurrentHashMap<String, Class<?>>();
+
+    /** Serializer for values not written field by field. */
+    private final JavaSerializer javaSerializer = new JavaSerializer();
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * com.impetus.kundera.property.serializer.ObjectSerializer#serialize(java
+     * .lang.Object)
+     */
+    @Override
+    public byte[] serialize(Object value)
+    {
+        Output out = BUFFERS.get();
+        out.reset();
+        try
+        {
+            out.writeByte(MAGIC);
+            out.writeByte(VERSION);
+            writeValue(out, value);
+            return out.toByteArray();
+        }
+        catch (CyclicReferenceException e)
+        {
+            return javaSerializer.serialize(value);
+        }
+        finally
+        {
+            out.release();
+            if (out.buffer.length > MAX_RETAINED_BUFFER)
+            {
+                BUFFERS.remove();
+            }
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * com.impetus.kundera.property.serializer.ObjectSerializer#deserialize(byte
+     * [])
+     */
+    @Override
+    public Object deserialize(byte[] bytes)
+    {
+        if (JavaSerializer.isJavaSerialized(bytes))
+        {
+            return javaSerializer.deserialize(bytes);
+        }
+        if (!isCompactSerialized(bytes))
+        {
+            throw new PropertyAccessException("Value is not written with " + getClass().getSimpleName());
+        }
+        Input in = new Input(bytes, 2);
+        return readValue(in);
+    }
+
+    /**
+     * Checks whether given bytes were written with this serializer.
+     *
+     * @param bytes
+     *            the bytes
+     * @return true, if bytes start with magic and version of this serializer
+     */
+    public static boolean isCompactSerialized(byte[] bytes)
+    {
+        return bytes != null && bytes.length > 2 && bytes[0] == MAGIC && bytes[1] == VERSION;
+    }
+
+    /**
+     * Writes a value, preceded by its tag.
+     *
+     * @param out
+     *            the out
+     * @param value
+     *            the value
+     */
+    private void writeValue(Output out, Object value)
+    {
+        if (value == null)
+        {
+            out.writeByte(NULL);
+            return;
+        }
+        Class<?> clazz = value.getClass();
+        if (clazz == String.class)
+        {
+            out.writeByte(STRING);
+            out.writeString((String) value);
+        }
+        else if (clazz == Integer.class)
+        {
+            out.writeByte(INT);
+            out.writeVarLong(zigzag((Integer) value));
+        }
+        else if (clazz == Long.class)
+        {
+            out.writeByte(LONG);
+            out.writeVarLong(zigzag((Long) value));
+        }
+        else if (clazz == Double.class)
+        {
+            out.writeByte(DOUBLE);
+            out.writeLong(Double.doubleToLongBits((Double) value));
+        }
+        else if (clazz == Float.class)
+        {
+            out.writeByte(FLOAT);
+            out.writeInt(Float.floatToIntBits((Float) value));
+        }
+        else if (clazz == Boolean.class)
+        {
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        }
+        else if (clazz == Short.class)
+        {
+            out.writeByte(SHORT);
+            out.writeVarLong(zigzag((Short) value));
+        }
+        else if (clazz == Byte.class)
+        {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) value);
+        }
+        else if (clazz == Character.class)
+        {
+            out.writeByte(CHAR);
+            out.writeVarLong((Character) value);
+        }
+        else if (clazz == byte[].class)
+        {
+            out.writeByte(BYTES);
+            out.writeBytes((byte[]) value);
+        }
+        else if (clazz == Date.class)
+        {
+            out.writeByte(DATE);
+            out.writeVarLong(zigzag(((Date) value).getTime()));
+        }
+        else if (clazz == BigInteger.class)
+        {
+            out.writeByte(BIG_INTEGER);
+            out.writeBytes(((BigInteger) value).toByteArray());
+        }
+        else if (clazz == BigDecimal.class)
+        {
+            out.writeByte(BIG_DECIMAL);
+            out.writeVarLong(zigzag(((BigDecimal) value).scale()));
+            out.writeBytes(((BigDecimal) value).unscaledValue().toByteArray());
+        }
+        else if (clazz == UUID.class)
+        {
+            out.writeByte(UUID_VALUE);
+            out.writeLong(((UUID) value).getMostSignificantBits());
+            out.writeLong(((UUID) value).getLeastSignificantBits());
+        }
+        else if (value instanceof Enum)
+        {
+            out.writeByte(ENUM);
+            out.writeClass(((Enum<?>) value).getDeclaringClass());
+            out.writeString(((Enum<?>) value).name());
+        }
+        else if (CONTAINER_TYPES.contains(clazz))
+        {
+            out.enter(value);
+            if (value instanceof Map)
+            {
+                Map<?, ?> map = (Map<?, ?>) value;
+                out.writeByte(MAP);
+                out.writeClass(clazz);
+                out.writeVarLong(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet())
+                {
+                    writeValue(out, entry.getKey());
+                    writeValue(out, entry.getValue());
+                }
+            }
+            else
+            {
+                Collection<?> collection = (Collection<?>) value;
+                out.writeByte(COLLECTION);
+                out.writeClass(clazz);
+                out.writeVarLong(collection.size());
+                for (Object element : collection)
+                {
+                    writeValue(out, element);
+                }
+            }
+            out.exit(value);
+        }
+        else
+        {
+            ClassSchema schema = getSchema(clazz);
+            if (schema.constructor == null)
+            {
+                out.writeByte(JAVA);
+                out.writeBytes(javaSerializer.serialize(value));
+                return;
+            }
+            out.enter(value);
+            out.writeByte(OBJECT);
+            out.writeClass(clazz);
+            out.writeInt(schema.hash);
+            try
+            {
+                for (Field field : schema.fields)
+                {
+                    writeValue(out, field.get(value));
+                }
+            }
+            catch (IllegalAccessException e)
+            {
+                throw new PropertyAccessException(e);
+            }
+            out.exit(value);
+        }
+    }
+
+    /**
+     * Reads a value written by {@link #writeValue(Output, Object)}.
+     *
+     * @param in
+     *            the in
+     * @return the value
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private Object readValue(Input in)
+    {
+        byte tag = in.readByte();
+        switch (tag)
+        {
+        case NULL:
+            return null;
+        case STRING:
+            return in.readString();
+        case INT:
+            return (int) unzigzag(in.readVarLong());
+        case LONG:
+            return unzigzag(in.readVarLong());
+        case DOUBLE:
+            return Double.longBitsToDouble(in.readLong());
+        case FLOAT:
+            return Float.intBitsToFloat(in.readInt());
+        case TRUE:
+            return Boolean.TRUE;
+        case FALSE:
+            return Boolean.FALSE;
+        case SHORT:
+            return (short) unzigzag(in.readVarLong());
+        case BYTE:
+            return in.readByte();
+        case CHAR:
+            return (char) in.readVarLong();
+        case BYTES:
+            return in.readBytes();
+        case DATE:
+            return new Date(unzigzag(in.readVarLong()));
+        case BIG_INTEGER:
+            return new BigInteger(in.readBytes());
+        case BIG_DECIMAL:
+            int scale = (int) unzigzag(in.readVarLong());
+            return new BigDecimal(new BigInteger(in.readBytes()), scale);
+        case UUID_VALUE:
+            return new UUID(in.readLong(), in.readLong());
+        case ENUM:
+            Class enumClass = in.readClass();
+            return Enum.valueOf(enumClass, in.readString());
+        case COLLECTION:
+            Collection collection = (Collection) newInstance(getSchema(in.readClass()));
+            for (long i = in.readVarLong(); i > 0; i--)
+            {
+                collection.add(readValue(in));
+            }
+            return collection;
+        case MAP:
+            Map map = (Map) newInstance(getSchema(in.readClass()));
+            for (long i = in.readVarLong(); i > 0; i--)
+            {
+                map.put(readValue(in), readValue(in));
+            }
+            return map;
+        case OBJECT:
+            ClassSchema schema = getSchema(in.readClass());
+            if (in.readInt() != schema.hash)
+            {
+                throw new PropertyAccessException("Fields of " + schema.clazz.getName()
+                        + " have changed since value was serialized");
+            }
+            Object o = newInstance(schema);
+            try
+            {
+                for (Field field : schema.fields)
+                {
+                    field.set(o, readValue(in));
+                }
+            }
+            catch (IllegalAccessException e)
+            {
+                throw new PropertyAccessException(e);
+            }
+            return o;
+        case JAVA:
+            return javaSerializer.deserialize(in.readBytes());
+        default:
+            throw new PropertyAccessException("Invalid tag " + tag + " in serialized value");
+        }
+    }
+
+    /**
+     * Creates a new instance of schema's class.
+     *
+     * @param schema
+     *            the schema
+     * @return the object
+     */
+    private static Object newInstance(ClassSchema schema)
+    {
+        if (schema.constructor == null)
+        {
+            throw new PropertyAccessException("No default constructor for " + schema.clazz.getName());
+        }
+        try
+        {
+            return schema.constructor.newInstance();
+        }
+        catch (Exception e)
+        {
+            throw new PropertyAccessException(e);
+        }
+    }
+
+    /**
+     * Returns cached schema of given class.
+     *
+     * @param clazz
+     *            the clazz
+     * @return the schema
+     */
+    private static ClassSchema getSchema(Class<?> clazz)
+    {
+        ClassSchema schema = schemas.get(clazz);
+        if (schema == null)
+        {
+            schema = new ClassSchema(clazz);
+            schemas.put(clazz, schema);
+        }
+        return schema;
+    }
+
+    /**
+     * Loads a class by name, caching it.
+     *
+     * @param name
+     *            the name
+     * @return the class
+     */
+    private static Class<?> loadClass(String name)
+    {
+        Class<?> clazz = classes.get(name);
+        if (clazz == null)
+        {
+            try
+            {
+                ClassLoader loader = Thread.currentThread().getContextClassLoader();
+                clazz = Class.forName(name, false, loader != null ? loader : CompactSerializer.class
+                        .getClassLoader());
+            }
+            catch (ClassNotFoundException e)
+            {
+                throw new PropertyAccessException(e);
+            }
+            classes.put(name, clazz);
+        }
+        return clazz;
+    }
+
+    private static long zigzag(long value)
+    {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value)
+    {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Fields of a class in the order they are written, and the constructor
+     * used while reading. Constructor is null for classes not written field
+     * by field.
+     */
+    private static final class ClassSchema
+    {
+        private final Class<?> clazz;
+
+        private final Constructor<?> constructor;
+
+        private final Field[] fields;
+
+        /** Hash of field names and types, to detect class changes. */
+        private final int hash;
+
+        private ClassSchema(Class<?> clazz)
+        {
+            this.clazz = clazz;
+            boolean container = CONTAINER_TYPES.contains(clazz);
+            boolean byFields = !container && isFieldSerializable(clazz);
+
+            List<Field> fieldList = new ArrayList<Field>();
+            for (Class<?> c = clazz; byFields && c != Object.class; c = c.getSuperclass())
+            {
+                Field[] declared = c.getDeclaredFields();
+                Arrays.sort(declared, new Comparator<Field>()
+                {
+                    @Override
+                    public int compare(Field f1, Field f2)
+                    {
+                        return f1.getName().compareTo(f2.getName());
+                    }
+                });
+                for (Field f : declared)
+                {
+                    int modifiers = f.getModifiers();
+                    if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers))
+                    {
+                        f.setAccessible(true);
+                        fieldList.add(f);
+                    }
+                }
+            }
+            this.fields = fieldList.toArray(new Field[fieldList.size()]);
+
+            int h = 17;
+            for (Field f : fields)
+            {
+                h = 31 * h + f.getName().hashCode();
+                h = 31 * h + f.getType().getName().hashCode();
+            }
+            this.hash = h;
+
+            this.constructor = container || byFields ? findConstructor(clazz) : null;
+        }
+
+        /**
+         * Checks whether class can be written field by field, i.e. it does
+         * not rely on custom java serialization.
+         */
+        private static boolean isFieldSerializable(Class<?> clazz)
+        {
+            if (clazz.isArray() || clazz.isInterface() || Modifier.isAbstract(clazz.getModifiers())
+                    || Externalizable.class.isAssignableFrom(clazz) || clazz.getName().startsWith("java."))
+            {
+                return false;
+            }
+            for (Class<?> c = clazz; c != Object.class; c = c.getSuperclass())
+            {
+                if (hasMethod(c, "writeObject") || hasMethod(c, "readObject") || hasMethod(c, "writeReplace")
+                        || hasMethod(c, "readResolve"))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean hasMethod(Class<?> c, String name)
+        {
+            for (java.lang.reflect.Method m : c.getDeclaredMethods())
+            {
+                if (m.getName().equals(name))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static Constructor<?> findConstructor(Class<?> clazz)
+        {
+            try
+            {
+                Constructor<?> c = clazz.getDeclaredConstructor();
+                if (!Modifier.isPublic(c.getModifiers()) || !Modifier.isPublic(clazz.getModifiers()))
+                {
+                    c.setAccessible(true);
+                }
+                return c;
+            }
+            catch (NoSuchMethodException e)
+            {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Thrown when a value refers back to one of its enclosing values.
+     */
+    private static final class CyclicReferenceException extends RuntimeException
+    {
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * Growable byte buffer, along with state of value being written.
+     */
+    private static final class Output
+    {
+        private byte[] buffer = new byte[256];
+
+        private int position;
+
+        /** Values being written, to detect cycles. */
+        private final Map<Object, Object> path = new IdentityHashMap<Object, Object>();
+
+        /** Classes written so far, by index. */
+        private final Map<Class<?>, Integer> writtenClasses = new HashMap<Class<?>, Integer>();
+
+        private void reset()
+        {
+            position = 0;
+        }
+
+        private void release()
+        {
+            path.clear();
+            writtenClasses.clear();
+        }
+
+        private void enter(Object value)
+        {
+            if (path.put(value, value) != null)
+            {
+                throw new CyclicReferenceException();
+            }
+        }
+
+        private void exit(Object value)
+        {
+            path.remove(value);
+        }
+
+        private void ensure(int length)
+        {
+            if (position + length > buffer.length)
+            {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + length));
+            }
+        }
+
+        private void writeByte(byte b)
+        {
+            ensure(1);
+            buffer[position++] = b;
+        }
+
+        private void writeInt(int v)
+        {
+            ensure(4);
+            for (int shift = 24; shift >= 0; shift -= 8)
+            {
+                buffer[position++] = (byte) (v >>> shift);
+            }
+        }
+
+        private void writeLong(long v)
+        {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8)
+            {
+                buffer[position++] = (byte) (v >>> shift);
+            }
+        }
+
+        private void writeVarLong(long v)
+        {
+            ensure(10);
+            while ((v & ~0x7FL) != 0)
+            {
+                buffer[position++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buffer[position++] = (byte) v;
+        }
+
+        private void writeBytes(byte[] b)
+        {
+            writeVarLong(b.length);
+            ensure(b.length);
+            System.arraycopy(b, 0, buffer, position, b.length);
+            position += b.length;
+        }
+
+        private void writeString(String s)
+        {
+            int length = s.length();
+            for (int i = 0; i < length; i++)
+            {
+                if (s.charAt(i) >= 0x80)
+                {
+                    writeBytes(s.getBytes(UTF8));
+                    return;
+                }
+            }
+            // ASCII, one byte per char.
+            writeVarLong(length);
+            ensure(length);
+            for (int i = 0; i < length; i++)
+            {
+                buffer[position++] = (byte) s.charAt(i);
+            }
+        }
+
+        private void writeClass(Class<?> clazz)
+        {
+            Integer index = writtenClasses.get(clazz);
+            if (index != null)
+            {
+                writeVarLong(index + 1);
+            }
+            else
+            {
+                writeVarLong(0);
+                writeString(clazz.getName());
+                writtenClasses.put(clazz, writtenClasses.size());
+            }
+        }
+
+        private byte[] toByteArray()
+        {
+            return Arrays.copyOf(buffer, position);
+        }
+    }
+
+    /**
+     * Reads from a serialized value.
+     */
+    private static final class Input
+    {
+        private final byte[] buffer;
+
+        private int position;
+
+        /** Classes read so far, by index. */
+        private final List<Class<?>> readClasses = new ArrayList<Class<?>>();
+
+        private Input(byte[] buffer, int position)
+        {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        private byte readByte()
+        {
+            if (position >= buffer.length)
+            {
+                throw new PropertyAccessException("Unexpected end of serialized value");
+            }
+            return buffer[position++];
+        }
+
+        private int readInt()
+        {
+            int v = 0;
+            for (int i = 0; i < 4; i++)
+            {
+                v = (v << 8) | (readByte() & 0xFF);
+            }
+            return v;
+        }
+
+        private long readLong()
+        {
+            long v = 0;
+            for (int i = 0; i < 8; i++)
+            {
+                v = (v << 8) | (readByte() & 0xFF);
+            }
+            return v;
+        }
+
+        private long readVarLong()
+        {
+            long v = 0;
+            int shift = 0;
+            byte b;
+            do
+            {
+                b = readByte();
+                v |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            }
+            while ((b & 0x80) != 0);
+            return v;
+        }
+
+        private byte[] readBytes()
+        {
+            int length = (int) readVarLong();
+            if (length < 0 || position + length > buffer.length)
+            {
+                throw new PropertyAccessException("Unexpected end of serialized value");
+            }
+            byte[] b = Arrays.copyOfRange(buffer, position, position + length);
+            position += length;
+            return b;
+        }
+
+        private String readString()
+        {
+            int length = (int) readVarLong();
+            if (length < 0 || position + length > buffer.length)
+            {
+                throw new PropertyAccessException("Unexpected end of serialized value");
+            }
+            String s = new String(buffer, position, length, UTF8);
+            position += length;
+            return s;
+        }
+
+        private Class<?> readClass()
+        {
+            int index = (int) readVarLong();
+            if (index == 0)
+            {
+                Class<?> clazz = loadClass(readString());
+                readClasses.add(clazz);
+                return clazz;
+            }
+            return readClasses.get(index - 1);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.kundera.property.serializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import com.impetus.kundera.property.PropertyAccessException;
+
+/**
+ * Serializer using java serialization. Default serializer, and the one used
+ * to read any value written with java serialization.
+ *
+ * @author impetus
+ */
+public class JavaSerializer implements ObjectSerializer
+{
+
+    /** First byte of java serialization stream magic. */
+    private static final byte MAGIC_FIRST = (byte) 0xAC;
+
+    /** Second byte of java serialization stream magic. */
+    private static final byte MAGIC_SECOND = (byte) 0xED;
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * com.impetus.kundera.property.serializer.ObjectSerializer#serialize(java
+     * .lang.Object)
+     */
+    @Override
+    public byte[] serialize(Object value)
+    {
+        try
+        {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            ObjectOutputStream oos = new ObjectOutputStream(baos);
+            oos.writeObject(value);
+            oos.close();
+            return baos.toByteArray();
+        }
+        catch (IOException e)
+        {
+            throw new PropertyAccessException(e);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * com.impetus.kundera.property.serializer.ObjectSerializer#deserialize(byte
+     * [])
+     */
+    @Override
+    public Object deserialize(byte[] bytes)
+    {
+        try
+        {
+            ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes));
+            Object o = ois.readObject();
+            ois.close();
+            return o;
+        }
+        catch (IOException e)
+        {
+            throw new PropertyAccessException(e);
+        }
+        catch (ClassNotFoundException e)
+        {
+            throw new PropertyAccessException(e);
+        }
+    }
+
+    /**
+     * Checks whether given bytes were written with java serialization.
+     *
+     * @param bytes
+     *            the bytes
+     * @return true, if bytes start with java serialization stream magic
+     */
+    public static boolean isJavaSerialized(byte[] bytes)
+    {
+        return bytes != null && bytes.length > 1 && bytes[0] == MAGIC_FIRST && bytes[1] == MAGIC_SECOND;
+    }
+}
@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.kundera.property.serializer;
+
+/**
+ * Converts values of field types not having a dedicated property accessor to
+ * bytes and back. Implementations must be thread safe and must have a public
+ * no-argument constructor. Output of an implementation must not start with
+ * java serialization stream magic (0xACED), as such values are always read
+ * back with {@link JavaSerializer}, so that data written before a serializer
+ * was configured remains readable.
+ *
+ * @author impetus
+ */
+public interface ObjectSerializer
+{
+
+    /**
+     * Serializes given value.
+     *
+     * @param value
+     *            the value, never null
+     * @return serialized bytes
+     */
+    byte[] serialize(Object value);
+
+    /**
+     * Deserializes value from given bytes.
+     *
+     * @param bytes
+     *            serialized bytes
+     * @return the value
+     */
+    Object deserialize(byte[] bytes);
+}
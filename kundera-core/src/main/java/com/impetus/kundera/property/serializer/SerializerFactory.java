@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.kundera.property.serializer;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.impetus.kundera.PersistenceProperties;
+import com.impetus.kundera.annotations.Serializer;
+import com.impetus.kundera.metadata.KunderaMetadataManager;
+import com.impetus.kundera.metadata.model.PersistenceUnitMetadata;
+import com.impetus.kundera.property.PropertyAccessException;
+
+/**
+ * Resolves {@link ObjectSerializer} for a field, either specified on field via
+ * {@link Serializer} or configured for persistence unit via
+ * {@link PersistenceProperties#KUNDERA_SERIALIZER}. Java serialization is used
+ * if neither is given.
+ *
+ * @author impetus
+ */
+public final class SerializerFactory
+{
+    /** The log. */
+    private static Log log = LogFactory.getLog(SerializerFactory.class);
+
+    /** Alias of {@link JavaSerializer} in serializer property. */
+    public static final String JAVA = "java";
+
+    /** Alias of {@link CompactSerializer} in serializer property. */
+    public static final String COMPACT = "compact";
+
+    /** Default serializer. */
+    private static final ObjectSerializer DEFAULT = new JavaSerializer();
+
+    /** Serializer instances, by class. */
+    private static final Map<Class<?>, ObjectSerializer> serializers =
+            new ConcurrentHashMap<Class<?>, ObjectSerializer>();
+
+    static
+    {
+        serializers.put(JavaSerializer.class, DEFAULT);
+        serializers.put(CompactSerializer.class, new CompactSerializer());
+    }
+
+    /**
+     * Instantiates a new serializer factory.
+     */
+    private SerializerFactory()
+    {
+    }
+
+    /**
+     * Returns default serializer.
+     *
+     * @return java serializer
+     */
+    public static ObjectSerializer getDefaultSerializer()
+    {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns built-in serializer able to read given bytes, when serializer
+     * used to write them is not known.
+     *
+     * @param bytes
+     *            serialized bytes
+     * @return compact serializer for bytes written by it, java serializer
+     *         otherwise
+     */
+    public static ObjectSerializer getSerializerFor(byte[] bytes)
+    {
+        return CompactSerializer.isCompactSerialized(bytes) ? getSerializer(CompactSerializer.class) : DEFAULT;
+    }
+
+    /**
+     * Returns serializer for given field.
+     *
+     * @param field
+     *            the field
+     * @param persistenceUnit
+     *            persistence unit of entity holding field, may be null
+     * @return the serializer
+     */
+    public static ObjectSerializer getSerializer(Field field, String persistenceUnit)
+    {
+        Serializer annotation = field != null ? field.getAnnotation(Serializer.class) : null;
+        if (annotation != null)
+        {
+            return getSerializer(annotation.value());
+        }
+        if (persistenceUnit != null)
+        {
+            PersistenceUnitMetadata puMetadata = KunderaMetadataManager.getPersistenceUnitMetadata(persistenceUnit);
+            String serializer = puMetadata != null ? puMetadata.getProperty(PersistenceProperties.KUNDERA_SERIALIZER)
+                    : null;
+            if (serializer != null)
+            {
+                return getSerializer(serializer.trim());
+            }
+        }
+        return DEFAULT;
+    }
+
+    /**
+     * Returns serializer for a configured name, either an alias or a class
+     * name.
+     *
+     * @param name
+     *            the name
+     * @return the serializer
+     */
+    private static ObjectSerializer getSerializer(String name)
+    {
+        if (JAVA.equalsIgnoreCase(name))
+        {
+            return DEFAULT;
+        }
+        if (COMPACT.equalsIgnoreCase(name))
+        {
+            return getSerializer(CompactSerializer.class);
+        }
+        try
+        {
+            return getSerializer(Class.forName(name));
+        }
+        catch (ClassNotFoundException e)
+        {
+            log.error("Serializer class " + name + " not found, Caused by: " + e.getMessage());
+            throw new PropertyAccessException(e);
+        }
+    }
+
+    /**
+     * Returns serializer instance of given class, creating it on first use.
+     *
+     * @param clazz
+     *            serializer class
+     * @return the serializer
+     */
+    private static ObjectSerializer getSerializer(Class<?> clazz)
+    {
+        ObjectSerializer serializer = serializers.get(clazz);
+        if (serializer == null)
+        {
+            if (!ObjectSerializer.class.isAssignableFrom(clazz))
+            {
+                throw new PropertyAccessException(clazz.getName() + " is not an " + ObjectSerializer.class.getName());
+            }
+            try
+            {
+                serializer = (ObjectSerializer) clazz.getDeclaredConstructor().newInstance();
+            }
+            catch (NoSuchMethodException e)
+            {
+                throw new PropertyAccessException(clazz.getName() + " has no default constructor");
+            }
+            catch (InstantiationException e)
+            {
+                throw new PropertyAccessException(e);
+            }
+            catch (IllegalAccessException e)
+            {
+                throw new PropertyAccessException(e);
+            }
+            catch (InvocationTargetException e)
+            {
+                throw new PropertyAccessException(e.getCause());
+            }
+            serializers.put(clazz, serializer);
+        }
+        return serializer;
+    }
+}
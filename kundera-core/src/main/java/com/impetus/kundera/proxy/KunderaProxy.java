@@ -23,4 +23,11 @@ package com.impetus.kundera.proxy;
 public interface KunderaProxy
 {
 
+    /**
+     * Returns lazy initializer backing this proxy.
+     * 
+     * @return the lazy initializer
+     */
+    LazyInitializer getKunderaLazyInitializer();
+
 }
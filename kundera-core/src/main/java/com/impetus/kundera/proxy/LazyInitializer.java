@@ -35,6 +35,13 @@ public interface LazyInitializer
      */
     public void initialize() throws PersistenceException;
 
+    /**
+     * Return the underlying persistent object, initializing if necessary.
+     * 
+     * @return the implementation
+     */
+    public Object getImplementation();
+
     /**
      * Retrieve the identifier value for the enity our owning proxy represents.
      * 
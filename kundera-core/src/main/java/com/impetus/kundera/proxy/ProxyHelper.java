@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.kundera.proxy;
+
+import java.lang.reflect.Field;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import com.impetus.kundera.metadata.model.EntityMetadata;
+import com.impetus.kundera.metadata.model.Relation;
+import com.impetus.kundera.persistence.PersistenceDelegator;
+import com.impetus.kundera.proxy.collection.ProxyCollection;
+import com.impetus.kundera.proxy.collection.ProxyList;
+import com.impetus.kundera.proxy.collection.ProxySet;
+
+/**
+ * Utility methods for entity proxies and proxy collections, used for lazily
+ * loaded relations.
+ * 
+ * @author impetus
+ */
+public final class ProxyHelper
+{
+
+    /**
+     * Instantiates a new proxy helper.
+     */
+    private ProxyHelper()
+    {
+    }
+
+    /**
+     * Checks whether given object is an entity proxy or a proxy collection.
+     * 
+     * @param o
+     *            the object
+     * @return true, if is proxy or collection
+     */
+    public static boolean isProxyOrCollection(Object o)
+    {
+        return o instanceof KunderaProxy || o instanceof ProxyCollection;
+    }
+
+    /**
+     * Checks whether given object is an entity proxy or a proxy collection
+     * that is yet to be fetched from database.
+     * 
+     * @param o
+     *            the object
+     * @return true, if is uninitialized
+     */
+    public static boolean isUninitialized(Object o)
+    {
+        if (o instanceof KunderaProxy)
+        {
+            return ((KunderaProxy) o).getKunderaLazyInitializer().isUninitialized();
+        }
+        else if (o instanceof ProxyCollection)
+        {
+            return !((ProxyCollection) o).isInitialized();
+        }
+        return false;
+    }
+
+    /**
+     * Returns actual entity behind an entity proxy, initializing it if
+     * required. Any other object is returned as it is.
+     * 
+     * @param o
+     *            the object
+     * @return the implementation
+     */
+    public static Object getImplementation(Object o)
+    {
+        if (o instanceof KunderaProxy)
+        {
+            return ((KunderaProxy) o).getKunderaLazyInitializer().getImplementation();
+        }
+        return o;
+    }
+
+    /**
+     * Checks whether a proxy collection can stand for given relation field.
+     * Only fields declared as {@link Collection}, {@link List} or {@link Set}
+     * can hold one.
+     * 
+     * @param field
+     *            the relation field
+     * @return true, if proxy collection is supported
+     */
+    public static boolean isProxyCollectionSupported(Field field)
+    {
+        Class<?> type = field.getType();
+        return type.equals(Collection.class) || type.equals(List.class) || type.equals(Set.class);
+    }
+
+    /**
+     * Creates a proxy collection for given relation of <code>owner</code>.
+     * 
+     * @param owner
+     *            the owner entity
+     * @param ownerMetadata
+     *            the owner metadata
+     * @param relation
+     *            the relation
+     * @param pd
+     *            the persistence delegator
+     * @return the proxy collection
+     */
+    public static Collection<?> getProxyCollection(Object owner, EntityMetadata ownerMetadata, Relation relation,
+            PersistenceDelegator pd)
+    {
+        if (Set.class.equals(relation.getProperty().getType()))
+        {
+            return new ProxySet<Object>(owner, ownerMetadata, relation, pd);
+        }
+        return new ProxyList<Object>(owner, ownerMetadata, relation, pd);
+    }
+}
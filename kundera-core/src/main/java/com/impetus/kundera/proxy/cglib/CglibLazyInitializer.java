@@ -388,10 +388,9 @@ public final class CglibLazyInitializer implements LazyInitializer, InvocationHa
             {
                 log.debug("Proxy >> Initialization >> " + persistentClass.getName() + "_" + id);
 
-                // TODO: consider not calling em.find from here. Not sure 'why',
-                // but something
-                // doesn't feel right.
-                target = persistenceDelegator.find(persistentClass, id);
+                // Other proxies of same class pending in this persistence
+                // context are loaded along in a single batch.
+                target = persistenceDelegator.initializeProxy(persistentClass, id);
                 initialized = true;
             }
         }
@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.kundera.proxy.collection;
+
+import java.util.Collection;
+
+import com.impetus.kundera.metadata.model.Relation;
+
+/**
+ * Interface for collections of related entities that are fetched from
+ * database on first access (i.e. relations marked with
+ * {@link javax.persistence.FetchType#LAZY}).
+ * 
+ * @author impetus
+ */
+public interface ProxyCollection
+{
+
+    /**
+     * Returns entity holding this collection.
+     * 
+     * @return the owner
+     */
+    Object getOwner();
+
+    /**
+     * Returns relation this collection stands for.
+     * 
+     * @return the relation
+     */
+    Relation getRelation();
+
+    /**
+     * Checks whether related entities have been fetched.
+     * 
+     * @return true, if initialized
+     */
+    boolean isInitialized();
+
+    /**
+     * Fetches related entities if not already done and returns them.
+     * 
+     * @return the underlying collection
+     */
+    Collection<?> getDataCollection();
+}
@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.kundera.proxy.collection;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.impetus.kundera.metadata.model.EntityMetadata;
+import com.impetus.kundera.metadata.model.Relation;
+import com.impetus.kundera.persistence.PersistenceDelegator;
+import com.impetus.kundera.property.PropertyAccessorHelper;
+import com.impetus.kundera.proxy.LazyInitializationException;
+import com.impetus.kundera.utils.ObjectUtils;
+
+/**
+ * Fetches related entities for a {@link ProxyCollection} on first access.
+ * Once fetched, proxy collection held by owner entity is replaced with actual
+ * collection.
+ * 
+ * @author impetus
+ */
+final class ProxyCollectionInitializer
+{
+
+    /** The log. */
+    private static Log log = LogFactory.getLog(ProxyCollectionInitializer.class);
+
+    /** The owner. */
+    private final Object owner;
+
+    /** The owner metadata. */
+    private final EntityMetadata ownerMetadata;
+
+    /** The relation. */
+    private final Relation relation;
+
+    /** The persistence delegator. */
+    private final PersistenceDelegator persistenceDelegator;
+
+    /** The data collection. */
+    private Collection<?> dataCollection;
+
+    /**
+     * Instantiates a new proxy collection initializer.
+     * 
+     * @param owner
+     *            the owner
+     * @param ownerMetadata
+     *            the owner metadata
+     * @param relation
+     *            the relation
+     * @param persistenceDelegator
+     *            the persistence delegator
+     */
+    ProxyCollectionInitializer(Object owner, EntityMetadata ownerMetadata, Relation relation,
+            PersistenceDelegator persistenceDelegator)
+    {
+        this.owner = owner;
+        this.ownerMetadata = ownerMetadata;
+        this.relation = relation;
+        this.persistenceDelegator = persistenceDelegator;
+    }
+
+    /**
+     * Gets the owner.
+     * 
+     * @return the owner
+     */
+    Object getOwner()
+    {
+        return owner;
+    }
+
+    /**
+     * Gets the relation.
+     * 
+     * @return the relation
+     */
+    Relation getRelation()
+    {
+        return relation;
+    }
+
+    /**
+     * Checks if is initialized.
+     * 
+     * @return true, if is initialized
+     */
+    boolean isInitialized()
+    {
+        return dataCollection != null;
+    }
+
+    /**
+     * Fetches related entities if not already done.
+     * 
+     * @return the data collection
+     */
+    synchronized Collection<?> getDataCollection()
+    {
+        if (dataCollection == null)
+        {
+            if (persistenceDelegator == null || !persistenceDelegator.isOpen())
+            {
+                throw new LazyInitializationException("could not initialize collection "
+                        + ownerMetadata.getEntityClazz().getName() + "." + relation.getProperty().getName()
+                        + " - the owning Session was closed");
+            }
+
+            log.debug("Proxy collection >> Initialization >> " + ownerMetadata.getEntityClazz().getName() + "."
+                    + relation.getProperty().getName());
+
+            Field property = relation.getProperty();
+            PropertyAccessorHelper.set(owner, property, (Object) null);
+            persistenceDelegator.getReader(persistenceDelegator.getClient(ownerMetadata)).loadRelation(owner,
+                    ownerMetadata, relation, persistenceDelegator);
+
+            Object value = PropertyAccessorHelper.getObject(owner, property);
+            if (!(value instanceof Collection) || value instanceof ProxyCollection)
+            {
+                value = ObjectUtils.getFieldInstance(new ArrayList(), property);
+                PropertyAccessorHelper.set(owner, property, value);
+            }
+            dataCollection = (Collection<?>) value;
+        }
+        return dataCollection;
+    }
+}
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.kundera.proxy.collection;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.List;
+
+import com.impetus.kundera.metadata.model.EntityMetadata;
+import com.impetus.kundera.metadata.model.Relation;
+import com.impetus.kundera.persistence.PersistenceDelegator;
+
+/**
+ * {@link List} of related entities, fetched from database on first access.
+ * 
+ * @author impetus
+ */
+public class ProxyList<E> extends AbstractList<E> implements ProxyCollection
+{
+
+    /** The initializer. */
+    private final ProxyCollectionInitializer initializer;
+
+    /**
+     * Instantiates a new proxy list.
+     * 
+     * @param owner
+     *            the owner
+     * @param ownerMetadata
+     *            the owner metadata
+     * @param relation
+     *            the relation
+     * @param persistenceDelegator
+     *            the persistence delegator
+     */
+    public ProxyList(Object owner, EntityMetadata ownerMetadata, Relation relation,
+            PersistenceDelegator persistenceDelegator)
+    {
+        this.initializer = new ProxyCollectionInitializer(owner, ownerMetadata, relation, persistenceDelegator);
+    }
+
+    @Override
+    public Object getOwner()
+    {
+        return initializer.getOwner();
+    }
+
+    @Override
+    public Relation getRelation()
+    {
+        return initializer.getRelation();
+    }
+
+    @Override
+    public boolean isInitialized()
+    {
+        return initializer.isInitialized();
+    }
+
+    @Override
+    public Collection<?> getDataCollection()
+    {
+        return initializer.getDataCollection();
+    }
+
+    /**
+     * Returns fetched entities as list.
+     * 
+     * @return the list
+     */
+    @SuppressWarnings("unchecked")
+    private List<E> getList()
+    {
+        return (List<E>) getDataCollection();
+    }
+
+    @Override
+    public E get(int index)
+    {
+        return getList().get(index);
+    }
+
+    @Override
+    public int size()
+    {
+        return getList().size();
+    }
+
+    @Override
+    public E set(int index, E element)
+    {
+        return getList().set(index, element);
+    }
+
+    @Override
+    public void add(int index, E element)
+    {
+        getList().add(index, element);
+    }
+
+    @Override
+    public E remove(int index)
+    {
+        return getList().remove(index);
+    }
+}
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.kundera.proxy.collection;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Set;
+
+import com.impetus.kundera.metadata.model.EntityMetadata;
+import com.impetus.kundera.metadata.model.Relation;
+import com.impetus.kundera.persistence.PersistenceDelegator;
+
+/**
+ * {@link Set} of related entities, fetched from database on first access.
+ * 
+ * @author impetus
+ */
+public class ProxySet<E> extends AbstractSet<E> implements ProxyCollection
+{
+
+    /** The initializer. */
+    private final ProxyCollectionInitializer initializer;
+
+    /**
+     * Instantiates a new proxy set.
+     * 
+     * @param owner
+     *            the owner
+     * @param ownerMetadata
+     *            the owner metadata
+     * @param relation
+     *            the relation
+     * @param persistenceDelegator
+     *            the persistence delegator
+     */
+    public ProxySet(Object owner, EntityMetadata ownerMetadata, Relation relation,
+            PersistenceDelegator persistenceDelegator)
+    {
+        this.initializer = new ProxyCollectionInitializer(owner, ownerMetadata, relation, persistenceDelegator);
+    }
+
+    @Override
+    public Object getOwner()
+    {
+        return initializer.getOwner();
+    }
+
+    @Override
+    public Relation getRelation()
+    {
+        return initializer.getRelation();
+    }
+
+    @Override
+    public boolean isInitialized()
+    {
+        return initializer.isInitialized();
+    }
+
+    @Override
+    public Collection<?> getDataCollection()
+    {
+        return initializer.getDataCollection();
+    }
+
+    /**
+     * Returns fetched entities as set.
+     * 
+     * @return the set
+     */
+    @SuppressWarnings("unchecked")
+    private Set<E> getSet()
+    {
+        return (Set<E>) getDataCollection();
+    }
+
+    @Override
+    public Iterator<E> iterator()
+    {
+        return getSet().iterator();
+    }
+
+    @Override
+    public int size()
+    {
+        return getSet().size();
+    }
+
+    @Override
+    public boolean add(E e)
+    {
+        return getSet().add(e);
+    }
+}
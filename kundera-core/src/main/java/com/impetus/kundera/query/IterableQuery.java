@@ -0,0 +1,42 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.kundera.query;
+
+import java.util.Iterator;
+
+import javax.persistence.Query;
+
+/**
+ * Query whose results can be iterated over as they are read, rather than
+ * collected into a list first. Obtained by
+ * <code>query.unwrap(IterableQuery.class)</code>.
+ * 
+ * @author impetus
+ */
+public interface IterableQuery extends Query
+{
+
+    /**
+     * Returns an iterator over results of this query, from first result
+     * position up to max results. Clients able to read results lazily fetch
+     * them page by page as iteration proceeds, others read them all on call.
+     * 
+     * @param <E>
+     *            result type
+     * @return iterator over results
+     */
+    <E> Iterator<E> iterate();
+}
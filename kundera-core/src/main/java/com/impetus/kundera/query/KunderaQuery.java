@@ -19,6 +19,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -757,6 +758,64 @@ public class KunderaQuery
 
     }
 
+    /**
+     * Returns a copy of this parsed query, for a new execution. Parsing
+     * results are shared, while filter and update clauses (which hold bound
+     * parameter values) are copied.
+     * 
+     * @return the kundera query
+     */
+    final KunderaQuery copy()
+    {
+        KunderaQuery copy = new KunderaQuery();
+        copy.result = result;
+        copy.from = from;
+        copy.filter = filter;
+        copy.ordering = ordering;
+        copy.entityName = entityName;
+        copy.entityAlias = entityAlias;
+        copy.entityClass = entityClass;
+        copy.sortOrders = sortOrders;
+        copy.persistenceUnit = persistenceUnit;
+        copy.isDeleteUpdate = isDeleteUpdate;
+
+        Map<FilterClause, FilterClause> copiedClauses = new IdentityHashMap<FilterClause, FilterClause>();
+        for (Object o : filtersQueue)
+        {
+            if (o instanceof FilterClause)
+            {
+                FilterClause clause = (FilterClause) o;
+                FilterClause copiedClause = copy.new FilterClause(clause.getProperty(), clause.getCondition(),
+                        clause.getValue());
+                copiedClauses.put(clause, copiedClause);
+                copy.filtersQueue.add(copiedClause);
+            }
+            else
+            {
+                copy.filtersQueue.add(o);
+            }
+        }
+
+        for (UpdateClause clause : updateClauseQueue)
+        {
+            copy.updateClauseQueue.add(copy.new UpdateClause(clause.getProperty(), clause.getValue()));
+        }
+
+        if (typedParameter != null)
+        {
+            copy.typedParameter = copy.new TypedParameter(typedParameter.getType());
+            copy.typedParameter.jpaParameters.addAll(typedParameter.jpaParameters);
+            if (typedParameter.getParameters() != null)
+            {
+                for (Map.Entry<String, FilterClause> parameter : typedParameter.getParameters().entrySet())
+                {
+                    copy.typedParameter.addParameters(parameter.getKey(), copiedClauses.get(parameter.getValue()));
+                }
+            }
+        }
+        return copy;
+    }
+
     /* @see java.lang.Object#clone() */
     /*
      * (non-Javadoc)
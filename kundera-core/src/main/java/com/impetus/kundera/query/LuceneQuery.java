@@ -87,28 +87,40 @@ public class LuceneQuery extends QueryImpl implements Query
     {
         log.debug("JPA Query: " + query);
 
-        // get luence query
-        String q = luceneQuery;
-        if (null == q)
-        {
-            q = getLuceneQueryFromJPAQuery();
-        }
-
-        log.debug("Lucene Query: " + q);
-
         EntityMetadata m = kunderaQuery.getEntityMetadata();
         Client client = persistenceDelegeator.getClient(m);
-        Map<String, String> searchFilter = client.getIndexManager().search(q, -1, maxResult);
 
-        if (kunderaQuery.isAliasOnly())
+        // get luence query, parsed only if given as text
+        Map<String, String> searchFilter;
+        if (null == luceneQuery)
         {
-            String[] primaryKeys = searchFilter.values().toArray(new String[] {});
-            return persistenceDelegeator.find(m.getEntityClazz(), primaryKeys);
+            org.apache.lucene.search.Query q = getLuceneQueryFromJPAQuery();
+            log.debug("Lucene Query: " + q);
+            searchFilter = client.getIndexManager().search(q, -1, maxResult);
         }
         else
         {
-            return persistenceDelegeator.find(m.getEntityClazz(), searchFilter);
+            log.debug("Lucene Query: " + luceneQuery);
+            searchFilter = client.getIndexManager().search(luceneQuery, -1, maxResult);
+        }
 
+        Map<String, Object> previousHints = applyHints(client);
+        try
+        {
+            if (kunderaQuery.isAliasOnly())
+            {
+                String[] primaryKeys = searchFilter.values().toArray(new String[] {});
+                return persistenceDelegeator.find(m.getEntityClazz(), primaryKeys);
+            }
+            else
+            {
+                return persistenceDelegeator.find(m.getEntityClazz(), searchFilter);
+
+            }
+        }
+        finally
+        {
+            restoreHints(client, previousHints);
         }
 
     }
@@ -0,0 +1,408 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.kundera.query;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.NumericRangeQuery;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TermRangeQuery;
+import org.apache.lucene.search.WildcardQuery;
+import org.apache.lucene.util.Version;
+
+import com.impetus.kundera.index.DocumentIndexer;
+import com.impetus.kundera.metadata.model.Column;
+import com.impetus.kundera.metadata.model.EmbeddedColumn;
+import com.impetus.kundera.metadata.model.EntityMetadata;
+import com.impetus.kundera.metadata.model.PropertyIndex;
+import com.impetus.kundera.property.PropertyAccessException;
+import com.impetus.kundera.property.PropertyAccessorFactory;
+import com.impetus.kundera.query.KunderaQuery.FilterClause;
+
+/**
+ * Compiles filter clauses of a JPA query into a lucene {@link Query} matching
+ * documents written by {@link DocumentIndexer}. Numeric and date properties
+ * are searched by {@link NumericRangeQuery}, others by terms analyzed the way
+ * they were indexed. AND binds tighter than OR.
+ *
+ * @author impetus
+ */
+final class LuceneQueryBuilder
+{
+
+    /** Analyzer of indexed text, as used by indexer. */
+    private static final Analyzer ANALYZER = new StandardAnalyzer(Version.LUCENE_34);
+
+    /**
+     * Instantiates a new lucene query builder.
+     */
+    private LuceneQueryBuilder()
+    {
+    }
+
+    /**
+     * Builds query matching documents of entity of given query that match its
+     * filter clauses.
+     *
+     * @param kunderaQuery
+     *            the kundera query
+     * @return the lucene query
+     */
+    static Query build(KunderaQuery kunderaQuery)
+    {
+        return build(kunderaQuery.getEntityMetadata(), kunderaQuery.getFilterClauseQueue());
+    }
+
+    /**
+     * Builds query matching documents of an entity that match given filter
+     * clauses.
+     *
+     * @param metadata
+     *            the entity metadata
+     * @param filterClauses
+     *            filter clauses and AND/OR operators between them
+     * @return the lucene query
+     */
+    static Query build(EntityMetadata metadata, Queue<?> filterClauses)
+    {
+        Map<String, Field> fields = getIndexedFields(metadata);
+
+        List<Query> groups = new ArrayList<Query>();
+        BooleanQuery group = new BooleanQuery();
+        for (Object o : filterClauses)
+        {
+            if (o instanceof FilterClause)
+            {
+                FilterClause clause = (FilterClause) o;
+                group.add(getClauseQuery(clause, fields.get(clause.getProperty())), Occur.MUST);
+            }
+            else if ("OR".equalsIgnoreCase(o.toString()))
+            {
+                groups.add(group);
+                group = new BooleanQuery();
+            }
+            else if (!"AND".equalsIgnoreCase(o.toString()))
+            {
+                throw new QueryHandlerException("unsupported clause " + o + " for lucene");
+            }
+        }
+        groups.add(group);
+
+        BooleanQuery query = new BooleanQuery();
+        query.add(getTextQuery(DocumentIndexer.ENTITY_CLASS_FIELD, metadata.getEntityClazz().getCanonicalName()
+                .toLowerCase()), Occur.MUST);
+        if (groups.size() == 1)
+        {
+            if (!group.clauses().isEmpty())
+            {
+                query.add(group, Occur.MUST);
+            }
+        }
+        else
+        {
+            BooleanQuery anyGroup = new BooleanQuery();
+            for (Query g : groups)
+            {
+                anyGroup.add(g, Occur.SHOULD);
+            }
+            query.add(anyGroup, Occur.MUST);
+        }
+        return query;
+    }
+
+    /**
+     * Builds query of a filter clause.
+     *
+     * @param clause
+     *            the filter clause
+     * @param field
+     *            the property filtered, null if unknown
+     * @return the query
+     */
+    private static Query getClauseQuery(FilterClause clause, Field field)
+    {
+        String name = clause.getProperty();
+        String condition = clause.getCondition();
+        String value = unquote(clause.getValue());
+
+        if (field != null && DocumentIndexer.isNumericType(field.getType()))
+        {
+            Number number = getNumericValue(field, value);
+            if (condition.equals("="))
+            {
+                return getRangeQuery(name, number, number, true, true);
+            }
+            else if (condition.equals(">"))
+            {
+                return getRangeQuery(name, number, null, false, true);
+            }
+            else if (condition.equals(">="))
+            {
+                return getRangeQuery(name, number, null, true, true);
+            }
+            else if (condition.equals("<"))
+            {
+                return getRangeQuery(name, null, number, true, false);
+            }
+            else if (condition.equals("<="))
+            {
+                return getRangeQuery(name, null, number, true, true);
+            }
+            throw new QueryHandlerException(condition + " is not supported on numeric property " + field.getName());
+        }
+
+        String lowerCased = value.toLowerCase(Locale.ENGLISH);
+        if (condition.equals("="))
+        {
+            return getTextQuery(name, value);
+        }
+        else if (condition.equalsIgnoreCase("LIKE"))
+        {
+            return getLikeQuery(name, value);
+        }
+        else if (condition.equals(">"))
+        {
+            return new TermRangeQuery(name, lowerCased, null, false, true);
+        }
+        else if (condition.equals(">="))
+        {
+            return new TermRangeQuery(name, lowerCased, null, true, true);
+        }
+        else if (condition.equals("<"))
+        {
+            return new TermRangeQuery(name, null, lowerCased, true, false);
+        }
+        else if (condition.equals("<="))
+        {
+            return new TermRangeQuery(name, null, lowerCased, true, true);
+        }
+        throw new QueryHandlerException(condition + " comparison operator not supported currently for lucene");
+    }
+
+    /**
+     * Builds numeric range query, numbers being Long or Double as returned by
+     * {@link DocumentIndexer#getNumericValue(Object)}.
+     *
+     * @param name
+     *            the field name
+     * @param min
+     *            lower bound, null for none
+     * @param max
+     *            upper bound, null for none
+     * @param minInclusive
+     *            whether lower bound matches
+     * @param maxInclusive
+     *            whether upper bound matches
+     * @return the query
+     */
+    private static Query getRangeQuery(String name, Number min, Number max, boolean minInclusive,
+            boolean maxInclusive)
+    {
+        Number bound = min != null ? min : max;
+        if (bound instanceof Double)
+        {
+            return NumericRangeQuery.newDoubleRange(name, (Double) min, (Double) max, minInclusive, maxInclusive);
+        }
+        return NumericRangeQuery.newLongRange(name, (Long) min, (Long) max, minInclusive, maxInclusive);
+    }
+
+    /**
+     * Parses value of a numeric property given in a query.
+     *
+     * @param field
+     *            the property
+     * @param value
+     *            the value
+     * @return the value as indexed
+     */
+    private static Number getNumericValue(Field field, String value)
+    {
+        try
+        {
+            Object typed = PropertyAccessorFactory.getPropertyAccessor(field).fromString(field.getType(), value);
+            Number number = DocumentIndexer.getNumericValue(typed);
+            if (number == null)
+            {
+                throw new QueryHandlerException("Invalid value " + value + " for " + field.getName());
+            }
+            return number;
+        }
+        catch (PropertyAccessException e)
+        {
+            throw new QueryHandlerException("Invalid value " + value + " for " + field.getName(), e);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new QueryHandlerException("Invalid value " + value + " for " + field.getName(), e);
+        }
+    }
+
+    /**
+     * Builds query matching text as indexed, i.e. all of its tokens in
+     * sequence.
+     *
+     * @param name
+     *            the field name
+     * @param text
+     *            the text
+     * @return the query
+     */
+    private static Query getTextQuery(String name, String text)
+    {
+        List<String> tokens = analyze(name, text);
+        if (tokens.size() == 1)
+        {
+            return new TermQuery(new Term(name, tokens.get(0)));
+        }
+        PhraseQuery phrase = new PhraseQuery();
+        for (String token : tokens)
+        {
+            phrase.add(new Term(name, token));
+        }
+        return phrase;
+    }
+
+    /**
+     * Builds query of a LIKE clause. <code>%</code> and <code>_</code> match
+     * any sequence of characters and any single character of a token, and a
+     * value without wildcards matches tokens starting with it.
+     *
+     * @param name
+     *            the field name
+     * @param value
+     *            the pattern
+     * @return the query
+     */
+    private static Query getLikeQuery(String name, String value)
+    {
+        if (value.indexOf('%') < 0 && value.indexOf('_') < 0)
+        {
+            List<String> tokens = analyze(name, value);
+            Query last = new PrefixQuery(new Term(name, tokens.get(tokens.size() - 1)));
+            if (tokens.size() == 1)
+            {
+                return last;
+            }
+            // leading tokens match as such, last one as prefix.
+            BooleanQuery query = new BooleanQuery();
+            for (int i = 0; i < tokens.size() - 1; i++)
+            {
+                query.add(new TermQuery(new Term(name, tokens.get(i))), Occur.MUST);
+            }
+            query.add(last, Occur.MUST);
+            return query;
+        }
+        String pattern = value.toLowerCase(Locale.ENGLISH).replace('%', '*').replace('_', '?');
+        return new WildcardQuery(new Term(name, pattern));
+    }
+
+    /**
+     * Splits text into tokens the way indexer does.
+     *
+     * @param name
+     *            the field name
+     * @param text
+     *            the text
+     * @return the tokens
+     */
+    private static List<String> analyze(String name, String text)
+    {
+        List<String> tokens = new ArrayList<String>();
+        try
+        {
+            TokenStream stream = ANALYZER.reusableTokenStream(name, new StringReader(text));
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken())
+            {
+                tokens.add(term.toString());
+            }
+            stream.end();
+            stream.close();
+        }
+        catch (IOException e)
+        {
+            throw new QueryHandlerException("Error while analyzing " + text, e);
+        }
+        if (tokens.isEmpty())
+        {
+            // e.g. only stop words, matched as given.
+            tokens.add(text.toLowerCase(Locale.ENGLISH));
+        }
+        return tokens;
+    }
+
+    /**
+     * Strips single quotes enclosing a literal value.
+     *
+     * @param value
+     *            the value
+     * @return the unquoted value
+     */
+    private static String unquote(String value)
+    {
+        String trimmed = value.trim();
+        if (trimmed.length() >= 2 && trimmed.startsWith("'") && trimmed.endsWith("'"))
+        {
+            return trimmed.substring(1, trimmed.length() - 1);
+        }
+        return trimmed;
+    }
+
+    /**
+     * Maps names of index fields of an entity to their properties.
+     *
+     * @param metadata
+     *            the entity metadata
+     * @return properties by index field name
+     */
+    private static Map<String, Field> getIndexedFields(EntityMetadata metadata)
+    {
+        Map<String, Field> fields = new HashMap<String, Field>();
+        String indexName = metadata.getIndexName();
+        for (PropertyIndex index : metadata.getIndexProperties())
+        {
+            fields.put(DocumentIndexer.getCannonicalPropertyName(indexName, index.getName()), index.getProperty());
+        }
+        for (EmbeddedColumn embeddedColumn : metadata.getEmbeddedColumnsAsList())
+        {
+            for (Column column : embeddedColumn.getColumns())
+            {
+                fields.put(DocumentIndexer.getCannonicalPropertyName(indexName, column.getField().getName()),
+                        column.getField());
+            }
+        }
+        return fields;
+    }
+}
@@ -18,9 +18,11 @@ package com.impetus.kundera.query;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -39,7 +41,7 @@ import org.apache.commons.logging.LogFactory;
 import com.impetus.kundera.Constants;
 import com.impetus.kundera.client.Client;
 import com.impetus.kundera.client.EnhanceEntity;
-import com.impetus.kundera.index.DocumentIndexer;
+import com.impetus.kundera.client.HintsAware;
 import com.impetus.kundera.metadata.KunderaMetadataManager;
 import com.impetus.kundera.metadata.model.ApplicationMetadata;
 import com.impetus.kundera.metadata.model.Column;
@@ -56,7 +58,7 @@ import com.impetus.kundera.query.KunderaQuery.UpdateClause;
  * 
  * @author vivek.mishra
  */
-public abstract class QueryImpl implements Query
+public abstract class QueryImpl implements IterableQuery
 {
 
     /** The query. */
@@ -78,6 +80,23 @@ public abstract class QueryImpl implements Query
      */
     protected int maxResult = 100;
 
+    /**
+     * Position of first result to return.
+     */
+    protected int firstResult = 0;
+
+    /**
+     * Whether results read by current execution already start at first
+     * result position.
+     */
+    private boolean firstResultSkipped;
+
+    /**
+     * Hints applied to operations of this query, over those set on entity
+     * manager.
+     */
+    private Map<String, Object> hints = new HashMap<String, Object>();
+
     /**
      * Instantiates a new query impl.
      * 
@@ -129,7 +148,16 @@ public abstract class QueryImpl implements Query
     @Override
     public int executeUpdate()
     {
-        return onExecuteUpdate();
+        Client client = persistenceDelegeator.getClient(getEntityMetadata());
+        Map<String, Object> previousHints = applyHints(client);
+        try
+        {
+            return onExecuteUpdate();
+        }
+        finally
+        {
+            restoreHints(client, previousHints);
+        }
     }
 
     @Override
@@ -137,26 +165,76 @@ public abstract class QueryImpl implements Query
     {
         log.info("On getResultList() executing query: " + query);
         List results = null;
+        firstResultSkipped = false;
 
         EntityMetadata m = getEntityMetadata();
         Client client = persistenceDelegeator.getClient(m);
 
-        if (!m.isRelationViaJoinTable() && (m.getRelationNames() == null || (m.getRelationNames().isEmpty())))
+        Map<String, Object> previousHints = applyHints(client);
+        try
         {
-            results = populateEntities(m, client);
+            if (!m.isRelationViaJoinTable() && (m.getRelationNames() == null || (m.getRelationNames().isEmpty())))
+            {
+                results = populateEntities(m, client);
+            }
+            else
+            {
+                results = recursivelyPopulateEntities(m, client);
+            }
+
+            if (!firstResultSkipped)
+            {
+                results = skipFirstResults(results);
+            }
+
+            // If intended for delete/update.
+            if (kunderaQuery.isDeleteUpdate())
+            {
+                onDeleteOrUpdate(results);
+            }
         }
-        else
+        finally
         {
-            results = recursivelyPopulateEntities(m, client);
+            restoreHints(client, previousHints);
         }
+        return results != null && !results.isEmpty() ? results : null;
+
+    }
 
-        // If intended for delete/update.
-        if (kunderaQuery.isDeleteUpdate())
+    /**
+     * Applies hints of this query to client, if it is {@link HintsAware}.
+     * 
+     * @param client
+     *            the client
+     * @return hints client had before, null if unchanged
+     */
+    protected Map<String, Object> applyHints(Client client)
+    {
+        if (hints.isEmpty() || !(client instanceof HintsAware))
         {
-            onDeleteOrUpdate(results);
+            return null;
         }
-        return results != null && !results.isEmpty() ? results : null;
+        Map<String, Object> previousHints = new HashMap<String, Object>(((HintsAware) client).getHints());
+        Map<String, Object> queryHints = new HashMap<String, Object>(previousHints);
+        queryHints.putAll(hints);
+        ((HintsAware) client).setHints(queryHints);
+        return previousHints;
+    }
 
+    /**
+     * Restores hints client had before this query was executed.
+     * 
+     * @param client
+     *            the client
+     * @param previousHints
+     *            hints returned by {@link #applyHints(Client)}
+     */
+    protected void restoreHints(Client client, Map<String, Object> previousHints)
+    {
+        if (previousHints != null)
+        {
+            ((HintsAware) client).setHints(previousHints);
+        }
     }
 
     /**
@@ -180,31 +258,80 @@ public abstract class QueryImpl implements Query
         this.persistenceDelegeator = persistenceDelegeator;
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.impetus.kundera.query.IterableQuery#iterate()
+     */
+    @Override
+    public <E> Iterator<E> iterate()
+    {
+        List<E> results = (List<E>) getResultList();
+        return results != null ? results.iterator() : Collections.<E> emptyList().iterator();
+    }
+
+    /**
+     * Marks results being read as starting at first result position, as data
+     * store has skipped results before it while reading (by key cursor, say)
+     * rather than returning them. Results are then not skipped again.
+     */
+    protected void setFirstResultSkipped()
+    {
+        firstResultSkipped = true;
+    }
+
+    /**
+     * Returns number of results to be read from data store, so that results
+     * from first result position up to max results are available.
+     * 
+     * @return fetch size
+     */
+    protected int getFetchSize()
+    {
+        long fetchSize = (long) firstResult + maxResult;
+        return fetchSize > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) fetchSize;
+    }
+
+    /**
+     * Drops results before first result position.
+     * 
+     * @param results
+     *            results read from data store
+     * @return results starting at first result position
+     */
+    private List skipFirstResults(List results)
+    {
+        if (firstResult == 0 || results == null)
+        {
+            return results;
+        }
+        if (firstResult >= results.size())
+        {
+            return new ArrayList();
+        }
+        return new ArrayList(results.subList(firstResult, results.size()));
+    }
+
     protected List<Object> setRelationEntities(List enhanceEntities, Client client, EntityMetadata m)
     {
         // Enhance entities can contain or may not contain relation.
         // if it contain a relation means it is a child
         // if it does not then it means it is a parent.
         List<Object> result = null;
-        if (enhanceEntities != null)
+        if (enhanceEntities != null && !enhanceEntities.isEmpty())
         {
+            List<EnhanceEntity> ees = new ArrayList<EnhanceEntity>(enhanceEntities.size());
             for (Object e : enhanceEntities)
             {
-                if (result == null)
-                {
-                    result = new ArrayList<Object>(enhanceEntities.size());
-                }
-
                 if (!(e instanceof EnhanceEntity))
                 {
                     e = new EnhanceEntity(e, PropertyAccessorHelper.getId(e, m), null);
                 }
-
-                EnhanceEntity ee = (EnhanceEntity) e;
-
-                result.add(getReader().recursivelyFindEntities(ee.getEntity(), ee.getRelations(), m,
-                        persistenceDelegeator));
+                ees.add((EnhanceEntity) e);
             }
+
+            // Associations of all entities are fetched together.
+            result = getReader().recursivelyFindEntities(ees, m, persistenceDelegeator);
         }
 
         return result;
@@ -223,9 +350,9 @@ public abstract class QueryImpl implements Query
      */
     protected List<Object> populateUsingLucene(EntityMetadata m, Client client, List<Object> result)
     {
-        String luceneQ = getLuceneQueryFromJPAQuery();
+        org.apache.lucene.search.Query luceneQ = getLuceneQueryFromJPAQuery();
         Map<String, String> searchFilter = client.getIndexManager().search(luceneQ, Constants.INVALID,
-                Constants.INVALID);
+                getFetchSize());
         if (kunderaQuery.isAliasOnly())
         {
             String[] primaryKeys = searchFilter.values().toArray(new String[] {});
@@ -263,81 +390,14 @@ public abstract class QueryImpl implements Query
     }
 
     /**
-     * Gets the lucene query from jpa query.
+     * Gets the lucene query from jpa query, built directly from filter clauses
+     * so that numeric and date properties are searched by numeric range.
      * 
      * @return the lucene query from jpa query
      */
-    protected String getLuceneQueryFromJPAQuery()
+    protected org.apache.lucene.search.Query getLuceneQueryFromJPAQuery()
     {
-        StringBuffer sb = new StringBuffer();
-
-        for (Object object : kunderaQuery.getFilterClauseQueue())
-        {
-            if (object instanceof FilterClause)
-            {
-                boolean appended = false;
-                FilterClause filter = (FilterClause) object;
-                sb.append("+");
-                // property
-                sb.append(filter.getProperty());
-
-                // joiner
-                String appender = "";
-                if (filter.getCondition().equals("="))
-                {
-                    sb.append(":");
-                }
-                else if (filter.getCondition().equalsIgnoreCase("like"))
-                {
-                    sb.append(":");
-                    appender = "*";
-                }
-                else if (filter.getCondition().equalsIgnoreCase(">"))
-                {
-                    sb.append(appendRange(filter.getValue(), false, true));
-                    appended = true;
-                }
-                else if (filter.getCondition().equalsIgnoreCase(">="))
-                {
-                    sb.append(appendRange(filter.getValue(), true, true));
-                    appended = true;
-                }
-                else if (filter.getCondition().equalsIgnoreCase("<"))
-                {
-                    sb.append(appendRange(filter.getValue(), false, false));
-                    appended = true;
-                }
-                else if (filter.getCondition().equalsIgnoreCase("<="))
-                {
-                    sb.append(appendRange(filter.getValue(), true, false));
-                    appended = true;
-                }
-
-                // value. if not already appended.
-                if (!appended)
-                {
-                    sb.append(filter.getValue());
-                    sb.append(appender);
-                }
-            }
-            else
-            {
-                sb.append(" " + object + " ");
-            }
-        }
-
-        // add Entity_CLASS field too.
-        if (sb.length() > 0)
-        {
-            sb.append(" AND ");
-        }
-        sb.append("+");
-        sb.append(DocumentIndexer.ENTITY_CLASS_FIELD);
-        sb.append(":");
-        // sb.append(getEntityClass().getName());
-        sb.append(kunderaQuery.getEntityClass().getCanonicalName().toLowerCase());
-
-        return sb.toString();
+        return LuceneQueryBuilder.build(kunderaQuery);
     }
 
     /**
@@ -395,7 +455,7 @@ public abstract class QueryImpl implements Query
      */
     protected Set<String> fetchDataFromLucene(Client client)
     {
-        String luceneQuery = getLuceneQueryFromJPAQuery();
+        org.apache.lucene.search.Query luceneQuery = getLuceneQueryFromJPAQuery();
         // use lucene to query and get Pk's only.
         // go to client and get relation with values.!
         // populate EnhanceEntity
@@ -423,31 +483,6 @@ public abstract class QueryImpl implements Query
 
     }
 
-    /**
-     * Append range.
-     * 
-     * @param value
-     *            the value
-     * @param inclusive
-     *            the inclusive
-     * @param isGreaterThan
-     *            the is greater than
-     * @return the string
-     */
-    private String appendRange(String value, boolean inclusive, boolean isGreaterThan)
-    {
-        String appender = " ";
-        StringBuilder sb = new StringBuilder();
-        sb.append(":");
-        sb.append(inclusive ? "[" : "{");
-        sb.append(isGreaterThan ? value : "*");
-        sb.append(appender);
-        sb.append("TO");
-        sb.append(appender);
-        sb.append(isGreaterThan ? "null" : value);
-        sb.append(inclusive ? "]" : "}");
-        return sb.toString();
-    }
 
     /**
      * Populate entities, Method to populate data in case no relation exist!.
@@ -558,7 +593,12 @@ public abstract class QueryImpl implements Query
     @Override
     public Query setFirstResult(int startPosition)
     {
-        throw new NotImplementedException("TODO");
+        if (startPosition < 0)
+        {
+            throw new IllegalArgumentException("First result position can not be negative: " + startPosition);
+        }
+        this.firstResult = startPosition;
+        return this;
     }
 
     /*
@@ -586,7 +626,15 @@ public abstract class QueryImpl implements Query
     @Override
     public Query setHint(String hintName, Object value)
     {
-        throw new NotImplementedException("TODO");
+        if (value != null)
+        {
+            hints.put(hintName, value);
+        }
+        else
+        {
+            hints.remove(hintName);
+        }
+        return this;
     }
 
     /* @see javax.persistence.Query#setMaxResults(int) */
@@ -598,6 +646,10 @@ public abstract class QueryImpl implements Query
     @Override
     public Query setMaxResults(int maxResult)
     {
+        if (maxResult < 0)
+        {
+            throw new IllegalArgumentException("Max results can not be negative: " + maxResult);
+        }
         this.maxResult = maxResult;
         return this;
     }
@@ -716,7 +768,7 @@ public abstract class QueryImpl implements Query
     @Override
     public int getFirstResult()
     {
-        throw new NotImplementedException("TODO");
+        return firstResult;
     }
 
     /*
@@ -727,7 +779,7 @@ public abstract class QueryImpl implements Query
     @Override
     public Map<String, Object> getHints()
     {
-        throw new NotImplementedException("TODO");
+        return Collections.unmodifiableMap(hints);
     }
 
     /*
@@ -0,0 +1,263 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.kundera.query;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.impetus.kundera.metadata.model.EntityMetadata;
+
+/**
+ * Bounded, thread safe cache of parsed and validated queries. Plans are kept
+ * in least recently used order and the least recently used plan is dropped
+ * once cache is full.
+ * 
+ * @author impetus
+ */
+public final class QueryPlanCache
+{
+
+    /** Default maximum number of cached plans. */
+    public static final int DEFAULT_MAX_SIZE = 512;
+
+    /** The max size. */
+    private final int maxSize;
+
+    /** Cached plans, in access order. */
+    private final Map<String, QueryPlan> plans;
+
+    /** The hits. */
+    private final AtomicLong hits = new AtomicLong();
+
+    /** The misses. */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Instantiates a new query plan cache.
+     * 
+     * @param maxSize
+     *            maximum number of cached plans
+     */
+    public QueryPlanCache(final int maxSize)
+    {
+        this.maxSize = maxSize;
+        this.plans = new LinkedHashMap<String, QueryPlan>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, QueryPlan> eldest)
+            {
+                return size() > QueryPlanCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns cached plan for given query, or null if there is none.
+     * 
+     * @param query
+     *            JPA query or name of a named query
+     * @return the query plan
+     */
+    QueryPlan get(String query)
+    {
+        QueryPlan plan;
+        synchronized (plans)
+        {
+            plan = plans.get(query);
+        }
+        if (plan != null)
+        {
+            hits.incrementAndGet();
+        }
+        else
+        {
+            misses.incrementAndGet();
+        }
+        return plan;
+    }
+
+    /**
+     * Caches plan for given query.
+     * 
+     * @param query
+     *            JPA query or name of a named query
+     * @param plan
+     *            the plan
+     */
+    void put(String query, QueryPlan plan)
+    {
+        synchronized (plans)
+        {
+            plans.put(query, plan);
+        }
+    }
+
+    /**
+     * Removes all plans for given persistence unit.
+     * 
+     * @param persistenceUnit
+     *            the persistence unit
+     */
+    public void evict(String persistenceUnit)
+    {
+        synchronized (plans)
+        {
+            Iterator<QueryPlan> iter = plans.values().iterator();
+            while (iter.hasNext())
+            {
+                if (iter.next().getPersistenceUnit().equals(persistenceUnit))
+                {
+                    iter.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all plans and resets hit/miss counts.
+     */
+    public void clear()
+    {
+        synchronized (plans)
+        {
+            plans.clear();
+        }
+        hits.set(0);
+        misses.set(0);
+    }
+
+    /**
+     * Gets number of cached plans.
+     * 
+     * @return the size
+     */
+    public int size()
+    {
+        synchronized (plans)
+        {
+            return plans.size();
+        }
+    }
+
+    /**
+     * Gets the max size.
+     * 
+     * @return the max size
+     */
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Gets number of lookups served from cache.
+     * 
+     * @return the hit count
+     */
+    public long getHitCount()
+    {
+        return hits.get();
+    }
+
+    /**
+     * Gets number of lookups that required parsing.
+     * 
+     * @return the miss count
+     */
+    public long getMissCount()
+    {
+        return misses.get();
+    }
+
+    /**
+     * Gets ratio of lookups served from cache.
+     * 
+     * @return the hit ratio, 0 if there has been no lookup yet
+     */
+    public double getHitRatio()
+    {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * Parsed and validated form of a query. Parsed {@link KunderaQuery} is
+     * never handed out, each execution gets its own copy to bind parameters
+     * to.
+     */
+    static final class QueryPlan
+    {
+
+        /** Parsed query, null for native queries. */
+        private final KunderaQuery kunderaQuery;
+
+        /** The persistence unit. */
+        private final String persistenceUnit;
+
+        /** The entity metadata. */
+        private final EntityMetadata entityMetadata;
+
+        /**
+         * Instantiates a new query plan.
+         * 
+         * @param kunderaQuery
+         *            the kundera query
+         * @param persistenceUnit
+         *            the persistence unit
+         * @param entityMetadata
+         *            the entity metadata
+         */
+        QueryPlan(KunderaQuery kunderaQuery, String persistenceUnit, EntityMetadata entityMetadata)
+        {
+            this.kunderaQuery = kunderaQuery;
+            this.persistenceUnit = persistenceUnit;
+            this.entityMetadata = entityMetadata;
+        }
+
+        /**
+         * Returns a fresh copy of parsed query, ready for parameter binding.
+         * 
+         * @return the kundera query
+         */
+        KunderaQuery newKunderaQuery()
+        {
+            return kunderaQuery != null ? kunderaQuery.copy() : new KunderaQuery();
+        }
+
+        /**
+         * Gets the persistence unit.
+         * 
+         * @return the persistence unit
+         */
+        String getPersistenceUnit()
+        {
+            return persistenceUnit;
+        }
+
+        /**
+         * Gets the entity metadata.
+         * 
+         * @return the entity metadata
+         */
+        EntityMetadata getEntityMetadata()
+        {
+            return entityMetadata;
+        }
+    }
+}
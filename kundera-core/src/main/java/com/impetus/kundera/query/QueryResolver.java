@@ -17,6 +17,8 @@ package com.impetus.kundera.query;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.persistence.Query;
 
@@ -27,8 +29,8 @@ import com.impetus.kundera.metadata.KunderaMetadataManager;
 import com.impetus.kundera.metadata.model.ApplicationMetadata;
 import com.impetus.kundera.metadata.model.EntityMetadata;
 import com.impetus.kundera.metadata.model.KunderaMetadata;
-import com.impetus.kundera.metadata.model.PersistenceUnitMetadata;
 import com.impetus.kundera.persistence.PersistenceDelegator;
+import com.impetus.kundera.query.QueryPlanCache.QueryPlan;
 
 /**
  * The Class QueryResolver.
@@ -42,9 +44,25 @@ public class QueryResolver
     /** The log. */
     private static Log log = LogFactory.getLog(QueryResolver.class);
 
+    /** Parsed queries, shared by all entity managers. */
+    private static final QueryPlanCache planCache = new QueryPlanCache(QueryPlanCache.DEFAULT_MAX_SIZE);
+
+    /** Constructors of query implementors, per implementor class. */
+    private static final Map<Class<?>, Constructor<?>> constructors = new ConcurrentHashMap<Class<?>, Constructor<?>>();
+
     /** The kundera query. */
     KunderaQuery kunderaQuery;
 
+    /**
+     * Returns cache of parsed queries, along with its hit/miss statistics.
+     * 
+     * @return the query plan cache
+     */
+    public static QueryPlanCache getQueryPlanCache()
+    {
+        return planCache;
+    }
+
     /**
      * Gets the query implementation.
      * 
@@ -58,33 +76,16 @@ public class QueryResolver
      */
     public Query getQueryImplementation(String jpaQuery, PersistenceDelegator persistenceDelegator)
     {
-        kunderaQuery = new KunderaQuery();
-        ApplicationMetadata appMetadata = KunderaMetadata.INSTANCE.getApplicationMetadata();
-        String mappedQuery = appMetadata.getQuery(jpaQuery);
-        boolean isNative = appMetadata.isNative(jpaQuery);
-        String pu = null;
-        EntityMetadata m = null;
-        // In case of named native query
-        if (!isNative)
+        QueryPlan plan = planCache.get(jpaQuery);
+        if (plan == null)
         {
-            KunderaQueryParser parser = new KunderaQueryParser(kunderaQuery, mappedQuery != null ? mappedQuery
-                    : jpaQuery);
-
-            parser.parse();
-
-            kunderaQuery.postParsingInit();
-            pu = kunderaQuery.getPersistenceUnit();
-            m = kunderaQuery.getEntityMetadata();
-        }
-        else
-        {
-            Class mappedClass = appMetadata.getMappedClass(jpaQuery);
-
-            pu = appMetadata.getMappedPersistenceUnit(mappedClass).get(0);
-            m = KunderaMetadataManager.getEntityMetadata(mappedClass);
+            plan = parse(jpaQuery);
+            planCache.put(jpaQuery, plan);
         }
 
-        PersistenceUnitMetadata puMetadata = KunderaMetadataManager.getPersistenceUnitMetadata(pu);
+        // Only parameter binding happens per execution, on a copy.
+        kunderaQuery = plan.newKunderaQuery();
+        EntityMetadata m = plan.getEntityMetadata();
 
         Query query = null;
 
@@ -132,6 +133,46 @@ public class QueryResolver
 
     }
 
+    /**
+     * Parses and validates given query.
+     * 
+     * @param jpaQuery
+     *            the jpa query
+     * @return the query plan
+     */
+    private QueryPlan parse(String jpaQuery)
+    {
+        KunderaQuery parsedQuery = null;
+        ApplicationMetadata appMetadata = KunderaMetadata.INSTANCE.getApplicationMetadata();
+        String mappedQuery = appMetadata.getQuery(jpaQuery);
+        boolean isNative = appMetadata.isNative(jpaQuery);
+        String pu = null;
+        EntityMetadata m = null;
+        // In case of named native query
+        if (!isNative)
+        {
+            parsedQuery = new KunderaQuery();
+            KunderaQueryParser parser = new KunderaQueryParser(parsedQuery, mappedQuery != null ? mappedQuery
+                    : jpaQuery);
+
+            parser.parse();
+
+            parsedQuery.postParsingInit();
+            pu = parsedQuery.getPersistenceUnit();
+            m = parsedQuery.getEntityMetadata();
+        }
+        else
+        {
+            Class mappedClass = appMetadata.getMappedClass(jpaQuery);
+
+            pu = appMetadata.getMappedPersistenceUnit(mappedClass).get(0);
+            m = KunderaMetadataManager.getEntityMetadata(mappedClass);
+        }
+
+        log.debug("Parsed query " + jpaQuery + " for persistence unit " + pu);
+        return new QueryPlan(parsedQuery, pu, m);
+    }
+
     /**
      * Gets the query instance.
      * 
@@ -164,8 +205,12 @@ public class QueryResolver
         Query query;
         Class clazz = persistenceDelegator.getClient(m).getQueryImplementor();
 
-        @SuppressWarnings("rawtypes")
-        Constructor constructor = clazz.getConstructor(String.class, KunderaQuery.class, PersistenceDelegator.class);
+        Constructor<?> constructor = constructors.get(clazz);
+        if (constructor == null)
+        {
+            constructor = clazz.getConstructor(String.class, KunderaQuery.class, PersistenceDelegator.class);
+            constructors.put(clazz, constructor);
+        }
         query = (Query) constructor.newInstance(jpaQuery, kunderaQuery, persistenceDelegator);
 
         return query;
@@ -105,6 +105,12 @@ public class DeepEquals
             DualKey dualKey = stack.removeFirst();
             visited.add(dualKey);
 
+            // Same instance, also avoids fetching shared lazy relations
+            if (dualKey._key1 == dualKey._key2)
+            {
+                continue;
+            }
+
             if (dualKey._key1 == null || dualKey._key2 == null)
             {
                 if (dualKey._key1 != dualKey._key2)
@@ -39,6 +39,7 @@ import com.impetus.kundera.metadata.model.EmbeddedColumn;
 import com.impetus.kundera.metadata.model.EntityMetadata;
 import com.impetus.kundera.metadata.model.Relation;
 import com.impetus.kundera.property.PropertyAccessorHelper;
+import com.impetus.kundera.proxy.ProxyHelper;
 
 /**
  * Provides utility methods for operation on objects
@@ -194,7 +195,14 @@ public class ObjectUtils
                 Field relationField = relation.getProperty();
                 Object sourceRelationObject = PropertyAccessorHelper.getObject(source, relationField);
 
-                if (sourceRelationObject != null && !(sourceRelationObject instanceof AbstractPersistentCollection))
+                if (ProxyHelper.isProxyOrCollection(sourceRelationObject))
+                {
+                    // Lazily loaded relation, share proxy instead of
+                    // fetching it
+                    PropertyAccessorHelper.set(target, relationField, sourceRelationObject);
+                }
+                else if (sourceRelationObject != null
+                        && !(sourceRelationObject instanceof AbstractPersistentCollection))
                 {
                     Object targetRelationObject = null;
 
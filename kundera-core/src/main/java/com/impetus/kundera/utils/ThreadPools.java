@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.kundera.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.impetus.kundera.KunderaException;
+
+/**
+ * Bounded pools of daemon threads, and running of tasks on them.
+ * 
+ * @author impetus
+ */
+public final class ThreadPools
+{
+
+    /** Idle seconds after which pool threads exit. */
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    /**
+     * Instantiates a new thread pools.
+     */
+    private ThreadPools()
+    {
+    }
+
+    /**
+     * Creates a pool of daemon threads, which exit once idle. Once all threads
+     * are busy and queue is full, calling thread runs a task itself, so that
+     * callers are slowed down rather than rejected. A task run on such a pool
+     * must therefore not wait for other tasks of same pool. Once pool is shut
+     * down, tasks are rejected with {@link RejectedExecutionException} rather
+     * than silently discarded.
+     * 
+     * @param name
+     *            name of threads, numbered from 1
+     * @param threads
+     *            number of threads
+     * @param queueSize
+     *            number of tasks queued at most
+     * @return the pool
+     */
+    public static ThreadPoolExecutor newBoundedPool(final String name, int threads, int queueSize)
+    {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(queueSize), new ThreadFactory()
+                {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r)
+                    {
+                        Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                }, new RejectedExecutionHandler()
+                {
+                    @Override
+                    public void rejectedExecution(Runnable r, ThreadPoolExecutor pool)
+                    {
+                        if (pool.isShutdown())
+                        {
+                            throw new RejectedExecutionException("Pool " + name + " is shut down");
+                        }
+                        r.run();
+                    }
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Runs given tasks and waits for all of them, calling thread running
+     * first task itself and pool running the others. Remaining tasks are
+     * cancelled once one fails.
+     * 
+     * @param <T>
+     *            result type
+     * @param pool
+     *            the pool, used only if there are several tasks
+     * @param tasks
+     *            the tasks
+     * @return results, in order of tasks
+     */
+    public static <T> List<T> invokeAll(ExecutorService pool, List<Callable<T>> tasks)
+    {
+        List<T> results = new ArrayList<T>(tasks.size());
+        if (tasks.isEmpty())
+        {
+            return results;
+        }
+        List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size() - 1);
+        try
+        {
+            for (int i = 1; i < tasks.size(); i++)
+            {
+                futures.add(pool.submit(tasks.get(i)));
+            }
+            results.add(call(tasks.get(0)));
+            for (Future<T> future : futures)
+            {
+                results.add(get(future));
+            }
+            return results;
+        }
+        finally
+        {
+            // no-op for completed ones, stops remaining ones on failure.
+            for (Future<T> future : futures)
+            {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Runs a task in calling thread.
+     * 
+     * @param <T>
+     *            result type
+     * @param task
+     *            the task
+     * @return the result
+     */
+    private static <T> T call(Callable<T> task)
+    {
+        try
+        {
+            return task.call();
+        }
+        catch (RuntimeException e)
+        {
+            throw e;
+        }
+        catch (Exception e)
+        {
+            throw new KunderaException(e);
+        }
+    }
+
+    /**
+     * Waits for result of a task, rethrowing its failure as such if
+     * unchecked.
+     * 
+     * @param <T>
+     *            result type
+     * @param future
+     *            the future
+     * @return the result
+     */
+    public static <T> T get(Future<T> future)
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new KunderaException("Interrupted while waiting for task", e);
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+            throw new KunderaException(cause);
+        }
+    }
+}
@@ -0,0 +1,266 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.kundera.classreading;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.persistence.Entity;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.impetus.kundera.configure.CoreEntitySimple;
+import com.impetus.kundera.configure.CoreEntitySuper;
+
+/**
+ * Test case for {@link EntityClassFinder}.
+ * 
+ * @author impetus
+ */
+public class EntityClassFinderTest
+{
+
+    /**
+     * Scanning finds entities only, and same ones as index if there is one.
+     */
+    @Test
+    public void testScan() throws Exception
+    {
+        URL[] resources = { getClass().getProtectionDomain().getCodeSource().getLocation() };
+
+        List<String> scanned = EntityClassFinder.find(resources, newReader(), false);
+        Assert.assertTrue(scanned.contains(CoreEntitySimple.class.getName()));
+        Assert.assertFalse(scanned.contains(getClass().getName()));
+
+        List<String> found = EntityClassFinder.find(resources, newReader(), true);
+        Assert.assertEquals(new HashSet<String>(scanned), new HashSet<String>(found));
+    }
+
+    /**
+     * Entities of a class directory having an index are read from it, but for
+     * ones having no class file, and classes it does not cover are scanned.
+     */
+    @Test
+    public void testIndex() throws Exception
+    {
+        File root = File.createTempFile("kundera", "index");
+        root.delete();
+        try
+        {
+            write(new File(root, EntityIndex.RESOURCE), index());
+            write(new File(root, path(CoreEntitySimple.class)), classFile(CoreEntitySimple.class));
+            write(new File(root, path(CoreEntitySuper.class)), classFile(CoreEntitySuper.class));
+
+            URL[] resources = { root.toURI().toURL() };
+            Assert.assertEquals(entities(), new HashSet<String>(EntityClassFinder.find(resources, newReader(), true)));
+            Assert.assertEquals(entities(), new HashSet<String>(EntityClassFinder.find(resources, newReader(), false)));
+        }
+        finally
+        {
+            delete(root);
+        }
+    }
+
+    /**
+     * Index of a jar is read given either a plain or a <code>jar:</code> URL.
+     */
+    @Test
+    public void testJarIndex() throws Exception
+    {
+        File jar = File.createTempFile("kundera", ".jar");
+        try
+        {
+            ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(jar));
+            try
+            {
+                put(zos, EntityIndex.RESOURCE, index());
+                put(zos, path(CoreEntitySimple.class), classFile(CoreEntitySimple.class));
+                put(zos, path(CoreEntitySuper.class), classFile(CoreEntitySuper.class));
+            }
+            finally
+            {
+                zos.close();
+            }
+
+            URL url = jar.toURI().toURL();
+            for (URL resource : new URL[] { url, new URL("jar:" + url + "!/") })
+            {
+                EntityIndex index = EntityIndex.find(resource);
+                Assert.assertNotNull(index);
+                Assert.assertTrue(index.covers(path(CoreEntitySimple.class)));
+                Assert.assertFalse(index.covers(path(CoreEntitySuper.class)));
+                Assert.assertEquals(entities(),
+                        new HashSet<String>(EntityClassFinder.find(new URL[] { resource }, newReader(), true)));
+            }
+        }
+        finally
+        {
+            jar.delete();
+        }
+    }
+
+    /**
+     * Returns an index listing {@link CoreEntitySimple} and a class having no
+     * class file, but not {@link CoreEntitySuper}.
+     * 
+     * @return the index
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private byte[] index() throws IOException
+    {
+        return ("# entities\n" + CoreEntitySimple.class.getName() + "\n\ncom.example.Missing$Nested\nclass "
+                + CoreEntitySimple.class.getName() + "\nclass com.example.Missing\n").getBytes("UTF-8");
+    }
+
+    /**
+     * Returns entities expected to be found.
+     * 
+     * @return names of entity classes
+     */
+    private Set<String> entities()
+    {
+        return new HashSet<String>(Arrays.asList(CoreEntitySimple.class.getName(), CoreEntitySuper.class.getName()));
+    }
+
+    /**
+     * Returns path of class file of a class.
+     * 
+     * @param clazz
+     *            the class
+     * @return the path
+     */
+    private String path(Class<?> clazz)
+    {
+        return clazz.getName().replace('.', '/') + ".class";
+    }
+
+    /**
+     * Reads class file of a class.
+     * 
+     * @param clazz
+     *            the class
+     * @return its bytes
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private byte[] classFile(Class<?> clazz) throws IOException
+    {
+        InputStream is = clazz.getClassLoader().getResourceAsStream(path(clazz));
+        try
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = is.read(buffer)) != -1)
+            {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toByteArray();
+        }
+        finally
+        {
+            is.close();
+        }
+    }
+
+    /**
+     * Writes a file, creating its directory.
+     * 
+     * @param file
+     *            the file
+     * @param bytes
+     *            its bytes
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private void write(File file, byte[] bytes) throws IOException
+    {
+        file.getParentFile().mkdirs();
+        OutputStream os = new FileOutputStream(file);
+        try
+        {
+            os.write(bytes);
+        }
+        finally
+        {
+            os.close();
+        }
+    }
+
+    /**
+     * Puts an entry into a jar.
+     * 
+     * @param zos
+     *            the jar
+     * @param name
+     *            name of entry
+     * @param bytes
+     *            its bytes
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private void put(ZipOutputStream zos, String name, byte[] bytes) throws IOException
+    {
+        zos.putNextEntry(new ZipEntry(name));
+        zos.write(bytes);
+        zos.closeEntry();
+    }
+
+    /**
+     * Deletes a file or directory, recursively.
+     * 
+     * @param file
+     *            the file
+     */
+    private void delete(File file)
+    {
+        File[] files = file.listFiles();
+        if (files != null)
+        {
+            for (File child : files)
+            {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Returns reader of entities.
+     * 
+     * @return the reader
+     */
+    private Reader newReader()
+    {
+        Reader reader = new ClasspathReader();
+        reader.addValidAnnotations(Entity.class.getName());
+        return reader;
+    }
+}
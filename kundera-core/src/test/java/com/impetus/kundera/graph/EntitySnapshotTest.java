@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.kundera.graph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.impetus.kundera.configure.MetamodelConfiguration;
+import com.impetus.kundera.configure.PersistenceUnitConfiguration;
+import com.impetus.kundera.metadata.KunderaMetadataManager;
+import com.impetus.kundera.metadata.model.EntityMetadata;
+import com.impetus.kundera.metadata.model.Relation;
+import com.impetus.kundera.persistence.context.PersistenceCache;
+import com.impetus.kundera.property.PropertyAccessorHelper;
+import com.impetus.kundera.proxy.collection.ProxyList;
+import com.impetus.kundera.utils.ObjectUtils;
+
+/**
+ * Test case for {@link EntitySnapshot}.
+ * 
+ * @author impetus
+ */
+public class EntitySnapshotTest
+{
+
+    /** The store metadata. */
+    private EntityMetadata metadata;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        new PersistenceUnitConfiguration("kunderatest").configure();
+        new MetamodelConfiguration("kunderatest").configure();
+        metadata = KunderaMetadataManager.getEntityMetadata(Store.class);
+    }
+
+    /**
+     * Changed columns are found, changed relations require whole entity.
+     */
+    @Test
+    public void testDiff()
+    {
+        Store store = new Store(1, "Food Bazaar, Noida");
+        store.addCounter(new BillingCounter(1, "A"));
+        EntitySnapshot snapshot = EntitySnapshot.of(store, metadata);
+
+        Store copy = (Store) ObjectUtils.deepCopy(store);
+        Assert.assertTrue(EntitySnapshot.of(copy, metadata).diff(snapshot).isEmpty());
+
+        copy.setStoreName("Food Bazaar, Delhi");
+        Assert.assertEquals(Collections.singleton("STORE_NAME"), EntitySnapshot.of(copy, metadata).diff(snapshot));
+
+        // a changed counter is a change of counter, not of store.
+        copy = (Store) ObjectUtils.deepCopy(store);
+        copy.getCounters().get(0).setCounterCode("B");
+        Assert.assertTrue(EntitySnapshot.of(copy, metadata).diff(snapshot).isEmpty());
+
+        copy.addCounter(new BillingCounter(2, "C"));
+        Assert.assertNull(EntitySnapshot.of(copy, metadata).diff(snapshot));
+    }
+
+    /**
+     * A lazy relation not loaded is unchanged, one replaced requires whole
+     * entity.
+     */
+    @Test
+    public void testLazyRelation()
+    {
+        Store store = new Store(1, "Food Bazaar, Noida");
+        Relation relation = metadata.getRelations().get(0);
+        PropertyAccessorHelper.set(store, relation.getProperty(), new ProxyList<Object>(store, metadata, relation,
+                null));
+        EntitySnapshot snapshot = EntitySnapshot.of(store, metadata);
+        Assert.assertTrue(EntitySnapshot.of(store, metadata).diff(snapshot).isEmpty());
+
+        ArrayList<BillingCounter> counters = new ArrayList<BillingCounter>();
+        counters.add(new BillingCounter(2, "C"));
+        PropertyAccessorHelper.set(store, relation.getProperty(), counters);
+        EntitySnapshot replaced = EntitySnapshot.of(store, metadata);
+        Assert.assertNull(replaced.diff(snapshot));
+        Assert.assertNull(snapshot.diff(replaced));
+    }
+
+    /**
+     * Node of a merged entity is dirty for its changed columns only. Node
+     * holds entity itself, changes are found against its snapshot.
+     */
+    @Test
+    public void testDirtyColumns()
+    {
+        PersistenceCache persistenceCache = new PersistenceCache();
+        ObjectGraphBuilder graphBuilder = new ObjectGraphBuilder(persistenceCache);
+
+        Store store = new Store(1, "Food Bazaar, Noida");
+        Node node = graphBuilder.getObjectGraph(store, null).getHeadNode();
+        persistenceCache.getMainCache().addNodeToCache(node);
+        node.setDirty(false);
+        node.takeSnapshot();
+
+        Assert.assertFalse(graphBuilder.getObjectGraph(store, null).getHeadNode().isDirty());
+
+        store.setStoreName("Food Bazaar, Delhi");
+        node = graphBuilder.getObjectGraph(store, null).getHeadNode();
+        Assert.assertTrue(node.isDirty());
+        Assert.assertEquals(Collections.singleton("STORE_NAME"), node.getDirtyColumns());
+        Assert.assertEquals("Food Bazaar, Delhi", ((Store) node.getData()).getStoreName());
+        Assert.assertSame(store, node.getData());
+    }
+}
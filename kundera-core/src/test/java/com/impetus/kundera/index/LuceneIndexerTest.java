@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.kundera.index;
+
+import java.io.File;
+
+import junit.framework.Assert;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.util.Version;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test case for {@link LuceneIndexer}.
+ * 
+ * @author impetus
+ */
+public class LuceneIndexerTest
+{
+
+    /** The index directory. */
+    private File dir;
+
+    @Before
+    public void setUp()
+    {
+        dir = new File(System.getProperty("java.io.tmpdir"), "kundera-lucene-" + System.nanoTime());
+    }
+
+    @After
+    public void tearDown()
+    {
+        File[] files = dir.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    /**
+     * Closing indexer stops background commits and releases index lock, so
+     * that index can be opened again.
+     */
+    @Test
+    public void testClose()
+    {
+        StandardAnalyzer analyzer = new StandardAnalyzer(Version.LUCENE_34);
+        LuceneIndexer indexer = LuceneIndexer.getInstance(analyzer, dir.getPath());
+        Assert.assertTrue(isCommitterAlive());
+
+        indexer.close();
+        Assert.assertFalse(isCommitterAlive());
+
+        // fails to obtain write lock if previous writer is not closed.
+        LuceneIndexer reopened = LuceneIndexer.getInstance(analyzer, dir.getPath());
+        Assert.assertNotSame(indexer, reopened);
+        reopened.close();
+    }
+
+    /**
+     * Checks whether a committer thread is alive.
+     * 
+     * @return true, if it is
+     */
+    private boolean isCommitterAlive()
+    {
+        for (Thread thread : Thread.getAllStackTraces().keySet())
+        {
+            if ("kundera-lucene-committer".equals(thread.getName()) && thread.isAlive())
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
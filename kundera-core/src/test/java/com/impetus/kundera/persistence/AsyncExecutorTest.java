@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.kundera.persistence;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test case for {@link AsyncExecutor}.
+ * 
+ * @author impetus
+ */
+public class AsyncExecutorTest
+{
+
+    /** The executor. */
+    private AsyncExecutor executor;
+
+    @Before
+    public void setUp()
+    {
+        executor = new AsyncExecutor(4);
+    }
+
+    @After
+    public void tearDown()
+    {
+        executor.shutdown();
+    }
+
+    /**
+     * Operations of a lane run one after another in order of submission,
+     * even if they fail.
+     */
+    @Test
+    public void testLaneRunsInOrder() throws Exception
+    {
+        AsyncExecutor.Lane lane = executor.newLane();
+        final List<Integer> ran = Collections.synchronizedList(new ArrayList<Integer>());
+        List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+        for (int i = 0; i < 100; i++)
+        {
+            final int n = i;
+            futures.add(lane.submit(new Callable<Integer>()
+            {
+                @Override
+                public Integer call() throws Exception
+                {
+                    ran.add(n);
+                    if (n % 10 == 0)
+                    {
+                        throw new IllegalStateException("failed " + n);
+                    }
+                    return n;
+                }
+            }));
+        }
+        for (int i = 0; i < futures.size(); i++)
+        {
+            try
+            {
+                Assert.assertEquals(Integer.valueOf(i), futures.get(i).get());
+                Assert.assertTrue(i % 10 != 0);
+            }
+            catch (ExecutionException e)
+            {
+                Assert.assertTrue(i % 10 == 0);
+                Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+        }
+        Assert.assertEquals(100, ran.size());
+        for (int i = 0; i < ran.size(); i++)
+        {
+            Assert.assertEquals(Integer.valueOf(i), ran.get(i));
+        }
+    }
+
+    /**
+     * Operations submitted once executor is shut down are rejected, rather
+     * than left without a result.
+     */
+    @Test
+    public void testSubmitAfterShutdown()
+    {
+        executor.shutdown();
+        try
+        {
+            executor.newLane().submit(new Callable<Void>()
+            {
+                @Override
+                public Void call()
+                {
+                    return null;
+                }
+            });
+            Assert.fail("Operation accepted after shutdown");
+        }
+        catch (IllegalStateException e)
+        {
+            // expected.
+        }
+    }
+}
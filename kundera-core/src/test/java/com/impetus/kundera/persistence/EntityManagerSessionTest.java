@@ -79,6 +79,7 @@ public class EntityManagerSessionTest extends TestCase
     {
         super.tearDown();
         ems.clear();
+        ems.getL2Cache().evictAll();
     }
 
     /**
@@ -106,10 +107,16 @@ public class EntityManagerSessionTest extends TestCase
         assertNotNull(ems);
         assertEquals(1, ems.getL2Cache().size());
 
-        // Clear session
+        // Clear session, L2 cache is shared and must survive
         ems.clear();
         assertNotNull(ems);
+        assertEquals(1, ems.getL2Cache().size());
+        assertNotNull(ems.lookup(PersonnelDTO.class, person2.getPersonId()));
+
+        // Evict all entities of a class
+        ems.evict(PersonnelDTO.class);
         assertEquals(0, ems.getL2Cache().size());
+        assertNull(ems.lookup(PersonnelDTO.class, person2.getPersonId()));
 
     }
 
@@ -15,6 +15,8 @@
  */
 package com.impetus.kundera.persistence.context;
 
+import java.util.List;
+
 import junit.framework.Assert;
 
 import org.junit.After;
@@ -256,6 +258,52 @@ public class FlushStackManagerTest
         Assert.assertEquals(7, fs.size());
     }
 
+    @Test
+    public void testFlushLevels()
+    {
+        FlushManager flushManager = new FlushManager();
+
+        PhotographerUni_1_M_1_M a = new PhotographerUni_1_M_1_M();
+        a.setPhotographerId(1);
+
+        AlbumUni_1_M_1_M b1 = new AlbumUni_1_M_1_M();
+        b1.setAlbumId("b1");
+        AlbumUni_1_M_1_M b2 = new AlbumUni_1_M_1_M();
+        b2.setAlbumId("b2");
+
+        PhotoUni_1_M_1_M c1 = new PhotoUni_1_M_1_M();
+        c1.setPhotoId("c1");
+        PhotoUni_1_M_1_M c2 = new PhotoUni_1_M_1_M();
+        c2.setPhotoId("c2");
+        PhotoUni_1_M_1_M c3 = new PhotoUni_1_M_1_M();
+        c3.setPhotoId("c3");
+
+        b1.addPhoto(c1);
+        b1.addPhoto(c2);
+        b2.addPhoto(c3);
+        a.addAlbum(b1);
+        a.addAlbum(b2);
+
+        ObjectGraph graph = graphBuilder.getObjectGraph(a, null);
+        pc.getMainCache().addGraphToCache(graph, pc);
+        markAllNodeAsDirty();
+
+        flushManager.buildFlushStack(graph.getHeadNode(), EventType.INSERT);
+        List<List<Node>> levels = flushManager.popFlushLevels();
+        Assert.assertTrue(flushManager.getFlushStack().isEmpty());
+
+        // Photographer, then albums, then photos
+        Assert.assertEquals(3, levels.size());
+        Assert.assertEquals(1, levels.get(0).size());
+        Assert.assertEquals(PhotographerUni_1_M_1_M.class, levels.get(0).get(0).getDataClass());
+        Assert.assertEquals(2, levels.get(1).size());
+        Assert.assertEquals(3, levels.get(2).size());
+        for (Node node : levels.get(2))
+        {
+            Assert.assertEquals(PhotoUni_1_M_1_M.class, node.getDataClass());
+        }
+    }
+
     @Test
     public void test_1_M_M_M()
     {
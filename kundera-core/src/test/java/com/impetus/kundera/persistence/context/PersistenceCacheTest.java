@@ -90,5 +90,8 @@ public class PersistenceCacheTest
         Assert.assertEquals(3, headNode.getChildren().size());
 
         Assert.assertEquals(4, pc.getMainCache().size());
+
+        // Entity without id is not in cache.
+        Assert.assertNull(pc.getMainCache().getNodeFromCache(null));
     }
 }
@@ -0,0 +1,194 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.kundera.property;
+
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.impetus.kundera.metadata.model.Column;
+import com.impetus.kundera.metadata.model.EntityMetadata;
+import com.impetus.kundera.property.accessor.IntegerAccessor;
+
+/**
+ * The Class EntityFieldAccessorTest.
+ * 
+ * @author impetus
+ */
+public class EntityFieldAccessorTest
+{
+
+    /**
+     * Test get and set through accessor.
+     * 
+     * @throws Exception
+     *             the exception
+     */
+    @Test
+    public void testGetAndSet() throws Exception
+    {
+        EntityFieldAccessor accessor = EntityFieldAccessorFactory.getAccessor(Person.class);
+        Assert.assertSame(accessor, EntityFieldAccessorFactory.getAccessor(Person.class));
+
+        Person person = (Person) accessor.newInstance();
+        int name = accessor.indexOf(Person.class.getDeclaredField("name"));
+        int age = accessor.indexOf(Person.class.getDeclaredField("age"));
+        int nickName = accessor.indexOf(Person.class.getDeclaredField("nickName"));
+        int city = accessor.indexOf(Person.class.getDeclaredField("city"));
+        int id = accessor.indexOf(BaseEntity.class.getDeclaredField("id"));
+
+        accessor.set(person, name, "Vivek");
+        accessor.set(person, age, 32);
+        accessor.set(person, nickName, "vivs");
+        accessor.set(person, city, "Noida");
+        accessor.set(person, id, "1");
+        Assert.assertEquals("Vivek", person.getName());
+        Assert.assertEquals(32, person.getAge());
+        Assert.assertEquals("VIVS", person.getNickName());
+        Assert.assertEquals("Noida", person.city);
+        Assert.assertEquals("1", person.getId());
+
+        Assert.assertEquals("Vivek", accessor.get(person, name));
+        Assert.assertEquals(32, accessor.get(person, age));
+        Assert.assertEquals("vivs", accessor.get(person, nickName));
+        Assert.assertEquals("1", accessor.get(person, id));
+    }
+
+    /**
+     * Test super class fields have same slot in subclass accessor.
+     * 
+     * @throws Exception
+     *             the exception
+     */
+    @Test
+    public void testInheritedSlot() throws Exception
+    {
+        Field id = BaseEntity.class.getDeclaredField("id");
+        Assert.assertEquals(EntityFieldAccessorFactory.getAccessor(BaseEntity.class).indexOf(id),
+                EntityFieldAccessorFactory.getAccessor(Person.class).indexOf(id));
+        Assert.assertEquals(-1, EntityFieldAccessorFactory.getAccessor(BaseEntity.class).indexOf(
+                Person.class.getDeclaredField("name")));
+    }
+
+    /**
+     * Test null can not be set to primitive field.
+     * 
+     * @throws Exception
+     *             the exception
+     */
+    @Test
+    public void testNullToPrimitive() throws Exception
+    {
+        Person person = new Person();
+        try
+        {
+            PropertyAccessorHelper.set(person, Person.class.getDeclaredField("age"), (Object) null);
+            Assert.fail();
+        }
+        catch (PropertyAccessException e)
+        {
+            Assert.assertEquals(0, person.getAge());
+        }
+    }
+
+    /**
+     * Test column lookup by encoded name and set through column.
+     * 
+     * @throws Exception
+     *             the exception
+     */
+    @Test
+    public void testColumnLookup() throws Exception
+    {
+        EntityMetadata m = new EntityMetadata(Person.class);
+        m.addColumn("PERSON_NAME", new Column("PERSON_NAME", Person.class.getDeclaredField("name")));
+        m.addColumn("AGE", new Column("AGE", Person.class.getDeclaredField("age")));
+
+        ByteBuffer name = ByteBuffer.wrap("xAGEx".getBytes("utf-8"), 1, 3);
+        Column column = m.getColumn(name);
+        Assert.assertEquals("AGE", column.getName());
+        Assert.assertNull(m.getColumn(ByteBuffer.wrap("AGE_".getBytes("utf-8"))));
+
+        Person person = new Person();
+        PropertyAccessorHelper.set(person, column, new IntegerAccessor().toBytes(40), null);
+        Assert.assertEquals(40, person.getAge());
+    }
+
+    /**
+     * Entity super class.
+     */
+    public static class BaseEntity
+    {
+        private String id;
+
+        public String getId()
+        {
+            return id;
+        }
+
+        public void setId(String id)
+        {
+            this.id = id;
+        }
+    }
+
+    /**
+     * Entity.
+     */
+    public static class Person extends BaseEntity
+    {
+        private String name;
+
+        private int age;
+
+        private String nickName;
+
+        String city;
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public void setName(String name)
+        {
+            this.name = name;
+        }
+
+        public int getAge()
+        {
+            return age;
+        }
+
+        public void setAge(int age)
+        {
+            this.age = age;
+        }
+
+        public String getNickName()
+        {
+            return nickName != null ? nickName.toUpperCase() : null;
+        }
+
+        public void setNickName(String nickName)
+        {
+            this.nickName = nickName;
+        }
+    }
+}
@@ -69,6 +69,24 @@ public class DateAccessorTest
         Assert.assertNotNull(accessor.fromString(Date.class, dateInMMddYY));
     }
 
+    /**
+     * Test both binary and string encoded dates are read back.
+     */
+    @Test
+    public void testDateFromBytes()
+    {
+        Date now = new Date();
+
+        byte[] binary = DateEncoding.toBytes(now);
+        Assert.assertEquals(8, binary.length);
+        Assert.assertEquals(now, accessor.fromBytes(Date.class, binary));
+
+        byte[] string = accessor.toBytes(now);
+        Assert.assertEquals(now.getTime() / 1000, accessor.fromBytes(Date.class, string).getTime() / 1000);
+
+        Assert.assertEquals(-1L, DateEncoding.toMillis(DateEncoding.toBytes(-1L)));
+    }
+
     /**
      * Tear down.
      * 
@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.kundera.property.serializer;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.impetus.kundera.property.accessor.ObjectAccessor;
+
+/**
+ * The Class CompactSerializerTest.
+ * 
+ * @author impetus
+ */
+public class CompactSerializerTest
+{
+
+    /** The serializer. */
+    private CompactSerializer serializer;
+
+    /**
+     * Sets the up.
+     */
+    @Before
+    public void setUp()
+    {
+        serializer = new CompactSerializer();
+    }
+
+    /**
+     * Test round trip.
+     */
+    @Test
+    public void testRoundTrip()
+    {
+        Address address = newAddress();
+        byte[] bytes = serializer.serialize(address);
+        Assert.assertTrue(CompactSerializer.isCompactSerialized(bytes));
+        Assert.assertFalse(JavaSerializer.isJavaSerialized(bytes));
+
+        Address copy = (Address) serializer.deserialize(bytes);
+        Assert.assertEquals(address.street, copy.street);
+        Assert.assertEquals(address.zip, copy.zip);
+        Assert.assertEquals(address.type, copy.type);
+        Assert.assertEquals(address.since, copy.since);
+        Assert.assertEquals(address.tags, copy.tags);
+        Assert.assertEquals(address.attributes, copy.attributes);
+
+        // Read via accessor, without knowing serializer.
+        copy = (Address) new ObjectAccessor().fromBytes(Address.class, bytes);
+        Assert.assertEquals(address.street, copy.street);
+    }
+
+    /**
+     * Test compact output is smaller than java serialization.
+     */
+    @Test
+    public void testSize()
+    {
+        Address address = newAddress();
+        int compact = serializer.serialize(address).length;
+        int java = new JavaSerializer().serialize(address).length;
+        Assert.assertTrue(compact < java);
+    }
+
+    /**
+     * Test java serialized bytes remain readable.
+     */
+    @Test
+    public void testReadJavaSerialized()
+    {
+        Address address = newAddress();
+        byte[] bytes = new JavaSerializer().serialize(address);
+        Address copy = (Address) serializer.deserialize(bytes);
+        Assert.assertEquals(address.street, copy.street);
+
+        copy = (Address) new ObjectAccessor().fromBytes(Address.class, bytes);
+        Assert.assertEquals(address.attributes, copy.attributes);
+    }
+
+    /**
+     * Test cyclic references fall back to java serialization.
+     */
+    @Test
+    public void testCyclicReference()
+    {
+        Node node = new Node();
+        node.next = new Node();
+        node.next.next = node;
+
+        Node copy = (Node) serializer.deserialize(serializer.serialize(node));
+        Assert.assertSame(copy, copy.next.next);
+    }
+
+    private Address newAddress()
+    {
+        Address address = new Address();
+        address.street = "Sector 62";
+        address.zip = 201301;
+        address.type = AddressType.OFFICE;
+        address.since = new Date(1340000000000L);
+        address.tags = new ArrayList<String>();
+        address.tags.add("primary");
+        address.tags.add("billing");
+        address.attributes = new HashMap<String, Long>();
+        address.attributes.put("floor", 4L);
+        return address;
+    }
+
+    /**
+     * Address type.
+     */
+    public enum AddressType
+    {
+        HOME, OFFICE
+    }
+
+    /**
+     * Test value class.
+     */
+    public static class Address implements Serializable
+    {
+        private static final long serialVersionUID = 1L;
+
+        private String street;
+
+        private int zip;
+
+        private AddressType type;
+
+        private Date since;
+
+        private List<String> tags;
+
+        private Map<String, Long> attributes;
+    }
+
+    /**
+     * Test value class with a reference cycle.
+     */
+    public static class Node implements Serializable
+    {
+        private static final long serialVersionUID = 1L;
+
+        private Node next;
+    }
+}
@@ -0,0 +1,253 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.kundera.query;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.Set;
+
+import javax.persistence.Column;
+import javax.persistence.Id;
+
+import junit.framework.Assert;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.impetus.kundera.index.DocumentIndexer;
+import com.impetus.kundera.metadata.model.EntityMetadata;
+import com.impetus.kundera.metadata.processor.IndexProcessor;
+
+/**
+ * Test case for {@link LuceneQueryBuilder}, running built queries against
+ * documents indexed the way {@link DocumentIndexer} does.
+ * 
+ * @author impetus
+ */
+public class LuceneQueryBuilderTest
+{
+
+    /** Format of dates given in queries. */
+    private static final String DATE_FORMAT = "dd MMM yyyy HH:mm:ss:SSS";
+
+    /** The metadata. */
+    private EntityMetadata metadata;
+
+    /** The index. */
+    private Directory index;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        metadata = new EntityMetadata(Employee.class);
+        new IndexProcessor().process(Employee.class, metadata);
+
+        index = new RAMDirectory();
+        IndexWriter writer = new IndexWriter(index, new IndexWriterConfig(Version.LUCENE_34, new StandardAnalyzer(
+                Version.LUCENE_34)));
+        writer.addDocument(newDocument("e1", 20, "01 Jan 2011 00:00:00:000"));
+        writer.addDocument(newDocument("e2", 30, "01 Jan 2012 00:00:00:000"));
+        writer.addDocument(newDocument("e3", 40, "01 Jan 2013 00:00:00:000"));
+        writer.close();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        index.close();
+    }
+
+    /**
+     * Test comparisons of numeric property, bounds being inclusive or not.
+     */
+    @Test
+    public void testNumericRange() throws Exception
+    {
+        assertFound(ids("e2", "e3"), "age", ">", "20");
+        assertFound(ids("e2", "e3"), "age", ">=", "30");
+        assertFound(ids("e1"), "age", "<", "30");
+        assertFound(ids("e1", "e2"), "age", "<=", "30");
+        assertFound(ids("e2"), "age", "=", "'30'");
+        assertFound(ids(), "age", "=", "35");
+        assertFound(ids("e2"), "age", ">", "20", "AND", "age", "<", "40");
+        assertFound(ids("e1", "e3"), "age", "=", "20", "OR", "age", "=", "40");
+    }
+
+    /**
+     * Test comparisons of date property, compared as instants rather than as
+     * text.
+     */
+    @Test
+    public void testDateRange() throws Exception
+    {
+        assertFound(ids("e2", "e3"), "joined", ">=", "01 Jan 2012 00:00:00:000");
+        assertFound(ids("e3"), "joined", ">", "01 Jan 2012 00:00:00:000");
+        assertFound(ids("e1"), "joined", "<", "31 Dec 2011 23:59:59:999");
+        assertFound(ids("e2"), "joined", ">", "31 Dec 2011 00:00:00:000", "AND", "joined", "<=",
+                "01 Jan 2012 00:00:00:000");
+    }
+
+    /**
+     * Test an invalid number is rejected.
+     */
+    @Test
+    public void testInvalidNumber()
+    {
+        try
+        {
+            LuceneQueryBuilder.build(metadata, clauses("age", ">", "twenty"));
+            Assert.fail("Invalid number accepted");
+        }
+        catch (QueryHandlerException e)
+        {
+            // expected.
+        }
+    }
+
+    /**
+     * Asserts entities found by a query.
+     * 
+     * @param expected
+     *            ids of expected entities
+     * @param filter
+     *            property, condition and value of each clause, operators in
+     *            between
+     */
+    private void assertFound(Set<String> expected, String... filter) throws Exception
+    {
+        IndexReader reader = IndexReader.open(index);
+        try
+        {
+            IndexSearcher searcher = new IndexSearcher(reader);
+            Set<String> found = new HashSet<String>();
+            for (ScoreDoc doc : searcher.search(LuceneQueryBuilder.build(metadata, clauses(filter)), 10).scoreDocs)
+            {
+                found.add(searcher.doc(doc.doc).get(DocumentIndexer.ENTITY_ID_FIELD));
+            }
+            searcher.close();
+            Assert.assertEquals(expected, found);
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    /**
+     * Returns filter clauses, named after index fields as by
+     * {@link KunderaQuery}.
+     * 
+     * @param filter
+     *            property, condition and value of each clause, operators in
+     *            between
+     * @return the filter clauses
+     */
+    private Queue<Object> clauses(String... filter)
+    {
+        KunderaQuery kunderaQuery = new KunderaQuery();
+        Queue<Object> clauses = new LinkedList<Object>();
+        for (int i = 0; i < filter.length; i += 4)
+        {
+            clauses.add(kunderaQuery.new FilterClause(DocumentIndexer.getCannonicalPropertyName(
+                    metadata.getIndexName(), filter[i]), filter[i + 1], filter[i + 2]));
+            if (i + 3 < filter.length)
+            {
+                clauses.add(filter[i + 3]);
+            }
+        }
+        return clauses;
+    }
+
+    /**
+     * Returns a document as indexed for an employee.
+     * 
+     * @param id
+     *            the id
+     * @param age
+     *            the age
+     * @param joined
+     *            date of joining
+     * @return the document
+     */
+    private Document newDocument(String id, int age, String joined) throws Exception
+    {
+        String indexName = metadata.getIndexName();
+        Date date = new SimpleDateFormat(DATE_FORMAT, Locale.ENGLISH).parse(joined);
+
+        Document document = new Document();
+        document.add(new Field(DocumentIndexer.ENTITY_ID_FIELD, id, Field.Store.YES, Field.Index.ANALYZED));
+        document.add(new Field(DocumentIndexer.ENTITY_CLASS_FIELD, Employee.class.getCanonicalName().toLowerCase(),
+                Field.Store.YES, Field.Index.ANALYZED));
+        document.add(new NumericField(DocumentIndexer.getCannonicalPropertyName(indexName, "age"), Field.Store.YES,
+                true).setLongValue(age));
+        document.add(new NumericField(DocumentIndexer.getCannonicalPropertyName(indexName, "joined"),
+                Field.Store.YES, true).setLongValue(date.getTime()));
+        return document;
+    }
+
+    /**
+     * Returns set of given ids.
+     * 
+     * @param ids
+     *            the ids
+     * @return the set
+     */
+    private static Set<String> ids(String... ids)
+    {
+        Set<String> set = new HashSet<String>();
+        for (String id : ids)
+        {
+            set.add(id);
+        }
+        return set;
+    }
+
+    /**
+     * Entity with indexed numeric and date properties.
+     */
+    public static class Employee
+    {
+
+        /** The id. */
+        @Id
+        private String id;
+
+        /** The age. */
+        @Column
+        private int age;
+
+        /** The date of joining. */
+        @Column
+        private Date joined;
+    }
+}
@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * * Copyright 2012 Impetus Infotech.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ ******************************************************************************/
+package com.impetus.kundera.query;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.impetus.kundera.query.QueryPlanCache.QueryPlan;
+
+/**
+ * Test case for {@link QueryPlanCache}.
+ * 
+ * @author impetus
+ */
+public class QueryPlanCacheTest
+{
+
+    @Test
+    public void testHitsAndMisses()
+    {
+        QueryPlanCache cache = new QueryPlanCache(10);
+        String query = "Select p from Person p";
+
+        Assert.assertNull(cache.get(query));
+        cache.put(query, new QueryPlan(null, "pu1", null));
+        Assert.assertNotNull(cache.get(query));
+        Assert.assertNotNull(cache.get(query));
+
+        Assert.assertEquals(2, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+        Assert.assertEquals(2.0 / 3, cache.getHitRatio(), 0.0001);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedPlanIsDropped()
+    {
+        QueryPlanCache cache = new QueryPlanCache(2);
+        cache.put("q1", new QueryPlan(null, "pu1", null));
+        cache.put("q2", new QueryPlan(null, "pu1", null));
+
+        // Touch q1, so that q2 is least recently used.
+        cache.get("q1");
+        cache.put("q3", new QueryPlan(null, "pu1", null));
+
+        Assert.assertEquals(2, cache.size());
+        Assert.assertNotNull(cache.get("q1"));
+        Assert.assertNull(cache.get("q2"));
+        Assert.assertNotNull(cache.get("q3"));
+    }
+
+    @Test
+    public void testEvictByPersistenceUnit()
+    {
+        QueryPlanCache cache = new QueryPlanCache(10);
+        cache.put("q1", new QueryPlan(null, "pu1", null));
+        cache.put("q2", new QueryPlan(null, "pu2", null));
+
+        cache.evict("pu1");
+
+        Assert.assertEquals(1, cache.size());
+        Assert.assertNull(cache.get("q1"));
+        Assert.assertNotNull(cache.get("q2"));
+    }
+}